@@ -0,0 +1,238 @@
+package com.ortiVerdi.dashboard.carico;
+
+import com.ortiVerdi.dashboard.DashboardApplication;
+import com.ortiVerdi.dashboard.service.CompositorePagina;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Prova di carico delle pagine di analisi: avvia la dashboard in ogni modalità
+ * di esecuzione, la bombarda con N utenti concorrenti per una durata fissa e
+ * confronta latenza p50/p99/max e throughput.
+ *
+ * Modalità:
+ *   piattaforma  Tomcat con thread di piattaforma, pezzi su pool fisso (Java 17)
+ *   virtuali     Tomcat su thread virtuali, StructuredTaskScope (solo Java 21)
+ *
+ * I pezzi della pagina oggi leggono dati in memoria e costano microsecondi:
+ * per misurare il caso che interessa (dati da storage) ogni pezzo aspetta
+ * carico.latenza ms prima di calcolare, tramite un decoratore del CompositorePagina.
+ *
+ * Proprietà di sistema (impostate dal profilo Maven "carico"):
+ *   carico.utenti         utenti concorrenti (ognuno fa una richiesta dopo l'altra)
+ *   carico.durata         secondi misurati per modalità
+ *   carico.riscaldamento  secondi di riscaldamento, non misurati
+ *   carico.latenza        ms di attesa simulata per pezzo
+ *   carico.percorso       pagina richiesta
+ *   carico.uscita         cartella dei risultati
+ */
+public final class ProvaCaricoPagine {
+
+    private ProvaCaricoPagine() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Con devtools nel classpath il riavvio automatico rilancerebbe main
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        int utenti = Integer.parseInt(proprieta("carico.utenti", "400"));
+        int durata = Integer.parseInt(proprieta("carico.durata", "20"));
+        int riscaldamento = Integer.parseInt(proprieta("carico.riscaldamento", "5"));
+        long latenza = Long.parseLong(proprieta("carico.latenza", "20"));
+        String percorso = proprieta("carico.percorso", "/analisi-raccolto?mese=3");
+        Path uscita = Path.of(proprieta("carico.uscita", "target/carico"));
+        Files.createDirectories(uscita);
+
+        Map<String, Map<String, Object>> modalita = new LinkedHashMap<>();
+        modalita.put("piattaforma", Map.of(
+                "spring.threads.virtual.enabled", "false",
+                "ortiverdi.pagine.strutturata", "false"));
+        if (Runtime.version().feature() >= 21) {
+            modalita.put("virtuali", Map.of(
+                    "spring.threads.virtual.enabled", "true",
+                    "ortiverdi.pagine.strutturata", "true"));
+        } else {
+            System.out.println("Java " + Runtime.version().feature()
+                    + ": modalità 'virtuali' saltata (serve il profilo java21 su Java 21)");
+        }
+
+        List<String> righe = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> m : modalita.entrySet()) {
+            Esito esito = esegui(m.getKey(), m.getValue(), utenti, riscaldamento, durata, latenza, percorso);
+            System.out.println(esito);
+            righe.add(esito.json());
+        }
+        Path risultati = uscita.resolve("risultati.json");
+        Files.writeString(risultati, "[\n  " + String.join(",\n  ", righe) + "\n]\n");
+        System.out.println("Risultati: " + risultati);
+    }
+
+    // ======================================================
+    // Una modalità: avvio dell'applicazione, riscaldamento, misura, chiusura
+    // ======================================================
+    private static Esito esegui(String nome, Map<String, Object> proprieta, int utenti, int riscaldamento,
+                                int durata, long latenza, String percorso) throws Exception {
+        Map<String, Object> tutte = new LinkedHashMap<>(proprieta);
+        tutte.put("server.port", "0");
+        tutte.put("server.tomcat.accept-count", "1000");
+        tutte.put("ortiverdi.persistenza.tipo", "nessuna");
+        tutte.put("spring.main.banner-mode", "off");
+        tutte.put("logging.level.root", "WARN");
+
+        try (ConfigurableApplicationContext contesto = new SpringApplicationBuilder(DashboardApplication.class)
+                .properties(tutte)
+                .initializers(c -> c.getBeanFactory().addBeanPostProcessor(new LatenzaSimulata(latenza)))
+                .run()) {
+            URI uri = URI.create("http://localhost:" + contesto.getEnvironment().getProperty("local.server.port") + percorso);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            carica(client, uri, utenti, riscaldamento);
+            Misura misura = carica(client, uri, utenti, durata);
+            return new Esito(nome, utenti, durata, latenza, misura);
+        }
+    }
+
+    // Ogni utente ripete la richiesta finché la durata non scade
+    private static Misura carica(HttpClient client, URI uri, int utenti, int secondi) throws InterruptedException {
+        HttpRequest richiesta = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        long fine = System.nanoTime() + Duration.ofSeconds(secondi).toNanos();
+        long[][] latenze = new long[utenti][];
+        AtomicLong errori = new AtomicLong();
+        CountDownLatch finiti = new CountDownLatch(utenti);
+
+        for (int u = 0; u < utenti; u++) {
+            int indice = u;
+            Thread t = new Thread(() -> {
+                long[] mie = new long[1024];
+                int n = 0;
+                while (System.nanoTime() < fine) {
+                    long inizio = System.nanoTime();
+                    try {
+                        HttpResponse<Void> risposta = client.send(richiesta, HttpResponse.BodyHandlers.discarding());
+                        if (risposta.statusCode() != 200) {
+                            errori.incrementAndGet();
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        errori.incrementAndGet();
+                        continue;
+                    }
+                    if (n == mie.length) mie = Arrays.copyOf(mie, n * 2);
+                    mie[n++] = System.nanoTime() - inizio;
+                }
+                latenze[indice] = Arrays.copyOf(mie, n);
+                finiti.countDown();
+            }, "carico-" + u);
+            t.setDaemon(true);
+            t.start();
+        }
+        finiti.await();
+        return new Misura(latenze, errori.get());
+    }
+
+    private static String proprieta(String nome, String predefinito) {
+        String valore = System.getProperty(nome);
+        return valore == null || valore.isBlank() ? predefinito : valore.trim();
+    }
+
+    // ==============================
+    // Latenze di tutti gli utenti, ordinate
+    // ==============================
+    private static final class Misura {
+        final long[] ordinate;
+        final long errori;
+
+        Misura(long[][] perUtente, long errori) {
+            int totale = 0;
+            for (long[] l : perUtente) totale += l.length;
+            ordinate = new long[totale];
+            int i = 0;
+            for (long[] l : perUtente) {
+                System.arraycopy(l, 0, ordinate, i, l.length);
+                i += l.length;
+            }
+            Arrays.sort(ordinate);
+            this.errori = errori;
+        }
+
+        double percentileMs(double p) {
+            if (ordinate.length == 0) return Double.NaN;
+            int i = (int) Math.ceil(p / 100 * ordinate.length) - 1;
+            return ordinate[Math.max(0, Math.min(i, ordinate.length - 1))] / 1e6;
+        }
+    }
+
+    private record Esito(String modalita, int utenti, int durata, long latenza, Misura misura) {
+        double richiesteAlSecondo() { return misura.ordinate.length / (double) durata; }
+
+        String json() {
+            return String.format(Locale.ROOT,
+                    "{\"modalita\":\"%s\",\"java\":%d,\"utenti\":%d,\"durataS\":%d,\"latenzaPezzoMs\":%d,"
+                            + "\"richieste\":%d,\"errori\":%d,\"richiesteAlSecondo\":%.1f,"
+                            + "\"p50Ms\":%.2f,\"p99Ms\":%.2f,\"maxMs\":%.2f}",
+                    modalita, Runtime.version().feature(), utenti, durata, latenza, misura.ordinate.length,
+                    misura.errori, richiesteAlSecondo(), misura.percentileMs(50), misura.percentileMs(99),
+                    misura.percentileMs(100));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-12s %6d richieste %5d errori %8.1f req/s   p50 %8.2f ms   p99 %8.2f ms   max %8.2f ms",
+                    modalita, misura.ordinate.length, misura.errori, richiesteAlSecondo(),
+                    misura.percentileMs(50), misura.percentileMs(99), misura.percentileMs(100));
+        }
+    }
+
+    // ======================================================
+    // Decoratore del CompositorePagina: ogni pezzo attende la latenza simulata
+    // (come una lettura da storage) prima di fare il suo lavoro
+    // ======================================================
+    private static final class LatenzaSimulata implements BeanPostProcessor {
+        private final long latenzaMs;
+
+        LatenzaSimulata(long latenzaMs) {
+            this.latenzaMs = latenzaMs;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String nome) {
+            if (!(bean instanceof CompositorePagina compositore) || latenzaMs <= 0) return bean;
+            return (CompositorePagina) () -> {
+                CompositorePagina.Ambito ambito = compositore.apri();
+                return new CompositorePagina.Ambito() {
+                    @Override
+                    public <T> Supplier<T> avvia(Callable<T> pezzo) {
+                        return ambito.avvia(() -> {
+                            Thread.sleep(latenzaMs);
+                            return pezzo.call();
+                        });
+                    }
+
+                    @Override
+                    public void attendi() { ambito.attendi(); }
+
+                    @Override
+                    public void close() { ambito.close(); }
+                };
+            };
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.ortiVerdi.dashboard.benchmark;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.model.Coltura;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+import com.ortiVerdi.dashboard.service.DashboardService;
+import com.ortiVerdi.dashboard.service.SimulatoreService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregazioni del DashboardService e letture del SimulatoreService
+ * su archivi da 7 a 1 milione di colture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class AggregazioniBenchmark {
+
+    @Param({"7", "1000", "100000", "1000000"})
+    public int colture;
+
+    private SimulatoreService simulatoreService;
+    private DashboardService dashboardService;
+    private ArchivioColture archivio;
+
+    @Setup(Level.Trial)
+    public void prepara() {
+        simulatoreService = new SimulatoreService(DatiBenchmark.sorgente(colture), "", false);
+        dashboardService = new DashboardService(simulatoreService);
+        archivio = simulatoreService.getSnapshot().getArchivio();
+    }
+
+    // ==============================
+    // DashboardService: serie annuali (12 mesi)
+    // ==============================
+    @Benchmark
+    public double[] raccoltoAnnuale() {
+        return dashboardService.getRaccoltoAnnuale();
+    }
+
+    @Benchmark
+    public double[] costiAnnuali() {
+        return dashboardService.getCostiAnnuali();
+    }
+
+    @Benchmark
+    public double[] profittiAnnuali() {
+        return dashboardService.getProfittiAnnuali();
+    }
+
+    @Benchmark
+    public double[] consumoAnnuale() {
+        return dashboardService.getConsumoAnnuale();
+    }
+
+    @Benchmark
+    public double sogliaMedia() {
+        return dashboardService.calcolaMedia(dashboardService.getRaccoltoAnnuale());
+    }
+
+    // ==============================
+    // SimulatoreService: letture dallo snapshot pubblicato
+    // ==============================
+    @Benchmark
+    public List<Coltura> getColture() {
+        return simulatoreService.getColture();
+    }
+
+    @Benchmark
+    public DatiProduzione getDatiMensili() {
+        return simulatoreService.getDatiMensili(7);
+    }
+
+    @Benchmark
+    public DatiProduzione getDatiAnnuali() {
+        return simulatoreService.getDatiAnnuali();
+    }
+
+    // ==============================
+    // Lavoro sottostante, senza le cache dello snapshot
+    // ==============================
+    @Benchmark
+    public List<Coltura> creazioneVisteColture() {
+        return archivio.getColture();
+    }
+
+    @Benchmark
+    public DatiProduzione aggregazioneMese() {
+        return archivio.aggregaMese(7);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ortiVerdi.dashboard.benchmark;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import com.ortiVerdi.dashboard.data.SorgenteDati;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Dati di prova per i benchmark: N righe (appezzamenti) che ripetono le colture
+ * di ParametriColture con raccolti e costi casuali a seme fisso, come archivio
+ * colonnare o come CSV nel formato di dati_colture.csv.
+ */
+final class DatiBenchmark {
+
+    static final long SEME = 42L;
+
+    private DatiBenchmark() {
+    }
+
+    // ======================================================
+    // Archivio con il numero di righe richiesto
+    // ======================================================
+    static ArchivioColture archivio(int colture) {
+        Random rnd = new Random(SEME);
+        ArchivioColture.Builder builder = ArchivioColture.builder(colture);
+        double[] raccolto = new double[ArchivioColture.MESI];
+        double[] costi = new double[ArchivioColture.MESI];
+        for (int i = 0; i < colture; i++) {
+            int tipo = i % ParametriColture.getNumeroColture();
+            String nome = ParametriColture.getNome(tipo);
+            riga(rnd, nome, raccolto, costi);
+            builder.aggiungi(nome, ParametriColture.getPrezzoUnitario(tipo),
+                    ParametriColture.getConsumoIdricoPerKg(nome), raccolto, costi);
+        }
+        return builder.build();
+    }
+
+    /** Sorgente che restituisce sempre lo stesso archivio (per costruire il SimulatoreService) */
+    static SorgenteDati sorgente(int colture) {
+        ArchivioColture archivio = archivio(colture);
+        return new SorgenteDati() {
+            @Override
+            public String getNome() {
+                return "benchmark";
+            }
+
+            @Override
+            public ArchivioColture carica() {
+                return archivio;
+            }
+        };
+    }
+
+    // ======================================================
+    // Stesse righe in formato CSV (separatore ';', decimali con il punto)
+    // ======================================================
+    static byte[] csv(int colture) {
+        Random rnd = new Random(SEME);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(colture * 160 + 256);
+        StringBuilder riga = new StringBuilder(256);
+        riga.append("Nome;Prezzo/Unita");
+        for (int m = 1; m <= 12; m++) riga.append(";Raccolto ").append(m);
+        for (int m = 1; m <= 12; m++) riga.append(";Costo ").append(m);
+        riga.append('\n');
+
+        double[] raccolto = new double[ArchivioColture.MESI];
+        double[] costi = new double[ArchivioColture.MESI];
+        for (int i = 0; i < colture; i++) {
+            int tipo = i % ParametriColture.getNumeroColture();
+            String nome = ParametriColture.getNome(tipo);
+            riga(rnd, nome, raccolto, costi);
+            riga.append(nome).append(';').append(ParametriColture.getPrezzoUnitario(tipo));
+            for (double v : raccolto) riga.append(';').append(String.format(Locale.ROOT, "%.2f", v));
+            for (double v : costi) riga.append(';').append(String.format(Locale.ROOT, "%.2f", v));
+            riga.append('\n');
+            out.writeBytes(riga.toString().getBytes(StandardCharsets.UTF_8));
+            riga.setLength(0);
+        }
+        return out.toByteArray();
+    }
+
+    // Raccolto proporzionato al profilo stagionale, costi in funzione del raccolto
+    private static void riga(Random rnd, String nome, double[] raccolto, double[] costi) {
+        double[] profilo = ParametriColture.getProfiloStagionale(nome);
+        for (int m = 0; m < ArchivioColture.MESI; m++) {
+            raccolto[m] = (20 + rnd.nextDouble() * 80) * profilo[m];
+            costi[m] = 5 + raccolto[m] * (0.5 + rnd.nextDouble() * 0.5);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ortiVerdi.dashboard.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Esegue i benchmark una volta per ogni numero di thread richiesto e salva i
+ * risultati JSON di JMH in una cartella per versione, da confrontare tra versioni.
+ *
+ * Proprietà di sistema (impostate dal profilo Maven "benchmark"):
+ *   benchmark.colture        numeri di colture, es. 7,1000,100000,1000000
+ *   benchmark.thread         numeri di thread, es. 1,4
+ *   benchmark.filtro         regex sui nomi dei benchmark (vuoto = tutti)
+ *   benchmark.riscaldamento  iterazioni di riscaldamento
+ *   benchmark.misure         iterazioni misurate
+ *   benchmark.uscita         cartella dei risultati
+ */
+public final class EsecuzioneBenchmark {
+
+    private EsecuzioneBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] colture = elenco("benchmark.colture", "7,1000,100000,1000000");
+        String[] thread = elenco("benchmark.thread", "1");
+        String filtro = proprieta("benchmark.filtro", "");
+        Path uscita = Path.of(proprieta("benchmark.uscita", "target/jmh"));
+        Files.createDirectories(uscita);
+
+        for (String t : thread) {
+            Path risultati = uscita.resolve("risultati-t" + t + ".json");
+            Options opzioni = new OptionsBuilder()
+                    .include(EsecuzioneBenchmark.class.getPackageName() + ".*" + filtro + ".*")
+                    .param("colture", colture)
+                    .threads(Integer.parseInt(t))
+                    .warmupIterations(Integer.parseInt(proprieta("benchmark.riscaldamento", "3")))
+                    .measurementIterations(Integer.parseInt(proprieta("benchmark.misure", "5")))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(risultati.toString())
+                    .build();
+            new Runner(opzioni).run();
+            System.out.println("Risultati con " + t + " thread: " + risultati);
+        }
+    }
+
+    private static String proprieta(String nome, String predefinito) {
+        String valore = System.getProperty(nome);
+        return valore == null || valore.isBlank() ? predefinito : valore.trim();
+    }
+
+    private static String[] elenco(String nome, String predefinito) {
+        return proprieta(nome, predefinito).split("\\s*,\\s*");
+    }
+}
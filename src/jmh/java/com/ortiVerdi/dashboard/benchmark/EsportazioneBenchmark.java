@@ -0,0 +1,77 @@
+package com.ortiVerdi.dashboard.benchmark;
+
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.FormatoEsportazione;
+import com.ortiVerdi.dashboard.service.EsportazioneService;
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import com.ortiVerdi.dashboard.service.PersistenzaService;
+import com.ortiVerdi.dashboard.service.SensoriService;
+import com.ortiVerdi.dashboard.service.SimulatoreService;
+import com.ortiVerdi.dashboard.service.TabellaEsportazione;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Esportazione in streaming della tabella delle colture, in CSV e nel formato
+ * colonnare compresso, verso uno stream che conta i byte e li scarta: si
+ * misura solo la conversione e la compressione, non la rete. Il risultato è
+ * il numero di byte prodotti (righe/s e MB/s si ricavano dal tempo medio).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class EsportazioneBenchmark {
+
+    @Param({"7", "1000", "100000", "1000000"})
+    public int colture;
+
+    @Param({"CSV", "COLONNARE"})
+    public FormatoEsportazione formato;
+
+    private PartizioniService partizioniService;
+    private EsportazioneService.Esportazione esportazione;
+
+    @Setup(Level.Trial)
+    public void prepara() {
+        SimulatoreService simulatoreService = new SimulatoreService(DatiBenchmark.sorgente(colture), "", false);
+        partizioniService = new PartizioniService(simulatoreService,
+                new CatalogoPartizioniSimulate(List.of("Benchmark"), 2023, 2023), "Benchmark", 2024, 4, 1);
+        SensoriService sensoriService = new SensoriService(simulatoreService,
+                PersistenzaService.nessuna(), 8192, 10);
+        esportazione = new EsportazioneService(partizioniService, sensoriService)
+                .prepara(partizioniService.getCorrente(), TabellaEsportazione.COLTURE, formato, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void chiudi() {
+        partizioniService.chiudi();
+    }
+
+    @Benchmark
+    public long colture() throws IOException {
+        ContaByte out = new ContaByte();
+        esportazione.scrivi(out);
+        return out.byte_;
+    }
+
+    private static final class ContaByte extends OutputStream {
+        long byte_;
+
+        @Override
+        public void write(int b) {
+            byte_++;
+        }
+
+        @Override
+        public void write(byte[] b, int da, int n) {
+            byte_ += n;
+        }
+    }
+}
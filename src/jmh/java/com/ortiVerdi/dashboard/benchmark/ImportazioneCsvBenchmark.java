@@ -0,0 +1,43 @@
+package com.ortiVerdi.dashboard.benchmark;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.SorgenteDatiCsv;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importazione CSV in streaming, con e senza aggregazione degli appezzamenti.
+ * Il file è già in memoria: si misura solo il parsing e la costruzione dell'archivio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class ImportazioneCsvBenchmark {
+
+    @Param({"7", "1000", "100000", "1000000"})
+    public int colture;
+
+    @Param({"false", "true"})
+    public boolean aggregaAppezzamenti;
+
+    private byte[] csv;
+    private SorgenteDatiCsv sorgente;
+
+    @Setup(Level.Trial)
+    public void prepara() {
+        csv = DatiBenchmark.csv(colture);
+        sorgente = new SorgenteDatiCsv(new ByteArrayResource(csv, "benchmark"), aggregaAppezzamenti);
+    }
+
+    @Benchmark
+    public ArchivioColture importazione() throws IOException {
+        return sorgente.carica(new ByteArrayInputStream(csv));
+    }
+}
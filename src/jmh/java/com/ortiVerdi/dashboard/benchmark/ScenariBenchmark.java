@@ -0,0 +1,50 @@
+package com.ortiVerdi.dashboard.benchmark;
+
+import com.ortiVerdi.dashboard.service.BandeScenari;
+import com.ortiVerdi.dashboard.service.ScenariService;
+import com.ortiVerdi.dashboard.service.SimulatoreService;
+import com.ortiVerdi.dashboard.service.SnapshotSimulazione;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulazione Monte Carlo con 1-8 thread del ForkJoinPool: a parità di lavoro
+ * il tempo dovrebbe scendere quasi in proporzione ai core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class ScenariBenchmark {
+
+    @Param({"7", "1000", "100000", "1000000"})
+    public int colture;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelismo;
+
+    @Param({"2000"})
+    public int realizzazioni;
+
+    private ScenariService scenariService;
+    private SnapshotSimulazione snapshot;
+
+    @Setup(Level.Trial)
+    public void prepara() {
+        snapshot = new SimulatoreService(DatiBenchmark.sorgente(colture), "", false).getSnapshot();
+        scenariService = new ScenariService(parallelismo, Integer.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void chiudi() {
+        scenariService.chiudi();
+    }
+
+    @Benchmark
+    public BandeScenari simulazione() {
+        return scenariService.simula(snapshot, realizzazioni, ScenariService.SEME_PREDEFINITO);
+    }
+}
@@ -0,0 +1,40 @@
+package com.ortiVerdi.dashboard.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ortiVerdi.dashboard.model.Coltura;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializzazione Jackson della lista di colture, come per il JSON della
+ * pagina colture e di GET /api/v1/colture (ObjectMapper configurato come in Spring).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class SerializzazioneBenchmark {
+
+    @Param({"7", "1000", "100000", "1000000"})
+    public int colture;
+
+    private ObjectMapper objectMapper;
+    private List<Coltura> lista;
+
+    @Setup(Level.Trial)
+    public void prepara() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        lista = DatiBenchmark.archivio(colture).getColture();
+    }
+
+    @Benchmark
+    public byte[] coltureJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(lista);
+    }
+}
@@ -0,0 +1,514 @@
+package com.ortiVerdi.dashboard.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+import com.ortiVerdi.dashboard.service.DashboardService;
+import com.ortiVerdi.dashboard.service.SimulatoreService;
+import com.ortiVerdi.dashboard.service.SnapshotSimulazione;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Aggiornamenti in tempo reale delle pagine tramite Server-Sent Events.
+ *
+ * Lo stato di ogni vista è un insieme di serie numeriche con nome (es. "raccolto",
+ * 12 valori). Alla connessione il client riceve l'evento "completo" con tutte le
+ * serie; poi, a ogni nuovo snapshot, l'evento "delta" con i soli valori cambiati
+ * ({"versione":v,"base":b,"valori":{"raccolto":{"6":123.4}}}).
+ *
+ * La vista delle colture non tiene uno stato di tutte le righe (crescerebbe con
+ * l'archivio): ogni snapshot dice quale riga ha cambiato e il delta contiene
+ * solo le righe cambiate dall'ultimo evento, con chiave il numero di riga e
+ * tutti i 25 valori (prezzo, raccolto e costi dei 12 mesi). Il suo "completo"
+ * non ha righe: la pagina rilegge quelle che mostra (/api/v1/righe/{riga}),
+ * e lo riceve di nuovo quando l'archivio viene sostituito.
+ *
+ * Diffusione:
+ * - gli snapshot pubblicati in rapida successione vengono accorpati: un solo
+ *   thread calcola le differenze partendo dall'ultimo snapshot disponibile;
+ * - ogni evento è serializzato una volta (MessaggioSse) e condiviso fra tutti
+ *   gli iscritti della vista;
+ * - ogni iscritto ha una coda limitata svuotata dai mittenti. Se un client lento
+ *   riempie la coda, i delta in attesa sono sostituiti da un unico "completo";
+ *   dopo troppi traboccamenti la connessione viene chiusa (il browser si
+ *   ricollega da solo e riparte da uno stato completo);
+ * - la scrittura sulla connessione è bloccante: un client che non legge più
+ *   ferma il suo mittente finché il write timeout di Tomcat non la fa fallire.
+ *   I mittenti sono un numero fisso (ortiverdi.live.mittenti), quindi i client
+ *   lenti non possono moltiplicare thread e memoria; una scrittura in corso da
+ *   più di ortiverdi.live.scadenza-invio-ms fa scartare il client: niente più
+ *   messaggi per lui, così occupa al più un mittente, e la connessione si
+ *   chiude appena la scrittura ritorna. Ogni iscritto ha al massimo un invio
+ *   in attesa nella coda dei mittenti.
+ */
+@Service
+public class DiffusioneLiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(DiffusioneLiveService.class);
+
+    private final SimulatoreService simulatoreService;
+    private final DashboardService dashboardService;
+    private final ObjectMapper objectMapper;
+    private final int capacitaCoda;
+    private final int maxIscritti;
+    private final int maxTraboccamenti;
+    private final long scadenzaInvioNs;
+
+    private final Map<VistaLive, Canale> canali = new EnumMap<>(VistaLive.class);
+    private final AtomicInteger numeroIscritti = new AtomicInteger();
+    private final AtomicLong scaduti = new AtomicLong();
+
+    // Un thread calcola e serializza i delta, un pool fisso li scrive sulle connessioni
+    private final ExecutorService smistatore = Executors.newSingleThreadExecutor(fabbricaThread("live-smistatore"));
+    private final ThreadPoolExecutor mittenti;
+    private final ScheduledExecutorService battito = Executors.newSingleThreadScheduledExecutor(fabbricaThread("live-battito"));
+    private final AtomicBoolean diffusioneProgrammata = new AtomicBoolean();
+    private final Consumer<SnapshotSimulazione> ascoltatore = s -> {
+        registraRighe(s);
+        programmaDiffusione();
+    };
+
+    // Righe cambiate dagli snapshot pubblicati dopo l'ultima diffusione (lock su righeCambiate)
+    private final BitSet righeCambiate = new BitSet();
+    private boolean tutteCambiate;
+    private SnapshotSimulazione ultimo;
+
+    public DiffusioneLiveService(SimulatoreService simulatoreService, DashboardService dashboardService,
+                                 ObjectMapper objectMapper,
+                                 @Value("${ortiverdi.live.coda:32}") int capacitaCoda,
+                                 @Value("${ortiverdi.live.max-iscritti:10000}") int maxIscritti,
+                                 @Value("${ortiverdi.live.max-traboccamenti:3}") int maxTraboccamenti,
+                                 @Value("${ortiverdi.live.mittenti:4}") int mittenti,
+                                 @Value("${ortiverdi.live.battito-ms:15000}") long battitoMs,
+                                 @Value("${ortiverdi.live.scadenza-invio-ms:5000}") long scadenzaInvioMs) {
+        this.simulatoreService = simulatoreService;
+        this.dashboardService = dashboardService;
+        this.objectMapper = objectMapper;
+        this.capacitaCoda = capacitaCoda;
+        this.maxIscritti = maxIscritti;
+        this.maxTraboccamenti = maxTraboccamenti;
+        this.scadenzaInvioNs = TimeUnit.MILLISECONDS.toNanos(scadenzaInvioMs);
+        this.mittenti = new ThreadPoolExecutor(mittenti, mittenti, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), fabbricaThread("live-mittente"));
+        for (VistaLive v : VistaLive.values()) canali.put(v, new Canale(v));
+
+        synchronized (righeCambiate) {
+            ultimo = simulatoreService.getSnapshot();
+        }
+        simulatoreService.aggiungiAscoltatore(ascoltatore);
+        MessaggioSse ping = MessaggioSse.commento("ping");
+        battito.scheduleWithFixedDelay(() -> {
+            for (Canale c : canali.values()) {
+                for (Iscritto i : c.iscritti) i.accoda(ping, null);
+            }
+        }, battitoMs, battitoMs, TimeUnit.MILLISECONDS);
+        long controlloMs = Math.max(100, scadenzaInvioMs / 2);
+        battito.scheduleWithFixedDelay(this::scartaBloccati, controlloMs, controlloMs, TimeUnit.MILLISECONDS);
+    }
+
+    // ======================================================
+    // Nuovo iscritto: riceve subito lo stato completo della vista
+    // ======================================================
+    public ResponseBodyEmitter iscrivi(VistaLive vista) {
+        return iscrivi(vista, new EmettitoreSse());
+    }
+
+    // Iscrizione con un emitter già creato (nei test, uno che simula un client lento)
+    EmettitoreSse iscrivi(VistaLive vista, EmettitoreSse emitter) {
+        if (numeroIscritti.incrementAndGet() > maxIscritti) {
+            numeroIscritti.decrementAndGet();
+            throw new IllegalStateException("Raggiunto il limite di " + maxIscritti + " connessioni live");
+        }
+        Canale canale = canali.get(vista);
+        Iscritto iscritto = new Iscritto(emitter, canale);
+        emitter.onCompletion(iscritto::rimuovi);
+        emitter.onTimeout(iscritto::rimuovi);
+        emitter.onError(e -> iscritto.rimuovi());
+        canale.aggiungi(iscritto);
+        return emitter;
+    }
+
+    public int getNumeroIscritti() {
+        return numeroIscritti.get();
+    }
+
+    /** Client scartati perché una scrittura ha superato la scadenza */
+    public long getScaduti() {
+        return scaduti.get();
+    }
+
+    /** Mittenti avviati (al massimo ortiverdi.live.mittenti), compresi quelli fermi su un client che non legge */
+    public int getMittenti() {
+        return mittenti.getPoolSize();
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        simulatoreService.rimuoviAscoltatore(ascoltatore);
+        battito.shutdownNow();
+        smistatore.shutdownNow();
+        mittenti.shutdownNow();
+        for (Canale c : canali.values()) {
+            for (Iscritto i : c.iscritti) i.chiudi();
+        }
+    }
+
+    // Thread del battito: scarta gli iscritti con una scrittura oltre la scadenza
+    private void scartaBloccati() {
+        long adesso = System.nanoTime();
+        for (Canale c : canali.values()) {
+            for (Iscritto i : c.iscritti) {
+                long inizio = i.inizioInvio;
+                if (inizio == 0 || adesso - inizio <= scadenzaInvioNs) continue;
+                if (i.rimuovi()) {
+                    scaduti.incrementAndGet();
+                    log.debug("Scrittura live bloccata da {} ms sulla vista {}: client scartato",
+                            (adesso - inizio) / 1_000_000, c.vista.getPercorso());
+                }
+            }
+        }
+    }
+
+    // Chiamato dal thread che pubblica lo snapshot, per ogni snapshot e in ordine:
+    // la diffusione usa lo snapshot e le righe registrati insieme
+    private void registraRighe(SnapshotSimulazione s) {
+        synchronized (righeCambiate) {
+            int riga = s.getRigaModificata();
+            if (riga == SnapshotSimulazione.TUTTE_LE_RIGHE) tutteCambiate = true;
+            else if (riga >= 0) righeCambiate.set(riga);
+            ultimo = s;
+        }
+    }
+
+    // Chiamato dal thread che pubblica lo snapshot: accoda al più una diffusione
+    private void programmaDiffusione() {
+        if (diffusioneProgrammata.compareAndSet(false, true)) {
+            try {
+                smistatore.execute(this::diffondi);
+            } catch (RejectedExecutionException e) {
+                diffusioneProgrammata.set(false);   // servizio in chiusura
+            }
+        }
+    }
+
+    private void diffondi() {
+        diffusioneProgrammata.set(false);
+        SnapshotSimulazione s;
+        BitSet righe;
+        boolean tutte;
+        synchronized (righeCambiate) {
+            s = ultimo;
+            righe = (BitSet) righeCambiate.clone();
+            tutte = tutteCambiate;
+            righeCambiate.clear();
+            tutteCambiate = false;
+        }
+        for (Canale c : canali.values()) {
+            try {
+                c.aggiorna(s, righe, tutte);
+            } catch (RuntimeException e) {
+                log.warn("Diffusione della vista {} fallita", c.vista.getPercorso(), e);
+            }
+        }
+    }
+
+    // ======================================================
+    // Stato di una vista: serie numeriche con nome, in ordine stabile
+    // (vuoto per le colture, che diffondono solo le righe cambiate)
+    // ======================================================
+    Map<String, double[]> stato(VistaLive vista, SnapshotSimulazione s) {
+        Map<String, double[]> stato = new LinkedHashMap<>();
+        if (vista == VistaLive.COLTURE) return stato;
+        ArchivioColture a = s.getArchivio();
+        switch (vista) {
+            case RACCOLTO -> {
+                double[] raccolto = a.totaliMensili(Metrica.RACCOLTO);
+                stato.put("raccolto", raccolto);
+                stato.put("soglia", new double[]{dashboardService.calcolaMedia(raccolto)});
+            }
+            case COSTI_PROFITTI -> {
+                stato.put("costi", a.totaliMensili(Metrica.COSTI));
+                stato.put("profitti", a.totaliMensili(Metrica.PROFITTO));
+            }
+            case CONSUMO_IDRICO -> {
+                double[] consumo = s.getConsumoIdricoMensile();
+                stato.put("consumo", consumo);
+                stato.put("soglia", new double[]{dashboardService.calcolaMedia(consumo)});
+            }
+        }
+        // Tabella del mese: 4 valori produttivi e 5 ambientali per ogni mese
+        double[] produzione = new double[12 * 4];
+        double[] ambientali = new double[12 * 5];
+        for (int mese = 1; mese <= 12; mese++) {
+            DatiProduzione dp = s.getDatiMensili(mese);
+            int p = (mese - 1) * 4;
+            produzione[p] = dp.getQuantitaRaccolto();
+            produzione[p + 1] = dp.getConsumoIdrico();
+            produzione[p + 2] = dp.getCostiProduzione();
+            produzione[p + 3] = dp.getProfitto();
+            DatiAmbientali da = s.getDatiAmbientali(mese);
+            int q = (mese - 1) * 5;
+            ambientali[q] = da.getTemperatura();
+            ambientali[q + 1] = da.getUmiditaRelativa();
+            ambientali[q + 2] = da.getPrecipitazioni();
+            ambientali[q + 3] = da.getVelocitaVento();
+            ambientali[q + 4] = da.getLuminosita();
+        }
+        stato.put("produzione", produzione);
+        stato.put("ambientali", ambientali);
+        return stato;
+    }
+
+    // Righe indicate dell'archivio, per numero di riga: prezzo, 12 valori di raccolto, 12 valori di costo
+    static Map<String, double[]> righe(ArchivioColture a, BitSet righe) {
+        Map<String, double[]> valori = new LinkedHashMap<>();
+        for (int r = righe.nextSetBit(0); r >= 0 && r < a.getNumeroRighe(); r = righe.nextSetBit(r + 1)) {
+            double[] riga = new double[1 + 2 * ArchivioColture.MESI];
+            riga[0] = a.getPrezzo(r);
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                riga[1 + m] = a.getRaccolto(r, m);
+                riga[1 + ArchivioColture.MESI + m] = a.getCosto(r, m);
+            }
+            valori.put(Integer.toString(r), riga);
+        }
+        return valori;
+    }
+
+    // Valori cambiati fra due stati; le serie nuove compaiono per intero
+    static Map<String, Map<String, Double>> differenze(Map<String, double[]> prima, Map<String, double[]> dopo) {
+        Map<String, Map<String, Double>> modifiche = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> e : dopo.entrySet()) {
+            double[] vecchi = prima.get(e.getKey());
+            double[] nuovi = e.getValue();
+            Map<String, Double> cambiati = null;
+            for (int i = 0; i < nuovi.length; i++) {
+                if (vecchi != null && i < vecchi.length && Double.compare(vecchi[i], nuovi[i]) == 0) continue;
+                if (cambiati == null) cambiati = new LinkedHashMap<>();
+                cambiati.put(Integer.toString(i), nuovi[i]);
+            }
+            if (cambiati != null) modifiche.put(e.getKey(), cambiati);
+        }
+        return modifiche;
+    }
+
+    private byte[] json(Object valore) {
+        try {
+            return objectMapper.writeValueAsBytes(valore);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Serializzazione JSON fallita", e);
+        }
+    }
+
+    private static ThreadFactory fabbricaThread(String nome) {
+        AtomicInteger contatore = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, nome + "-" + contatore.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // ======================================================
+    // Canale di una vista: ultimo stato diffuso e iscritti.
+    // Il lock del canale ordina "completo" e "delta" per ogni iscritto.
+    // ======================================================
+    private final class Canale {
+        final VistaLive vista;
+        final Set<Iscritto> iscritti = ConcurrentHashMap.newKeySet();
+        private Map<String, double[]> stato;      // null finché nessuno è iscritto
+        private long versione;
+        private MessaggioSse completo;            // serializzato alla prima richiesta
+
+        Canale(VistaLive vista) {
+            this.vista = vista;
+        }
+
+        synchronized void aggiungi(Iscritto iscritto) {
+            if (stato == null) {
+                SnapshotSimulazione s = simulatoreService.getSnapshot();
+                stato = stato(vista, s);
+                versione = s.getVersione();
+                completo = null;
+            }
+            iscritti.add(iscritto);
+            iscritto.accoda(completo(), this::completo);
+        }
+
+        synchronized void aggiorna(SnapshotSimulazione s, BitSet righe, boolean tutte) {
+            if (iscritti.isEmpty()) {
+                stato = null;           // nessuno da aggiornare: si riparte dallo snapshot al prossimo iscritto
+                completo = null;
+                return;
+            }
+            if (stato == null || s.getVersione() <= versione) return;
+            Map<String, double[]> nuovo;
+            Map<String, Map<String, Double>> modifiche;
+            if (vista == VistaLive.COLTURE) {
+                if (tutte) {
+                    // Archivio sostituito: un nuovo "completo" fa rileggere le righe mostrate
+                    versione = s.getVersione();
+                    completo = null;
+                    MessaggioSse messaggio = completo();
+                    for (Iscritto i : iscritti) i.accoda(messaggio, this::completo);
+                    return;
+                }
+                nuovo = stato;
+                modifiche = differenze(Map.of(), righe(s.getArchivio(), righe));
+            } else {
+                nuovo = stato(vista, s);
+                modifiche = differenze(stato, nuovo);
+            }
+            if (modifiche.isEmpty()) return;
+
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put("versione", s.getVersione());
+            delta.put("base", versione);
+            delta.put("valori", modifiche);
+            stato = nuovo;
+            versione = s.getVersione();
+            completo = null;
+
+            MessaggioSse messaggio = MessaggioSse.evento("delta", versione, json(delta));
+            for (Iscritto i : iscritti) i.accoda(messaggio, this::completo);
+        }
+
+        // Evento con lo stato corrente; chiamato con il lock del canale
+        private MessaggioSse completo() {
+            if (completo == null) {
+                Map<String, Object> corpo = new LinkedHashMap<>();
+                corpo.put("versione", versione);
+                corpo.put("valori", stato);
+                completo = MessaggioSse.evento("completo", versione, json(corpo));
+            }
+            return completo;
+        }
+    }
+
+    // ======================================================
+    // Connessione di un client con la sua coda limitata di messaggi
+    // ======================================================
+    private final class Iscritto {
+        final EmettitoreSse emitter;
+        final Canale canale;
+        private final ArrayDeque<MessaggioSse> coda = new ArrayDeque<>();
+        private boolean inInvio;
+        private int traboccamenti;
+        private boolean chiuso;
+        volatile long inizioInvio;   // System.nanoTime() della scrittura in corso, 0 se nessuna
+
+        Iscritto(EmettitoreSse emitter, Canale canale) {
+            this.emitter = emitter;
+            this.canale = canale;
+        }
+
+        /**
+         * Accoda un messaggio. Se la coda è piena, i messaggi in attesa sono
+         * sostituiti dallo stato completo (se fornito); i battiti vengono scartati.
+         */
+        void accoda(MessaggioSse messaggio, Supplier<MessaggioSse> completo) {
+            boolean troppiTraboccamenti = false;
+            synchronized (this) {
+                if (chiuso) return;
+                if (coda.size() >= capacitaCoda) {
+                    if (completo == null) return;
+                    if (++traboccamenti > maxTraboccamenti) {
+                        troppiTraboccamenti = true;
+                    } else {
+                        coda.clear();
+                        coda.add(completo.get());
+                    }
+                } else {
+                    coda.add(messaggio);
+                }
+                if (!troppiTraboccamenti && !inInvio) {
+                    inInvio = true;
+                    try {
+                        mittenti.execute(this::svuota);
+                    } catch (RejectedExecutionException e) {
+                        inInvio = false;
+                    }
+                }
+            }
+            if (troppiTraboccamenti) {
+                log.debug("Client live troppo lento sulla vista {}: connessione chiusa", canale.vista.getPercorso());
+                chiudi();
+            }
+        }
+
+        // Eseguito da un mittente: scrive i messaggi in coda fuori dal lock.
+        // Se nel frattempo il client è stato scartato (scadenza) chiude la connessione
+        private void svuota() {
+            while (true) {
+                MessaggioSse m;
+                synchronized (this) {
+                    if (chiuso) {
+                        inInvio = false;
+                        break;
+                    }
+                    m = coda.poll();
+                    if (m == null) {
+                        inInvio = false;
+                        return;
+                    }
+                }
+                inizioInvio = System.nanoTime();
+                try {
+                    emitter.invia(m);
+                } catch (IOException | IllegalStateException e) {
+                    rimuovi();
+                    return;
+                } finally {
+                    inizioInvio = 0;
+                }
+            }
+            completa();
+        }
+
+        void chiudi() {
+            boolean libero;
+            synchronized (this) {
+                libero = !inInvio;
+            }
+            rimuovi();
+            // Con una scrittura in corso l'emitter è occupato: lo chiude il mittente quando ritorna
+            if (libero) completa();
+        }
+
+        private void completa() {
+            try {
+                emitter.complete();
+            } catch (RuntimeException ignorata) {
+                // connessione già chiusa
+            }
+        }
+
+        // true se l'iscritto era ancora attivo
+        boolean rimuovi() {
+            synchronized (this) {
+                if (chiuso) return false;
+                chiuso = true;
+                coda.clear();
+            }
+            canale.iscritti.remove(this);
+            numeroIscritti.decrementAndGet();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.ortiVerdi.dashboard.api;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+
+/**
+ * Connessione Server-Sent Events che scrive eventi già codificati
+ * (MessaggioSse): i byte dell'evento vanno sulla risposta così come sono,
+ * con Content-Type text/event-stream, senza passare da SseEmitter e dal suo
+ * builder di eventi.
+ */
+class EmettitoreSse extends ResponseBodyEmitter {
+
+    EmettitoreSse() {
+        super(0L);   // nessun timeout: il battito rileva le connessioni chiuse
+    }
+
+    @Override
+    protected void extendResponse(ServerHttpResponse risposta) {
+        super.extendResponse(risposta);
+        HttpHeaders intestazioni = risposta.getHeaders();
+        if (intestazioni.getContentType() == null) intestazioni.setContentType(MediaType.TEXT_EVENT_STREAM);
+    }
+
+    /** Scrive l'evento sulla connessione (bloccante finché il client non lo riceve) */
+    void invia(MessaggioSse messaggio) throws IOException {
+        send(messaggio.getFrame(), MediaType.TEXT_EVENT_STREAM);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ortiVerdi.dashboard.api;
+
+/**
+ * Corpo di una lettura inviata dai sensori di un appezzamento.
+ * I canali non misurati possono essere omessi (null); se l'istante
+ * manca viene usato l'orario di ricezione.
+ */
+public class LetturaCampo {
+    private String appezzamento;
+    private Long istante;            // millisecondi epoch
+    private Double temperatura;      // °C
+    private Double umidita;          // %
+    private Double precipitazioni;   // mm dalla lettura precedente
+    private Double vento;            // m/s
+    private Double luminosita;       // lux
+
+    public String getAppezzamento() { return appezzamento; }
+    public void setAppezzamento(String appezzamento) { this.appezzamento = appezzamento; }
+
+    public Long getIstante() { return istante; }
+    public void setIstante(Long istante) { this.istante = istante; }
+
+    public Double getTemperatura() { return temperatura; }
+    public void setTemperatura(Double temperatura) { this.temperatura = temperatura; }
+
+    public Double getUmidita() { return umidita; }
+    public void setUmidita(Double umidita) { this.umidita = umidita; }
+
+    public Double getPrecipitazioni() { return precipitazioni; }
+    public void setPrecipitazioni(Double precipitazioni) { this.precipitazioni = precipitazioni; }
+
+    public Double getVento() { return vento; }
+    public void setVento(Double vento) { this.vento = vento; }
+
+    public Double getLuminosita() { return luminosita; }
+    public void setLuminosita(Double luminosita) { this.luminosita = luminosita; }
+}
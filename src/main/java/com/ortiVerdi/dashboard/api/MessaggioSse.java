@@ -0,0 +1,40 @@
+package com.ortiVerdi.dashboard.api;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Evento SSE già codificato nei byte da scrivere sulla connessione
+ * ("id:", "event:", "data:" e riga vuota finale).
+ *
+ * Lo stesso oggetto viene inviato a tutti gli iscritti di una vista: la
+ * serializzazione avviene una volta sola, indipendentemente dal numero di
+ * client. Lo scrive EmettitoreSse.
+ */
+final class MessaggioSse {
+
+    private final byte[] frame;
+
+    private MessaggioSse(byte[] frame) {
+        this.frame = frame;
+    }
+
+    /** Evento con nome e id; il JSON non deve contenere a capo (Jackson compatto) */
+    static MessaggioSse evento(String nome, long id, byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length + 48);
+        out.writeBytes(("id:" + id + "\nevent:" + nome + "\ndata:").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(json);
+        out.writeBytes("\n\n".getBytes(StandardCharsets.UTF_8));
+        return new MessaggioSse(out.toByteArray());
+    }
+
+    /** Commento SSE, ignorato dal browser: tiene viva la connessione */
+    static MessaggioSse commento(String testo) {
+        return new MessaggioSse((":" + testo + "\n\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Byte dell'evento da scrivere così come sono: non vanno modificati */
+    byte[] getFrame() { return frame; }
+
+    int getDimensione() { return frame.length; }
+}
@@ -0,0 +1,16 @@
+package com.ortiVerdi.dashboard.api;
+
+/**
+ * Corpo della richiesta per modificare una cella mensile di una coltura.
+ * I campi assenti (null) non vengono modificati.
+ */
+public class ModificaCella {
+    private Double raccolto;   // kg
+    private Double costi;      // €
+
+    public Double getRaccolto() { return raccolto; }
+    public void setRaccolto(Double raccolto) { this.raccolto = raccolto; }
+
+    public Double getCosti() { return costi; }
+    public void setCosti(Double costi) { this.costi = costi; }
+}
@@ -0,0 +1,28 @@
+package com.ortiVerdi.dashboard.api;
+
+/**
+ * Corpo della richiesta per aggiungere una coltura (o un appezzamento).
+ * Stessi nomi di campo del JSON restituito per una Coltura.
+ */
+public class NuovaColtura {
+    private String nome;
+    private double prezzoVendita;
+    private double consumoIdricoPerKg;
+    private double[] raccoltoMensile;
+    private double[] costiMensili;
+
+    public String getNome() { return nome; }
+    public void setNome(String nome) { this.nome = nome; }
+
+    public double getPrezzoVendita() { return prezzoVendita; }
+    public void setPrezzoVendita(double prezzoVendita) { this.prezzoVendita = prezzoVendita; }
+
+    public double getConsumoIdricoPerKg() { return consumoIdricoPerKg; }
+    public void setConsumoIdricoPerKg(double consumoIdricoPerKg) { this.consumoIdricoPerKg = consumoIdricoPerKg; }
+
+    public double[] getRaccoltoMensile() { return raccoltoMensile; }
+    public void setRaccoltoMensile(double[] raccoltoMensile) { this.raccoltoMensile = raccoltoMensile; }
+
+    public double[] getCostiMensili() { return costiMensili; }
+    public void setCostiMensili(double[] costiMensili) { this.costiMensili = costiMensili; }
+}
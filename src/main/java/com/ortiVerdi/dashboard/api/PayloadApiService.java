@@ -0,0 +1,174 @@
+package com.ortiVerdi.dashboard.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import com.ortiVerdi.dashboard.service.DashboardService;
+import com.ortiVerdi.dashboard.service.ScenariService;
+import com.ortiVerdi.dashboard.service.SnapshotSimulazione;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Prepara le risposte dell'API REST serializzandole una sola volta per snapshot.
+ *
+ * Ogni payload viene calcolato alla prima richiesta su uno snapshot e poi
+ * riusato: nessun boxing di double[] e nessun lavoro di Jackson sulle richieste
+ * successive. I payload sono valori derivati dello snapshot (corrente o di una
+ * partizione storica), quindi spariscono insieme a lui.
+ */
+@Service
+public class PayloadApiService {
+
+    private final DashboardService dashboardService;
+    private final ScenariService scenariService;
+    private final ObjectMapper objectMapper;
+    private final int realizzazioniPredefinite;
+
+    // Richieste e payload effettivamente serializzati (la differenza sono i successi della cache)
+    private final LongAdder richieste = new LongAdder();
+    private final LongAdder serializzazioni = new LongAdder();
+
+    public PayloadApiService(DashboardService dashboardService, ScenariService scenariService,
+                             ObjectMapper objectMapper,
+                             @Value("${ortiverdi.scenari.realizzazioni:2000}") int realizzazioniPredefinite) {
+        this.dashboardService = dashboardService;
+        this.scenariService = scenariService;
+        this.objectMapper = objectMapper;
+        this.realizzazioniPredefinite = realizzazioniPredefinite;
+    }
+
+    // ==============================
+    // Serie annuali (12 mesi) di tutte le metriche
+    // ==============================
+    public PayloadJson getSerieAnnuali(SnapshotSimulazione snapshot) {
+        return payload(snapshot, "serie", s -> {
+            ArchivioColture a = s.getArchivio();
+            double[] raccolto = a.totaliMensili(Metrica.RACCOLTO);
+            double[] consumo = s.getConsumoIdricoMensile();
+            Map<String, Object> serie = new LinkedHashMap<>();
+            serie.put("versione", s.getVersione());
+            serie.put("mesi", dashboardService.getMesi());
+            serie.put("raccolto", raccolto);
+            serie.put("costi", a.totaliMensili(Metrica.COSTI));
+            serie.put("profitti", a.totaliMensili(Metrica.PROFITTO));
+            serie.put("consumoIdrico", consumo);
+            serie.put("sogliaMediaRaccolto", dashboardService.calcolaMedia(raccolto));
+            serie.put("sogliaMediaConsumo", dashboardService.calcolaMedia(consumo));
+            serie.put("annuale", s.getDatiAnnuali());
+            return serie;
+        });
+    }
+
+    // ==============================
+    // Dettaglio di un mese: dati produttivi e ambientali
+    // ==============================
+    public PayloadJson getDettaglioMese(SnapshotSimulazione snapshot, int mese) {
+        return payload(snapshot, "mese:" + mese, s -> {
+            Map<String, Object> dettaglio = new LinkedHashMap<>();
+            dettaglio.put("versione", s.getVersione());
+            dettaglio.put("datiProduttivi", s.getDatiMensili(mese));
+            dettaglio.put("datiAmbientali", s.getDatiAmbientali(mese));
+            return dettaglio;
+        });
+    }
+
+    // ==============================
+    // Elenco completo delle colture (stesso formato usato da colture.js)
+    // ==============================
+    public PayloadJson getColture(SnapshotSimulazione snapshot) {
+        return payload(snapshot, "colture", SnapshotSimulazione::getColture);
+    }
+
+    // ==============================
+    // Singola coltura per nome, prima riga con quel nome (null se non esiste)
+    // ==============================
+    public PayloadJson getColtura(SnapshotSimulazione snapshot, String nome) {
+        return payload(snapshot, "coltura:" + nome, s -> {
+            int riga = s.getArchivio().cercaRiga(nome);
+            return riga >= 0 ? s.getArchivio().getColtura(riga) : null;
+        });
+    }
+
+    // ==============================
+    // Singola riga (appezzamento) dell'archivio (null se non esiste)
+    // ==============================
+    public PayloadJson getRiga(SnapshotSimulazione snapshot, int riga) {
+        return payload(snapshot, "riga:" + riga, s -> riga >= 0 && riga < s.getArchivio().getNumeroRighe()
+                ? s.getArchivio().getColtura(riga) : null);
+    }
+
+    // ==============================
+    // Dati ambientali dei 12 mesi
+    // ==============================
+    public PayloadJson getDatiAmbientali(SnapshotSimulazione snapshot) {
+        return payload(snapshot, "ambientali", s -> {
+            DatiAmbientali[] ambientali = new DatiAmbientali[12];
+            for (int mese = 1; mese <= 12; mese++) ambientali[mese - 1] = s.getDatiAmbientali(mese);
+            return ambientali;
+        });
+    }
+
+    // ==============================
+    // Bande Monte Carlo P5/P50/P95. Solo la richiesta predefinita (seme e numero
+    // di realizzazioni dei grafici) resta in cache: parametri arbitrari non devono
+    // riempire la memoria dello snapshot con una voce per valore
+    // ==============================
+    public PayloadJson getScenari(SnapshotSimulazione snapshot, int realizzazioni, long seme) {
+        if (seme != ScenariService.SEME_PREDEFINITO || realizzazioni != realizzazioniPredefinite) {
+            richieste.increment();
+            return serializza("scenari", scenariService.simula(snapshot, realizzazioni, seme));
+        }
+        return payload(snapshot, "scenari", s -> scenariService.simula(s, realizzazioni, seme));
+    }
+
+    // ======================================================
+    // Restituisce il payload della chiave per lo snapshot indicato,
+    // serializzandolo solo se non è già presente (null se il contenuto non esiste)
+    // ======================================================
+    private PayloadJson payload(SnapshotSimulazione snapshot, String chiave, Function<SnapshotSimulazione, Object> contenuto) {
+        richieste.increment();
+        return snapshot.derivato("api:" + chiave, s -> {
+            Object valore = contenuto.apply(s);
+            return valore != null ? serializza(chiave, valore) : null;
+        });
+    }
+
+    private PayloadJson serializza(String chiave, Object valore) {
+        serializzazioni.increment();
+        long inizio = System.nanoTime();
+        try {
+            return new PayloadJson(objectMapper.writeValueAsBytes(valore));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Serializzazione JSON fallita", e);
+        } finally {
+            tempoSerializzazione(chiave).record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // ==============================
+    // Statistiche della cache dei payload
+    // ==============================
+    public long getRichieste() { return richieste.sum(); }
+
+    public long getSerializzazioni() { return serializzazioni.sum(); }
+
+    // Timer per tipo di payload ("coltura:Uva" -> coltura), così i nomi non creano nuove serie
+    private static Timer tempoSerializzazione(String chiave) {
+        int separatore = chiave.indexOf(':');
+        return Timer.builder("ortiverdi.api.serializzazione")
+                .description("Serializzazione Jackson di un payload dell'API")
+                .tag("payload", separatore < 0 ? chiave : chiave.substring(0, separatore))
+                .register(Metrics.globalRegistry);
+    }
+}
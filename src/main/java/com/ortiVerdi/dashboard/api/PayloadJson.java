@@ -0,0 +1,35 @@
+package com.ortiVerdi.dashboard.api;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Risposta JSON già serializzata: i byte vengono prodotti una sola volta
+ * per snapshot e poi inviati così come sono a ogni richiesta.
+ * L'ETag è l'hash MD5 del contenuto, quindi resta uguale finché i dati non cambiano.
+ * È un ETag debole: Tomcat non comprime le risposte con ETag forte (la versione
+ * gzip è un'altra sequenza di byte), e per If-None-Match basta il confronto debole.
+ */
+public final class PayloadJson {
+
+    private final byte[] corpo;
+    private final String etag;
+
+    public PayloadJson(byte[] corpo) {
+        this.corpo = corpo;
+        this.etag = "W/\"" + DigestUtils.md5DigestAsHex(corpo) + "\"";
+    }
+
+    /** Byte della risposta: condivisi, da non modificare */
+    public byte[] getCorpo() { return corpo; }
+
+    public String getEtag() { return etag; }
+
+    public int getDimensione() { return corpo.length; }
+
+    /** Il JSON come testo, per incorporarlo nei template */
+    public String comeTesto() {
+        return new String(corpo, StandardCharsets.UTF_8);
+    }
+}
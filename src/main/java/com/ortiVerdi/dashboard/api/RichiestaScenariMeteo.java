@@ -0,0 +1,31 @@
+package com.ortiVerdi.dashboard.api;
+
+import com.ortiVerdi.dashboard.service.ScenarioMeteo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Corpo della richiesta per valutare in blocco più scenari meteo, es.
+ * {"scenari": [{"nome": "siccità", "pioggia": -30}, {"temperatura": 2}],
+ *  "aziende": ["OrtiVerdi"], "da": 2020, "a": 2025}
+ * Senza aziende vengono usate tutte; senza anni tutto l'intervallo disponibile.
+ */
+public class RichiestaScenariMeteo {
+    private List<ScenarioMeteo> scenari = new ArrayList<>();
+    private List<String> aziende = new ArrayList<>();
+    private int da = 0;
+    private int a = 9999;
+
+    public List<ScenarioMeteo> getScenari() { return scenari; }
+    public void setScenari(List<ScenarioMeteo> scenari) { this.scenari = scenari; }
+
+    public List<String> getAziende() { return aziende; }
+    public void setAziende(List<String> aziende) { this.aziende = aziende; }
+
+    public int getDa() { return da; }
+    public void setDa(int da) { this.da = da; }
+
+    public int getA() { return a; }
+    public void setA(int a) { this.a = a; }
+}
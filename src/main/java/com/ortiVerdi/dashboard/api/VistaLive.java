@@ -0,0 +1,30 @@
+package com.ortiVerdi.dashboard.api;
+
+import java.util.Locale;
+
+/**
+ * Pagine della dashboard che ricevono aggiornamenti in tempo reale,
+ * identificate dal percorso usato in /api/v1/eventi/{vista}.
+ */
+public enum VistaLive {
+    RACCOLTO("raccolto"),
+    COSTI_PROFITTI("costi-profitti"),
+    CONSUMO_IDRICO("consumo-idrico"),
+    COLTURE("colture");
+
+    private final String percorso;
+
+    VistaLive(String percorso) {
+        this.percorso = percorso;
+    }
+
+    public String getPercorso() { return percorso; }
+
+    public static VistaLive daPercorso(String percorso) {
+        String p = percorso.trim().toLowerCase(Locale.ROOT);
+        for (VistaLive v : values()) {
+            if (v.percorso.equals(p)) return v;
+        }
+        throw new IllegalArgumentException("Vista sconosciuta: " + percorso);
+    }
+}
@@ -0,0 +1,45 @@
+package com.ortiVerdi.dashboard.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.context.IWebContext;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+
+import java.util.Map;
+
+/**
+ * Link @{...} dei template anche fuori da una richiesta HTTP (pagine
+ * renderizzate in anticipo da PagineService).
+ *
+ * Dentro una richiesta non cambia nulla: percorso dell'applicazione dalla
+ * richiesta e URL a hash delle risorse da ResourceUrlEncodingFilter. Fuori,
+ * il percorso è server.servlet.context-path e l'URL a hash viene chiesto
+ * direttamente a ResourceUrlProvider, come farebbe il filtro: la pagina è
+ * identica byte per byte.
+ */
+final class CollegamentiRisorse extends StandardLinkBuilder {
+
+    private final String percorsoContesto;
+    private final ObjectProvider<ResourceUrlProvider> risorse;
+
+    CollegamentiRisorse(String percorsoContesto, ObjectProvider<ResourceUrlProvider> risorse) {
+        this.percorsoContesto = percorsoContesto;
+        this.risorse = risorse;
+    }
+
+    @Override
+    protected String computeContextPath(IExpressionContext contesto, String base, Map<String, Object> parametri) {
+        if (contesto instanceof IWebContext) return super.computeContextPath(contesto, base, parametri);
+        return percorsoContesto;
+    }
+
+    @Override
+    protected String processLink(IExpressionContext contesto, String link) {
+        if (contesto instanceof IWebContext) return super.processLink(contesto, link);
+        if (!link.startsWith(percorsoContesto + "/")) return link;     // URL assoluti
+        ResourceUrlProvider provider = risorse.getIfAvailable();
+        String versionato = provider != null ? provider.getForLookupPath(link.substring(percorsoContesto.length())) : null;
+        return versionato != null ? percorsoContesto + versionato : link;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ortiVerdi.dashboard.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura il rendering dei template Thymeleaf: Spring esegue la vista tra
+ * postHandle e afterCompletion, quindi la differenza è il solo tempo di rendering
+ * (la parte del controller è già in http.server.requests).
+ */
+public class IntercettoreRendering implements HandlerInterceptor {
+
+    private static final String ATTRIBUTO_INIZIO = IntercettoreRendering.class.getName() + ".inizio";
+    private static final String ATTRIBUTO_VISTA = IntercettoreRendering.class.getName() + ".vista";
+
+    private final MeterRegistry registro;
+
+    public IntercettoreRendering(MeterRegistry registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest richiesta, HttpServletResponse risposta, Object handler,
+                           ModelAndView modelAndView) {
+        if (modelAndView == null || modelAndView.getViewName() == null) return;   // risposte REST
+        richiesta.setAttribute(ATTRIBUTO_VISTA, modelAndView.getViewName());
+        richiesta.setAttribute(ATTRIBUTO_INIZIO, System.nanoTime());
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest richiesta, HttpServletResponse risposta, Object handler,
+                                Exception eccezione) {
+        Object inizio = richiesta.getAttribute(ATTRIBUTO_INIZIO);
+        if (!(inizio instanceof Long)) return;
+        Timer.builder("ortiverdi.template.rendering")
+                .description("Rendering di un template Thymeleaf")
+                .tag("vista", (String) richiesta.getAttribute(ATTRIBUTO_VISTA))
+                .tag("esito", eccezione == null ? "ok" : "errore")
+                .register(registro)
+                .record(System.nanoTime() - (Long) inizio, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,198 @@
+package com.ortiVerdi.dashboard.config;
+
+import com.ortiVerdi.dashboard.api.DiffusioneLiveService;
+import com.ortiVerdi.dashboard.api.PayloadApiService;
+import com.ortiVerdi.dashboard.service.CacheRisultati;
+import com.ortiVerdi.dashboard.service.CatalogoColtureService;
+import com.ortiVerdi.dashboard.service.IrrigazioneService;
+import com.ortiVerdi.dashboard.service.PagineService;
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import com.ortiVerdi.dashboard.service.PersistenzaService;
+import com.ortiVerdi.dashboard.service.RiduzioneSerieService;
+import com.ortiVerdi.dashboard.service.RisultatiService;
+import com.ortiVerdi.dashboard.service.SensoriService;
+import com.ortiVerdi.dashboard.service.SimulatoreService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metriche della dashboard esposte da Actuator (/actuator/metrics, /actuator/prometheus).
+ *
+ * - tempi delle richieste HTTP: http.server.requests, automatico per ogni endpoint
+ * - tempi di servizi, serializzazione e rendering: Timer registrati nel registro
+ *   globale di Micrometer (ortiverdi.*), a cui Spring Boot collega il proprio
+ * - cache, snapshot, sensori, persistenza e connessioni live: letti qui dai contatori che i
+ *   servizi mantengono comunque, solo quando le metriche vengono raccolte
+ */
+@Configuration
+public class MetricheConfig {
+
+    @Bean
+    public MeterBinder metricheSnapshot(SimulatoreService simulatoreService) {
+        return registro -> {
+            Gauge.builder("ortiverdi.snapshot.versione", simulatoreService, s -> s.getSnapshot().getVersione())
+                    .description("Versione dello snapshot pubblicato")
+                    .register(registro);
+            Gauge.builder("ortiverdi.snapshot.colture", simulatoreService, s -> s.getSnapshot().getArchivio().getNumeroRighe())
+                    .description("Righe dell'archivio delle colture")
+                    .register(registro);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricheCatalogo(CatalogoColtureService catalogoColtureService) {
+        return registro -> {
+            Gauge.builder("ortiverdi.catalogo.versione", catalogoColtureService, c -> c.getCatalogo().getVersione())
+                    .description("Versione del catalogo delle colture in uso")
+                    .register(registro);
+            FunctionCounter.builder("ortiverdi.catalogo.ricariche", catalogoColtureService, CatalogoColtureService::getRicariche)
+                    .tags("esito", "ok")
+                    .register(registro);
+            FunctionCounter.builder("ortiverdi.catalogo.ricariche", catalogoColtureService, CatalogoColtureService::getRicaricheFallite)
+                    .tags("esito", "errore")
+                    .register(registro);
+        };
+    }
+
+    // Nomi e tag come le metriche cache.* di Micrometer, così i cruscotti esistenti funzionano
+    @Bean
+    public MeterBinder metricheCachePayload(PayloadApiService payloadApiService) {
+        return registro -> {
+            FunctionCounter.builder("cache.gets", payloadApiService, p -> p.getRichieste() - p.getSerializzazioni())
+                    .tags("cache", "payload-api", "result", "hit")
+                    .register(registro);
+            FunctionCounter.builder("cache.gets", payloadApiService, PayloadApiService::getSerializzazioni)
+                    .tags("cache", "payload-api", "result", "miss")
+                    .register(registro);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricheCachePartizioni(PartizioniService partizioniService) {
+        return registro -> {
+            FunctionCounter.builder("cache.gets", partizioniService, PartizioniService::getAccessiInMemoria)
+                    .tags("cache", "partizioni", "result", "hit")
+                    .register(registro);
+            FunctionCounter.builder("cache.gets", partizioniService, PartizioniService::getCaricamenti)
+                    .tags("cache", "partizioni", "result", "miss")
+                    .register(registro);
+            FunctionCounter.builder("cache.evictions", partizioniService, PartizioniService::getEspulsioni)
+                    .tags("cache", "partizioni")
+                    .register(registro);
+            Gauge.builder("cache.size", partizioniService, PartizioniService::getNumeroResidenti)
+                    .tags("cache", "partizioni")
+                    .register(registro);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricheCacheRiduzione(RiduzioneSerieService riduzioneSerieService) {
+        return registro -> {
+            FunctionCounter.builder("cache.gets", riduzioneSerieService, r -> r.getRichieste() - r.getCalcoli())
+                    .tags("cache", "riduzione-serie", "result", "hit")
+                    .register(registro);
+            FunctionCounter.builder("cache.gets", riduzioneSerieService, RiduzioneSerieService::getCalcoli)
+                    .tags("cache", "riduzione-serie", "result", "miss")
+                    .register(registro);
+            Gauge.builder("cache.size", riduzioneSerieService, RiduzioneSerieService::getDimensione)
+                    .tags("cache", "riduzione-serie")
+                    .register(registro);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricheCacheRisultati(RisultatiService risultatiService) {
+        return metricheCache(risultatiService.getCache(), "risultati");
+    }
+
+    @Bean
+    public MeterBinder metricheCacheIrrigazione(IrrigazioneService irrigazioneService) {
+        return metricheCache(irrigazioneService.getCache(), "irrigazione");
+    }
+
+    @Bean
+    public MeterBinder metricheCachePagine(PagineService pagineService) {
+        return metricheCache(pagineService.getCache(), "pagine");
+    }
+
+    // Metriche standard di una CacheRisultati con il nome indicato nel tag "cache"
+    private static MeterBinder metricheCache(CacheRisultati<?, ?> cache, String nome) {
+        return registro -> {
+            FunctionCounter.builder("cache.gets", cache, CacheRisultati::getSuccessi)
+                    .tags("cache", nome, "result", "hit")
+                    .register(registro);
+            FunctionCounter.builder("cache.gets", cache, CacheRisultati::getMancati)
+                    .tags("cache", nome, "result", "miss")
+                    .register(registro);
+            FunctionCounter.builder("cache.evictions", cache, CacheRisultati::getEspulsioni)
+                    .tags("cache", nome)
+                    .register(registro);
+            FunctionCounter.builder("ortiverdi.cache.aggiornamenti.anticipati", cache, CacheRisultati::getAnticipati)
+                    .description("Voci ricalcolate in background dopo un nuovo snapshot")
+                    .tags("cache", nome)
+                    .register(registro);
+            Gauge.builder("cache.size", cache, CacheRisultati::getDimensione)
+                    .tags("cache", nome)
+                    .register(registro);
+            Gauge.builder("ortiverdi.cache.peso", cache, CacheRisultati::getPeso)
+                    .description("Peso stimato delle voci in cache (byte)")
+                    .tags("cache", nome)
+                    .register(registro);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricheSensoriLive(SensoriService sensoriService, DiffusioneLiveService diffusioneLiveService) {
+        return registro -> {
+            FunctionCounter.builder("ortiverdi.sensori.letture", sensoriService, SensoriService::getLetture)
+                    .description("Letture dei sensori registrate")
+                    .register(registro);
+            Gauge.builder("ortiverdi.sensori.appezzamenti", sensoriService, s -> s.getStazioni().size())
+                    .description("Appezzamenti con sensori attivi")
+                    .register(registro);
+            Gauge.builder("ortiverdi.live.iscritti", diffusioneLiveService, DiffusioneLiveService::getNumeroIscritti)
+                    .description("Connessioni Server-Sent Events aperte")
+                    .register(registro);
+            Gauge.builder("ortiverdi.live.mittenti", diffusioneLiveService, DiffusioneLiveService::getMittenti)
+                    .description("Thread che scrivono sulle connessioni live, compresi quelli fermi su client lenti")
+                    .register(registro);
+            FunctionCounter.builder("ortiverdi.live.scaduti", diffusioneLiveService, DiffusioneLiveService::getScaduti)
+                    .description("Client live scartati per una scrittura oltre la scadenza")
+                    .register(registro);
+        };
+    }
+
+    @Bean
+    public MeterBinder metrichePersistenza(PersistenzaService persistenzaService) {
+        return registro -> {
+            Gauge.builder("ortiverdi.persistenza.coda", persistenzaService, PersistenzaService::getInCoda)
+                    .description("Eventi in attesa di scrittura")
+                    .tag("persistenza", persistenzaService.getNome())
+                    .register(registro);
+            FunctionCounter.builder("ortiverdi.persistenza.eventi", persistenzaService, PersistenzaService::getScritti)
+                    .description("Eventi scritti sulla persistenza")
+                    .tag("persistenza", persistenzaService.getNome())
+                    .register(registro);
+            FunctionCounter.builder("ortiverdi.persistenza.lotti", persistenzaService, PersistenzaService::getLotti)
+                    .description("Lotti scritti (una scrittura e un fsync ciascuno)")
+                    .tag("persistenza", persistenzaService.getNome())
+                    .register(registro);
+            FunctionCounter.builder("ortiverdi.persistenza.attese", persistenzaService, PersistenzaService::getAttese)
+                    .description("Accodamenti che hanno dovuto aspettare una coda piena")
+                    .tag("persistenza", persistenzaService.getNome())
+                    .register(registro);
+            FunctionCounter.builder("ortiverdi.persistenza.errori", persistenzaService, PersistenzaService::getErrori)
+                    .description("Scritture di lotti o checkpoint fallite (poi riprovate)")
+                    .tag("persistenza", persistenzaService.getNome())
+                    .register(registro);
+            Gauge.builder("ortiverdi.persistenza.dimensione", persistenzaService, PersistenzaService::getDimensione)
+                    .description("Byte del registro dopo l'ultimo checkpoint")
+                    .tag("persistenza", persistenzaService.getNome())
+                    .baseUnit("bytes")
+                    .register(registro);
+        };
+    }
+}
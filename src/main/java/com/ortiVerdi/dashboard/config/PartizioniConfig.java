@@ -0,0 +1,40 @@
+package com.ortiVerdi.dashboard.config;
+
+import com.ortiVerdi.dashboard.data.CatalogoPartizioni;
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniCartella;
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Configurazione del catalogo delle partizioni storiche (azienda, anno).
+ *
+ * La proprietà ortiverdi.partizioni.tipo sceglie l'implementazione:
+ * - simulate (predefinita): ortiverdi.partizioni.aziende × anni da/a, dati generati
+ * - cartella: file radice/azienda/anno.snap|.csv sotto ortiverdi.partizioni.percorso
+ */
+@Configuration
+public class PartizioniConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "ortiverdi.partizioni.tipo", havingValue = "simulate", matchIfMissing = true)
+    public CatalogoPartizioni catalogoPartizioniSimulate(
+            @Value("${ortiverdi.partizioni.aziende:OrtiVerdi}") List<String> aziende,
+            @Value("${ortiverdi.partizioni.anno-da:2016}") int annoDa,
+            @Value("${ortiverdi.partizioni.anno-a:2025}") int annoA) {
+        return new CatalogoPartizioniSimulate(aziende, annoDa, annoA);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ortiverdi.partizioni.tipo", havingValue = "cartella")
+    public CatalogoPartizioni catalogoPartizioniCartella(
+            @Value("${ortiverdi.partizioni.percorso:data/partizioni}") Path radice,
+            @Value("${ortiverdi.csv.aggrega-appezzamenti:false}") boolean aggregaAppezzamenti) {
+        return new CatalogoPartizioniCartella(radice, aggregaAppezzamenti);
+    }
+}
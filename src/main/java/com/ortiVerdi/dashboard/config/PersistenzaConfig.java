@@ -0,0 +1,39 @@
+package com.ortiVerdi.dashboard.config;
+
+import com.ortiVerdi.dashboard.data.Persistenza;
+import com.ortiVerdi.dashboard.data.PersistenzaNulla;
+import com.ortiVerdi.dashboard.data.RegistroFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Configurazione della persistenza delle modifiche.
+ *
+ * La proprietà ortiverdi.persistenza.tipo sceglie l'implementazione:
+ * - file (predefinita): registro in sola aggiunta in ortiverdi.persistenza.percorso
+ * - nessuna: i dati restano solo in memoria
+ *
+ * La chiusura è affidata al PersistenzaService, che prima svuota la coda.
+ */
+@Configuration
+public class PersistenzaConfig {
+
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(name = "ortiverdi.persistenza.tipo", havingValue = "file", matchIfMissing = true)
+    public Persistenza registroFile(
+            @Value("${ortiverdi.persistenza.percorso:data/registro-dati.log}") String percorso,
+            @Value("${ortiverdi.persistenza.sincronizza:true}") boolean sincronizza) throws IOException {
+        return new RegistroFile(Path.of(percorso), sincronizza);
+    }
+
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(name = "ortiverdi.persistenza.tipo", havingValue = "nessuna")
+    public Persistenza persistenzaNulla() {
+        return new PersistenzaNulla();
+    }
+}
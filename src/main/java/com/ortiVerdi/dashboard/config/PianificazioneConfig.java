@@ -0,0 +1,13 @@
+package com.ortiVerdi.dashboard.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Abilita i metodi @Scheduled: pubblicazione periodica dei dati dei sensori
+ * e, se attivo, il simulatore di sensori.
+ */
+@Configuration
+@EnableScheduling
+public class PianificazioneConfig {
+}
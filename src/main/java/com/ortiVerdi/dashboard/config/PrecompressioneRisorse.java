@@ -0,0 +1,83 @@
+package com.ortiVerdi.dashboard.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Passo di build (fase process-classes, vedi pom.xml): accanto a ogni risorsa
+ * statica testuale scrive la variante .gz compressa al massimo livello.
+ * A runtime EncodedResourceResolver la serve così com'è ai client che accettano
+ * gzip, senza comprimere a ogni richiesta; un file .br messo accanto a mano
+ * viene servito allo stesso modo.
+ *
+ * Le immagini PNG sono già compresse e vengono saltate, come i file sotto
+ * SOGLIA_BYTE e quelli per cui gzip non risparmia almeno il 10%.
+ * I .gz più recenti della risorsa non vengono riscritti.
+ */
+public final class PrecompressioneRisorse {
+
+    static final int SOGLIA_BYTE = 1024;
+    private static final Set<String> ESTENSIONI = Set.of("css", "js", "mjs", "map", "svg", "html", "json", "txt");
+
+    private PrecompressioneRisorse() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) throw new IllegalArgumentException("Uso: PrecompressioneRisorse <cartella static>");
+        Path cartella = Path.of(args[0]);
+        if (!Files.isDirectory(cartella)) return;
+        int scritti = 0;
+        long originali = 0, compressi = 0;
+        List<Path> file;
+        try (Stream<Path> s = Files.walk(cartella)) {
+            file = s.filter(Files::isRegularFile).filter(PrecompressioneRisorse::daComprimere).toList();
+        }
+        for (Path p : file) {
+            long dimensione = Files.size(p);
+            Path gz = p.resolveSibling(p.getFileName() + ".gz");
+            if (Files.exists(gz) && Files.getLastModifiedTime(gz).compareTo(Files.getLastModifiedTime(p)) >= 0) continue;
+            byte[] dati = gzip(Files.readAllBytes(p));
+            if (dati.length > dimensione * 0.9) {
+                Files.deleteIfExists(gz);
+                continue;
+            }
+            Files.write(gz, dati);
+            scritti++;
+            originali += dimensione;
+            compressi += dati.length;
+        }
+        if (scritti > 0) {
+            System.out.printf(Locale.ROOT, "Precompressione risorse: %d file, %d -> %d byte%n", scritti, originali, compressi);
+        }
+    }
+
+    static boolean daComprimere(Path p) {
+        String nome = p.getFileName().toString();
+        int punto = nome.lastIndexOf('.');
+        if (punto < 0) return false;
+        try {
+            return ESTENSIONI.contains(nome.substring(punto + 1).toLowerCase(Locale.ROOT)) && Files.size(p) >= SOGLIA_BYTE;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static byte[] gzip(byte[] dati) throws IOException {
+        ByteArrayOutputStream uscita = new ByteArrayOutputStream(dati.length / 3 + 64);
+        try (OutputStream gz = new GZIPOutputStream(uscita, 8192) {
+            { def.setLevel(Deflater.BEST_COMPRESSION); }
+        }) {
+            gz.write(dati);
+        }
+        return uscita.toByteArray();
+    }
+}
@@ -0,0 +1,57 @@
+package com.ortiVerdi.dashboard.config;
+
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Ricava la ChiavePartizione di un metodo dei controller dai parametri
+ * azienda (alias farm) e anno. Quelli assenti prendono il valore della
+ * partizione corrente; una partizione inesistente risponde 404.
+ */
+public class RisolutorePartizione implements HandlerMethodArgumentResolver {
+
+    private final PartizioniService partizioniService;
+
+    public RisolutorePartizione(PartizioniService partizioniService) {
+        this.partizioniService = partizioniService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parametro) {
+        return ChiavePartizione.class.equals(parametro.getParameterType());
+    }
+
+    @Override
+    public ChiavePartizione resolveArgument(MethodParameter parametro, ModelAndViewContainer mavContainer,
+                                            NativeWebRequest richiesta, WebDataBinderFactory binderFactory) {
+        ChiavePartizione corrente = partizioniService.getCorrente();
+        String azienda = valore(richiesta, "azienda");
+        if (azienda == null) azienda = valore(richiesta, "farm");
+        String anno = valore(richiesta, "anno");
+        if (azienda == null && anno == null) return corrente;
+
+        ChiavePartizione chiave;
+        try {
+            chiave = new ChiavePartizione(azienda != null ? azienda : corrente.getAzienda(),
+                    anno != null ? Integer.parseInt(anno) : corrente.getAnno());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Partizione non valida", e);
+        }
+        if (!partizioniService.esiste(chiave)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Partizione non trovata: " + chiave);
+        }
+        return chiave;
+    }
+
+    private static String valore(NativeWebRequest richiesta, String nome) {
+        String v = richiesta.getParameter(nome);
+        return v == null || v.isBlank() ? null : v.trim();
+    }
+}
@@ -0,0 +1,41 @@
+package com.ortiVerdi.dashboard.config;
+
+import com.ortiVerdi.dashboard.data.SorgenteDati;
+import com.ortiVerdi.dashboard.data.SorgenteDatiCsv;
+import com.ortiVerdi.dashboard.data.SorgenteDatiSimulati;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+
+/**
+ * Configurazione della sorgente dei dati delle colture.
+ *
+ * La proprietà ortiverdi.sorgente sceglie l'implementazione:
+ * - csv (predefinita): importa il file indicato da ortiverdi.csv.percorso
+ * - simulatore: genera dati casuali dai profili stagionali
+ *
+ * Entrambe dipendono dal catalogo delle colture (consumo idrico, profili),
+ * che deve essere caricato da ortiverdi.catalogo.percorso prima del primo import.
+ */
+@Configuration
+public class SorgentiDatiConfig {
+
+    @Bean
+    @DependsOn("catalogoColtureService")
+    @ConditionalOnProperty(name = "ortiverdi.sorgente", havingValue = "csv", matchIfMissing = true)
+    public SorgenteDati sorgenteDatiCsv(
+            @Value("${ortiverdi.csv.percorso:classpath:data/dati_colture.csv}") Resource percorso,
+            @Value("${ortiverdi.csv.aggrega-appezzamenti:false}") boolean aggregaAppezzamenti) {
+        return new SorgenteDatiCsv(percorso, aggregaAppezzamenti);
+    }
+
+    @Bean
+    @DependsOn("catalogoColtureService")
+    @ConditionalOnProperty(name = "ortiverdi.sorgente", havingValue = "simulatore")
+    public SorgenteDati sorgenteDatiSimulati() {
+        return new SorgenteDatiSimulati();
+    }
+}
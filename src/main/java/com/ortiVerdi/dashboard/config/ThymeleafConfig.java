@@ -0,0 +1,36 @@
+package com.ortiVerdi.dashboard.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+import org.thymeleaf.dialect.IDialect;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ITemplateResolver;
+
+/**
+ * Motore Thymeleaf come quello di Spring Boot (stesse proprietà spring.thymeleaf.*,
+ * resolver e dialetti), con in più CollegamentiRisorse per i link delle pagine
+ * renderizzate fuori da una richiesta. Sostituisce quello predefinito, che non
+ * ha un punto di estensione per il link builder.
+ */
+@Configuration
+public class ThymeleafConfig {
+
+    @Bean
+    public SpringTemplateEngine templateEngine(ThymeleafProperties proprieta,
+                                               ObjectProvider<ITemplateResolver> resolver,
+                                               ObjectProvider<IDialect> dialetti,
+                                               ObjectProvider<ResourceUrlProvider> risorse,
+                                               @Value("${server.servlet.context-path:}") String percorsoContesto) {
+        SpringTemplateEngine motore = new SpringTemplateEngine();
+        motore.setEnableSpringELCompiler(proprieta.isEnableSpringElCompiler());
+        motore.setRenderHiddenMarkersBeforeCheckboxes(proprieta.isRenderHiddenMarkersBeforeCheckboxes());
+        resolver.orderedStream().forEach(motore::addTemplateResolver);
+        dialetti.orderedStream().forEach(motore::addDialect);
+        motore.setLinkBuilder(new CollegamentiRisorse(percorsoContesto, risorse));
+        return motore;
+    }
+}
@@ -0,0 +1,62 @@
+package com.ortiVerdi.dashboard.config;
+
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.CssLinkResourceTransformer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Estensioni di Spring MVC: parametro ChiavePartizione nei controller,
+ * misura dei tempi di rendering dei template e risorse statiche.
+ *
+ * Le risorse statiche hanno URL con l'hash del contenuto (style-<md5>.css):
+ * i template li ottengono da @{...} tramite ResourceUrlEncodingFilter, il CSS
+ * tramite CssLinkResourceTransformer. Un URL così non cambia mai contenuto,
+ * quindi viene messo in cache per un anno come immutable; una modifica al file
+ * produce un URL nuovo. Le varianti .gz/.br precompresse (PrecompressioneRisorse)
+ * vengono servite ai client che le accettano.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private PartizioniService partizioniService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    static final CacheControl CACHE_RISORSE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new RisolutorePartizione(partizioniService));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new IntercettoreRendering(meterRegistry));
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        // Sostituisce la mappatura predefinita di Spring Boot (spring.web.resources.add-mappings=false)
+        registry.addResourceHandler("/**")
+                .addResourceLocations("classpath:/static/")
+                .setCacheControl(CACHE_RISORSE)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"))
+                .addTransformer(new CssLinkResourceTransformer());
+    }
+}
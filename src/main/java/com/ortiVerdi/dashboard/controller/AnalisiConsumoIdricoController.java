@@ -1,18 +1,29 @@
 package com.ortiVerdi.dashboard.controller;
 
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
 import com.ortiVerdi.dashboard.model.DatiAmbientali;
 import com.ortiVerdi.dashboard.model.DatiProduzione;
+import com.ortiVerdi.dashboard.service.CompositorePagina;
 import com.ortiVerdi.dashboard.service.DashboardService;
-import com.ortiVerdi.dashboard.service.SimulatoreService;
+import com.ortiVerdi.dashboard.service.PagineService;
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import com.ortiVerdi.dashboard.service.RisultatiService;
+import com.ortiVerdi.dashboard.service.SnapshotSimulazione;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 /**
  * Controller dedicato all'analisi del consumo idrico.
@@ -22,38 +33,76 @@ import java.util.stream.Collectors;
 @Controller
 public class AnalisiConsumoIdricoController {
 
+    private static final String VISTA = "analisi-consumo-idrico";
+
     @Autowired
     private DashboardService dashboardService;
 
     @Autowired
-    private SimulatoreService simulatoreService;
+    private PartizioniService partizioniService;
+
+    @Autowired
+    private RisultatiService risultatiService;
+
+    // Pezzi indipendenti del modello in parallelo, con scadenza per richiesta
+    @Autowired
+    private CompositorePagina compositorePagina;
+
+    // Pagine renderizzate una volta per versione dei dati, servite come byte già pronti
+    @Autowired
+    private PagineService pagineService;
+
+    @PostConstruct
+    void registraVista() {
+        // Modello della pagina senza filtro sulle colture, per la cache e il preriscaldamento
+        pagineService.registra(VISTA, true, (partizione, mese, model) -> compila(mese, List.of(), partizione, model));
+    }
 
     @GetMapping("/analisi-consumo-idrico")
-    public String showAnalisiConsumoIdrico(@RequestParam(name = "mese", defaultValue = "1") int mese, Model model) {
+    public ResponseEntity<byte[]> showAnalisiConsumoIdrico(@RequestParam(name = "mese", defaultValue = "1") int mese,
+                                                           @RequestParam(defaultValue = "") List<String> colture,
+                                                           ChiavePartizione partizione, Locale locale,
+                                                           @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String codifiche) {
+        if (colture.isEmpty()) return RispostaPagina.di(pagineService.get(VISTA, partizione, mese, locale), codifiche);
+        Model model = new ExtendedModelMap();
+        compila(mese, colture, partizione, model);
+        return RispostaPagina.di(pagineService.renderizza(VISTA, model, locale), codifiche);
+    }
+
+    private void compila(int mese, List<String> colture, ChiavePartizione partizione, Model model) {
+        // 0. Partizione richiesta (azienda, anno) e filtro facoltativo sulle colture
+        SnapshotSimulazione snapshot = partizioniService.getSnapshot(partizione);
+        model.addAttribute("partizione", partizione);
+        // Con un filtro sulle colture gli aggiornamenti live (sempre su tutte le colture) restano spenti
+        model.addAttribute("liveAttivo", colture.isEmpty() && partizione.equals(partizioniService.getCorrente()));
+        model.addAttribute("colture", colture);
 
         // 1. Nomi dei mesi per il selettore e le etichette del grafico
         String[] nomiMesi = dashboardService.getMesi();
         model.addAttribute("mesi", nomiMesi);
         model.addAttribute("meseSelezionato", mese);
 
-        // 2. Recupero dati ambientali (fondamentali per contestualizzare il consumo idrico)
-        DatiAmbientali ambientali = simulatoreService.generaDatiAmbientali(mese);
-        model.addAttribute("datiAmbientali", ambientali);
-
-        // 3. Recupero dati produttivi aggregati per il mese (per la tabella di dettaglio)
-        DatiProduzione produttivi = simulatoreService.getDatiMensili(mese);
-        model.addAttribute("datiProduttivi", produttivi);
+        // 2-4. Dati ambientali, dati produttivi del mese e consumo mensile totale:
+        // pezzi indipendenti, recuperati insieme entro la scadenza della richiesta
+        Supplier<DatiAmbientali> ambientali;
+        Supplier<DatiProduzione> produttivi;
+        Supplier<double[]> consumo;
+        try (CompositorePagina.Ambito ambito = compositorePagina.apri()) {
+            ambientali = ambito.avvia(() -> snapshot.getDatiAmbientali(mese));
+            produttivi = ambito.avvia(() -> risultatiService.getDatiProduzione(partizione, mese, mese, colture));
+            consumo = ambito.avvia(() -> colture.isEmpty() ? dashboardService.getConsumoAnnuale(snapshot)
+                    : risultatiService.getSerieMensile(partizione, Metrica.CONSUMO_IDRICO, colture));
+            ambito.attendi();
+        }
+        model.addAttribute("datiAmbientali", ambientali.get());
+        model.addAttribute("datiProduttivi", produttivi.get());
 
-        // 4. Dati per il grafico a barre (Consumo mensile totale in litri)
-        // Usiamo il metodo del SimulatoreService che recupera la cache o calcola i consumi
-        double[] consumoArray = simulatoreService.getConsumoIdricoMensile();
-        List<Double> consumoList = Arrays.stream(consumoArray).boxed().collect(Collectors.toList());
-        model.addAttribute("consumoMensile", consumoList);
+        // Consumo mensile totale in litri per il grafico a barre
+        double[] consumoArray = consumo.get();
+        model.addAttribute("consumoMensile", consumoArray);
 
         // 5. Calcolo della soglia media (linea rossa nel grafico verde)
         double sogliaMedia = dashboardService.calcolaMedia(consumoArray);
         model.addAttribute("sogliaMediaConsumo", sogliaMedia);
-
-        return "analisi-consumo-idrico";
     }
 }
\ No newline at end of file
@@ -1,54 +1,103 @@
 package com.ortiVerdi.dashboard.controller;
 
+import com.ortiVerdi.dashboard.service.CompositorePagina;
 import com.ortiVerdi.dashboard.service.DashboardService;
-import com.ortiVerdi.dashboard.service.SimulatoreService;
+import com.ortiVerdi.dashboard.service.PagineService;
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import com.ortiVerdi.dashboard.service.RisultatiService;
+import com.ortiVerdi.dashboard.service.SnapshotSimulazione;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
 import com.ortiVerdi.dashboard.model.DatiAmbientali;
 import com.ortiVerdi.dashboard.model.DatiProduzione;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 @Controller
 public class AnalisiRaccoltoController {
 
+    private static final String VISTA = "analisi-raccolto";
+
     @Autowired
     private DashboardService dashboardService;
 
     @Autowired
-    private SimulatoreService simulatoreService;
+    private PartizioniService partizioniService;
+
+    @Autowired
+    private RisultatiService risultatiService;
+
+    // Pezzi indipendenti del modello in parallelo, con scadenza per richiesta
+    @Autowired
+    private CompositorePagina compositorePagina;
+
+    // Pagine renderizzate una volta per versione dei dati, servite come byte già pronti
+    @Autowired
+    private PagineService pagineService;
+
+    @PostConstruct
+    void registraVista() {
+        // Modello della pagina senza filtro sulle colture, per la cache e il preriscaldamento
+        pagineService.registra(VISTA, true, (partizione, mese, model) -> compila(mese, List.of(), partizione, model));
+    }
 
     @GetMapping("/analisi-raccolto")
-    public String showAnalisiRaccolto(@RequestParam(name = "mese", defaultValue = "1") int mese, Model model) {
+    public ResponseEntity<byte[]> showAnalisiRaccolto(@RequestParam(name = "mese", defaultValue = "1") int mese,
+                                                      @RequestParam(defaultValue = "") List<String> colture,
+                                                      ChiavePartizione partizione, Locale locale,
+                                                      @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String codifiche) {
+        if (colture.isEmpty()) return RispostaPagina.di(pagineService.get(VISTA, partizione, mese, locale), codifiche);
+        Model model = new ExtendedModelMap();
+        compila(mese, colture, partizione, model);
+        return RispostaPagina.di(pagineService.renderizza(VISTA, model, locale), codifiche);
+    }
+
+    private void compila(int mese, List<String> colture, ChiavePartizione partizione, Model model) {
+        // 0. Partizione richiesta (azienda, anno) e filtro facoltativo sulle colture
+        SnapshotSimulazione snapshot = partizioniService.getSnapshot(partizione);
+        model.addAttribute("partizione", partizione);
+        // Con un filtro sulle colture gli aggiornamenti live (sempre su tutte le colture) restano spenti
+        model.addAttribute("liveAttivo", colture.isEmpty() && partizione.equals(partizioniService.getCorrente()));
+        model.addAttribute("colture", colture);
 
         // 1. Nomi dei mesi per il selettore (usiamo il metodo del DashboardService)
         String[] nomiMesi = dashboardService.getMesi();
         model.addAttribute("mesi", nomiMesi);
         model.addAttribute("meseSelezionato", mese);
 
-        // 2. Recupero dati ambientali dal SimulatoreService
-        DatiAmbientali ambientali = simulatoreService.generaDatiAmbientali(mese);
-        model.addAttribute("datiAmbientali", ambientali);
-
-        // 3. Recupero dati produttivi aggregati per il mese (tabella)
-        DatiProduzione produttivi = simulatoreService.getDatiMensili(mese);
-        model.addAttribute("datiProduttivi", produttivi);
+        // 2-4. Dati ambientali, dati produttivi del mese e serie annuale: pezzi
+        // indipendenti, recuperati insieme entro la scadenza della richiesta
+        Supplier<DatiAmbientali> ambientali;
+        Supplier<DatiProduzione> produttivi;
+        Supplier<double[]> raccolto;
+        try (CompositorePagina.Ambito ambito = compositorePagina.apri()) {
+            ambientali = ambito.avvia(() -> snapshot.getDatiAmbientali(mese));
+            produttivi = ambito.avvia(() -> risultatiService.getDatiProduzione(partizione, mese, mese, colture));
+            raccolto = ambito.avvia(() -> colture.isEmpty() ? dashboardService.getRaccoltoAnnuale(snapshot)
+                    : risultatiService.getSerieMensile(partizione, Metrica.RACCOLTO, colture));
+            ambito.attendi();
+        }
+        model.addAttribute("datiAmbientali", ambientali.get());
+        model.addAttribute("datiProduttivi", produttivi.get());
 
-        // 4. Dati per il grafico annuale (usiamo DashboardService)
-        double[] raccoltoArray = dashboardService.getRaccoltoAnnuale();
-        // Convertiamo l'array in una lista per Thymeleaf/JS
-        List<Double> raccoltoList = Arrays.stream(raccoltoArray).boxed().collect(Collectors.toList());
-        model.addAttribute("raccoltoAnnuale", raccoltoList);
+        // L'array primitivo viene serializzato direttamente da Thymeleaf per il JS (nessun boxing)
+        double[] raccoltoArray = raccolto.get();
+        model.addAttribute("raccoltoAnnuale", raccoltoArray);
 
         // 5. Calcolo della soglia media per la linea del grafico
         double sogliaMedia = dashboardService.calcolaMedia(raccoltoArray);
         model.addAttribute("sogliaMediaRaccolto", sogliaMedia);
-
-        return "analisi-raccolto";
     }
 }
\ No newline at end of file
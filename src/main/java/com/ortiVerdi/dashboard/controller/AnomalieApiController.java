@@ -0,0 +1,38 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.service.Anomalie;
+import com.ortiVerdi.dashboard.service.AnomalieService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static com.ortiVerdi.dashboard.controller.ParametriApi.enumerato;
+
+/**
+ * API REST delle anomalie: valori delle colture e letture dei sensori lontani
+ * dalla linea di base. Le risposte non vanno in cache.
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class AnomalieApiController {
+
+    @Autowired
+    private AnomalieService anomalieService;
+
+    // Valori mensili delle colture e letture dei sensori lontani dalla linea di base,
+    // es. /anomalie?metrica=raccolto&limite=20 (senza metrica: tutte)
+    @GetMapping("/anomalie")
+    public ResponseEntity<Anomalie> anomalie(@RequestParam(required = false) String metrica,
+                                             @RequestParam(defaultValue = "50") int limite,
+                                             ChiavePartizione partizione) {
+        Anomalie anomalie = anomalieService.anomalie(partizione,
+                metrica != null ? enumerato(Metrica.class, metrica) : null, limite);
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(anomalie);
+    }
+}
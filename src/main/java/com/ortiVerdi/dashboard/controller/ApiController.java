@@ -0,0 +1,202 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.api.DiffusioneLiveService;
+import com.ortiVerdi.dashboard.api.ModificaCella;
+import com.ortiVerdi.dashboard.api.NuovaColtura;
+import com.ortiVerdi.dashboard.api.PayloadApiService;
+import com.ortiVerdi.dashboard.api.PayloadJson;
+import com.ortiVerdi.dashboard.api.VistaLive;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.service.AggiornamentiService;
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import com.ortiVerdi.dashboard.service.RiduzioneSerieService;
+import com.ortiVerdi.dashboard.service.SerieMultiPartizione;
+import com.ortiVerdi.dashboard.service.SerieRidotta;
+import com.ortiVerdi.dashboard.service.SnapshotSimulazione;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.net.URI;
+import java.util.*;
+
+import static com.ortiVerdi.dashboard.controller.ParametriApi.aziende;
+import static com.ortiVerdi.dashboard.controller.ParametriApi.enumerato;
+import static com.ortiVerdi.dashboard.controller.ParametriApi.risposta;
+
+/**
+ * API REST in JSON (versione 1) con i dati della dashboard: serie, mesi,
+ * colture e loro modifiche, partizioni ed eventi live. Le altre funzioni hanno
+ * un controller ciascuna (sensori, scenari, interrogazioni, irrigazione,
+ * anomalie, esportazioni, catalogo); gli errori comuni sono in GestoreErroriApi.
+ *
+ * Le risposte sono byte già serializzati (vedi PayloadApiService) e portano
+ * un ETag: Spring confronta automaticamente l'header If-None-Match e risponde
+ * 304 Not Modified ai client che hanno già la versione corrente.
+ *
+ * Le letture accettano i parametri azienda (o farm) e anno per scegliere la
+ * partizione; senza parametri rispondono con i dati correnti. Modifiche ed eventi
+ * live riguardano solo la partizione corrente.
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class ApiController {
+
+    @Autowired
+    private PayloadApiService payloadApiService;
+
+    @Autowired
+    private PartizioniService partizioniService;
+
+    @Autowired
+    private AggiornamentiService aggiornamentiService;
+
+    @Autowired
+    private DiffusioneLiveService diffusioneLiveService;
+
+    @Autowired
+    private RiduzioneSerieService riduzioneSerieService;
+
+    // Serie annuali: raccolto, costi, profitti, consumo idrico e soglie medie
+    @GetMapping("/serie-annuali")
+    public ResponseEntity<byte[]> serieAnnuali(ChiavePartizione partizione) {
+        return risposta(payloadApiService.getSerieAnnuali(snapshot(partizione)));
+    }
+
+    // Dettaglio mensile: dati produttivi e ambientali del mese (1-12)
+    @GetMapping("/mesi/{mese}")
+    public ResponseEntity<byte[]> dettaglioMese(@PathVariable int mese, ChiavePartizione partizione) {
+        return risposta(payloadApiService.getDettaglioMese(snapshot(partizione), mese));
+    }
+
+    // Elenco delle colture con i dati mensili e annuali
+    @GetMapping("/colture")
+    public ResponseEntity<byte[]> colture(ChiavePartizione partizione) {
+        return risposta(payloadApiService.getColture(snapshot(partizione)));
+    }
+
+    // Singola coltura per nome (il primo appezzamento con quel nome)
+    @GetMapping("/colture/{nome}")
+    public ResponseEntity<byte[]> coltura(@PathVariable String nome, ChiavePartizione partizione) {
+        PayloadJson payload = payloadApiService.getColtura(snapshot(partizione), nome);
+        if (payload == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Coltura non trovata: " + nome);
+        }
+        return risposta(payload);
+    }
+
+    // Singolo appezzamento per riga: la posizione nell'elenco /colture
+    @GetMapping("/righe/{riga}")
+    public ResponseEntity<byte[]> riga(@PathVariable int riga, ChiavePartizione partizione) {
+        PayloadJson payload = payloadApiService.getRiga(snapshot(partizione), riga);
+        if (payload == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Riga non trovata: " + riga);
+        }
+        return risposta(payload);
+    }
+
+    // Dati ambientali dei 12 mesi
+    @GetMapping("/ambientali")
+    public ResponseEntity<byte[]> ambientali(ChiavePartizione partizione) {
+        return risposta(payloadApiService.getDatiAmbientali(snapshot(partizione)));
+    }
+
+    // ==============================
+    // Partizioni (azienda, anno)
+    // ==============================
+
+    // Partizioni disponibili e stato della cache delle partizioni in memoria
+    @GetMapping("/partizioni")
+    public Map<String, Object> partizioni() {
+        List<Map<String, Object>> elenco = new ArrayList<>();
+        for (ChiavePartizione k : partizioniService.elenca()) {
+            elenco.add(Map.of("azienda", k.getAzienda(), "anno", k.getAnno()));
+        }
+        ChiavePartizione corrente = partizioniService.getCorrente();
+        Map<String, Object> risposta = new LinkedHashMap<>();
+        risposta.put("corrente", Map.of("azienda", corrente.getAzienda(), "anno", corrente.getAnno()));
+        risposta.put("partizioni", elenco);
+        risposta.put("residenti", partizioniService.getNumeroResidenti());
+        risposta.put("maxResidenti", partizioniService.getMaxResidenti());
+        risposta.put("caricamenti", partizioniService.getCaricamenti());
+        risposta.put("espulsioni", partizioniService.getEspulsioni());
+        return risposta;
+    }
+
+    // Serie mensile di una metrica su più aziende e anni,
+    // es. /partizioni/serie?metrica=raccolto&aziende=OrtiVerdi,Collina&da=2019&a=2025
+    @GetMapping("/partizioni/serie")
+    public SerieMultiPartizione seriePartizioni(@RequestParam(defaultValue = "raccolto") String metrica,
+                                                @RequestParam(defaultValue = "") List<String> aziende,
+                                                @RequestParam(defaultValue = "0") int da,
+                                                @RequestParam(defaultValue = "9999") int a) {
+        return partizioniService.serieMensili(enumerato(Metrica.class, metrica), aziende(aziende), da, a);
+    }
+
+    // Storico mensile di una metrica su più anni (somma delle aziende), con punti > 0 ridotto con LTTB,
+    // es. /partizioni/storico?metrica=raccolto&da=2016&a=2025&punti=40
+    @GetMapping("/partizioni/storico")
+    public SerieRidotta storicoPartizioni(@RequestParam(defaultValue = "raccolto") String metrica,
+                                         @RequestParam(defaultValue = "") List<String> aziende,
+                                         @RequestParam(defaultValue = "0") int da,
+                                         @RequestParam(defaultValue = "9999") int a,
+                                         @RequestParam(defaultValue = "0") int punti) {
+        return riduzioneSerieService.storico(enumerato(Metrica.class, metrica), aziende(aziende), da, a, punti);
+    }
+
+    // Aggiornamenti in tempo reale di una pagina (Server-Sent Events):
+    // raccolto, costi-profitti, consumo-idrico, colture
+    @GetMapping(path = "/eventi/{vista}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseBodyEmitter eventi(@PathVariable String vista) {
+        VistaLive v = VistaLive.daPercorso(vista);
+        try {
+            return diffusioneLiveService.iscrivi(v);
+        } catch (IllegalStateException e) {
+            // Limite di connessioni live raggiunto
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    // ==============================
+    // Modifiche per riga (appezzamento): gli aggregati vengono aggiornati per differenza.
+    // Più righe possono avere lo stesso nome, quindi non si modifica per nome
+    // ==============================
+
+    // Raccolto e/o costi di una riga in un mese: una sola modifica, tutta o niente
+    @PutMapping("/righe/{riga}/mesi/{mese}")
+    public ResponseEntity<byte[]> modificaMese(@PathVariable int riga, @PathVariable int mese,
+                                               @RequestBody ModificaCella modifica) {
+        aggiornamentiService.aggiornaMese(riga, mese, modifica.getRaccolto(), modifica.getCosti());
+        return riga(riga, partizioniService.getCorrente());
+    }
+
+    // Prezzo di vendita di una riga, es. {"prezzo": 1.8}
+    @PutMapping("/righe/{riga}/prezzo")
+    public ResponseEntity<byte[]> modificaPrezzo(@PathVariable int riga, @RequestBody Map<String, Double> corpo) {
+        Double prezzo = corpo.get("prezzo");
+        if (prezzo == null) throw new IllegalArgumentException("Campo 'prezzo' mancante");
+        aggiornamentiService.aggiornaPrezzo(riga, prezzo);
+        return riga(riga, partizioniService.getCorrente());
+    }
+
+    // Nuova coltura o nuovo appezzamento: la risposta è la nuova riga, indicata in Location
+    @PostMapping("/colture")
+    public ResponseEntity<byte[]> aggiungiColtura(@RequestBody NuovaColtura nuova) {
+        SnapshotSimulazione s = aggiornamentiService.aggiungiColtura(nuova.getNome(), nuova.getPrezzoVendita(),
+                nuova.getConsumoIdricoPerKg(), nuova.getRaccoltoMensile(), nuova.getCostiMensili());
+        int riga = s.getArchivio().getNumeroRighe() - 1;
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .location(URI.create("/api/v1/righe/" + riga))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(payloadApiService.getRiga(s, riga).getCorpo());
+    }
+
+    private SnapshotSimulazione snapshot(ChiavePartizione partizione) {
+        return partizioniService.getSnapshot(partizione);
+    }
+}
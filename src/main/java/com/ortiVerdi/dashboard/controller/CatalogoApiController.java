@@ -0,0 +1,62 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.data.CatalogoColture;
+import com.ortiVerdi.dashboard.service.CatalogoColtureService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API REST del catalogo delle colture: consultazione e ricarica dal file
+ * senza riavviare la dashboard.
+ */
+@RestController
+@RequestMapping("/api/v1/catalogo")
+public class CatalogoApiController {
+
+    @Autowired
+    private CatalogoColtureService catalogoColtureService;
+
+    // Colture del catalogo in uso: prezzo, consumo idrico per kg, colore e profilo stagionale
+    @GetMapping
+    public Map<String, Object> catalogo() {
+        return descrivi(catalogoColtureService.getCatalogo());
+    }
+
+    // Rilegge il catalogo senza riavvio; se il file non è valido resta quello in uso -> 422
+    @PostMapping("/ricarica")
+    public Map<String, Object> ricaricaCatalogo() {
+        try {
+            return descrivi(catalogoColtureService.ricarica());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> descrivi(CatalogoColture catalogo) {
+        List<Map<String, Object>> colture = new ArrayList<>();
+        for (int i = 0; i < catalogo.getNumeroColture(); i++) {
+            Map<String, Object> voce = new LinkedHashMap<>();
+            voce.put("nome", catalogo.getNome(i));
+            voce.put("prezzoUnitario", catalogo.getPrezzoUnitario(i));
+            voce.put("consumoIdricoPerKg", catalogo.getConsumoIdricoPerKg(i));
+            voce.put("colore", catalogo.getColore(i));
+            voce.put("profiloStagionale", catalogo.getProfiloStagionale(i));
+            colture.add(voce);
+        }
+        Map<String, Object> risposta = new LinkedHashMap<>();
+        risposta.put("versione", catalogo.getVersione());
+        risposta.put("colture", colture);
+        return risposta;
+    }
+}
@@ -1,55 +1,91 @@
 package com.ortiVerdi.dashboard.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.ortiVerdi.dashboard.model.Coltura;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.service.CatalogoColtureService;
+import com.ortiVerdi.dashboard.service.Classifica;
+import com.ortiVerdi.dashboard.service.ClassificheService;
+import com.ortiVerdi.dashboard.service.CriterioClassifica;
 import com.ortiVerdi.dashboard.service.DashboardService;
-import com.ortiVerdi.dashboard.service.SimulatoreService;
+import com.ortiVerdi.dashboard.service.PagineService;
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 
-import java.util.List;
+import java.util.Locale;
 
 /**
  * Controller dedicato alla gestione del dettaglio per singola coltura.
  * Permette di visualizzare andamenti comparativi e bilanci economici
  * specifici per ogni tipologia di prodotto agricolo.
+ *
+ * La pagina elenca solo le prime COLTURE_PAGINA colture per profitto annuale
+ * (dalla classifica top-K): le successive si caricano a pagine dal browser e
+ * le serie mensili di una coltura si scaricano (/api/v1/colture/{nome}) solo
+ * quando viene selezionata, così la pagina non cresce con l'archivio.
  */
 @Controller
 public class ColtureController {
 
+    private static final String VISTA = "colture";
+
+    /** Colture elencate per pagina, in ordine di profitto annuale */
+    static final int COLTURE_PAGINA = 20;
+
+    /** Colture selezionate (e scaricate) all'apertura della pagina */
+    static final int COLTURE_ATTIVE = 5;
+
     @Autowired
     private DashboardService dashboardService;
 
     @Autowired
-    private SimulatoreService simulatoreService;
+    private PartizioniService partizioniService;
+
+    @Autowired
+    private CatalogoColtureService catalogoColtureService;
+
+    @Autowired
+    private ClassificheService classificheService;
+
+    // Pagine renderizzate una volta per versione dei dati, servite come byte già pronti
+    @Autowired
+    private PagineService pagineService;
 
-    // Mapper per convertire gli oggetti Java in stringhe JSON leggibili dal JS
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @PostConstruct
+    void registraVista() {
+        pagineService.registra(VISTA, false, (partizione, mese, model) -> compila(partizione, model));
+    }
 
     @GetMapping("/colture")
-    public String showColture(Model model) {
+    public ResponseEntity<byte[]> showColture(ChiavePartizione partizione, Locale locale,
+                                              @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String codifiche) {
+        return RispostaPagina.di(pagineService.get(VISTA, partizione, 0, locale), codifiche);
+    }
+
+    private void compila(ChiavePartizione partizione, Model model) {
+        // 0. Partizione richiesta (azienda, anno): quella corrente riceve anche gli aggiornamenti live
+        model.addAttribute("partizione", partizione);
+        model.addAttribute("liveAttivo", partizione.equals(partizioniService.getCorrente()));
 
-        // 1. Recupero della lista completa delle colture dal SimulatoreService
-        List<Coltura> listaColture = simulatoreService.getColture();
-        model.addAttribute("colture", listaColture);
+        // 1. Prima pagina delle colture per profitto annuale (solo nome e riga):
+        // le serie mensili le scarica colture.js per le colture selezionate
+        Classifica prime = classificheService.classifica(partizione, CriterioClassifica.PROFITTO,
+                COLTURE_PAGINA, true, null);
+        model.addAttribute("colture", prime.getVoci());
+        model.addAttribute("coltureTotali", prime.getCandidati());
+        model.addAttribute("colturePagina", COLTURE_PAGINA);
+        model.addAttribute("coltureAttive", COLTURE_ATTIVE);
 
         // 2. Nomi dei mesi per le etichette dell'asse X
         String[] nomiMesi = dashboardService.getMesi();
         model.addAttribute("mesi", nomiMesi);
 
-        // 3. Conversione della lista colture in JSON per il blocco <script> nel template
-        // Questo permette al file colture.js di avere i dati pronti per Chart.js
-        try {
-            String coltureJson = objectMapper.writeValueAsString(listaColture);
-            model.addAttribute("coltureJson", coltureJson);
-        } catch (JsonProcessingException e) {
-            model.addAttribute("coltureJson", "[]");
-            // In una fase successiva documenteremo la gestione delle eccezioni qui
-        }
-
-        return "colture";
+        // 3. Colori dei grafici per tipo di coltura, dal catalogo delle colture
+        model.addAttribute("coloriColture", catalogoColtureService.getColori());
     }
 }
\ No newline at end of file
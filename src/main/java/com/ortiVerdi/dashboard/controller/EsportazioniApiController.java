@@ -0,0 +1,46 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.FormatoEsportazione;
+import com.ortiVerdi.dashboard.service.EsportazioneService;
+import com.ortiVerdi.dashboard.service.TabellaEsportazione;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import static com.ortiVerdi.dashboard.controller.ParametriApi.enumerato;
+
+/**
+ * API REST delle esportazioni: tabelle della partizione scaricate come file
+ * CSV o colonnare, scritte in streaming.
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class EsportazioniApiController {
+
+    @Autowired
+    private EsportazioneService esportazioneService;
+
+    // Tabella della partizione come file (colture, mensili, ambientali, letture),
+    // es. /esportazioni/colture?formato=csv o ?formato=colonnare; excel=true aggiunge il BOM al CSV.
+    // Il corpo è scritto in streaming sul pool asincrono di Spring MVC, non sul thread della richiesta
+    @GetMapping("/esportazioni/{tabella}")
+    public ResponseEntity<StreamingResponseBody> esporta(@PathVariable String tabella,
+                                                         @RequestParam(defaultValue = "csv") String formato,
+                                                         @RequestParam(defaultValue = "false") boolean excel,
+                                                         ChiavePartizione partizione) {
+        EsportazioneService.Esportazione esportazione = esportazioneService.prepara(partizione,
+                enumerato(TabellaEsportazione.class, tabella), enumerato(FormatoEsportazione.class, formato), excel);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(esportazione.getFormato().getTipoMime()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(esportazione.getNomeFile()).build().toString())
+                .cacheControl(CacheControl.noStore())
+                .body(esportazione::scrivi);
+    }
+}
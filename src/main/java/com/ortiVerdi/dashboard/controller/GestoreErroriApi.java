@@ -0,0 +1,31 @@
+package com.ortiVerdi.dashboard.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Errori comuni a tutti i controller dell'API REST, con il messaggio in testo
+ * semplice. Vale solo per i @RestController: le pagine HTML restano sulla
+ * gestione degli errori predefinita di Spring Boot.
+ */
+@RestControllerAdvice(annotations = RestController.class)
+public class GestoreErroriApi {
+
+    // Coltura, appezzamento o partizione inesistente -> 404
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<String> nonTrovato(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+
+    // Parametri non validi (es. mese fuori intervallo) -> 400
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> parametroNonValido(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+}
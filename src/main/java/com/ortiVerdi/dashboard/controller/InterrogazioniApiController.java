@@ -0,0 +1,91 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+import com.ortiVerdi.dashboard.service.Classifica;
+import com.ortiVerdi.dashboard.service.ClassificheService;
+import com.ortiVerdi.dashboard.service.CriterioClassifica;
+import com.ortiVerdi.dashboard.service.DashboardService;
+import com.ortiVerdi.dashboard.service.InterrogazioniService;
+import com.ortiVerdi.dashboard.service.Raggruppamento;
+import com.ortiVerdi.dashboard.service.RisultatiService;
+import com.ortiVerdi.dashboard.service.RisultatoInterrogazione;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ortiVerdi.dashboard.controller.ParametriApi.enumerato;
+
+/**
+ * API REST delle interrogazioni su intervalli di mesi e delle classifiche
+ * degli appezzamenti. I mesi si indicano come numero (1-12) o nome breve.
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class InterrogazioniApiController {
+
+    @Autowired
+    private InterrogazioniService interrogazioniService;
+
+    @Autowired
+    private ClassificheService classificheService;
+
+    @Autowired
+    private RisultatiService risultatiService;
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    // Primi o ultimi K appezzamenti per profitto, margine, acqua per euro o crescita mensile
+    // (da = posizioni da saltare, per le pagine successive)
+    @GetMapping("/classifiche")
+    public Classifica classifica(@RequestParam(defaultValue = "profitto") String criterio,
+                                 @RequestParam(defaultValue = "0") int da,
+                                 @RequestParam(defaultValue = "10") int k,
+                                 @RequestParam(defaultValue = "decrescente") String ordine,
+                                 @RequestParam(required = false) String mese,
+                                 ChiavePartizione partizione) {
+        boolean decrescente;
+        if (ordine.equalsIgnoreCase("decrescente")) decrescente = true;
+        else if (ordine.equalsIgnoreCase("crescente")) decrescente = false;
+        else throw new IllegalArgumentException("Ordine non valido (decrescente o crescente): " + ordine);
+        return classificheService.classifica(partizione, enumerato(CriterioClassifica.class, criterio), da, k,
+                decrescente, mese != null ? mese(mese) : null);
+    }
+
+    // Dati produttivi di un intervallo di mesi, facoltativamente solo per alcune colture,
+    // es. /produzione?da=Mar&a=Ago&colture=Pomodoro,Uva (risultati in cache, vedi RisultatiService)
+    @GetMapping("/produzione")
+    public DatiProduzione produzione(@RequestParam(defaultValue = "1") String da,
+                                     @RequestParam(defaultValue = "12") String a,
+                                     @RequestParam(defaultValue = "") List<String> colture,
+                                     ChiavePartizione partizione) {
+        return risultatiService.getDatiProduzione(partizione, mese(da), mese(a), colture);
+    }
+
+    // Somma di una metrica su un intervallo di mesi (numero 1-12 o nome breve), raggruppata
+    // per mese, trimestre, stagione o anno, es. /interrogazioni?metrica=profitto&da=Mar&a=Ago
+    // &raggruppa=trimestre&colture=Pomodoro,Uva&confronto=true (confronto con l'anno precedente)
+    @GetMapping("/interrogazioni")
+    public RisultatoInterrogazione interrogazione(@RequestParam(defaultValue = "raccolto") String metrica,
+                                                  @RequestParam(defaultValue = "1") String da,
+                                                  @RequestParam(defaultValue = "12") String a,
+                                                  @RequestParam(defaultValue = "mese") String raggruppa,
+                                                  @RequestParam(defaultValue = "") List<String> colture,
+                                                  @RequestParam(defaultValue = "false") boolean confronto,
+                                                  ChiavePartizione partizione) {
+        List<String> selezione = new ArrayList<>();
+        for (String c : colture) {
+            if (!c.isBlank()) selezione.add(c.trim());
+        }
+        return interrogazioniService.interroga(partizione, enumerato(Metrica.class, metrica), mese(da), mese(a),
+                enumerato(Raggruppamento.class, raggruppa), selezione, confronto);
+    }
+
+    private int mese(String valore) {
+        return ParametriApi.mese(valore, dashboardService.getMesi());
+    }
+}
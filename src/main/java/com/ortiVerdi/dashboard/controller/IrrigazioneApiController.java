@@ -0,0 +1,39 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.service.IrrigazioneService;
+import com.ortiVerdi.dashboard.service.PianoIrrigazione;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+import static com.ortiVerdi.dashboard.controller.ParametriApi.mensili;
+
+/**
+ * API REST del piano di irrigazione: ripartisce il budget d'acqua mensile
+ * tra gli appezzamenti della partizione.
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class IrrigazioneApiController {
+
+    @Autowired
+    private IrrigazioneService irrigazioneService;
+
+    // Budget mensile in litri (un valore per tutti i mesi o 12 valori), pioggia prevista
+    // facoltativa (12 valori in mm), prezzo dell'acqua in € per litro,
+    // es. /irrigazione?budget=40000&prezzoAcqua=0.001; dettaglio=true aggiunge i litri per appezzamento
+    @GetMapping("/irrigazione")
+    public PianoIrrigazione irrigazione(@RequestParam List<Double> budget,
+                                        @RequestParam(required = false) List<Double> pioggia,
+                                        @RequestParam(defaultValue = "0") double prezzoAcqua,
+                                        @RequestParam(defaultValue = "false") boolean dettaglio,
+                                        ChiavePartizione partizione) {
+        return irrigazioneService.pianifica(partizione, mensili(budget, "budget"),
+                pioggia != null ? mensili(pioggia, "pioggia") : null, prezzoAcqua, dettaglio);
+    }
+}
@@ -0,0 +1,70 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.api.PayloadJson;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Conversione dei parametri e delle risposte comuni ai controller dell'API REST.
+ * I valori non validi diventano IllegalArgumentException, che GestoreErroriApi
+ * trasforma in 400.
+ */
+final class ParametriApi {
+
+    private ParametriApi() {
+    }
+
+    // Mese come numero (1-12) o nome breve italiano (Gen, Feb, ...); altri valori -> 400
+    static int mese(String valore, String[] nomi) {
+        String v = valore.trim();
+        if (!v.isEmpty() && Character.isDigit(v.charAt(0))) return Integer.parseInt(v);
+        for (int m = 0; m < nomi.length; m++) {
+            if (nomi[m].equalsIgnoreCase(v)) return m + 1;
+        }
+        throw new IllegalArgumentException("Mese non valido: " + valore);
+    }
+
+    // Nome di costante case-insensitive (es. "temperatura", "ora", "consumo-idrico"); valori sconosciuti -> 400
+    static <E extends Enum<E>> E enumerato(Class<E> tipo, String nome) {
+        return Enum.valueOf(tipo, nome.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    // Un valore ripetuto per i 12 mesi oppure 12 valori; un valore vuoto diventa NaN
+    static double[] mensili(List<Double> valori, String nome) {
+        if (valori.size() != 1 && valori.size() != 12) {
+            throw new IllegalArgumentException("Per " + nome + " servono 1 o 12 valori, trovati " + valori.size());
+        }
+        double[] mesi = new double[12];
+        for (int m = 0; m < 12; m++) {
+            Double v = valori.get(valori.size() == 1 ? 0 : m);
+            mesi[m] = v != null ? v : Double.NaN;
+        }
+        return mesi;
+    }
+
+    // Aziende indicate dal client, senza spazi e valori vuoti (insieme vuoto = tutte)
+    static Set<String> aziende(Collection<String> valori) {
+        Set<String> selezione = new HashSet<>();
+        if (valori == null) return selezione;
+        for (String azienda : valori) {
+            if (azienda != null && !azienda.isBlank()) selezione.add(azienda.trim());
+        }
+        return selezione;
+    }
+
+    // I client devono rivalidare con l'ETag a ogni richiesta
+    static ResponseEntity<byte[]> risposta(PayloadJson payload) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(payload.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .body(payload.getCorpo());
+    }
+}
@@ -0,0 +1,47 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.service.PaginaHtml;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Risposta HTTP con una pagina già renderizzata, servita come una risorsa
+ * statica: variante gzip ai client che la accettano (Tomcat non ricomprime
+ * una risposta che ha già Content-Encoding), ETag con 304 automatico di Spring
+ * per If-None-Match e rivalidazione a ogni visita, perché i dati cambiano.
+ */
+final class RispostaPagina {
+
+    private static final MediaType HTML = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
+    private RispostaPagina() {
+    }
+
+    static ResponseEntity<byte[]> di(PaginaHtml pagina, String codificheAccettate) {
+        ResponseEntity.BodyBuilder risposta = ResponseEntity.ok()
+                .contentType(HTML)
+                .eTag(pagina.getEtag())
+                .cacheControl(CacheControl.noCache());
+        // Senza variante precompressa comprime Tomcat (e aggiunge lui Vary)
+        if (pagina.getGzip() == null) return risposta.body(pagina.getCorpo());
+        risposta.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (!accettaGzip(codificheAccettate)) return risposta.body(pagina.getCorpo());
+        return risposta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(pagina.getGzip());
+    }
+
+    // gzip (o *) nell'Accept-Encoding, senza q=0
+    static boolean accettaGzip(String codifiche) {
+        if (codifiche == null) return false;
+        for (String voce : codifiche.split(",")) {
+            String[] parti = voce.split(";");
+            String nome = parti[0].trim();
+            if (!nome.equalsIgnoreCase("gzip") && !nome.equals("*")) continue;
+            return parti.length < 2 || !parti[1].replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+}
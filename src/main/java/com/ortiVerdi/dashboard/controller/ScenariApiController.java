@@ -0,0 +1,61 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.api.PayloadApiService;
+import com.ortiVerdi.dashboard.api.RichiestaScenariMeteo;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.service.EsitiScenariMeteo;
+import com.ortiVerdi.dashboard.service.ModelloResaService;
+import com.ortiVerdi.dashboard.service.PartizioniService;
+import com.ortiVerdi.dashboard.service.ScenarioMeteo;
+import com.ortiVerdi.dashboard.service.ScenariService;
+import com.ortiVerdi.dashboard.service.StimaResa;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import static com.ortiVerdi.dashboard.controller.ParametriApi.aziende;
+import static com.ortiVerdi.dashboard.controller.ParametriApi.risposta;
+
+/**
+ * API REST degli scenari: bande Monte Carlo della partizione e stime di resa
+ * del modello meteo -> resa, anche su più aziende e anni in una richiesta.
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class ScenariApiController {
+
+    @Autowired
+    private PayloadApiService payloadApiService;
+
+    @Autowired
+    private PartizioniService partizioniService;
+
+    @Autowired
+    private ModelloResaService modelloResaService;
+
+    // Bande P5/P50/P95 mensili di raccolto, consumo idrico e profitto (simulazione Monte Carlo)
+    @GetMapping("/scenari")
+    public ResponseEntity<byte[]> scenari(@RequestParam(defaultValue = "${ortiverdi.scenari.realizzazioni:2000}") int realizzazioni,
+                                          @RequestParam(defaultValue = "" + ScenariService.SEME_PREDEFINITO) long seme,
+                                          ChiavePartizione partizione) {
+        return risposta(payloadApiService.getScenari(partizioniService.getSnapshot(partizione), realizzazioni, seme));
+    }
+
+    // Raccolto, consumo idrico e profitto stimati dal meteo della partizione con le
+    // variazioni indicate, es. /resa?pioggia=-30&temperatura=2 (pioggia e luce in %)
+    @GetMapping("/resa")
+    public StimaResa resa(@RequestParam(defaultValue = "0") double temperatura,
+                          @RequestParam(defaultValue = "0") double pioggia,
+                          @RequestParam(defaultValue = "0") double luce,
+                          ChiavePartizione partizione) {
+        return modelloResaService.stima(partizioniService.getSnapshot(partizione),
+                new ScenarioMeteo(null, temperatura, pioggia, luce));
+    }
+
+    // Più scenari su più aziende e anni in una sola richiesta (corpo: RichiestaScenariMeteo)
+    @PostMapping("/resa/scenari")
+    public EsitiScenariMeteo resaScenari(@RequestBody RichiestaScenariMeteo richiesta) {
+        return modelloResaService.valuta(richiesta.getScenari(), aziende(richiesta.getAziende()),
+                richiesta.getDa(), richiesta.getA());
+    }
+}
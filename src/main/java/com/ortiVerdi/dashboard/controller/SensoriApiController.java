@@ -0,0 +1,98 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.api.LetturaCampo;
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.IntervalloAggregato;
+import com.ortiVerdi.dashboard.data.RisoluzioneTemporale;
+import com.ortiVerdi.dashboard.data.StazioneSensori;
+import com.ortiVerdi.dashboard.service.RiduzioneSerieService;
+import com.ortiVerdi.dashboard.service.SensoriService;
+import com.ortiVerdi.dashboard.service.SerieRidotta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+import static com.ortiVerdi.dashboard.controller.ParametriApi.enumerato;
+
+/**
+ * API REST dei sensori in campo: registrazione delle letture, stazioni attive,
+ * aggregati per risoluzione e ultime letture grezze. Riguarda solo la
+ * partizione corrente; le risposte non vanno in cache.
+ */
+@RestController
+@RequestMapping("/api/v1/sensori")
+public class SensoriApiController {
+
+    @Autowired
+    private SensoriService sensoriService;
+
+    @Autowired
+    private RiduzioneSerieService riduzioneSerieService;
+
+    // Letture di uno o più appezzamenti (array JSON di LetturaCampo)
+    @PostMapping("/letture")
+    public ResponseEntity<Map<String, Object>> registraLetture(@RequestBody List<LetturaCampo> letture) {
+        long ricezione = System.currentTimeMillis();
+        int registrate = 0;
+        for (LetturaCampo l : letture) {
+            long istante = l.getIstante() != null ? l.getIstante() : ricezione;
+            registrate += registra(l.getAppezzamento(), istante, CanaleSensore.TEMPERATURA, l.getTemperatura());
+            registrate += registra(l.getAppezzamento(), istante, CanaleSensore.UMIDITA, l.getUmidita());
+            registrate += registra(l.getAppezzamento(), istante, CanaleSensore.PRECIPITAZIONI, l.getPrecipitazioni());
+            registrate += registra(l.getAppezzamento(), istante, CanaleSensore.VENTO, l.getVento());
+            registrate += registra(l.getAppezzamento(), istante, CanaleSensore.LUMINOSITA, l.getLuminosita());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("registrate", registrate));
+    }
+
+    // Appezzamenti con sensori attivi
+    @GetMapping
+    public List<Map<String, Object>> stazioni() {
+        List<Map<String, Object>> elenco = new ArrayList<>();
+        for (StazioneSensori s : sensoriService.getStazioni()) {
+            Map<String, Object> voce = new LinkedHashMap<>();
+            voce.put("appezzamento", s.getAppezzamento());
+            voce.put("letture", s.getLetture());
+            voce.put("ultimoIstante", s.getUltimoIstante());
+            elenco.add(voce);
+        }
+        elenco.sort(Comparator.comparing(v -> (String) v.get("appezzamento")));
+        return elenco;
+    }
+
+    // Aggregati di un canale, es. /sensori/Appezzamento 1/temperatura?risoluzione=ora
+    @GetMapping("/{appezzamento}/{canale}")
+    public ResponseEntity<List<IntervalloAggregato>> aggregatiSensore(@PathVariable String appezzamento,
+                                                                      @PathVariable String canale,
+                                                                      @RequestParam(defaultValue = "ora") String risoluzione) {
+        List<IntervalloAggregato> intervalli = stazione(appezzamento)
+                .getIntervalli(enumerato(CanaleSensore.class, canale), enumerato(RisoluzioneTemporale.class, risoluzione));
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(intervalli);
+    }
+
+    // Ultime letture grezze di un canale; con punti > 0 ridotte con LTTB,
+    // es. /sensori/Appezzamento 1/umidita/letture?limite=8192&punti=400
+    @GetMapping("/{appezzamento}/{canale}/letture")
+    public ResponseEntity<SerieRidotta> lettureSensore(@PathVariable String appezzamento, @PathVariable String canale,
+                                                       @RequestParam(defaultValue = "500") int limite,
+                                                       @RequestParam(defaultValue = "0") int punti) {
+        SerieRidotta serie = riduzioneSerieService.letture(appezzamento, enumerato(CanaleSensore.class, canale), limite, punti);
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(serie);
+    }
+
+    private int registra(String appezzamento, long istante, CanaleSensore canale, Double valore) {
+        if (valore == null) return 0;
+        sensoriService.registra(appezzamento, istante, canale, valore);
+        return 1;
+    }
+
+    private StazioneSensori stazione(String appezzamento) {
+        StazioneSensori s = sensoriService.getStazione(appezzamento);
+        if (s == null) throw new NoSuchElementException("Nessun sensore per l'appezzamento: " + appezzamento);
+        return s;
+    }
+}
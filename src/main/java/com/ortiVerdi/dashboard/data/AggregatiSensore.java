@@ -0,0 +1,166 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregati mobili delle letture di un canale: per ogni RisoluzioneTemporale
+ * un anello di intervalli con conteggio, somma, minimo e massimo.
+ *
+ * Ogni intervallo occupa la posizione (periodo mod numero intervalli); quando
+ * arriva una lettura di un periodo più recente la posizione viene azzerata e
+ * riusata. Tutti gli array sono preallocati: aggiungi() non alloca, salvo il
+ * calcolo dei confini del mese, fatto una volta per mese e poi memorizzato.
+ * Le letture più vecchie dell'intervallo già presente nella posizione vengono
+ * ignorate. Non è thread-safe.
+ */
+public final class AggregatiSensore {
+
+    private static final RisoluzioneTemporale[] RISOLUZIONI = RisoluzioneTemporale.values();
+
+    private final Finestra[] finestre = new Finestra[RISOLUZIONI.length];
+
+    // Confini del mese dell'ultima lettura, per non ricalcolarli a ogni chiamata
+    private long inizioMese = Long.MAX_VALUE;
+    private long fineMese = Long.MIN_VALUE;
+    private long periodoMese;
+
+    public AggregatiSensore() {
+        for (RisoluzioneTemporale r : RISOLUZIONI) finestre[r.ordinal()] = new Finestra(r.getIntervalli());
+    }
+
+    public void aggiungi(long istante, double valore) {
+        for (RisoluzioneTemporale r : RISOLUZIONI) {
+            long periodo = r == RisoluzioneTemporale.MESE
+                    ? periodoMese(istante)
+                    : Math.floorDiv(istante, r.getDurataMillis());
+            finestre[r.ordinal()].aggiungi(periodo, valore);
+        }
+    }
+
+    /** Intervalli non vuoti di una risoluzione, in ordine di tempo */
+    public List<IntervalloAggregato> getIntervalli(RisoluzioneTemporale risoluzione) {
+        Finestra f = finestre[risoluzione.ordinal()];
+        List<IntervalloAggregato> risultato = new ArrayList<>();
+        for (int i = 0; i < f.periodi.length; i++) {
+            if (f.conteggi[i] == 0) continue;
+            long inizio = risoluzione == RisoluzioneTemporale.MESE
+                    ? inizioDelMese(f.periodi[i])
+                    : f.periodi[i] * risoluzione.getDurataMillis();
+            risultato.add(new IntervalloAggregato(inizio, f.conteggi[i], f.somme[i], f.minimi[i], f.massimi[i]));
+        }
+        risultato.sort((a, b) -> Long.compare(a.getInizio(), b.getInizio()));
+        return risultato;
+    }
+
+    /**
+     * Valore del mese di calendario più recente con quel numero (1-12):
+     * la somma per i canali cumulativi, altrimenti la media. NaN se non ci sono letture.
+     */
+    public double getValoreMensile(int mese, boolean cumulativo) {
+        Finestra f = finestre[RisoluzioneTemporale.MESE.ordinal()];
+        int migliore = -1;
+        for (int i = 0; i < f.periodi.length; i++) {
+            if (f.conteggi[i] == 0 || Math.floorMod(f.periodi[i], 12) != mese - 1) continue;
+            if (migliore < 0 || f.periodi[i] > f.periodi[migliore]) migliore = i;
+        }
+        if (migliore < 0) return Double.NaN;
+        return cumulativo ? f.somme[migliore] : f.somme[migliore] / f.conteggi[migliore];
+    }
+
+    // ======================================================
+    // Codifica binaria degli intervalli non vuoti (checkpoint della persistenza)
+    // ======================================================
+    public void scrivi(DataOutput out) throws IOException {
+        for (Finestra f : finestre) {
+            int usati = 0;
+            for (long c : f.conteggi) if (c != 0) usati++;
+            out.writeInt(usati);
+            for (int i = 0; i < f.periodi.length; i++) {
+                if (f.conteggi[i] == 0) continue;
+                out.writeInt(i);
+                out.writeLong(f.periodi[i]);
+                out.writeLong(f.conteggi[i]);
+                out.writeDouble(f.somme[i]);
+                out.writeDouble(f.minimi[i]);
+                out.writeDouble(f.massimi[i]);
+            }
+        }
+    }
+
+    /** Sostituisce gli intervalli con quelli scritti da scrivi() */
+    public void leggi(DataInput in) throws IOException {
+        for (Finestra f : finestre) {
+            Arrays.fill(f.conteggi, 0);
+            int usati = in.readInt();
+            if (usati < 0 || usati > f.periodi.length) throw new IOException("Intervalli non validi: " + usati);
+            for (int n = 0; n < usati; n++) {
+                int i = in.readInt();
+                if (i < 0 || i >= f.periodi.length) throw new IOException("Posizione di intervallo non valida: " + i);
+                f.periodi[i] = in.readLong();
+                f.conteggi[i] = in.readLong();
+                f.somme[i] = in.readDouble();
+                f.minimi[i] = in.readDouble();
+                f.massimi[i] = in.readDouble();
+            }
+        }
+    }
+
+    // Mese come numero progressivo (anno * 12 + mese - 1), con i confini memorizzati
+    private long periodoMese(long istante) {
+        if (istante < inizioMese || istante >= fineMese) {
+            YearMonth ym = YearMonth.from(Instant.ofEpochMilli(istante).atOffset(ZoneOffset.UTC));
+            periodoMese = ym.getYear() * 12L + ym.getMonthValue() - 1;
+            inizioMese = inizioDelMese(periodoMese);
+            fineMese = inizioDelMese(periodoMese + 1);
+        }
+        return periodoMese;
+    }
+
+    private static long inizioDelMese(long periodo) {
+        YearMonth ym = YearMonth.of((int) Math.floorDiv(periodo, 12), (int) Math.floorMod(periodo, 12) + 1);
+        return ym.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    // ======================================================
+    // Anello di intervalli di una risoluzione, in array paralleli
+    // ======================================================
+    private static final class Finestra {
+        final long[] periodi;
+        final long[] conteggi;
+        final double[] somme;
+        final double[] minimi;
+        final double[] massimi;
+
+        Finestra(int n) {
+            periodi = new long[n];
+            conteggi = new long[n];
+            somme = new double[n];
+            minimi = new double[n];
+            massimi = new double[n];
+        }
+
+        void aggiungi(long periodo, double valore) {
+            int i = (int) Math.floorMod(periodo, (long) periodi.length);
+            if (conteggi[i] == 0 || periodi[i] != periodo) {
+                if (conteggi[i] != 0 && periodi[i] > periodo) return;   // lettura troppo vecchia
+                periodi[i] = periodo;
+                conteggi[i] = 0;
+                somme[i] = 0;
+                minimi[i] = Double.POSITIVE_INFINITY;
+                massimi[i] = Double.NEGATIVE_INFINITY;
+            }
+            conteggi[i]++;
+            somme[i] += valore;
+            if (valore < minimi[i]) minimi[i] = valore;
+            if (valore > massimi[i]) massimi[i] = valore;
+        }
+    }
+}
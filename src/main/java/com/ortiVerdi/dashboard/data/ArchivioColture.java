@@ -0,0 +1,546 @@
+package com.ortiVerdi.dashboard.data;
+
+import com.ortiVerdi.dashboard.model.Coltura;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Archivio colonnare dei dati di produzione: colture (righe) × mesi × metriche.
+ *
+ * Ogni metrica è memorizzata in una colonna contigua di double:
+ * - raccolto e costi: una riga da 12 valori per coltura (indice = riga * 12 + mese)
+ * - prezzo e consumo idrico per kg: un valore per coltura
+ *
+ * Le colonne sono DoubleBuffer, così possono essere sia array in heap sia
+ * regioni di file mappate in memoria. I nomi delle colture sono internati in
+ * un dizionario di id interi: più righe (appezzamenti) possono condividere lo stesso nome.
+ *
+ * Le aggregazioni sono cicli stretti sulle colonne, senza oggetti intermedi.
+ *
+ * Per ogni riga sono mantenute anche le somme annuali di raccolto e costi,
+ * aggiornate per differenza quando una cella cambia: i valori annuali di una
+ * Coltura si leggono in O(1).
+ *
+ * L'archivio è immutabile. Una modifica (metodi con*) restituisce un archivio
+ * nuovo con copia su scrittura: il blocco di RIGHE_BLOCCO righe che contiene la
+ * cella viene copiato in heap e agganciato a una directory a due livelli, copiata
+ * solo lungo il percorso. Il costo è costante per modifica, indipendente dal
+ * numero di righe, e le colonne lette dagli snapshot già pubblicati non vengono
+ * mai scritte. Le colonne mappate in sola lettura si modificano allo stesso modo.
+ */
+public final class ArchivioColture {
+
+    public static final int MESI = 12;
+
+    private final int righe;
+    private final String[] dizionarioNomi;        // id nome -> nome
+    private final Map<String, Integer> idNomi;    // nome -> id nome
+    private final IntBuffer nomeRiga;             // riga -> id nome
+    private final DoubleBuffer prezzi;            // riga -> €/kg
+    private final DoubleBuffer consumoIdricoPerKg;// riga -> litri/kg
+    private final DoubleBuffer raccolto;          // riga * 12 + mese -> kg
+    private final DoubleBuffer costi;             // riga * 12 + mese -> €
+    private final double[] raccoltoAnnuo;         // riga -> somma dei 12 mesi di raccolto
+    private final double[] costoAnnuo;            // riga -> somma dei 12 mesi di costi
+    // Blocchi di righe modificati dopo la costruzione (pagina -> blocco), null se nessuno:
+    // per queste righe prezzi, raccolto, costi e somme annuali si leggono dal blocco
+    private final Blocco[][] blocchi;
+
+    private static final int BIT_BLOCCO = 5;
+    private static final int RIGHE_BLOCCO = 1 << BIT_BLOCCO;
+    private static final int BIT_PAGINA = 10;
+    private static final int BLOCCHI_PAGINA = 1 << BIT_PAGINA;
+
+    ArchivioColture(int righe, String[] dizionarioNomi, IntBuffer nomeRiga,
+                    DoubleBuffer prezzi, DoubleBuffer consumoIdricoPerKg,
+                    DoubleBuffer raccolto, DoubleBuffer costi) {
+        this(righe, dizionarioNomi, null, nomeRiga, prezzi, consumoIdricoPerKg, raccolto, costi, null, null, null);
+    }
+
+    // Con dizionario e somme annuali già calcolati (condivisi con la versione precedente) oppure null per calcolarli
+    private ArchivioColture(int righe, String[] dizionarioNomi, Map<String, Integer> idNomi, IntBuffer nomeRiga,
+                            DoubleBuffer prezzi, DoubleBuffer consumoIdricoPerKg,
+                            DoubleBuffer raccolto, DoubleBuffer costi,
+                            double[] raccoltoAnnuo, double[] costoAnnuo, Blocco[][] blocchi) {
+        if (nomeRiga.limit() < righe || prezzi.limit() < righe || consumoIdricoPerKg.limit() < righe
+                || raccolto.limit() < righe * MESI || costi.limit() < righe * MESI) {
+            throw new IllegalArgumentException("Colonne incoerenti con il numero di righe: " + righe);
+        }
+        this.righe = righe;
+        this.dizionarioNomi = dizionarioNomi;
+        this.nomeRiga = nomeRiga;
+        this.prezzi = prezzi;
+        this.consumoIdricoPerKg = consumoIdricoPerKg;
+        this.raccolto = raccolto;
+        this.costi = costi;
+        this.blocchi = blocchi;
+
+        if (idNomi == null) {
+            idNomi = new HashMap<>(dizionarioNomi.length * 2);
+            for (int i = 0; i < dizionarioNomi.length; i++) idNomi.put(dizionarioNomi[i], i);
+        }
+        this.idNomi = idNomi;
+
+        if (raccoltoAnnuo == null) {
+            raccoltoAnnuo = new double[righe];
+            costoAnnuo = new double[righe];
+            for (int r = 0; r < righe; r++) {
+                int base = r * MESI;
+                double q = 0, c = 0;
+                for (int m = 0; m < MESI; m++) {
+                    q += raccolto.get(base + m);
+                    c += costi.get(base + m);
+                }
+                raccoltoAnnuo[r] = q;
+                costoAnnuo[r] = c;
+            }
+        }
+        this.raccoltoAnnuo = raccoltoAnnuo;
+        this.costoAnnuo = costoAnnuo;
+    }
+
+    public static Builder builder() {
+        return new Builder(16);
+    }
+
+    public static Builder builder(int capacitaIniziale) {
+        return new Builder(capacitaIniziale);
+    }
+
+    // ==============================
+    // Accesso per riga
+    // ==============================
+    public int getNumeroRighe() { return righe; }
+
+    public String getNome(int riga) { return dizionarioNomi[nomeRiga.get(riga)]; }
+
+    public int getIdNome(int riga) { return nomeRiga.get(riga); }
+
+    public double getPrezzo(int riga) {
+        Blocco b = blocco(riga);
+        return b == null ? prezzi.get(riga) : b.prezzi.get(riga & (RIGHE_BLOCCO - 1));
+    }
+
+    public double getConsumoIdricoPerKg(int riga) { return consumoIdricoPerKg.get(riga); }
+
+    /** Raccolto della riga nel mese (indice 0-11) */
+    public double getRaccolto(int riga, int mese) {
+        Blocco b = blocco(riga);
+        return b == null ? raccolto.get(riga * MESI + mese) : b.raccolto.get((riga & (RIGHE_BLOCCO - 1)) * MESI + mese);
+    }
+
+    /** Costo della riga nel mese (indice 0-11) */
+    public double getCosto(int riga, int mese) {
+        Blocco b = blocco(riga);
+        return b == null ? costi.get(riga * MESI + mese) : b.costi.get((riga & (RIGHE_BLOCCO - 1)) * MESI + mese);
+    }
+
+    /** Raccolto annuale della riga (somma mantenuta, O(1)) */
+    public double getRaccoltoAnnuo(int riga) {
+        Blocco b = blocco(riga);
+        return b == null ? raccoltoAnnuo[riga] : b.raccoltoAnnuo[riga & (RIGHE_BLOCCO - 1)];
+    }
+
+    /** Costo annuale della riga (somma mantenuta, O(1)) */
+    public double getCostoAnnuo(int riga) {
+        Blocco b = blocco(riga);
+        return b == null ? costoAnnuo[riga] : b.costoAnnuo[riga & (RIGHE_BLOCCO - 1)];
+    }
+
+    /** Prima riga con il nome indicato, -1 se assente (scansione lineare delle righe) */
+    public int cercaRiga(String nome) {
+        Integer id = idNomi.get(nome);
+        if (id == null) return -1;
+        for (int r = 0; r < righe; r++) {
+            if (nomeRiga.get(r) == id) return r;
+        }
+        return -1;
+    }
+
+    // ==============================
+    // Dizionario dei nomi
+    // ==============================
+    public int getNumeroNomi() { return dizionarioNomi.length; }
+
+    public String getNomeDaId(int idNome) { return dizionarioNomi[idNome]; }
+
+    /** Id del nome internato, -1 se il nome non è presente */
+    public int getIdNome(String nome) {
+        Integer id = idNomi.get(nome);
+        return id != null ? id : -1;
+    }
+
+    // ==============================
+    // Viste Coltura sulle righe
+    // ==============================
+    public Coltura getColtura(int riga) {
+        return new Coltura(this, riga);
+    }
+
+    public List<Coltura> getColture() {
+        Coltura[] viste = new Coltura[righe];
+        for (int r = 0; r < righe; r++) viste[r] = new Coltura(this, r);
+        return List.of(viste);
+    }
+
+    // ==============================
+    // Aggregazioni mensili su tutte le righe
+    // ==============================
+
+    /** Totali mensili (12 valori) della metrica indicata, sommati su tutte le righe */
+    public double[] totaliMensili(Metrica metrica) {
+        double[] totale = new double[MESI];
+        // Un blocco di righe alla volta: dalle colonne di base o dal blocco modificato
+        for (int inizio = 0; inizio < righe; inizio += RIGHE_BLOCCO) {
+            Blocco b = blocco(inizio);
+            DoubleBuffer q = b == null ? raccolto : b.raccolto;
+            DoubleBuffer c = b == null ? costi : b.costi;
+            DoubleBuffer p = b == null ? prezzi : b.prezzi;
+            int s = b == null ? 0 : inizio, fine = Math.min(righe, inizio + RIGHE_BLOCCO);
+            switch (metrica) {
+                case RACCOLTO -> sommaRighe(q, s, inizio, fine, totale);
+                case COSTI -> sommaRighe(c, s, inizio, fine, totale);
+                case PROFITTO -> {
+                    for (int r = inizio; r < fine; r++) {
+                        int base = (r - s) * MESI;
+                        double prezzo = p.get(r - s);
+                        for (int m = 0; m < MESI; m++) {
+                            totale[m] += q.get(base + m) * prezzo - c.get(base + m);
+                        }
+                    }
+                }
+                case CONSUMO_IDRICO -> {
+                    for (int r = inizio; r < fine; r++) {
+                        int base = (r - s) * MESI;
+                        double coeff = consumoIdricoPerKg.get(r);
+                        for (int m = 0; m < MESI; m++) {
+                            totale[m] += q.get(base + m) * coeff;
+                        }
+                    }
+                }
+            }
+        }
+        return totale;
+    }
+
+    /** Tutte le metriche di un mese (1-12) in un solo passaggio sulle colonne */
+    public DatiProduzione aggregaMese(int mese) {
+        if (mese < 1 || mese > MESI) throw new IllegalArgumentException("Mese non valido: " + mese);
+        int idx = mese - 1;
+        double quantita = 0, spese = 0, profitto = 0, consumo = 0;
+
+        for (int inizio = 0; inizio < righe; inizio += RIGHE_BLOCCO) {
+            Blocco b = blocco(inizio);
+            DoubleBuffer qs = b == null ? raccolto : b.raccolto;
+            DoubleBuffer cs = b == null ? costi : b.costi;
+            DoubleBuffer ps = b == null ? prezzi : b.prezzi;
+            int s = b == null ? 0 : inizio, fine = Math.min(righe, inizio + RIGHE_BLOCCO);
+            for (int r = inizio; r < fine; r++) {
+                double q = qs.get((r - s) * MESI + idx);
+                double c = cs.get((r - s) * MESI + idx);
+                quantita += q;
+                spese += c;
+                profitto += q * ps.get(r - s) - c;
+                consumo += q * consumoIdricoPerKg.get(r);
+            }
+        }
+
+        return new DatiProduzione(mese, quantita, consumo, spese, profitto);
+    }
+
+    /** Somma dei 12 valori di una riga per la metrica indicata, ricalcolata dalle celle */
+    public double sommaRiga(Metrica metrica, int riga) {
+        double somma = 0;
+        for (int m = 0; m < MESI; m++) somma += valoreCella(metrica, riga, m);
+        return somma;
+    }
+
+    /** Copia dei 12 valori mensili di una riga (per serializzazione o grafici) */
+    public double[] copiaRiga(Metrica metrica, int riga) {
+        double[] valori = new double[MESI];
+        Blocco b = blocco(riga);
+        int base = (b == null ? riga : riga & (RIGHE_BLOCCO - 1)) * MESI;
+        switch (metrica) {
+            case RACCOLTO -> (b == null ? raccolto : b.raccolto).get(base, valori);
+            case COSTI -> (b == null ? costi : b.costi).get(base, valori);
+            default -> { for (int m = 0; m < MESI; m++) valori[m] = valoreCella(metrica, riga, m); }
+        }
+        return valori;
+    }
+
+    /** Valore di una singola cella (riga, mese 0-11) per qualsiasi metrica */
+    public double valoreCella(Metrica metrica, int riga, int mese) {
+        return switch (metrica) {
+            case RACCOLTO -> getRaccolto(riga, mese);
+            case COSTI -> getCosto(riga, mese);
+            case PROFITTO -> getRaccolto(riga, mese) * getPrezzo(riga) - getCosto(riga, mese);
+            case CONSUMO_IDRICO -> getRaccolto(riga, mese) * consumoIdricoPerKg.get(riga);
+        };
+    }
+
+    // ==============================
+    // Modifiche puntuali: nuovo archivio con la cella (e la somma annuale della
+    // riga) cambiata; questo archivio resta com'è
+    // ==============================
+
+    /** Archivio con il raccolto della riga nel mese (0-11) impostato al valore */
+    public ArchivioColture conRaccolto(int riga, int mese, double valore) {
+        verificaRiga(riga);
+        Blocco b = copiaBlocco(riga);
+        int i = (riga & (RIGHE_BLOCCO - 1)) * MESI + mese;
+        b.raccoltoAnnuo[riga & (RIGHE_BLOCCO - 1)] += valore - b.raccolto.get(i);
+        b.raccolto.put(i, valore);
+        return conBlocco(riga, b);
+    }
+
+    /** Archivio con il costo della riga nel mese (0-11) impostato al valore */
+    public ArchivioColture conCosto(int riga, int mese, double valore) {
+        verificaRiga(riga);
+        Blocco b = copiaBlocco(riga);
+        int i = (riga & (RIGHE_BLOCCO - 1)) * MESI + mese;
+        b.costoAnnuo[riga & (RIGHE_BLOCCO - 1)] += valore - b.costi.get(i);
+        b.costi.put(i, valore);
+        return conBlocco(riga, b);
+    }
+
+    /** Archivio con il prezzo di vendita della riga impostato al valore */
+    public ArchivioColture conPrezzo(int riga, double valore) {
+        verificaRiga(riga);
+        Blocco b = copiaBlocco(riga);
+        b.prezzi.put(riga & (RIGHE_BLOCCO - 1), valore);
+        return conBlocco(riga, b);
+    }
+
+    /** true se le colonne possono essere modificate (false per snapshot mappati in sola lettura) */
+    public boolean isModificabile() {
+        return !(nomeRiga.isReadOnly() || prezzi.isReadOnly() || consumoIdricoPerKg.isReadOnly()
+                || raccolto.isReadOnly() || costi.isReadOnly());
+    }
+
+    /**
+     * Nuovo archivio con una riga in più. Se le colonne hanno spazio libero vengono
+     * condivise (la nuova riga occupa una posizione non visibile alle versioni
+     * precedenti), altrimenti vengono copiate raddoppiando la capacità: il costo
+     * ammortizzato per riga aggiunta è O(1).
+     */
+    public ArchivioColture conNuovaRiga(String nome, double prezzo, double consumoPerKg,
+                                        double[] raccoltoMensile, double[] costiMensili) {
+        ArchivioColture base = (capacita() > righe && isModificabile()) ? this : conCapacita(Math.max(16, righe * 2));
+
+        String[] dizionario = base.dizionarioNomi;
+        Integer id = base.idNomi.get(nome);
+        if (id == null) {
+            id = dizionario.length;
+            dizionario = Arrays.copyOf(dizionario, dizionario.length + 1);
+            dizionario[id] = nome;
+        }
+
+        // Nome e consumo stanno sempre nelle colonne di base; il resto nel blocco
+        // della riga se quel blocco è già stato copiato, altrimenti nelle colonne di base
+        int r = righe;
+        base.nomeRiga.put(r, id);
+        base.consumoIdricoPerKg.put(r, consumoPerKg);
+        Blocco b = base.blocco(r) != null ? base.copiaBlocco(r) : null;
+        DoubleBuffer p = b == null ? base.prezzi : b.prezzi;
+        DoubleBuffer qs = b == null ? base.raccolto : b.raccolto;
+        DoubleBuffer cs = b == null ? base.costi : b.costi;
+        int i = b == null ? r : r & (RIGHE_BLOCCO - 1);
+        p.put(i, prezzo);
+        double q = 0, c = 0;
+        for (int m = 0; m < MESI; m++) {
+            qs.put(i * MESI + m, raccoltoMensile[m]);
+            cs.put(i * MESI + m, costiMensili[m]);
+            q += raccoltoMensile[m];
+            c += costiMensili[m];
+        }
+        (b == null ? base.raccoltoAnnuo : b.raccoltoAnnuo)[i] = q;
+        (b == null ? base.costoAnnuo : b.costoAnnuo)[i] = c;
+
+        Map<String, Integer> nomi = dizionario == base.dizionarioNomi ? base.idNomi : null;
+        Blocco[][] dir = b == null ? base.blocchi : base.conBlocco(r, b).blocchi;
+        return new ArchivioColture(righe + 1, dizionario, nomi, base.nomeRiga, base.prezzi, base.consumoIdricoPerKg,
+                base.raccolto, base.costi, base.raccoltoAnnuo, base.costoAnnuo, dir);
+    }
+
+    // Numero di righe che le colonne possono contenere
+    private int capacita() {
+        return Math.min(Math.min(nomeRiga.limit(), prezzi.limit()), Math.min(consumoIdricoPerKg.limit(),
+                Math.min(Math.min(raccolto.limit(), costi.limit()) / MESI, raccoltoAnnuo.length)));
+    }
+
+    // Copia in heap delle righe esistenti (blocchi modificati compresi), con la capacità indicata
+    private ArchivioColture conCapacita(int capacita) {
+        int[] n = new int[capacita];
+        double[] p = new double[capacita], k = new double[capacita];
+        double[] q = new double[capacita * MESI], c = new double[capacita * MESI];
+        double[] qa = new double[capacita], ca = new double[capacita];
+        nomeRiga.duplicate().limit(righe).position(0).get(n, 0, righe);
+        consumoIdricoPerKg.duplicate().limit(righe).position(0).get(k, 0, righe);
+        for (int inizio = 0; inizio < righe; inizio += RIGHE_BLOCCO) {
+            Blocco b = blocco(inizio);
+            int s = b == null ? inizio : 0, quante = Math.min(righe, inizio + RIGHE_BLOCCO) - inizio;
+            (b == null ? prezzi : b.prezzi).duplicate().position(s).get(p, inizio, quante);
+            (b == null ? raccolto : b.raccolto).duplicate().position(s * MESI).get(q, inizio * MESI, quante * MESI);
+            (b == null ? costi : b.costi).duplicate().position(s * MESI).get(c, inizio * MESI, quante * MESI);
+            System.arraycopy(b == null ? raccoltoAnnuo : b.raccoltoAnnuo, s, qa, inizio, quante);
+            System.arraycopy(b == null ? costoAnnuo : b.costoAnnuo, s, ca, inizio, quante);
+        }
+        return new ArchivioColture(righe, dizionarioNomi, idNomi, IntBuffer.wrap(n), DoubleBuffer.wrap(p),
+                DoubleBuffer.wrap(k), DoubleBuffer.wrap(q), DoubleBuffer.wrap(c), qa, ca, null);
+    }
+
+    // ==============================
+    // Copia su scrittura dei blocchi di righe
+    // ==============================
+
+    // Blocco modificato che contiene la riga, null se la riga sta nelle colonne di base
+    private Blocco blocco(int riga) {
+        Blocco[][] dir = blocchi;
+        if (dir == null) return null;
+        int pagina = riga >>> (BIT_BLOCCO + BIT_PAGINA);
+        if (pagina >= dir.length || dir[pagina] == null) return null;
+        return dir[pagina][(riga >>> BIT_BLOCCO) & (BLOCCHI_PAGINA - 1)];
+    }
+
+    // Copia privata del blocco della riga, con i valori attuali delle righe esistenti
+    private Blocco copiaBlocco(int riga) {
+        int inizio = riga & -RIGHE_BLOCCO, quante = Math.min(righe, inizio + RIGHE_BLOCCO) - inizio;
+        Blocco copia = new Blocco();
+        Blocco b = blocco(riga);
+        int s = b == null ? inizio : 0;
+        (b == null ? prezzi : b.prezzi).duplicate().position(s).get(copia.prezzi.array(), 0, quante);
+        (b == null ? raccolto : b.raccolto).duplicate().position(s * MESI).get(copia.raccolto.array(), 0, quante * MESI);
+        (b == null ? costi : b.costi).duplicate().position(s * MESI).get(copia.costi.array(), 0, quante * MESI);
+        System.arraycopy(b == null ? raccoltoAnnuo : b.raccoltoAnnuo, s, copia.raccoltoAnnuo, 0, quante);
+        System.arraycopy(b == null ? costoAnnuo : b.costoAnnuo, s, copia.costoAnnuo, 0, quante);
+        return copia;
+    }
+
+    // Stesso archivio con il blocco della riga sostituito: si copiano solo la radice e la pagina
+    private ArchivioColture conBlocco(int riga, Blocco blocco) {
+        int pagina = riga >>> (BIT_BLOCCO + BIT_PAGINA);
+        Blocco[][] dir = blocchi == null ? new Blocco[pagina + 1][]
+                : Arrays.copyOf(blocchi, Math.max(blocchi.length, pagina + 1));
+        Blocco[] pag = dir[pagina] == null ? new Blocco[BLOCCHI_PAGINA] : dir[pagina].clone();
+        pag[(riga >>> BIT_BLOCCO) & (BLOCCHI_PAGINA - 1)] = blocco;
+        dir[pagina] = pag;
+        return new ArchivioColture(righe, dizionarioNomi, idNomi, nomeRiga, prezzi, consumoIdricoPerKg,
+                raccolto, costi, raccoltoAnnuo, costoAnnuo, dir);
+    }
+
+    // Colonne modificabili di RIGHE_BLOCCO righe, in heap
+    private static final class Blocco {
+        final DoubleBuffer prezzi = DoubleBuffer.allocate(RIGHE_BLOCCO);
+        final DoubleBuffer raccolto = DoubleBuffer.allocate(RIGHE_BLOCCO * MESI);
+        final DoubleBuffer costi = DoubleBuffer.allocate(RIGHE_BLOCCO * MESI);
+        final double[] raccoltoAnnuo = new double[RIGHE_BLOCCO];
+        final double[] costoAnnuo = new double[RIGHE_BLOCCO];
+    }
+
+    private void verificaRiga(int riga) {
+        if (riga < 0 || riga >= righe) throw new IndexOutOfBoundsException("Riga non valida: " + riga);
+    }
+
+    // ==============================
+    // Accesso alle colonne per la serializzazione (viste indipendenti, stesse celle).
+    // Un archivio con blocchi modificati va prima ricompattato con compatto()
+    // ==============================
+    String[] dizionarioNomi() { return dizionarioNomi.clone(); }
+    IntBuffer colonnaNomi() { return nomeRiga.duplicate(); }
+    DoubleBuffer colonnaPrezzi() { return compatto().prezzi.duplicate(); }
+    DoubleBuffer colonnaConsumoIdrico() { return consumoIdricoPerKg.duplicate(); }
+    DoubleBuffer colonnaRaccolto() { return compatto().raccolto.duplicate(); }
+    DoubleBuffer colonnaCosti() { return compatto().costi.duplicate(); }
+
+    /** Stesso contenuto con tutte le righe nelle colonne di base (questo archivio se non ha blocchi modificati) */
+    ArchivioColture compatto() {
+        return blocchi == null ? this : conCapacita(righe);
+    }
+
+    // Somma colonna per colonna le righe [inizio, fine) da 12 valori; s = prima riga della colonna
+    private static void sommaRighe(DoubleBuffer colonna, int s, int inizio, int fine, double[] totale) {
+        for (int r = inizio; r < fine; r++) {
+            int base = (r - s) * MESI;
+            for (int m = 0; m < MESI; m++) {
+                totale[m] += colonna.get(base + m);
+            }
+        }
+    }
+
+    // ======================================================
+    // Builder: accumula le righe in array primitivi che crescono per raddoppio
+    // ======================================================
+    public static final class Builder {
+        private final Map<String, Integer> idNomi = new HashMap<>();
+        private final List<String> nomi = new ArrayList<>();
+        private int righe;
+        private int[] nomeRiga;
+        private double[] prezzi;
+        private double[] consumo;
+        private double[] raccolto;
+        private double[] costi;
+
+        private Builder(int capacita) {
+            int c = Math.max(1, capacita);
+            nomeRiga = new int[c];
+            prezzi = new double[c];
+            consumo = new double[c];
+            raccolto = new double[c * MESI];
+            costi = new double[c * MESI];
+        }
+
+        /** Aggiunge una riga copiando i 12 valori mensili di raccolto e costi */
+        public Builder aggiungi(String nome, double prezzo, double consumoIdricoPerKg,
+                                double[] raccoltoMensile, double[] costiMensili) {
+            return aggiungi(nome, prezzo, consumoIdricoPerKg, raccoltoMensile, 0, costiMensili, 0);
+        }
+
+        /** Variante con offset, per riutilizzare buffer di lettura senza copie intermedie */
+        public Builder aggiungi(String nome, double prezzo, double consumoIdricoPerKg,
+                                double[] raccoltoMensile, int offRaccolto,
+                                double[] costiMensili, int offCosti) {
+            assicuraCapacita(righe + 1);
+            nomeRiga[righe] = interna(nome);
+            prezzi[righe] = prezzo;
+            consumo[righe] = consumoIdricoPerKg;
+            System.arraycopy(raccoltoMensile, offRaccolto, raccolto, righe * MESI, MESI);
+            System.arraycopy(costiMensili, offCosti, costi, righe * MESI, MESI);
+            righe++;
+            return this;
+        }
+
+        public int getNumeroRighe() { return righe; }
+
+        public ArchivioColture build() {
+            return new ArchivioColture(righe, nomi.toArray(new String[0]),
+                    IntBuffer.wrap(Arrays.copyOf(nomeRiga, righe)),
+                    DoubleBuffer.wrap(Arrays.copyOf(prezzi, righe)),
+                    DoubleBuffer.wrap(Arrays.copyOf(consumo, righe)),
+                    DoubleBuffer.wrap(Arrays.copyOf(raccolto, righe * MESI)),
+                    DoubleBuffer.wrap(Arrays.copyOf(costi, righe * MESI)));
+        }
+
+        // Restituisce l'id del nome, aggiungendolo al dizionario se nuovo
+        private int interna(String nome) {
+            Integer id = idNomi.get(nome);
+            if (id != null) return id;
+            int nuovo = nomi.size();
+            nomi.add(nome);
+            idNomi.put(nome, nuovo);
+            return nuovo;
+        }
+
+        private void assicuraCapacita(int richieste) {
+            if (richieste <= nomeRiga.length) return;
+            int nuova = Math.max(richieste, nomeRiga.length * 2);
+            nomeRiga = Arrays.copyOf(nomeRiga, nuova);
+            prezzi = Arrays.copyOf(prezzi, nuova);
+            consumo = Arrays.copyOf(consumo, nuova);
+            raccolto = Arrays.copyOf(raccolto, nuova * MESI);
+            costi = Arrays.copyOf(costi, nuova * MESI);
+        }
+    }
+}
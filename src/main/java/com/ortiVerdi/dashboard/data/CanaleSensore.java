@@ -0,0 +1,21 @@
+package com.ortiVerdi.dashboard.data;
+
+/**
+ * Canali misurati dai sensori in campo, nello stesso ordine dei campi di DatiAmbientali.
+ */
+public enum CanaleSensore {
+    TEMPERATURA(false),     // °C
+    UMIDITA(false),         // %
+    PRECIPITAZIONI(true),   // mm caduti dalla lettura precedente
+    VENTO(false),           // m/s
+    LUMINOSITA(false);      // lux
+
+    private final boolean cumulativo;
+
+    CanaleSensore(boolean cumulativo) {
+        this.cumulativo = cumulativo;
+    }
+
+    /** true se il valore di un periodo è la somma delle letture (pioggia), false se è la media */
+    public boolean isCumulativo() { return cumulativo; }
+}
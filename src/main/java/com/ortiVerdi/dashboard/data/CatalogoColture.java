@@ -0,0 +1,184 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Catalogo delle colture letto da file (formato di data/catalogo_colture.csv):
+ *
+ *   Nome;Prezzo/Unita;Consumo idrico per kg;Colore;Profilo Gen..Dic (12 colonne)
+ *
+ * Ogni coltura ha un id intero (l'ordine nel file) e tutti i dati stanno in
+ * array indicizzati per id: sul percorso caldo le letture sono accessi diretti.
+ * Il nome serve solo per risalire all'id (una ricerca per riga importata).
+ *
+ * Il catalogo è immutabile. Una ricarica ne crea uno nuovo con versione
+ * maggiore, che viene poi sostituito in blocco (vedi ParametriColture).
+ */
+public final class CatalogoColture {
+
+    public static final int COLONNE = 4 + ArchivioColture.MESI;
+
+    private static final AtomicLong versioni = new AtomicLong();
+    private static final Pattern COLORE = Pattern.compile("#[0-9A-Fa-f]{6}");
+
+    private final long versione;
+    private final String[] nomi;
+    private final double[] prezzi;
+    private final double[] consumoIdricoPerKg;
+    private final String[] colori;
+    private final double[][] profili;            // id -> 12 valori normalizzati 0-1
+    private final Map<String, Integer> indici;
+    private final long impronta;
+
+    private CatalogoColture(String[] nomi, double[] prezzi, double[] consumoIdricoPerKg,
+                            String[] colori, double[][] profili) {
+        this.versione = versioni.incrementAndGet();
+        this.nomi = nomi;
+        this.prezzi = prezzi;
+        this.consumoIdricoPerKg = consumoIdricoPerKg;
+        this.colori = colori;
+        this.profili = profili;
+        this.indici = new HashMap<>(nomi.length * 2);
+        for (int i = 0; i < nomi.length; i++) indici.put(nomi[i], i);
+        this.impronta = calcolaImpronta();
+    }
+
+    // CRC32C dei valori che finiscono negli snapshot (nomi, prezzi, consumo idrico, profili)
+    private long calcolaImpronta() {
+        CRC32C crc = new CRC32C();
+        ByteBuffer valori = ByteBuffer.allocate(8 * (2 + ArchivioColture.MESI));
+        for (int i = 0; i < nomi.length; i++) {
+            crc.update(nomi[i].getBytes(StandardCharsets.UTF_8));
+            valori.clear().putDouble(prezzi[i]).putDouble(consumoIdricoPerKg[i]);
+            for (double v : profili[i]) valori.putDouble(v);
+            crc.update(valori.flip());
+        }
+        return crc.getValue();
+    }
+
+    // ======================================================
+    // Lettura del catalogo: un errore in qualunque riga rifiuta tutto il file,
+    // così un catalogo a metà non viene mai pubblicato
+    // ======================================================
+    public static CatalogoColture carica(InputStream in) throws IOException {
+        BufferedReader lettore = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String[]> righe = new ArrayList<>();
+        String riga = lettore.readLine();   // intestazione
+        if (riga == null) throw new IOException("Catalogo delle colture vuoto");
+        int numero = 1;
+        List<Integer> numeri = new ArrayList<>();
+        while ((riga = lettore.readLine()) != null) {
+            numero++;
+            if (riga.isBlank()) continue;
+            String[] campi = riga.split(";", -1);
+            if (campi.length != COLONNE) {
+                throw new IOException("Riga " + numero + ": attese " + COLONNE + " colonne, trovate " + campi.length);
+            }
+            righe.add(campi);
+            numeri.add(numero);
+        }
+        if (righe.isEmpty()) throw new IOException("Catalogo delle colture senza colture");
+
+        int n = righe.size();
+        String[] nomi = new String[n];
+        double[] prezzi = new double[n];
+        double[] acqua = new double[n];
+        String[] colori = new String[n];
+        double[][] profili = new double[n][ArchivioColture.MESI];
+        Map<String, Integer> visti = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String[] campi = righe.get(i);
+            int numeroRiga = numeri.get(i);
+            nomi[i] = campi[0].trim();
+            if (nomi[i].isEmpty()) throw new IOException("Riga " + numeroRiga + ": nome mancante");
+            if (visti.put(nomi[i], i) != null) throw new IOException("Riga " + numeroRiga + ": coltura ripetuta " + nomi[i]);
+            prezzi[i] = numero(campi[1], numeroRiga);
+            acqua[i] = numero(campi[2], numeroRiga);
+            colori[i] = campi[3].trim();
+            if (!COLORE.matcher(colori[i]).matches()) {
+                throw new IOException("Riga " + numeroRiga + ": colore non valido (atteso #RRGGBB): " + colori[i]);
+            }
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                double v = numero(campi[4 + m], numeroRiga);
+                if (v > 1) throw new IOException("Riga " + numeroRiga + ": profilo oltre 1 nel mese " + (m + 1));
+                profili[i][m] = v;
+            }
+        }
+        return new CatalogoColture(nomi, prezzi, acqua, colori, profili);
+    }
+
+    // Valore numerico non negativo
+    private static double numero(String campo, int riga) throws IOException {
+        double v;
+        try {
+            v = Double.parseDouble(campo.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Riga " + riga + ": valore non numerico '" + campo + "'", e);
+        }
+        if (!(v >= 0) || Double.isInfinite(v)) throw new IOException("Riga " + riga + ": valore non valido " + v);
+        return v;
+    }
+
+    // ==============================
+    // Accesso per id (O(1), nessuna ricerca)
+    // ==============================
+
+    /** Cresce a ogni catalogo caricato: chiave per le cache che dipendono dal catalogo */
+    public long getVersione() { return versione; }
+
+    /** Dipende solo dal contenuto: due cataloghi uguali hanno la stessa impronta */
+    public long getImpronta() { return impronta; }
+
+    public int getNumeroColture() { return nomi.length; }
+
+    public String getNome(int id) { return nomi[id]; }
+
+    public double getPrezzoUnitario(int id) { return prezzi[id]; }
+
+    public double getConsumoIdricoPerKg(int id) { return consumoIdricoPerKg[id]; }
+
+    /** Colore dei grafici, es. "#FF0000" */
+    public String getColore(int id) { return colori[id]; }
+
+    /** Profilo stagionale (array condiviso: non va modificato) */
+    public double[] getProfiloStagionale(int id) { return profili[id]; }
+
+    // ==============================
+    // Ricerca per nome
+    // ==============================
+
+    /** Id della coltura; -1 se non è nel catalogo */
+    public int indice(String nome) {
+        Integer i = indici.get(nome);
+        return i != null ? i : -1;
+    }
+
+    /** Consumo idrico per kg della coltura; 0 se non è nel catalogo */
+    public double getConsumoIdricoPerKg(String nome) {
+        int i = indice(nome);
+        return i >= 0 ? consumoIdricoPerKg[i] : 0.0;
+    }
+
+    /** Nomi delle colture in ordine di id */
+    public List<String> getNomi() {
+        return List.of(nomi);
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogoColture[versione=" + versione + ", colture=" + Arrays.toString(nomi) + "]";
+    }
+}
@@ -0,0 +1,25 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Elenco delle partizioni (azienda, anno) disponibili e caricamento di una singola partizione.
+ */
+public interface CatalogoPartizioni {
+
+    /** Partizioni disponibili, in ordine di azienda e anno */
+    List<ChiavePartizione> elenca();
+
+    /**
+     * Carica i dati di una partizione.
+     *
+     * @throws NoSuchElementException se la partizione non esiste
+     */
+    DatiPartizione carica(ChiavePartizione chiave) throws IOException;
+
+    default boolean contiene(ChiavePartizione chiave) {
+        return elenca().contains(chiave);
+    }
+}
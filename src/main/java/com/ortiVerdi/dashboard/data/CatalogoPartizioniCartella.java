@@ -0,0 +1,84 @@
+package com.ortiVerdi.dashboard.data;
+
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Partizioni lette da una cartella con una sottocartella per azienda
+ * e un file per anno:
+ *
+ *   radice/Azienda Nord/2019.snap   snapshot binario (mappato in memoria, preferito)
+ *   radice/Azienda Nord/2020.csv    CSV nel formato di dati_colture.csv
+ *
+ * L'elenco viene letto dalla cartella a ogni chiamata, quindi i nuovi file
+ * sono visibili senza riavvio.
+ */
+public class CatalogoPartizioniCartella implements CatalogoPartizioni {
+
+    private static final Pattern FILE_ANNO = Pattern.compile("(\\d{4})\\.(snap|csv)");
+
+    private final Path radice;
+    private final boolean aggregaAppezzamenti;
+
+    public CatalogoPartizioniCartella(Path radice, boolean aggregaAppezzamenti) {
+        this.radice = radice.toAbsolutePath().normalize();
+        this.aggregaAppezzamenti = aggregaAppezzamenti;
+    }
+
+    @Override
+    public List<ChiavePartizione> elenca() {
+        List<ChiavePartizione> elenco = new ArrayList<>();
+        if (!Files.isDirectory(radice)) return elenco;
+        try (DirectoryStream<Path> aziende = Files.newDirectoryStream(radice, Files::isDirectory)) {
+            for (Path cartella : aziende) {
+                try (DirectoryStream<Path> file = Files.newDirectoryStream(cartella)) {
+                    for (Path f : file) {
+                        Matcher m = FILE_ANNO.matcher(f.getFileName().toString());
+                        if (!m.matches()) continue;
+                        ChiavePartizione k = new ChiavePartizione(cartella.getFileName().toString(), Integer.parseInt(m.group(1)));
+                        if (!elenco.contains(k)) elenco.add(k);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lettura della cartella partizioni " + radice + " fallita", e);
+        }
+        Collections.sort(elenco);
+        return elenco;
+    }
+
+    @Override
+    public boolean contiene(ChiavePartizione chiave) {
+        return file(chiave, "snap") != null || file(chiave, "csv") != null;
+    }
+
+    @Override
+    public DatiPartizione carica(ChiavePartizione chiave) throws IOException {
+        Path snap = file(chiave, "snap");
+        if (snap != null) {
+            SnapshotBinario binario = SnapshotBinario.leggi(snap, true);
+            return new DatiPartizione(binario.getArchivio(), binario.getDatiAmbientali());
+        }
+        Path csv = file(chiave, "csv");
+        if (csv == null) throw new NoSuchElementException("Partizione non trovata: " + chiave);
+        return new DatiPartizione(new SorgenteDatiCsv(new FileSystemResource(csv), aggregaAppezzamenti).carica(), null);
+    }
+
+    // File della partizione, null se assente o fuori dalla cartella radice
+    private Path file(ChiavePartizione chiave, String estensione) {
+        Path f = radice.resolve(chiave.getAzienda()).resolve(chiave.getAnno() + "." + estensione).normalize();
+        if (!f.startsWith(radice) || !f.getParent().getParent().equals(radice)) return null;
+        return Files.isRegularFile(f) ? f : null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Partizioni generate dal simulatore: ogni (azienda, anno) ha un seme fisso,
+ * quindi ricaricare una partizione espulsa dalla memoria restituisce gli stessi dati.
+ */
+public class CatalogoPartizioniSimulate implements CatalogoPartizioni {
+
+    private final List<ChiavePartizione> partizioni;
+
+    public CatalogoPartizioniSimulate(List<String> aziende, int annoDa, int annoA) {
+        List<ChiavePartizione> elenco = new ArrayList<>();
+        for (String azienda : aziende) {
+            if (azienda.isBlank()) continue;
+            for (int anno = annoDa; anno <= annoA; anno++) elenco.add(new ChiavePartizione(azienda, anno));
+        }
+        Collections.sort(elenco);
+        this.partizioni = List.copyOf(elenco);
+    }
+
+    @Override
+    public List<ChiavePartizione> elenca() {
+        return partizioni;
+    }
+
+    @Override
+    public boolean contiene(ChiavePartizione chiave) {
+        return Collections.binarySearch(partizioni, chiave) >= 0;
+    }
+
+    @Override
+    public DatiPartizione carica(ChiavePartizione chiave) {
+        if (!contiene(chiave)) throw new NoSuchElementException("Partizione non trovata: " + chiave);
+        return new DatiPartizione(new SorgenteDatiSimulati(seme(chiave)).carica(), null);
+    }
+
+    /** Seme deterministico della partizione */
+    public static long seme(ChiavePartizione chiave) {
+        return chiave.getAzienda().hashCode() * 1_000_003L + chiave.getAnno();
+    }
+}
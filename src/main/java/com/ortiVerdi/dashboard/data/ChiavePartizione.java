@@ -0,0 +1,48 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.util.Objects;
+
+/**
+ * Identifica una partizione dei dati: un'azienda agricola in un anno.
+ */
+public final class ChiavePartizione implements Comparable<ChiavePartizione> {
+
+    private final String azienda;
+    private final int anno;
+
+    public ChiavePartizione(String azienda, int anno) {
+        if (azienda == null || azienda.isBlank()) throw new IllegalArgumentException("Azienda mancante");
+        if (anno < 1900 || anno > 9999) throw new IllegalArgumentException("Anno non valido: " + anno);
+        this.azienda = azienda.trim();
+        this.anno = anno;
+    }
+
+    public String getAzienda() { return azienda; }
+
+    public int getAnno() { return anno; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChiavePartizione)) return false;
+        ChiavePartizione altra = (ChiavePartizione) o;
+        return anno == altra.anno && azienda.equals(altra.azienda);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(azienda, anno);
+    }
+
+    // Ordine per azienda e poi per anno
+    @Override
+    public int compareTo(ChiavePartizione altra) {
+        int c = azienda.compareTo(altra.azienda);
+        return c != 0 ? c : Integer.compare(anno, altra.anno);
+    }
+
+    @Override
+    public String toString() {
+        return azienda + "/" + anno;
+    }
+}
@@ -0,0 +1,22 @@
+package com.ortiVerdi.dashboard.data;
+
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+
+/**
+ * Dati caricati per una partizione: colture ed eventualmente i dati
+ * ambientali dei 12 mesi (null se la sorgente non li contiene).
+ */
+public class DatiPartizione {
+    private final ArchivioColture archivio;
+    private final DatiAmbientali[] datiAmbientali;
+
+    public DatiPartizione(ArchivioColture archivio, DatiAmbientali[] datiAmbientali) {
+        this.archivio = archivio;
+        this.datiAmbientali = datiAmbientali;
+    }
+
+    public ArchivioColture getArchivio() { return archivio; }
+
+    /** Dati ambientali (indici 0-11) oppure null */
+    public DatiAmbientali[] getDatiAmbientali() { return datiAmbientali; }
+}
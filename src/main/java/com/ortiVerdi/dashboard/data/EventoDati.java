@@ -0,0 +1,208 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Modifica dei dati da rendere persistente: raccolto e/o costi di una riga in
+ * un mese, un prezzo, una coltura nuova, un lotto di letture di un canale di
+ * un sensore o lo stato completo di un canale (scritto dal checkpoint).
+ *
+ * Le modifiche alle colture vengono scritte nell'ordine in cui sono state
+ * applicate (l'ordine delle versioni degli snapshot: AggiornamentiService le
+ * accoda sotto il lock di scrittura di SimulatoreService) e, al riavvio,
+ * riapplicate nello stesso ordine sui dati caricati dalla sorgente.
+ * La codifica binaria (scrivi/leggi) è quella usata da RegistroFile.
+ */
+public final class EventoDati {
+
+    public enum Tipo { MESE, PREZZO, COLTURA, LETTURE, SENSORE }
+
+    private static final Tipo[] TIPI = Tipo.values();
+    private static final CanaleSensore[] CANALI = CanaleSensore.values();
+
+    private final Tipo tipo;
+    private final String nome;          // coltura o appezzamento
+    private final int riga;             // riga dell'archivio (mese e prezzo)
+    private final int mese;             // 1-12 (mese)
+    private final double valore;        // raccolto del mese (NaN se invariato) o prezzo
+    private final double costo;         // costi del mese, NaN se invariati
+    private final double consumoIdricoPerKg;
+    private final double[] raccoltoMensile;
+    private final double[] costiMensili;
+    private final CanaleSensore canale; // lotto di letture, stato del canale
+    private final long[] istanti;       // lotto di letture
+    private final double[] valori;      // lotto di letture
+    private final byte[] stato;         // stato del canale (StazioneSensori.salvaCanale)
+
+    // Modifiche alle colture
+    private EventoDati(Tipo tipo, String nome, int riga, int mese, double valore, double costo,
+                       double consumoIdricoPerKg, double[] raccoltoMensile, double[] costiMensili) {
+        this(tipo, nome, riga, mese, valore, costo, consumoIdricoPerKg, raccoltoMensile, costiMensili,
+                null, null, null, null);
+    }
+
+    private EventoDati(Tipo tipo, String nome, int riga, int mese, double valore, double costo,
+                       double consumoIdricoPerKg, double[] raccoltoMensile, double[] costiMensili,
+                       CanaleSensore canale, long[] istanti, double[] valori, byte[] stato) {
+        this.tipo = tipo;
+        this.nome = nome;
+        this.riga = riga;
+        this.mese = mese;
+        this.valore = valore;
+        this.costo = costo;
+        this.consumoIdricoPerKg = consumoIdricoPerKg;
+        this.raccoltoMensile = raccoltoMensile;
+        this.costiMensili = costiMensili;
+        this.canale = canale;
+        this.istanti = istanti;
+        this.valori = valori;
+        this.stato = stato;
+    }
+
+    // ==============================
+    // Costruzione per tipo
+    // ==============================
+    // Mese e prezzo indicano la riga dell'archivio; il nome della coltura in
+    // quella riga serve a riconoscere, al ripristino, una riga che nel
+    // frattempo contiene un'altra coltura
+
+    /** Raccolto e costi di una riga in un mese, in un solo evento: NaN = valore invariato */
+    public static EventoDati mese(int riga, String coltura, int mese, double raccolto, double costi) {
+        return new EventoDati(Tipo.MESE, coltura, riga, mese, raccolto, costi, 0, null, null);
+    }
+
+    public static EventoDati prezzo(int riga, String coltura, double prezzo) {
+        return new EventoDati(Tipo.PREZZO, coltura, riga, 0, prezzo, Double.NaN, 0, null, null);
+    }
+
+    /** Coltura nuova: gli array vengono copiati */
+    public static EventoDati coltura(String coltura, double prezzo, double consumoIdricoPerKg,
+                                     double[] raccoltoMensile, double[] costiMensili) {
+        return new EventoDati(Tipo.COLTURA, coltura, 0, 0, prezzo, Double.NaN, consumoIdricoPerKg,
+                raccoltoMensile.clone(), costiMensili.clone());
+    }
+
+    /** Lotto di letture di un canale, dalla più vecchia: gli array non vengono copiati */
+    public static EventoDati letture(String appezzamento, CanaleSensore canale, long[] istanti, double[] valori) {
+        if (istanti.length != valori.length) throw new IllegalArgumentException("Istanti e valori di lunghezza diversa");
+        return new EventoDati(Tipo.LETTURE, appezzamento, 0, 0, 0, Double.NaN, 0, null, null, canale,
+                istanti, valori, null);
+    }
+
+    /** Stato completo di un canale di un appezzamento (StazioneSensori.salvaCanale) */
+    public static EventoDati sensore(String appezzamento, CanaleSensore canale, byte[] stato) {
+        return new EventoDati(Tipo.SENSORE, appezzamento, 0, 0, 0, Double.NaN, 0, null, null, canale,
+                null, null, stato);
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public Tipo getTipo() { return tipo; }
+    public String getNome() { return nome; }
+    public int getRiga() { return riga; }
+    public int getMese() { return mese; }
+    /** Raccolto del mese (NaN se invariato) o prezzo di vendita */
+    public double getValore() { return valore; }
+    /** Costi del mese, NaN se invariati */
+    public double getCosto() { return costo; }
+    public double getConsumoIdricoPerKg() { return consumoIdricoPerKg; }
+    public double[] getRaccoltoMensile() { return raccoltoMensile.clone(); }
+    public double[] getCostiMensili() { return costiMensili.clone(); }
+    public CanaleSensore getCanale() { return canale; }
+    /** Istanti del lotto di letture (condivisi, da non modificare) */
+    public long[] getIstanti() { return istanti; }
+    /** Valori del lotto di letture (condivisi, da non modificare) */
+    public double[] getValori() { return valori; }
+    /** Stato del canale (condiviso, da non modificare) */
+    public byte[] getStato() { return stato; }
+
+    // ======================================================
+    // Codifica binaria: tipo, nome, poi solo i campi del tipo
+    // ======================================================
+    public void scrivi(DataOutput out) throws IOException {
+        out.writeByte(tipo.ordinal());
+        out.writeUTF(nome);
+        switch (tipo) {
+            case MESE -> {
+                out.writeInt(riga);
+                out.writeByte(mese);
+                out.writeDouble(valore);
+                out.writeDouble(costo);
+            }
+            case PREZZO -> {
+                out.writeInt(riga);
+                out.writeDouble(valore);
+            }
+            case COLTURA -> {
+                out.writeDouble(valore);
+                out.writeDouble(consumoIdricoPerKg);
+                for (double v : raccoltoMensile) out.writeDouble(v);
+                for (double v : costiMensili) out.writeDouble(v);
+            }
+            case LETTURE -> {
+                out.writeByte(canale.ordinal());
+                out.writeInt(istanti.length);
+                for (int i = 0; i < istanti.length; i++) {
+                    out.writeLong(istanti[i]);
+                    out.writeDouble(valori[i]);
+                }
+            }
+            case SENSORE -> {
+                out.writeByte(canale.ordinal());
+                out.writeInt(stato.length);
+                out.write(stato);
+            }
+        }
+    }
+
+    public static EventoDati leggi(DataInput in) throws IOException {
+        int t = in.readUnsignedByte();
+        if (t >= TIPI.length) throw new IOException("Tipo di evento sconosciuto: " + t);
+        String nome = in.readUTF();
+        return switch (TIPI[t]) {
+            case MESE -> mese(in.readInt(), nome, in.readUnsignedByte(), in.readDouble(), in.readDouble());
+            case PREZZO -> prezzo(in.readInt(), nome, in.readDouble());
+            case COLTURA -> {
+                double prezzo = in.readDouble(), consumo = in.readDouble();
+                double[] raccolto = new double[ArchivioColture.MESI], costi = new double[ArchivioColture.MESI];
+                for (int m = 0; m < ArchivioColture.MESI; m++) raccolto[m] = in.readDouble();
+                for (int m = 0; m < ArchivioColture.MESI; m++) costi[m] = in.readDouble();
+                yield new EventoDati(Tipo.COLTURA, nome, 0, 0, prezzo, Double.NaN, consumo, raccolto, costi);
+            }
+            case LETTURE -> {
+                CanaleSensore canale = leggiCanale(in);
+                int n = in.readInt();
+                if (n < 0) throw new IOException("Lotto di letture non valido: " + n);
+                long[] istanti = new long[n];
+                double[] valori = new double[n];
+                for (int i = 0; i < n; i++) {
+                    istanti[i] = in.readLong();
+                    valori[i] = in.readDouble();
+                }
+                yield letture(nome, canale, istanti, valori);
+            }
+            case SENSORE -> {
+                CanaleSensore canale = leggiCanale(in);
+                int n = in.readInt();
+                if (n < 0) throw new IOException("Stato del canale non valido: " + n);
+                byte[] stato = new byte[n];
+                in.readFully(stato);
+                yield sensore(nome, canale, stato);
+            }
+        };
+    }
+
+    private static CanaleSensore leggiCanale(DataInput in) throws IOException {
+        int c = in.readUnsignedByte();
+        if (c >= CANALI.length) throw new IOException("Canale sconosciuto: " + c);
+        return CANALI[c];
+    }
+
+    @Override
+    public String toString() {
+        return "EventoDati[" + tipo + " " + nome + "]";
+    }
+}
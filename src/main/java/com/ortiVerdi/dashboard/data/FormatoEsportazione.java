@@ -0,0 +1,33 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Formati di esportazione delle tabelle, con tipo MIME ed estensione del file.
+ */
+public enum FormatoEsportazione {
+    CSV("text/csv;charset=UTF-8", "csv"),
+    COLONNARE("application/octet-stream", "ovcl");
+
+    private final String tipoMime;
+    private final String estensione;
+
+    FormatoEsportazione(String tipoMime, String estensione) {
+        this.tipoMime = tipoMime;
+        this.estensione = estensione;
+    }
+
+    public String getTipoMime() { return tipoMime; }
+
+    public String getEstensione() { return estensione; }
+
+    /** Scrittore sullo stream; excel = true aggiunge il BOM UTF-8 al CSV (ignorato per il colonnare) */
+    public ScrittoreTabella apri(OutputStream out, List<ScrittoreTabella.Colonna> colonne, boolean excel) throws IOException {
+        return switch (this) {
+            case CSV -> new ScrittoreCsv(out, colonne, excel);
+            case COLONNARE -> new ScrittoreColonnare(out, colonne);
+        };
+    }
+}
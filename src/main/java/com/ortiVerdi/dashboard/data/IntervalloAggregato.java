@@ -0,0 +1,31 @@
+package com.ortiVerdi.dashboard.data;
+
+/**
+ * Statistiche delle letture di un sensore in un intervallo di tempo
+ * (un minuto, un'ora, un giorno o un mese).
+ */
+public class IntervalloAggregato {
+    private final long inizio;       // millisecondi epoch UTC
+    private final long conteggio;
+    private final double somma;
+    private final double minimo;
+    private final double massimo;
+
+    public IntervalloAggregato(long inizio, long conteggio, double somma, double minimo, double massimo) {
+        this.inizio = inizio;
+        this.conteggio = conteggio;
+        this.somma = somma;
+        this.minimo = minimo;
+        this.massimo = massimo;
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public long getInizio() { return inizio; }
+    public long getConteggio() { return conteggio; }
+    public double getSomma() { return somma; }
+    public double getMedia() { return somma / conteggio; }
+    public double getMinimo() { return minimo; }
+    public double getMassimo() { return massimo; }
+}
@@ -0,0 +1,160 @@
+package com.ortiVerdi.dashboard.data;
+
+import com.ortiVerdi.dashboard.data.ScrittoreTabella.Colonna;
+import com.ortiVerdi.dashboard.data.ScrittoreTabella.TipoColonna;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Lettore del formato colonnare di ScrittoreColonnare, un gruppo di righe alla
+ * volta: il gestore riceve per ogni colonna un String[], long[] o double[]
+ * (secondo il tipo) con i valori del gruppo, validi solo durante la chiamata.
+ */
+public final class LettoreColonnare {
+
+    /** Riceve le colonne decodificate di un gruppo di righe */
+    @FunctionalInterface
+    public interface GestoreGruppo {
+        void gruppo(int righe, Object[] colonne) throws IOException;
+    }
+
+    private static final TipoColonna[] TIPI = TipoColonna.values();
+
+    private final DataInputStream in;
+    private final List<Colonna> colonne;
+
+    /** Legge subito l'intestazione; lo stream non viene chiuso */
+    public LettoreColonnare(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (this.in.readInt() != ScrittoreColonnare.MAGIC) throw new IOException("Non è un file colonnare OVCL");
+        int versione = this.in.readInt();
+        if (versione != ScrittoreColonnare.VERSIONE_FORMATO) {
+            throw new IOException("Versione del formato non supportata: " + versione);
+        }
+        int n = this.in.readInt();
+        List<Colonna> elenco = new ArrayList<>(n);
+        for (int c = 0; c < n; c++) {
+            int tipo = this.in.readUnsignedByte();
+            if (tipo >= TIPI.length) throw new IOException("Tipo di colonna sconosciuto: " + tipo);
+            elenco.add(new Colonna(this.in.readUTF(), TIPI[tipo]));
+        }
+        this.colonne = List.copyOf(elenco);
+    }
+
+    public List<Colonna> getColonne() { return colonne; }
+
+    /** Legge tutti i gruppi fino alla chiusura e restituisce il numero di righe */
+    public long leggi(GestoreGruppo gestore) throws IOException {
+        Object[] valori = new Object[colonne.size()];
+        byte[] compressi = new byte[0], codificati = new byte[0];
+        Inflater decompressore = new Inflater();
+        long totale = 0;
+        try {
+            int righe;
+            while ((righe = in.readInt()) > 0) {
+                if (righe > ScrittoreColonnare.RIGHE_PER_GRUPPO) throw new IOException("Gruppo di " + righe + " righe");
+                for (int c = 0; c < valori.length; c++) {
+                    int lunghezza = in.readInt(), lunghezzaCompressa = in.readInt();
+                    if (compressi.length < lunghezzaCompressa) compressi = new byte[lunghezzaCompressa];
+                    if (codificati.length < lunghezza) codificati = new byte[lunghezza];
+                    in.readFully(compressi, 0, lunghezzaCompressa);
+                    decompressore.reset();
+                    decompressore.setInput(compressi, 0, lunghezzaCompressa);
+                    if (decompressore.inflate(codificati, 0, lunghezza) != lunghezza || !decompressore.finished()) {
+                        throw new IOException("Colonna " + colonne.get(c).nome() + " danneggiata");
+                    }
+                    valori[c] = decodifica(colonne.get(c).tipo(), new Codificati(codificati, lunghezza), righe);
+                }
+                gestore.gruppo(righe, valori);
+                totale += righe;
+            }
+            if (righe < 0) throw new IOException("Numero di righe non valido: " + righe);
+        } catch (DataFormatException e) {
+            throw new IOException("Dati compressi non validi", e);
+        } finally {
+            decompressore.end();
+        }
+        if (in.readLong() != totale || in.readInt() != ScrittoreColonnare.MAGIC) {
+            throw new IOException("Chiusura del file mancante o non coerente: file troncato?");
+        }
+        return totale;
+    }
+
+    private static Object decodifica(TipoColonna tipo, Codificati d, int righe) throws IOException {
+        switch (tipo) {
+            case TESTO -> {
+                String[] dizionario = new String[(int) d.varint()];
+                for (int i = 0; i < dizionario.length; i++) {
+                    int n = (int) d.varint();
+                    dizionario[i] = new String(d.dati, d.posizione(n), n, StandardCharsets.UTF_8);
+                }
+                String[] v = new String[righe];
+                for (int r = 0; r < righe; r++) v[r] = dizionario[(int) d.varint()];
+                return v;
+            }
+            case INTERO -> {
+                long[] v = new long[righe];
+                long precedente = 0;
+                for (int r = 0; r < righe; r++) {
+                    long z = d.varint();
+                    precedente += (z >>> 1) ^ -(z & 1);
+                    v[r] = precedente;
+                }
+                return v;
+            }
+            default -> {
+                double[] v = new double[righe];
+                long precedente = 0;
+                for (int r = 0; r < righe; r++) {
+                    precedente ^= d.long_();
+                    v[r] = Double.longBitsToDouble(precedente);
+                }
+                return v;
+            }
+        }
+    }
+
+    // Cursore sui byte decodificati di una colonna, con controllo dei limiti
+    private static final class Codificati {
+        final byte[] dati;
+        final int fine;
+        int pos;
+
+        Codificati(byte[] dati, int fine) {
+            this.dati = dati;
+            this.fine = fine;
+        }
+
+        int posizione(int n) throws IOException {
+            if (n < 0 || pos + n > fine) throw new IOException("Colonna troncata");
+            int p = pos;
+            pos += n;
+            return p;
+        }
+
+        long varint() throws IOException {
+            long v = 0;
+            for (int s = 0; s < 64; s += 7) {
+                byte b = dati[posizione(1)];
+                v |= (long) (b & 0x7F) << s;
+                if (b >= 0) return v;
+            }
+            throw new IOException("Varint non valido");
+        }
+
+        long long_() throws IOException {
+            int p = posizione(8);
+            long v = 0;
+            for (int i = 0; i < 8; i++) v = (v << 8) | (dati[p + i] & 0xFF);
+            return v;
+        }
+    }
+}
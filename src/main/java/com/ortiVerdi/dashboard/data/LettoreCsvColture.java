@@ -0,0 +1,252 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lettore in streaming dei CSV delle colture (formato di dati_colture.csv):
+ *
+ *   Nome;Prezzo/Unita;Raccolto Gen..Dic (12 colonne);Costo Gen..Dic (12 colonne)
+ *
+ * Il file viene letto a blocchi in un buffer di byte riutilizzato: non viene mai
+ * caricato per intero e i numeri sono convertiti direttamente dai byte, senza
+ * creare una String per ogni campo. I nomi delle colture vengono internati,
+ * quindi si alloca una String solo la prima volta che un nome compare.
+ *
+ * Ogni riga letta viene passata al GestoreRiga con array riutilizzati:
+ * il gestore deve copiarne il contenuto se vuole conservarlo.
+ */
+public final class LettoreCsvColture {
+
+    public static final int COLONNE = 2 + 2 * ArchivioColture.MESI;
+
+    private static final byte SEPARATORE = ';';
+    private static final int BUFFER_INIZIALE = 1 << 16;
+    private static final int LUNGHEZZA_MAX_RIGA = 1 << 20;
+
+    // Potenze di dieci rappresentabili esattamente come double (percorso veloce di conversione)
+    private static final double[] POTENZE_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Riceve una riga del CSV già convertita in valori primitivi */
+    @FunctionalInterface
+    public interface GestoreRiga {
+        void riga(String nome, double prezzo, double[] raccolto, double[] costi);
+    }
+
+    private final boolean intestazione;
+    private final NomiInternati nomi = new NomiInternati();
+    private final int[] inizioCampi = new int[COLONNE + 1];
+    private final int[] fineCampi = new int[COLONNE + 1];
+    private final double[] raccolto = new double[ArchivioColture.MESI];
+    private final double[] costi = new double[ArchivioColture.MESI];
+
+    /**
+     * @param intestazione true se la prima riga del file contiene i nomi delle colonne
+     */
+    public LettoreCsvColture(boolean intestazione) {
+        this.intestazione = intestazione;
+    }
+
+    /**
+     * Legge tutto lo stream, riga per riga, passando ogni riga al gestore.
+     * Lo stream non viene chiuso.
+     */
+    public StatisticheImportazione leggi(InputStream in, GestoreRiga gestore) throws IOException {
+        long inizio = System.nanoTime();
+        byte[] buf = new byte[BUFFER_INIZIALE];
+        int inizioRiga = 0, fineDati = 0, scansione = 0;
+        long numeroRiga = 0, righe = 0, byteLetti = 0;
+        boolean fineStream = false;
+
+        while (true) {
+            // Cerca la fine della riga corrente nei dati già presenti nel buffer
+            int fineRiga = -1;
+            for (; scansione < fineDati; scansione++) {
+                if (buf[scansione] == '\n') { fineRiga = scansione; break; }
+            }
+
+            if (fineRiga < 0) {
+                if (fineStream) {
+                    if (inizioRiga < fineDati) {
+                        // Ultima riga senza terminatore
+                        numeroRiga++;
+                        if (elabora(buf, inizioRiga, fineDati, numeroRiga, gestore)) righe++;
+                    }
+                    break;
+                }
+                // Compatta il residuo all'inizio del buffer e lo riempie di nuovo
+                int residuo = fineDati - inizioRiga;
+                if (residuo == buf.length) {
+                    if (buf.length >= LUNGHEZZA_MAX_RIGA) {
+                        throw new IOException("Riga " + (numeroRiga + 1) + ": lunghezza oltre " + LUNGHEZZA_MAX_RIGA + " byte");
+                    }
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                } else if (inizioRiga > 0) {
+                    System.arraycopy(buf, inizioRiga, buf, 0, residuo);
+                }
+                scansione -= inizioRiga;
+                inizioRiga = 0;
+                fineDati = residuo;
+                int n = in.read(buf, fineDati, buf.length - fineDati);
+                if (n < 0) fineStream = true;
+                else { fineDati += n; byteLetti += n; }
+                continue;
+            }
+
+            numeroRiga++;
+            if (elabora(buf, inizioRiga, fineRiga, numeroRiga, gestore)) righe++;
+            inizioRiga = fineRiga + 1;
+            scansione = inizioRiga;
+        }
+
+        return new StatisticheImportazione(righe, byteLetti, System.nanoTime() - inizio);
+    }
+
+    // ======================================================
+    // Divide la riga nei campi e converte i valori; false se la riga è saltata
+    // ======================================================
+    private boolean elabora(byte[] buf, int inizio, int fine, long numeroRiga, GestoreRiga gestore) throws IOException {
+        if (fine > inizio && buf[fine - 1] == '\r') fine--;                 // terminatore Windows
+        if (numeroRiga == 1 && fine - inizio >= 3
+                && buf[inizio] == (byte) 0xEF && buf[inizio + 1] == (byte) 0xBB && buf[inizio + 2] == (byte) 0xBF) {
+            inizio += 3;                                                   // BOM UTF-8
+        }
+        if (numeroRiga == 1 && intestazione) return false;
+        if (fine <= inizio) return false;                                   // riga vuota
+
+        int campi = 0;
+        inizioCampi[0] = inizio;
+        for (int i = inizio; i < fine; i++) {
+            if (buf[i] == SEPARATORE) {
+                if (campi == COLONNE - 1) {
+                    throw new IOException("Riga " + numeroRiga + ": più di " + COLONNE + " colonne");
+                }
+                fineCampi[campi++] = i;
+                inizioCampi[campi] = i + 1;
+            }
+        }
+        fineCampi[campi++] = fine;
+        if (campi != COLONNE) {
+            throw new IOException("Riga " + numeroRiga + ": attese " + COLONNE + " colonne, trovate " + campi);
+        }
+
+        String nome = nomi.interna(buf, inizioCampi[0], fineCampi[0]);
+        double prezzo = numero(buf, inizioCampi[1], fineCampi[1], numeroRiga);
+        for (int m = 0; m < ArchivioColture.MESI; m++) {
+            raccolto[m] = numero(buf, inizioCampi[2 + m], fineCampi[2 + m], numeroRiga);
+            costi[m] = numero(buf, inizioCampi[2 + ArchivioColture.MESI + m], fineCampi[2 + ArchivioColture.MESI + m], numeroRiga);
+        }
+
+        gestore.riga(nome, prezzo, raccolto, costi);
+        return true;
+    }
+
+    // ======================================================
+    // Conversione di un numero decimale direttamente dai byte.
+    // Accetta '.' o ',' come separatore decimale; un campo vuoto vale 0.
+    // ======================================================
+    static double numero(byte[] buf, int inizio, int fine, long numeroRiga) throws IOException {
+        while (inizio < fine && buf[inizio] == ' ') inizio++;
+        while (fine > inizio && buf[fine - 1] == ' ') fine--;
+        if (inizio == fine) return 0;
+
+        int i = inizio;
+        boolean negativo = false;
+        if (buf[i] == '-' || buf[i] == '+') { negativo = buf[i] == '-'; i++; }
+
+        long mantissa = 0;
+        int cifre = 0, decimali = 0;
+        boolean virgola = false, esatto = true;
+
+        for (; i < fine; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                if (cifre < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) cifre++;
+                    if (virgola) decimali++;
+                } else {
+                    esatto = false;
+                }
+            } else if ((b == '.' || b == ',') && !virgola) {
+                virgola = true;
+            } else if (b == 'e' || b == 'E') {
+                esatto = false;
+                break;
+            } else {
+                throw new IOException("Riga " + numeroRiga + ": valore numerico non valido '"
+                        + new String(buf, inizio, fine - inizio, StandardCharsets.UTF_8) + "'");
+            }
+        }
+
+        if (esatto && mantissa < (1L << 53) && decimali < POTENZE_10.length) {
+            // Percorso veloce: mantissa e potenza di dieci sono esatte, la divisione è arrotondata correttamente
+            double valore = mantissa / POTENZE_10[decimali];
+            return negativo ? -valore : valore;
+        }
+
+        // Caso raro (molte cifre o esponente): conversione standard
+        String testo = new String(buf, inizio, fine - inizio, StandardCharsets.US_ASCII).replace(',', '.');
+        try {
+            return Double.parseDouble(testo);
+        } catch (NumberFormatException e) {
+            throw new IOException("Riga " + numeroRiga + ": valore numerico non valido '" + testo + "'", e);
+        }
+    }
+
+    // ======================================================
+    // Tabella di internamento dei nomi: evita di creare una String per ogni riga
+    // quando lo stesso nome si ripete (tipico negli export per appezzamento)
+    // ======================================================
+    private static final class NomiInternati {
+        private byte[][] chiavi = new byte[64][];
+        private String[] valori = new String[64];
+        private int dimensione;
+
+        String interna(byte[] buf, int inizio, int fine) {
+            // Rimuove spazi e virgolette esterne
+            while (inizio < fine && buf[inizio] == ' ') inizio++;
+            while (fine > inizio && buf[fine - 1] == ' ') fine--;
+            if (fine - inizio >= 2 && buf[inizio] == '"' && buf[fine - 1] == '"') { inizio++; fine--; }
+
+            int hash = 1;
+            for (int i = inizio; i < fine; i++) hash = 31 * hash + buf[i];
+            int maschera = chiavi.length - 1;
+            int pos = (hash ^ (hash >>> 16)) & maschera;
+
+            while (chiavi[pos] != null) {
+                if (Arrays.equals(chiavi[pos], 0, chiavi[pos].length, buf, inizio, fine)) return valori[pos];
+                pos = (pos + 1) & maschera;
+            }
+
+            String nome = new String(buf, inizio, fine - inizio, StandardCharsets.UTF_8);
+            chiavi[pos] = Arrays.copyOfRange(buf, inizio, fine);
+            valori[pos] = nome;
+            if (++dimensione * 2 > chiavi.length) raddoppia();
+            return nome;
+        }
+
+        private void raddoppia() {
+            byte[][] vecchieChiavi = chiavi;
+            String[] vecchiValori = valori;
+            chiavi = new byte[vecchieChiavi.length * 2][];
+            valori = new String[vecchieChiavi.length * 2];
+            int maschera = chiavi.length - 1;
+            for (int j = 0; j < vecchieChiavi.length; j++) {
+                byte[] k = vecchieChiavi[j];
+                if (k == null) continue;
+                int hash = 1;
+                for (byte b : k) hash = 31 * hash + b;
+                int pos = (hash ^ (hash >>> 16)) & maschera;
+                while (chiavi[pos] != null) pos = (pos + 1) & maschera;
+                chiavi[pos] = k;
+                valori[pos] = vecchiValori[j];
+            }
+        }
+    }
+}
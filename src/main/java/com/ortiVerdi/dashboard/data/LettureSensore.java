@@ -0,0 +1,17 @@
+package com.ortiVerdi.dashboard.data;
+
+/**
+ * Copia delle ultime letture grezze di un canale, dalla più vecchia alla più recente.
+ */
+public class LettureSensore {
+    private final long[] istanti;
+    private final double[] valori;
+
+    public LettureSensore(long[] istanti, double[] valori) {
+        this.istanti = istanti;
+        this.valori = valori;
+    }
+
+    public long[] getIstanti() { return istanti; }
+    public double[] getValori() { return valori; }
+}
@@ -0,0 +1,15 @@
+package com.ortiVerdi.dashboard.data;
+
+/**
+ * Metriche mensili disponibili per ogni coltura dell'archivio colonnare.
+ * - RACCOLTO: quantità raccolta (kg)
+ * - COSTI: costi di produzione (€)
+ * - PROFITTO: raccolto * prezzo - costi (€)
+ * - CONSUMO_IDRICO: raccolto * consumo per kg (litri)
+ */
+public enum Metrica {
+    RACCOLTO,
+    COSTI,
+    PROFITTO,
+    CONSUMO_IDRICO
+}
@@ -0,0 +1,72 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Parametri di riferimento delle colture gestite dall'azienda:
+ * nomi, prezzi unitari, profili stagionali, consumo idrico per kg e colori.
+ *
+ * Sono condivisi dalle sorgenti dati: il simulatore li usa per generare
+ * raccolti e costi, l'importazione CSV per completare il consumo idrico
+ * (che il file non contiene).
+ *
+ * I valori vengono dal CatalogoColture corrente, letto da file
+ * (data/catalogo_colture.csv nel classpath finché non ne viene impostato un
+ * altro). Una ricarica sostituisce il catalogo con un'unica scrittura volatile:
+ * chi fa più letture legate tra loro prende getCatalogo() una volta e lavora
+ * su quello, così una ricarica a metà operazione non mescola due versioni.
+ */
+public final class ParametriColture {
+
+    private static final String CATALOGO_PREDEFINITO = "/data/catalogo_colture.csv";
+
+    private static volatile CatalogoColture catalogo = caricaPredefinito();
+
+    private ParametriColture() { }
+
+    /** Catalogo corrente (una sola lettura volatile) */
+    public static CatalogoColture getCatalogo() { return catalogo; }
+
+    /** Pubblica un nuovo catalogo: le letture successive vedono solo quello */
+    public static void impostaCatalogo(CatalogoColture nuovo) {
+        if (nuovo == null) throw new IllegalArgumentException("Catalogo mancante");
+        catalogo = nuovo;
+    }
+
+    public static int getNumeroColture() { return catalogo.getNumeroColture(); }
+
+    public static String getNome(int i) { return catalogo.getNome(i); }
+
+    public static double getPrezzoUnitario(int i) { return catalogo.getPrezzoUnitario(i); }
+
+    /** Indice della coltura; -1 se la coltura non è censita */
+    public static int indice(String nome) { return catalogo.indice(nome); }
+
+    public static double getConsumoIdricoPerKg(int i) { return catalogo.getConsumoIdricoPerKg(i); }
+
+    /** Consumo idrico per kg della coltura; 0 se la coltura non è censita */
+    public static double getConsumoIdricoPerKg(String nome) { return catalogo.getConsumoIdricoPerKg(nome); }
+
+    /** Profilo stagionale per indice (array condiviso: non va modificato) */
+    public static double[] getProfiloStagionale(int i) { return catalogo.getProfiloStagionale(i); }
+
+    // ======================================================
+    // Restituisce il profilo stagionale di una coltura (array di zeri se non censita)
+    // ======================================================
+    public static double[] getProfiloStagionale(String nome) {
+        CatalogoColture c = catalogo;
+        int i = c.indice(nome);
+        return i >= 0 ? c.getProfiloStagionale(i) : new double[ArchivioColture.MESI];
+    }
+
+    private static CatalogoColture caricaPredefinito() {
+        try (InputStream in = ParametriColture.class.getResourceAsStream(CATALOGO_PREDEFINITO)) {
+            if (in == null) throw new IOException("Risorsa " + CATALOGO_PREDEFINITO + " non trovata");
+            return CatalogoColture.carica(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Catalogo delle colture predefinito non leggibile", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.ortiVerdi.dashboard.data;
+
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Archivio persistente delle modifiche ai dati (colture, produzione mensile,
+ * letture dei sensori). L'implementazione si sceglie con ortiverdi.persistenza.tipo
+ * (vedi PersistenzaConfig): registro su file (predefinito) o nessuna.
+ *
+ * Le scritture arrivano a lotti da un solo thread (PersistenzaService): un
+ * lotto è durevole quando scrivi() ritorna. rileggi() restituisce gli eventi
+ * in ordine di scrittura e viene chiamato all'avvio, prima di nuove scritture.
+ *
+ * Checkpoint: uno stato completo (archivio, dati ambientali e gli eventi da cui
+ * ripartire, es. lo stato dei sensori) sostituisce tutti gli eventi scritti
+ * fino a quel momento, così il registro non cresce senza limiti e il ripristino
+ * riparte dall'ultimo checkpoint.
+ */
+public interface Persistenza extends Closeable {
+
+    /** Nome dell'implementazione, per log e metriche */
+    String getNome();
+
+    /** Scrive un lotto di eventi in un'unica operazione (group commit) */
+    void scrivi(List<EventoDati> lotto) throws IOException;
+
+    /** Passa al consumatore tutti gli eventi salvati, in ordine; restituisce quanti sono */
+    long rileggi(Consumer<EventoDati> consumatore) throws IOException;
+
+    /** false per l'implementazione che non salva nulla: chi scrive può evitare il lavoro */
+    default boolean isAttiva() { return true; }
+
+    /** Salva il checkpoint e ricomincia il registro dai suoi eventi (di base non supportato: non fa nulla) */
+    default void salvaCheckpoint(Checkpoint checkpoint) throws IOException { }
+
+    /** Archivio e dati ambientali dell'ultimo checkpoint, null se non ce n'è uno */
+    default SnapshotBinario leggiCheckpoint() throws IOException { return null; }
+
+    /** Byte occupati dagli eventi salvati dopo l'ultimo checkpoint */
+    default long getDimensione() { return 0; }
+
+    /**
+     * Stato completo da salvare: versione dello snapshot da cui è preso (gli
+     * eventi fino a quella versione sono già inclusi), impronta della sorgente e
+     * del catalogo da cui viene l'archivio, archivio, dati ambientali dei 12
+     * mesi ed eventi con cui ricomincia il registro.
+     */
+    record Checkpoint(long versione, long impronta, ArchivioColture archivio, DatiAmbientali[] ambientali,
+                      List<EventoDati> eventi) { }
+}
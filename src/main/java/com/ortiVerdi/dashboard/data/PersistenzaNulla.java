@@ -0,0 +1,26 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Persistenza disattivata: nessun evento viene salvato, i dati restano solo in
+ * memoria come prima (ortiverdi.persistenza.tipo=nessuna, e nei test).
+ */
+public final class PersistenzaNulla implements Persistenza {
+
+    @Override
+    public String getNome() { return "nessuna"; }
+
+    @Override
+    public void scrivi(List<EventoDati> lotto) { }
+
+    @Override
+    public long rileggi(Consumer<EventoDati> consumatore) { return 0; }
+
+    @Override
+    public boolean isAttiva() { return false; }
+
+    @Override
+    public void close() { }
+}
@@ -0,0 +1,267 @@
+package com.ortiVerdi.dashboard.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistenza su un registro binario in sola aggiunta (append-only log).
+ *
+ * Layout (little endian):
+ *   intestazione (16 byte): magic "OVRG", versione formato, generazione long
+ *   record: lunghezza int, checksum CRC32C int, evento (EventoDati.scrivi)
+ *
+ * Ogni lotto diventa una sola write sul canale seguita, se sincronizza è
+ * attivo, da un solo force(): il costo di fsync è diviso fra tutti gli eventi
+ * del lotto (group commit). Un crash durante una scrittura può lasciare in
+ * fondo un record incompleto o con checksum errato: all'apertura il file viene
+ * letto fino all'ultimo record valido e troncato lì, così il registro riparte
+ * sempre da uno stato coerente.
+ *
+ * Checkpoint: l'archivio va in uno SnapshotBinario accanto al registro
+ * (registro.checkpoint-N), poi il registro viene riscritto con la generazione N
+ * e i soli eventi del checkpoint e sostituito con una rinomina atomica. La
+ * generazione nell'intestazione dice quale snapshot vale: un crash fra le due
+ * scritture lascia il registro precedente con il suo snapshot, ancora coerenti.
+ */
+public final class RegistroFile implements Persistenza {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistroFile.class);
+
+    public static final int MAGIC = 0x4752564F;   // "OVRG" letto in little endian
+    public static final int VERSIONE_FORMATO = 1;
+    private static final int INTESTAZIONE = 16;
+    private static final int INTESTAZIONE_RECORD = 8;
+    private static final int RECORD_MASSIMO = 1 << 20;
+
+    private final Path file;
+    private final boolean sincronizza;
+    private FileChannel canale;
+    private long inizio;               // primo record (dopo l'intestazione)
+    private long fine;                 // fine dell'ultimo record valido
+    private long generazione;          // checkpoint a cui si applicano gli eventi, 0 = nessuno
+    private long troncati;             // byte scartati all'apertura
+
+    public RegistroFile(Path file, boolean sincronizza) throws IOException {
+        this.file = file;
+        this.sincronizza = sincronizza;
+        Path cartella = file.toAbsolutePath().getParent();
+        if (cartella != null) Files.createDirectories(cartella);
+        this.canale = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            apri();
+        } catch (IOException e) {
+            canale.close();
+            throw e;
+        }
+        eliminaCheckpointSuperati();
+    }
+
+    // ======================================================
+    // Apertura: scrive l'intestazione su un file nuovo, altrimenti la verifica
+    // e tronca l'eventuale coda non valida lasciata da un crash
+    // ======================================================
+    private void apri() throws IOException {
+        long dimensione = canale.size();
+        if (dimensione == 0) {
+            scriviTutto(intestazione(0), 0);
+            canale.force(true);
+            inizio = fine = INTESTAZIONE;
+            return;
+        }
+        ByteBuffer intestazione = leggiEsatti(0, INTESTAZIONE);
+        if (intestazione == null || intestazione.getInt() != MAGIC) throw new IOException("File non riconosciuto: " + file);
+        int versione = intestazione.getInt();
+        if (versione != VERSIONE_FORMATO) throw new IOException("Versione del registro non supportata: " + versione);
+        generazione = intestazione.getLong();
+        inizio = INTESTAZIONE;
+
+        fine = inizio;
+        while (true) {
+            ByteBuffer record = leggiRecord(fine);
+            if (record == null) break;
+            fine += INTESTAZIONE_RECORD + record.remaining();
+        }
+        if (fine < dimensione) {
+            troncati = dimensione - fine;
+            log.warn("Registro {}: {} byte non validi in fondo al file (scrittura interrotta), troncati", file, troncati);
+            canale.truncate(fine);
+            canale.force(true);
+        }
+    }
+
+    @Override
+    public String getNome() { return "file"; }
+
+    // ======================================================
+    // Un lotto = un buffer, una write e al massimo un force
+    // ======================================================
+    @Override
+    public synchronized void scrivi(List<EventoDati> lotto) throws IOException {
+        if (lotto.isEmpty()) return;
+        byte[] dati = codifica(lotto);
+        scriviTutto(ByteBuffer.wrap(dati), fine);
+        if (sincronizza) canale.force(false);
+        fine += dati.length;
+    }
+
+    // ======================================================
+    // Rilettura di tutti i record validi, in ordine di scrittura
+    // ======================================================
+    @Override
+    public synchronized long rileggi(Consumer<EventoDati> consumatore) throws IOException {
+        long posizione = inizio, eventi = 0;
+        while (posizione < fine) {
+            ByteBuffer record = leggiRecord(posizione);
+            if (record == null) throw new IOException("Registro " + file + " modificato durante la rilettura");
+            posizione += INTESTAZIONE_RECORD + record.remaining();
+            consumatore.accept(EventoDati.leggi(new DataInputStream(
+                    new ByteArrayInputStream(record.array(), record.position(), record.remaining()))));
+            eventi++;
+        }
+        return eventi;
+    }
+
+    // ======================================================
+    // Checkpoint: snapshot della nuova generazione, poi registro nuovo con i
+    // soli eventi del checkpoint al posto di quello vecchio (rinomina atomica)
+    // ======================================================
+    @Override
+    public synchronized void salvaCheckpoint(Checkpoint checkpoint) throws IOException {
+        long nuova = generazione + 1;
+        SnapshotBinario.scrivi(fileCheckpoint(nuova), checkpoint.archivio(), checkpoint.ambientali(), checkpoint.impronta());
+
+        byte[] eventi = codifica(checkpoint.eventi());
+        Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel nuovo = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer intestazione = intestazione(nuova);
+            while (intestazione.hasRemaining()) nuovo.write(intestazione);
+            ByteBuffer dati = ByteBuffer.wrap(eventi);
+            while (dati.hasRemaining()) nuovo.write(dati);
+            nuovo.force(true);
+        }
+        canale.close();
+        try {
+            Files.move(temporaneo, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // Il registro nuovo oppure, se la rinomina è fallita, quello di prima
+            canale = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        long vecchia = generazione;
+        generazione = nuova;
+        inizio = INTESTAZIONE;
+        fine = INTESTAZIONE + eventi.length;
+        if (vecchia > 0) Files.deleteIfExists(fileCheckpoint(vecchia));
+    }
+
+    @Override
+    public synchronized SnapshotBinario leggiCheckpoint() throws IOException {
+        return generazione == 0 ? null : SnapshotBinario.leggi(fileCheckpoint(generazione), true);
+    }
+
+    /** Dimensione del registro in byte */
+    @Override
+    public synchronized long getDimensione() { return fine; }
+
+    /** Generazione del checkpoint a cui si applicano gli eventi (0 = nessun checkpoint) */
+    public synchronized long getGenerazione() { return generazione; }
+
+    /** Byte non validi scartati all'apertura (0 se il file era integro) */
+    public long getTroncati() { return troncati; }
+
+    @Override
+    public synchronized void close() throws IOException {
+        canale.close();
+    }
+
+    // Snapshot dell'archivio per una generazione di checkpoint, accanto al registro
+    private Path fileCheckpoint(long generazione) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint-" + generazione);
+    }
+
+    // Snapshot di checkpoint di altre generazioni lasciati da un crash: non servono più
+    private void eliminaCheckpointSuperati() {
+        Path cartella = file.toAbsolutePath().getParent();
+        String prefisso = file.getFileName() + ".checkpoint-";
+        try (DirectoryStream<Path> vecchi = Files.newDirectoryStream(cartella, p -> {
+            String nome = p.getFileName().toString();
+            return nome.startsWith(prefisso) && !nome.equals(prefisso + generazione);
+        })) {
+            for (Path vecchio : vecchi) Files.deleteIfExists(vecchio);
+        } catch (IOException e) {
+            log.warn("Pulizia dei checkpoint superati di {} non riuscita: {}", file, e.getMessage());
+        }
+    }
+
+    private static ByteBuffer intestazione(long generazione) {
+        ByteBuffer intestazione = ByteBuffer.allocate(INTESTAZIONE).order(ByteOrder.LITTLE_ENDIAN);
+        return intestazione.putInt(MAGIC).putInt(VERSIONE_FORMATO).putLong(generazione).flip();
+    }
+
+    // Record consecutivi (lunghezza, checksum, evento) degli eventi indicati
+    private static byte[] codifica(List<EventoDati> lotto) throws IOException {
+        ByteArrayOutputStream byteLotto = new ByteArrayOutputStream(lotto.size() * 48);
+        ByteArrayOutputStream byteEvento = new ByteArrayOutputStream(64);
+        DataOutputStream evento = new DataOutputStream(byteEvento);
+        ByteBuffer intestazione = ByteBuffer.allocate(INTESTAZIONE_RECORD).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C crc = new CRC32C();
+        for (EventoDati e : lotto) {
+            byteEvento.reset();
+            e.scrivi(evento);
+            if (byteEvento.size() > RECORD_MASSIMO) {
+                throw new IOException("Evento " + e + " troppo grande: " + byteEvento.size() + " byte");
+            }
+            crc.reset();
+            crc.update(byteEvento.toByteArray());
+            intestazione.clear();
+            intestazione.putInt(byteEvento.size()).putInt((int) crc.getValue());
+            byteLotto.write(intestazione.array());
+            byteEvento.writeTo(byteLotto);
+        }
+        return byteLotto.toByteArray();
+    }
+
+    // Record valido alla posizione indicata (solo l'evento), null se incompleto o corrotto
+    private ByteBuffer leggiRecord(long posizione) throws IOException {
+        ByteBuffer intestazione = leggiEsatti(posizione, INTESTAZIONE_RECORD);
+        if (intestazione == null) return null;
+        int lunghezza = intestazione.getInt();
+        int checksum = intestazione.getInt();
+        if (lunghezza <= 0 || lunghezza > RECORD_MASSIMO) return null;
+        ByteBuffer evento = leggiEsatti(posizione + INTESTAZIONE_RECORD, lunghezza);
+        if (evento == null) return null;
+        CRC32C crc = new CRC32C();
+        crc.update(evento.array(), 0, lunghezza);
+        return (int) crc.getValue() == checksum ? evento : null;
+    }
+
+    // Esattamente n byte dalla posizione indicata, null se il file finisce prima
+    private ByteBuffer leggiEsatti(long posizione, int n) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(n).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (canale.read(buffer, posizione + buffer.position()) < 0) return null;
+        }
+        return buffer.flip();
+    }
+
+    private void scriviTutto(ByteBuffer dati, long posizione) throws IOException {
+        while (dati.hasRemaining()) canale.write(dati, posizione + dati.position());
+    }
+}
@@ -0,0 +1,26 @@
+package com.ortiVerdi.dashboard.data;
+
+/**
+ * Risoluzioni degli aggregati dei sensori, con la durata di un intervallo
+ * e quanti intervalli vengono conservati. I confini sono in UTC.
+ */
+public enum RisoluzioneTemporale {
+    MINUTO(60_000L, 120),          // ultime 2 ore
+    ORA(3_600_000L, 72),           // ultimi 3 giorni
+    GIORNO(86_400_000L, 62),       // ultimi 2 mesi
+    MESE(0L, 24);                  // mesi di calendario, durata variabile
+
+    private final long durataMillis;
+    private final int intervalli;
+
+    RisoluzioneTemporale(long durataMillis, int intervalli) {
+        this.durataMillis = durataMillis;
+        this.intervalli = intervalli;
+    }
+
+    /** Durata fissa in millisecondi; 0 per i mesi */
+    public long getDurataMillis() { return durataMillis; }
+
+    /** Numero di intervalli conservati */
+    public int getIntervalli() { return intervalli; }
+}
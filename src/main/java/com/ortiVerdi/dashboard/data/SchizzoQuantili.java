@@ -0,0 +1,174 @@
+package com.ortiVerdi.dashboard.data;
+
+/**
+ * Sketch dei quantili con errore relativo garantito (schema DDSketch).
+ *
+ * Ogni valore finisce in un bucket logaritmico: il bucket i copre
+ * (gamma^(i-1), gamma^i] con gamma = (1 + a) / (1 - a), quindi qualunque quantile
+ * viene restituito con errore relativo al massimo a. Servono solo i contatori dei
+ * bucket (poche centinaia di long per valori da 1e-9 a 1e12), non i valori.
+ * Due sketch con la stessa accuratezza si uniscono sommando i contatori:
+ * l'unione è esatta, commutativa e associativa, quindi il risultato non dipende
+ * dall'ordine in cui i thread uniscono i parziali.
+ *
+ * I valori negativi usano un secondo insieme di bucket sul valore assoluto;
+ * quelli vicini a zero (|v| < 1e-9) un contatore a parte. Non è thread-safe.
+ */
+public final class SchizzoQuantili {
+
+    private static final double MINIMO_INDICIZZABILE = 1e-9;
+
+    private final double accuratezza;
+    private final double logGamma;
+    private final Bucket positivi = new Bucket();
+    private final Bucket negativi = new Bucket();
+    private long zeri;
+    private long conteggio;
+    private double minimo = Double.POSITIVE_INFINITY;
+    private double massimo = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param accuratezza errore relativo massimo dei quantili, es. 0.01 per l'1%
+     */
+    public SchizzoQuantili(double accuratezza) {
+        if (!(accuratezza > 0 && accuratezza < 1)) {
+            throw new IllegalArgumentException("Accuratezza non valida: " + accuratezza);
+        }
+        this.accuratezza = accuratezza;
+        this.logGamma = Math.log((1 + accuratezza) / (1 - accuratezza));
+    }
+
+    public void aggiungi(double valore) {
+        if (Double.isNaN(valore) || Double.isInfinite(valore)) {
+            throw new IllegalArgumentException("Valore non valido: " + valore);
+        }
+        if (valore > MINIMO_INDICIZZABILE) {
+            positivi.aggiungi(indice(valore), 1);
+        } else if (valore < -MINIMO_INDICIZZABILE) {
+            negativi.aggiungi(indice(-valore), 1);
+        } else {
+            zeri++;
+        }
+        conteggio++;
+        if (valore < minimo) minimo = valore;
+        if (valore > massimo) massimo = valore;
+    }
+
+    /** Aggiunge a questo sketch tutti i valori di un altro (stessa accuratezza) */
+    public void unisci(SchizzoQuantili altro) {
+        if (altro.accuratezza != accuratezza) {
+            throw new IllegalArgumentException("Sketch con accuratezza diversa: " + altro.accuratezza);
+        }
+        positivi.unisci(altro.positivi);
+        negativi.unisci(altro.negativi);
+        zeri += altro.zeri;
+        conteggio += altro.conteggio;
+        minimo = Math.min(minimo, altro.minimo);
+        massimo = Math.max(massimo, altro.massimo);
+    }
+
+    /**
+     * Quantile q (0-1) dei valori aggiunti; NaN se lo sketch è vuoto.
+     * Il valore restituito resta sempre tra il minimo e il massimo osservati.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile non valido: " + q);
+        if (conteggio == 0) return Double.NaN;
+        long rango = (long) (q * (conteggio - 1));
+
+        double valore;
+        long contati = negativi.totale;
+        if (rango < contati) {
+            // Negativi dal più grande in valore assoluto (il più piccolo) verso zero
+            valore = -valoreBucket(negativi.indiceDalFondo(rango));
+        } else if (rango < contati + zeri) {
+            valore = 0;
+        } else {
+            valore = valoreBucket(positivi.indiceDallInizio(rango - contati - zeri));
+        }
+        return Math.max(minimo, Math.min(massimo, valore));
+    }
+
+    public long getConteggio() { return conteggio; }
+
+    public double getAccuratezza() { return accuratezza; }
+
+    private int indice(double valoreAssoluto) {
+        return (int) Math.ceil(Math.log(valoreAssoluto) / logGamma);
+    }
+
+    // Valore rappresentativo del bucket: a distanza relativa "accuratezza" da entrambi gli estremi
+    private double valoreBucket(int indice) {
+        return 2 * Math.exp(indice * logGamma) / (1 + Math.exp(logGamma));
+    }
+
+    // ======================================================
+    // Contatori densi per un intervallo contiguo di indici di bucket
+    // ======================================================
+    private static final class Bucket {
+        private static final int MARGINE = 32;
+
+        long[] contatori = new long[0];
+        int base;          // indice del bucket in contatori[0]
+        long totale;
+
+        void aggiungi(int indice, long n) {
+            if (contatori.length == 0) {
+                contatori = new long[2 * MARGINE];
+                base = indice - MARGINE;
+            } else if (indice < base || indice >= base + contatori.length) {
+                estendi(Math.min(indice, base), Math.max(indice, base + contatori.length - 1));
+            }
+            contatori[indice - base] += n;
+            totale += n;
+        }
+
+        void unisci(Bucket altro) {
+            if (altro.totale == 0) return;
+            if (contatori.length == 0) {
+                contatori = altro.contatori.clone();
+                base = altro.base;
+            } else {
+                estendi(Math.min(base, altro.base),
+                        Math.max(base + contatori.length, altro.base + altro.contatori.length) - 1);
+                for (int i = 0; i < altro.contatori.length; i++) contatori[altro.base + i - base] += altro.contatori[i];
+            }
+            totale += altro.totale;
+        }
+
+        // Indice del bucket che contiene il valore di rango dato, contando dal bucket più basso
+        int indiceDallInizio(long rango) {
+            long cumulato = 0;
+            for (int i = 0; i < contatori.length; i++) {
+                cumulato += contatori[i];
+                if (cumulato > rango) return base + i;
+            }
+            return base + contatori.length - 1;
+        }
+
+        // Come sopra ma contando dal bucket più alto (per i negativi)
+        int indiceDalFondo(long rango) {
+            long cumulato = 0;
+            for (int i = contatori.length - 1; i >= 0; i--) {
+                cumulato += contatori[i];
+                if (cumulato > rango) return base + i;
+            }
+            return base;
+        }
+
+        private void estendi(int minimo, int massimo) {
+            if (minimo >= base && massimo < base + contatori.length) return;
+            int nuovaBase = minimo - MARGINE;
+            long[] nuovi = new long[massimo - nuovaBase + 1 + MARGINE];
+            System.arraycopy(contatori, 0, nuovi, base - nuovaBase, contatori.length);
+            contatori = nuovi;
+            base = nuovaBase;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SchizzoQuantili{conteggio=" + conteggio + ", bucket=" + (positivi.contatori.length + negativi.contatori.length)
+                + ", minimo=" + minimo + ", massimo=" + massimo + ", p50=" + quantile(0.5) + "}";
+    }
+}
@@ -0,0 +1,257 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Formato colonnare compresso per l'esportazione, sullo stile di Parquet ma
+ * senza dipendenze: le righe sono raccolte in gruppi e ogni colonna di un
+ * gruppo viene codificata e compressa separatamente, così valori simili
+ * (stessa coltura, istanti consecutivi, raccolti dello stesso ordine di
+ * grandezza) finiscono vicini e si comprimono bene.
+ *
+ * Layout (big endian, come DataOutput):
+ *   "OVCL", versione formato, numero colonne, per colonna tipo (byte) e nome (UTF)
+ *   per ogni gruppo: righe (int > 0), poi per ogni colonna
+ *     lunghezza codificata (int), lunghezza compressa (int), byte Deflate
+ *   chiusura: 0 (int), righe totali (long), "OVCL"
+ *
+ * Codifica di una colonna prima della compressione:
+ *   TESTO     dizionario del gruppo (voci e lunghezze varint, byte UTF-8) e indici varint
+ *   INTERO    differenza dalla riga precedente, zigzag varint
+ *   DECIMALE  bit XOR con il valore precedente (8 byte): valori vicini hanno
+ *             segno, esponente e prime cifre uguali, quindi byte alti a zero
+ *
+ * In memoria c'è un solo gruppo alla volta: l'heap usato dipende dalla
+ * dimensione del gruppo, non dal numero di righe. Si rilegge con LettoreColonnare.
+ */
+public final class ScrittoreColonnare implements ScrittoreTabella {
+
+    public static final int MAGIC = 0x4F56434C;   // "OVCL"
+    public static final int VERSIONE_FORMATO = 1;
+    public static final int RIGHE_PER_GRUPPO = 8192;
+
+    private final List<Colonna> colonne;
+    private final ContatoreByte contatore;
+    private final DataOutputStream out;
+    private final Object[] valori;
+    private final Deflater compressore = new Deflater(Deflater.BEST_SPEED);
+    private final Map<String, Integer> dizionario = new HashMap<>();
+    private final int[] indici = new int[RIGHE_PER_GRUPPO];
+    private final Buffer codificati = new Buffer(1 << 16);
+    private final Buffer compressi = new Buffer(1 << 16);
+    private int riga;
+    private int colonna;
+    private long righeTotali;
+
+    public ScrittoreColonnare(OutputStream out, List<Colonna> colonne) throws IOException {
+        if (colonne.isEmpty()) throw new IllegalArgumentException("Nessuna colonna");
+        this.colonne = List.copyOf(colonne);
+        this.contatore = new ContatoreByte(out);
+        this.out = new DataOutputStream(new BufferedOutputStream(contatore, 1 << 16));
+        this.valori = new Object[colonne.size()];
+        for (int c = 0; c < valori.length; c++) {
+            valori[c] = switch (colonne.get(c).tipo()) {
+                case TESTO -> new String[RIGHE_PER_GRUPPO];
+                case INTERO -> new long[RIGHE_PER_GRUPPO];
+                case DECIMALE -> new double[RIGHE_PER_GRUPPO];
+            };
+        }
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSIONE_FORMATO);
+        this.out.writeInt(colonne.size());
+        for (Colonna c : colonne) {
+            this.out.writeByte(c.tipo().ordinal());
+            this.out.writeUTF(c.nome());
+        }
+    }
+
+    @Override
+    public void testo(String valore) {
+        ((String[]) prossimo(TipoColonna.TESTO))[riga] = valore != null ? valore : "";
+    }
+
+    @Override
+    public void intero(long valore) {
+        ((long[]) prossimo(TipoColonna.INTERO))[riga] = valore;
+    }
+
+    @Override
+    public void decimale(double valore) {
+        ((double[]) prossimo(TipoColonna.DECIMALE))[riga] = valore;
+    }
+
+    @Override
+    public void fineRiga() throws IOException {
+        if (colonna != colonne.size()) {
+            throw new IllegalStateException("Riga con " + colonna + " campi su " + colonne.size());
+        }
+        colonna = 0;
+        if (++riga == RIGHE_PER_GRUPPO) scriviGruppo();
+    }
+
+    @Override
+    public void chiudi() throws IOException {
+        if (colonna != 0) throw new IllegalStateException("Riga incompleta");
+        if (riga > 0) scriviGruppo();
+        out.writeInt(0);
+        out.writeLong(righeTotali);
+        out.writeInt(MAGIC);
+        out.flush();
+        close();
+    }
+
+    // Il Deflater tiene memoria nativa finché non viene chiamato end() (anche più volte)
+    @Override
+    public void close() {
+        compressore.end();
+    }
+
+    @Override
+    public long getByteScritti() { return contatore.scritti; }
+
+    private Object prossimo(TipoColonna tipo) {
+        if (colonna == colonne.size()) throw new IllegalStateException("Troppi campi nella riga");
+        Colonna c = colonne.get(colonna);
+        if (c.tipo() != tipo) {
+            throw new IllegalStateException("La colonna " + c.nome() + " è di tipo " + c.tipo() + ", non " + tipo);
+        }
+        return valori[colonna++];
+    }
+
+    // ======================================================
+    // Codifica e compressione delle colonne del gruppo corrente
+    // ======================================================
+    private void scriviGruppo() throws IOException {
+        out.writeInt(riga);
+        for (int c = 0; c < valori.length; c++) {
+            codificati.lunghezza = 0;
+            switch (colonne.get(c).tipo()) {
+                case TESTO -> codificaTesti((String[]) valori[c]);
+                case INTERO -> codificaInteri((long[]) valori[c]);
+                case DECIMALE -> codificaDecimali((double[]) valori[c]);
+            }
+            comprimi();
+            out.writeInt(codificati.lunghezza);
+            out.writeInt(compressi.lunghezza);
+            out.write(compressi.dati, 0, compressi.lunghezza);
+        }
+        righeTotali += riga;
+        riga = 0;
+        // I nomi del gruppo appena scritto non vanno trattenuti
+        for (Object v : valori) if (v instanceof String[] testi) Arrays.fill(testi, null);
+    }
+
+    private void codificaTesti(String[] v) {
+        dizionario.clear();
+        int voci = 0;
+        for (int r = 0; r < riga; r++) {
+            Integer i = dizionario.putIfAbsent(v[r], voci);
+            indici[r] = i != null ? i : voci++;
+        }
+        codificati.varint(voci);
+        String[] ordine = new String[voci];
+        dizionario.forEach((s, i) -> ordine[i] = s);
+        for (String s : ordine) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            codificati.varint(utf8.length);
+            codificati.byte_(utf8, utf8.length);
+        }
+        for (int r = 0; r < riga; r++) codificati.varint(indici[r]);
+    }
+
+    private void codificaInteri(long[] v) {
+        long precedente = 0;
+        for (int r = 0; r < riga; r++) {
+            long d = v[r] - precedente;
+            codificati.varint((d << 1) ^ (d >> 63));
+            precedente = v[r];
+        }
+    }
+
+    private void codificaDecimali(double[] v) {
+        long precedente = 0;
+        for (int r = 0; r < riga; r++) {
+            long bit = Double.doubleToLongBits(v[r]);
+            codificati.long_(bit ^ precedente);
+            precedente = bit;
+        }
+    }
+
+    private void comprimi() {
+        compressore.reset();
+        compressore.setInput(codificati.dati, 0, codificati.lunghezza);
+        compressore.finish();
+        compressi.lunghezza = 0;
+        while (!compressore.finished()) {
+            if (compressi.lunghezza == compressi.dati.length) compressi.cresci(compressi.dati.length);
+            compressi.lunghezza += compressore.deflate(compressi.dati, compressi.lunghezza,
+                    compressi.dati.length - compressi.lunghezza);
+        }
+    }
+
+    // ======================================================
+    // Array di byte riutilizzato fra i gruppi
+    // ======================================================
+    private static final class Buffer {
+        byte[] dati;
+        int lunghezza;
+
+        Buffer(int capacita) {
+            dati = new byte[capacita];
+        }
+
+        void cresci(int minimo) {
+            if (lunghezza + minimo > dati.length) dati = Arrays.copyOf(dati, Math.max(dati.length * 2, lunghezza + minimo));
+        }
+
+        void varint(long v) {
+            cresci(10);
+            while ((v & ~0x7FL) != 0) {
+                dati[lunghezza++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            dati[lunghezza++] = (byte) v;
+        }
+
+        void long_(long v) {
+            cresci(8);
+            for (int s = 56; s >= 0; s -= 8) dati[lunghezza++] = (byte) (v >>> s);
+        }
+
+        void byte_(byte[] b, int n) {
+            cresci(n);
+            System.arraycopy(b, 0, dati, lunghezza, n);
+            lunghezza += n;
+        }
+    }
+
+    private static final class ContatoreByte extends FilterOutputStream {
+        long scritti;
+
+        ContatoreByte(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            scritti++;
+        }
+
+        @Override
+        public void write(byte[] b, int da, int n) throws IOException {
+            out.write(b, da, n);
+            scritti += n;
+        }
+    }
+}
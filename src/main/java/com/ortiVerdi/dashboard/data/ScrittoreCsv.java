@@ -0,0 +1,183 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scrittore CSV in streaming, nello stesso formato letto da LettoreCsvColture:
+ * separatore ';', decimali con il punto, una riga di intestazione.
+ *
+ * I campi vengono scritti in un buffer di byte riutilizzato, passato allo
+ * stream a blocchi di 64 KB. I numeri sono convertiti direttamente in cifre:
+ * un decimale con al massimo 6 cifre dopo la virgola viene scritto in forma
+ * fissa e riletto identico da LettoreCsvColture (che lo riconverte come
+ * mantissa / 10^decimali); gli altri passano da Double.toString. NaN e
+ * infiniti restano campi vuoti. I nomi che contengono il separatore,
+ * virgolette o a capo vengono racchiusi tra virgolette.
+ */
+public final class ScrittoreCsv implements ScrittoreTabella {
+
+    private static final byte SEPARATORE = ';';
+    private static final int BUFFER = 1 << 16;
+    private static final int MAX_DECIMALI = 6;
+    private static final int MAX_NOMI_IN_CACHE = 4096;
+    private static final double[] POTENZE_10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6};
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[BUFFER];
+    private final byte[] cifre = new byte[20];
+    // Nomi già convertiti in UTF-8: negli export per appezzamento gli stessi nomi si ripetono
+    private final Map<String, byte[]> nomi = new HashMap<>();
+    private int pos;
+    private boolean primoCampo = true;
+    private long byteScritti;
+
+    /** Scrive subito la riga di intestazione con i nomi delle colonne */
+    public ScrittoreCsv(OutputStream out, List<Colonna> colonne) throws IOException {
+        this(out, colonne, false);
+    }
+
+    /** bom = true antepone il BOM UTF-8, perché Excel riconosca la codifica dei nomi accentati */
+    public ScrittoreCsv(OutputStream out, List<Colonna> colonne, boolean bom) throws IOException {
+        this.out = out;
+        if (bom) {
+            buf[pos++] = (byte) 0xEF;
+            buf[pos++] = (byte) 0xBB;
+            buf[pos++] = (byte) 0xBF;
+        }
+        for (Colonna c : colonne) testo(c.nome());
+        fineRiga();
+    }
+
+    @Override
+    public void testo(String valore) throws IOException {
+        separatore();
+        if (valore == null || valore.isEmpty()) return;
+        byte[] utf8 = nomi.get(valore);
+        if (utf8 == null) {
+            utf8 = daQuotare(valore) ? ('"' + valore.replace("\"", "\"\"") + '"').getBytes(StandardCharsets.UTF_8)
+                    : valore.getBytes(StandardCharsets.UTF_8);
+            if (nomi.size() == MAX_NOMI_IN_CACHE) nomi.clear();
+            nomi.put(valore, utf8);
+        }
+        scrivi(utf8, 0, utf8.length);
+    }
+
+    @Override
+    public void intero(long valore) throws IOException {
+        separatore();
+        spazio(cifre.length);
+        if (valore < 0) {
+            buf[pos++] = '-';
+            if (valore == Long.MIN_VALUE) {
+                ascii("9223372036854775808");
+                return;
+            }
+            valore = -valore;
+        }
+        cifre(valore, 0);
+    }
+
+    @Override
+    public void decimale(double valore) throws IOException {
+        separatore();
+        if (Double.isNaN(valore) || Double.isInfinite(valore)) return;
+        spazio(cifre.length + 2);
+        double a = Math.abs(valore);
+        if (a == 0) {
+            buf[pos++] = '0';
+            return;
+        }
+        if (a < 1e15) {
+            // Forma fissa con il minimo numero di decimali che rilegge lo stesso double
+            for (int d = 0; d <= MAX_DECIMALI; d++) {
+                double mantissa = Math.rint(a * POTENZE_10[d]);
+                if (mantissa / POTENZE_10[d] == a && mantissa < 0x1p53) {
+                    if (valore < 0) buf[pos++] = '-';
+                    cifre((long) mantissa, d);
+                    return;
+                }
+            }
+        }
+        ascii(Double.toString(valore));
+    }
+
+    @Override
+    public void fineRiga() throws IOException {
+        spazio(1);
+        buf[pos++] = '\n';
+        primoCampo = true;
+    }
+
+    @Override
+    public void chiudi() throws IOException {
+        svuota();
+        out.flush();
+    }
+
+    @Override
+    public long getByteScritti() { return byteScritti + pos; }
+
+    // ======================================================
+    // Buffer
+    // ======================================================
+    private void separatore() throws IOException {
+        if (primoCampo) {
+            primoCampo = false;
+            return;
+        }
+        spazio(1);
+        buf[pos++] = SEPARATORE;
+    }
+
+    private void spazio(int n) throws IOException {
+        if (pos + n > buf.length) svuota();
+    }
+
+    private void svuota() throws IOException {
+        if (pos == 0) return;
+        out.write(buf, 0, pos);
+        byteScritti += pos;
+        pos = 0;
+    }
+
+    private void scrivi(byte[] b, int da, int n) throws IOException {
+        if (n > buf.length) {
+            svuota();
+            out.write(b, da, n);
+            byteScritti += n;
+            return;
+        }
+        spazio(n);
+        System.arraycopy(b, da, buf, pos, n);
+        pos += n;
+    }
+
+    private void ascii(String s) throws IOException {
+        spazio(s.length());
+        for (int i = 0; i < s.length(); i++) buf[pos++] = (byte) s.charAt(i);
+    }
+
+    // Cifre di un intero non negativo, con il punto prima degli ultimi "decimali" (lo spazio è già garantito)
+    private void cifre(long valore, int decimali) {
+        int n = 0;
+        do {
+            if (n == decimali && decimali > 0) cifre[n++] = '.';
+            cifre[n++] = (byte) ('0' + valore % 10);
+            valore /= 10;
+        } while (valore > 0 || n <= decimali);
+        while (n > 0) buf[pos++] = cifre[--n];
+    }
+
+    private static boolean daQuotare(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == SEPARATORE || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+}
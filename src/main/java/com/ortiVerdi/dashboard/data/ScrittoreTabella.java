@@ -0,0 +1,41 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.IOException;
+
+/**
+ * Scrittura in streaming di una tabella, riga per riga e campo per campo,
+ * direttamente dai valori primitivi. I campi di ogni riga vanno scritti
+ * nell'ordine e con il tipo delle colonne dichiarate all'apertura.
+ *
+ * Lo scrittore tiene in memoria al massimo un blocco di righe: il consumo di
+ * heap non dipende dal numero di righe esportate.
+ *
+ * Va usato in un try-with-resources: close() libera le risorse native anche
+ * se la scrittura si interrompe prima di chiudi().
+ */
+public interface ScrittoreTabella extends AutoCloseable {
+
+    enum TipoColonna { TESTO, INTERO, DECIMALE }
+
+    /** Colonna dichiarata all'apertura dello scrittore */
+    record Colonna(String nome, TipoColonna tipo) { }
+
+    void testo(String valore) throws IOException;
+
+    void intero(long valore) throws IOException;
+
+    void decimale(double valore) throws IOException;
+
+    void fineRiga() throws IOException;
+
+    /** Scrive i dati ancora in memoria e l'eventuale chiusura del formato; lo stream non viene chiuso */
+    void chiudi() throws IOException;
+
+    /** Byte passati finora allo stream di uscita */
+    long getByteScritti();
+
+    /** Libera le risorse dello scrittore senza completare il formato; lo stream non viene chiuso */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,91 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Buffer circolare di letture (istante, valore) con capacità fissa.
+ *
+ * Gli array primitivi sono allocati una volta nel costruttore: aggiungere una
+ * lettura è una scrittura in due array, senza allocazioni; quando il buffer è
+ * pieno la lettura più vecchia viene sovrascritta. Non è thread-safe: la
+ * sincronizzazione è a carico del chiamante (vedi StazioneSensori).
+ */
+public final class SerieCircolare {
+
+    private final long[] istanti;
+    private final double[] valori;
+    private int prossima;     // posizione della prossima scrittura
+    private int dimensione;
+    private long aggiunte;    // letture aggiunte dalla creazione, comprese quelle sovrascritte
+
+    public SerieCircolare(int capacita) {
+        if (capacita <= 0) throw new IllegalArgumentException("Capacità non valida: " + capacita);
+        this.istanti = new long[capacita];
+        this.valori = new double[capacita];
+    }
+
+    public void aggiungi(long istante, double valore) {
+        istanti[prossima] = istante;
+        valori[prossima] = valore;
+        if (++prossima == istanti.length) prossima = 0;
+        if (dimensione < istanti.length) dimensione++;
+        aggiunte++;
+    }
+
+    public int getCapacita() { return istanti.length; }
+
+    public int getDimensione() { return dimensione; }
+
+    /** Letture aggiunte dalla creazione (numero progressivo dell'ultima), comprese quelle sovrascritte */
+    public long getAggiunte() { return aggiunte; }
+
+    /** Istante più recente fra le letture nel buffer, Long.MIN_VALUE se è vuoto */
+    public long getMassimoIstante() {
+        long massimo = Long.MIN_VALUE;
+        for (int i = 0; i < dimensione; i++) massimo = Math.max(massimo, istanti[i]);
+        return massimo;
+    }
+
+    /**
+     * Copia le ultime n letture (dalla più vecchia alla più recente) negli array
+     * indicati, a partire dall'indice 0. Restituisce il numero di letture copiate.
+     */
+    public int copiaUltime(int n, long[] istantiDest, double[] valoriDest) {
+        int quante = Math.min(Math.min(n, dimensione), Math.min(istantiDest.length, valoriDest.length));
+        int inizio = prossima - quante;
+        if (inizio < 0) inizio += istanti.length;
+        int primaParte = Math.min(quante, istanti.length - inizio);
+        System.arraycopy(istanti, inizio, istantiDest, 0, primaParte);
+        System.arraycopy(valori, inizio, valoriDest, 0, primaParte);
+        System.arraycopy(istanti, 0, istantiDest, primaParte, quante - primaParte);
+        System.arraycopy(valori, 0, valoriDest, primaParte, quante - primaParte);
+        return quante;
+    }
+
+    // ======================================================
+    // Codifica binaria del contenuto (checkpoint della persistenza)
+    // ======================================================
+    public void scrivi(DataOutput out) throws IOException {
+        out.writeLong(aggiunte);
+        out.writeInt(dimensione);
+        int inizio = prossima - dimensione;
+        if (inizio < 0) inizio += istanti.length;
+        for (int i = 0, p = inizio; i < dimensione; i++, p = p + 1 == istanti.length ? 0 : p + 1) {
+            out.writeLong(istanti[p]);
+            out.writeDouble(valori[p]);
+        }
+    }
+
+    /** Sostituisce il contenuto con quello scritto da scrivi(); oltre la capacità restano le più recenti */
+    public void leggi(DataInput in) throws IOException {
+        long aggiunteSalvate = in.readLong();
+        int n = in.readInt();
+        if (n < 0 || n > aggiunteSalvate) throw new IOException("Buffer di letture non valido: " + n);
+        prossima = 0;
+        dimensione = 0;
+        for (int i = 0; i < n; i++) aggiungi(in.readLong(), in.readDouble());
+        aggiunte = aggiunteSalvate;
+    }
+}
@@ -0,0 +1,243 @@
+package com.ortiVerdi.dashboard.data;
+
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Formato binario compatto per salvare e ricaricare i dati della dashboard:
+ * matrici colture × mesi, coefficienti idrici per coltura e dati ambientali.
+ *
+ * Il file viene scritto una volta e poi mappato in memoria con FileChannel.map:
+ * le colonne dell'ArchivioColture sono viste dirette sulle pagine del file
+ * (nessuna copia), quindi l'avvio è quasi istantaneo e più istanze della
+ * dashboard sulla stessa macchina condividono i dati tramite la page cache.
+ * La mappatura è PRIVATE (copy-on-write): eventuali modifiche in memoria non
+ * toccano il file e copiano solo le pagine modificate. Se il file non è
+ * scrivibile la mappatura è READ_ONLY.
+ *
+ * Layout (little endian, sezioni allineate a 8 byte):
+ *   intestazione (64 byte):
+ *     magic "OVSN", versione formato, righe, numero nomi, mesi,
+ *     riservato, lunghezza dati (long), checksum CRC32C dei dati (long),
+ *     impronta della sorgente e del catalogo usati (long, 0 = assente)
+ *   dati:
+ *     dizionario nomi (per ogni nome: lunghezza int + byte UTF-8)
+ *     nomeRiga int[righe]
+ *     prezzi double[righe], consumo idrico/kg double[righe]
+ *     raccolto double[righe*12], costi double[righe*12]
+ *     ambientali double[12*5] (temperatura, umidità, pioggia, vento, luce)
+ */
+public final class SnapshotBinario {
+
+    public static final int MAGIC = 0x4E53564F;   // "OVSN" letto in little endian
+    public static final int VERSIONE_FORMATO = 1;
+    static final int INTESTAZIONE = 64;
+    static final int CAMPI_AMBIENTALI = 5;
+
+    private final ArchivioColture archivio;
+    private final DatiAmbientali[] datiAmbientali;
+    private final long impronta;
+
+    private SnapshotBinario(ArchivioColture archivio, DatiAmbientali[] datiAmbientali, long impronta) {
+        this.archivio = archivio;
+        this.datiAmbientali = datiAmbientali;
+        this.impronta = impronta;
+    }
+
+    public ArchivioColture getArchivio() { return archivio; }
+
+    /** Impronta dei dati di origine registrata alla scrittura (0 se non indicata) */
+    public long getImpronta() { return impronta; }
+
+    /** Dati ambientali dei 12 mesi (indice 0-11) */
+    public DatiAmbientali[] getDatiAmbientali() { return datiAmbientali.clone(); }
+
+    // ======================================================
+    // Scrittura: file temporaneo + rinomina atomica, così un lettore concorrente
+    // non vede mai un file scritto a metà
+    // ======================================================
+    public static void scrivi(Path file, ArchivioColture archivio, DatiAmbientali[] ambientali) throws IOException {
+        scrivi(file, archivio, ambientali, 0L);
+    }
+
+    /**
+     * Come scrivi(file, archivio, ambientali), registrando nell'intestazione
+     * l'impronta della sorgente e del catalogo da cui derivano i dati: chi
+     * rilegge il file può confrontarla con quella attuale e scartarlo se è vecchio.
+     */
+    public static void scrivi(Path file, ArchivioColture archivio, DatiAmbientali[] ambientali,
+                              long impronta) throws IOException {
+        if (ambientali.length != ArchivioColture.MESI) {
+            throw new IllegalArgumentException("Attesi 12 mesi di dati ambientali, trovati " + ambientali.length);
+        }
+        archivio = archivio.compatto();   // blocchi modificati ricopiati una volta sola
+        int righe = archivio.getNumeroRighe();
+        String[] nomi = archivio.dizionarioNomi();
+        byte[][] nomiUtf8 = new byte[nomi.length][];
+        long dimDizionario = 0;
+        for (int i = 0; i < nomi.length; i++) {
+            nomiUtf8[i] = nomi[i].getBytes(StandardCharsets.UTF_8);
+            dimDizionario += 4 + nomiUtf8[i].length;
+        }
+        long lunghezzaDati = allinea(dimDizionario) + allinea(4L * righe)
+                + 8L * righe * 2 + 8L * righe * ArchivioColture.MESI * 2
+                + 8L * ArchivioColture.MESI * CAMPI_AMBIENTALI;
+        if (INTESTAZIONE + lunghezzaDati > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot troppo grande per una singola mappatura: " + lunghezzaDati + " byte");
+        }
+
+        Path cartella = file.toAbsolutePath().getParent();
+        if (cartella != null) Files.createDirectories(cartella);
+        Path temporaneo = Files.createTempFile(cartella, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(temporaneo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, INTESTAZIONE + lunghezzaDati);
+                buf.order(ByteOrder.LITTLE_ENDIAN);
+
+                buf.position(INTESTAZIONE);
+                for (byte[] nome : nomiUtf8) {
+                    buf.putInt(nome.length);
+                    buf.put(nome);
+                }
+                buf.position(INTESTAZIONE + (int) allinea(dimDizionario));
+
+                sezioneInt(buf, righe).put(archivio.colonnaNomi().limit(righe).position(0));
+                buf.position(buf.position() + (int) allinea(4L * righe));
+                copia(buf, archivio.colonnaPrezzi(), righe);
+                copia(buf, archivio.colonnaConsumoIdrico(), righe);
+                copia(buf, archivio.colonnaRaccolto(), righe * ArchivioColture.MESI);
+                copia(buf, archivio.colonnaCosti(), righe * ArchivioColture.MESI);
+                for (DatiAmbientali da : ambientali) {
+                    buf.putDouble(da.getTemperatura());
+                    buf.putDouble(da.getUmiditaRelativa());
+                    buf.putDouble(da.getPrecipitazioni());
+                    buf.putDouble(da.getVelocitaVento());
+                    buf.putDouble(da.getLuminosita());
+                }
+
+                buf.position(0);
+                buf.putInt(MAGIC);
+                buf.putInt(VERSIONE_FORMATO);
+                buf.putInt(righe);
+                buf.putInt(nomi.length);
+                buf.putInt(ArchivioColture.MESI);
+                buf.putInt(0);
+                buf.putLong(lunghezzaDati);
+                buf.putLong(checksum(buf, lunghezzaDati));
+                buf.putLong(impronta);
+                buf.force();
+            }
+            Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaneo);
+        }
+    }
+
+    // ======================================================
+    // Lettura: mappa il file e costruisce le colonne come viste senza copia.
+    // Qualunque incoerenza del contenuto diventa IOException, così il chiamante
+    // ripiega sulla sorgente invece di fallire all'avvio
+    // ======================================================
+    public static SnapshotBinario leggi(Path file, boolean verificaChecksum) throws IOException {
+        MappedByteBuffer buf;
+        // PRIVATE richiede un canale scrivibile; su file di sola lettura si ripiega su READ_ONLY
+        boolean scrivibile = Files.isWritable(file);
+        try (FileChannel ch = scrivibile
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < INTESTAZIONE) throw new IOException("Snapshot troncato: " + file);
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Snapshot troppo grande: " + file);
+            // La mappatura resta valida anche dopo la chiusura del canale
+            buf = ch.map(scrivibile ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buf.getInt(0) != MAGIC) throw new IOException("File non riconosciuto come snapshot: " + file);
+        int versione = buf.getInt(4);
+        if (versione != VERSIONE_FORMATO) {
+            throw new IOException("Versione snapshot " + versione + " non supportata (attesa " + VERSIONE_FORMATO + ")");
+        }
+        int righe = buf.getInt(8);
+        int numeroNomi = buf.getInt(12);
+        int mesi = buf.getInt(16);
+        long lunghezzaDati = buf.getLong(24);
+        if (mesi != ArchivioColture.MESI || righe < 0 || numeroNomi < 0
+                || INTESTAZIONE + lunghezzaDati != buf.capacity()) {
+            throw new IOException("Intestazione snapshot incoerente: " + file);
+        }
+        if (verificaChecksum && checksum(buf, lunghezzaDati) != buf.getLong(32)) {
+            throw new IOException("Checksum snapshot non valido: " + file);
+        }
+
+        try {
+            return decodifica(buf, righe, numeroNomi, buf.getLong(40));
+        } catch (RuntimeException e) {
+            // dimensioni fuori dai limiti, sezioni oltre la fine del file, nomi riga non validi
+            throw new IOException("Snapshot malformato: " + file + " (" + e + ")", e);
+        }
+    }
+
+    private static SnapshotBinario decodifica(MappedByteBuffer buf, int righe, int numeroNomi, long impronta) {
+        buf.position(INTESTAZIONE);
+        String[] nomi = new String[numeroNomi];
+        for (int i = 0; i < numeroNomi; i++) {
+            int lunghezza = buf.getInt();
+            byte[] b = new byte[lunghezza];
+            buf.get(b);
+            nomi[i] = new String(b, StandardCharsets.UTF_8);
+        }
+        buf.position(INTESTAZIONE + (int) allinea(buf.position() - INTESTAZIONE));
+
+        IntBuffer nomeRiga = sezioneInt(buf, righe);
+        buf.position(buf.position() + (int) allinea(4L * righe));
+        DoubleBuffer prezzi = sezioneDouble(buf, righe);
+        DoubleBuffer consumo = sezioneDouble(buf, righe);
+        DoubleBuffer raccolto = sezioneDouble(buf, righe * ArchivioColture.MESI);
+        DoubleBuffer costi = sezioneDouble(buf, righe * ArchivioColture.MESI);
+
+        DatiAmbientali[] ambientali = new DatiAmbientali[ArchivioColture.MESI];
+        for (int m = 0; m < ArchivioColture.MESI; m++) {
+            ambientali[m] = new DatiAmbientali(buf.getDouble(), buf.getDouble(), buf.getDouble(),
+                    buf.getDouble(), buf.getDouble());
+        }
+
+        ArchivioColture archivio = new ArchivioColture(righe, nomi, nomeRiga, prezzi, consumo, raccolto, costi);
+        return new SnapshotBinario(archivio, ambientali, impronta);
+    }
+
+    // Vista int sulla sezione corrente (senza avanzare la posizione)
+    private static IntBuffer sezioneInt(ByteBuffer buf, int n) {
+        return buf.slice(buf.position(), 4 * n).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    // Vista double sulla sezione corrente; la posizione avanza oltre la sezione
+    private static DoubleBuffer sezioneDouble(ByteBuffer buf, int n) {
+        DoubleBuffer vista = buf.slice(buf.position(), 8 * n).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        buf.position(buf.position() + 8 * n);
+        return vista;
+    }
+
+    private static void copia(ByteBuffer buf, DoubleBuffer colonna, int n) {
+        sezioneDouble(buf, n).put(colonna.limit(n).position(0));
+    }
+
+    private static long checksum(ByteBuffer buf, long lunghezzaDati) {
+        CRC32C crc = new CRC32C();
+        crc.update(buf.slice(INTESTAZIONE, (int) lunghezzaDati));
+        return crc.getValue();
+    }
+
+    private static long allinea(long n) {
+        return (n + 7) & ~7L;
+    }
+}
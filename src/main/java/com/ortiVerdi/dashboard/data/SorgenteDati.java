@@ -0,0 +1,27 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.IOException;
+
+/**
+ * Sorgente dei dati di produzione delle colture (data source).
+ *
+ * Ogni implementazione riempie direttamente l'archivio colonnare:
+ * - SorgenteDatiCsv: importazione in streaming di file CSV (dati reali)
+ * - SorgenteDatiSimulati: generazione casuale basata sui profili stagionali
+ */
+public interface SorgenteDati {
+
+    /** Nome breve della sorgente, usato nei log e nella configurazione */
+    String getNome();
+
+    /** Carica (o genera) un nuovo archivio completo delle colture */
+    ArchivioColture carica() throws IOException;
+
+    /**
+     * Impronta dei dati che carica() leggerebbe ora: cambia quando cambia il
+     * contenuto d'origine. Serve a capire se uno snapshot salvato è ancora attuale.
+     */
+    default long impronta() throws IOException {
+        return getNome().hashCode();
+    }
+}
@@ -0,0 +1,159 @@
+package com.ortiVerdi.dashboard.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Sorgente dati basata su file CSV (es. data/dati_colture.csv o export aziendali).
+ *
+ * Il file viene letto in streaming con LettoreCsvColture e le righe finiscono
+ * direttamente nell'archivio colonnare. Il consumo idrico per kg, assente nel CSV,
+ * viene preso dal catalogo delle colture (ParametriColture).
+ *
+ * Con aggregaAppezzamenti=true le righe con lo stesso nome (un appezzamento per riga)
+ * vengono sommate in un'unica coltura: la memoria occupata dipende dal numero di
+ * colture distinte e non dal numero di righe, quindi anche export da milioni di
+ * righe si importano con memoria limitata. Il prezzo risultante è la media pesata
+ * sul raccolto, così il ricavo annuale resta esatto.
+ */
+public class SorgenteDatiCsv implements SorgenteDati {
+
+    private static final Logger log = LoggerFactory.getLogger(SorgenteDatiCsv.class);
+
+    private final Resource risorsa;
+    private final boolean aggregaAppezzamenti;
+    private volatile StatisticheImportazione ultimaImportazione;
+
+    public SorgenteDatiCsv(Resource risorsa, boolean aggregaAppezzamenti) {
+        this.risorsa = risorsa;
+        this.aggregaAppezzamenti = aggregaAppezzamenti;
+    }
+
+    @Override
+    public String getNome() {
+        return "csv";
+    }
+
+    @Override
+    public ArchivioColture carica() throws IOException {
+        try (InputStream in = new BufferedInputStream(risorsa.getInputStream(), 1 << 16)) {
+            return carica(in);
+        }
+    }
+
+    // ======================================================
+    // Impronta del file: percorso, dimensione, data di modifica e modalità di
+    // importazione; se la risorsa non le espone si usa il CRC32C del contenuto
+    // ======================================================
+    @Override
+    public long impronta() throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update((risorsa.getDescription() + "|" + aggregaAppezzamenti).getBytes(StandardCharsets.UTF_8));
+        try {
+            crc.update(ByteBuffer.allocate(16).putLong(risorsa.contentLength()).putLong(risorsa.lastModified()).flip());
+        } catch (IOException e) {
+            try (InputStream in = risorsa.getInputStream()) {
+                byte[] blocco = new byte[1 << 16];
+                for (int letti; (letti = in.read(blocco)) > 0; ) crc.update(blocco, 0, letti);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /** Importa da uno stream già aperto (non viene chiuso) */
+    public ArchivioColture carica(InputStream in) throws IOException {
+        LettoreCsvColture lettore = new LettoreCsvColture(true);
+        ArchivioColture archivio;
+        StatisticheImportazione stat;
+
+        if (aggregaAppezzamenti) {
+            Accumulatore acc = new Accumulatore();
+            stat = lettore.leggi(in, acc::aggiungi);
+            archivio = acc.build();
+        } else {
+            ArchivioColture.Builder builder = ArchivioColture.builder(64);
+            CatalogoColture catalogo = ParametriColture.getCatalogo();   // stessa versione per tutto il file
+            stat = lettore.leggi(in, (nome, prezzo, raccolto, costi) ->
+                    builder.aggiungi(nome, prezzo, catalogo.getConsumoIdricoPerKg(nome), raccolto, costi));
+            archivio = builder.build();
+        }
+
+        ultimaImportazione = stat;
+        log.info("Importazione CSV da {}: {}", risorsa.getDescription(), stat);
+        return archivio;
+    }
+
+    /** Statistiche dell'ultima importazione completata (null se non ancora eseguita) */
+    public StatisticheImportazione getUltimaImportazione() {
+        return ultimaImportazione;
+    }
+
+    // ======================================================
+    // Somma gli appezzamenti per nome di coltura in array primitivi
+    // ======================================================
+    private static final class Accumulatore {
+        private final Map<String, Integer> indici = new HashMap<>();
+        private String[] nomi = new String[16];
+        private double[] ricavi = new double[16];     // somma di raccolto * prezzo
+        private double[] ultimoPrezzo = new double[16]; // usato se il raccolto totale è nullo
+        private double[] raccolto = new double[16 * ArchivioColture.MESI];
+        private double[] costi = new double[16 * ArchivioColture.MESI];
+        private int colture;
+
+        void aggiungi(String nome, double prezzo, double[] r, double[] c) {
+            Integer indice = indici.get(nome);
+            int i;
+            if (indice == null) {
+                i = colture++;
+                if (i == nomi.length) cresci();
+                nomi[i] = nome;
+                indici.put(nome, i);
+            } else {
+                i = indice;
+            }
+            int base = i * ArchivioColture.MESI;
+            double quantita = 0;
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                raccolto[base + m] += r[m];
+                costi[base + m] += c[m];
+                quantita += r[m];
+            }
+            ricavi[i] += quantita * prezzo;
+            ultimoPrezzo[i] = prezzo;
+        }
+
+        ArchivioColture build() {
+            ArchivioColture.Builder builder = ArchivioColture.builder(colture);
+            CatalogoColture catalogo = ParametriColture.getCatalogo();
+            for (int i = 0; i < colture; i++) {
+                int base = i * ArchivioColture.MESI;
+                double quantita = 0;
+                for (int m = 0; m < ArchivioColture.MESI; m++) quantita += raccolto[base + m];
+                double prezzo = quantita > 0 ? ricavi[i] / quantita : ultimoPrezzo[i];
+                builder.aggiungi(nomi[i], prezzo, catalogo.getConsumoIdricoPerKg(nomi[i]),
+                        raccolto, base, costi, base);
+            }
+            return builder.build();
+        }
+
+        private void cresci() {
+            int n = nomi.length * 2;
+            nomi = Arrays.copyOf(nomi, n);
+            ricavi = Arrays.copyOf(ricavi, n);
+            ultimoPrezzo = Arrays.copyOf(ultimoPrezzo, n);
+            raccolto = Arrays.copyOf(raccolto, n * ArchivioColture.MESI);
+            costi = Arrays.copyOf(costi, n * ArchivioColture.MESI);
+        }
+    }
+}
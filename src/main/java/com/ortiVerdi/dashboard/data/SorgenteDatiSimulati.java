@@ -0,0 +1,68 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.util.Random;
+
+/**
+ * Sorgente dati simulata: genera raccolti e costi casuali proporzionati
+ * ai profili stagionali del catalogo delle colture (ParametriColture).
+ *
+ * Ogni chiamata a carica() usa un proprio Random derivato dal seme iniziale,
+ * quindi caricamenti concorrenti non condividono lo stesso generatore.
+ */
+public class SorgenteDatiSimulati implements SorgenteDati {
+
+    private final Random semi;
+
+    public SorgenteDatiSimulati() {
+        this(System.nanoTime());
+    }
+
+    public SorgenteDatiSimulati(long seme) {
+        this.semi = new Random(seme);
+    }
+
+    @Override
+    public String getNome() {
+        return "simulatore";
+    }
+
+    @Override
+    public ArchivioColture carica() {
+        long seme;
+        synchronized (semi) {
+            seme = semi.nextLong();
+        }
+        return genera(new Random(seme));
+    }
+
+    // ======================================================
+    // Genera le colture e le loro statistiche direttamente nell'archivio colonnare
+    // ======================================================
+    private ArchivioColture genera(Random rnd) {
+        CatalogoColture catalogo = ParametriColture.getCatalogo();   // stessa versione per tutto l'archivio
+        int n = catalogo.getNumeroColture();
+        ArchivioColture.Builder builder = ArchivioColture.builder(n);
+        double[] raccolto = new double[12];
+        double[] costi = new double[12];
+
+        for (int i = 0; i < n; i++) {
+            String nome = catalogo.getNome(i);
+            double prezzo = catalogo.getPrezzoUnitario(i);
+
+            double[] profilo = catalogo.getProfiloStagionale(i);
+
+            for (int m = 0; m < 12; m++) {
+                // Genera valori casuali di raccolto proporzionati al profilo stagionale
+                double base = 20 + rnd.nextDouble() * 80; // produzione base
+                raccolto[m] = base * profilo[m];
+                // Calcolo dei costi in funzione della produzione
+                costi[m] = 5 + raccolto[m] * (0.5 + rnd.nextDouble() * 0.5);
+            }
+
+            // Il coefficiente idrico viene risolto una volta per riga, non per ogni mese
+            builder.aggiungi(nome, prezzo, catalogo.getConsumoIdricoPerKg(i), raccolto, costi);
+        }
+
+        return builder.build();
+    }
+}
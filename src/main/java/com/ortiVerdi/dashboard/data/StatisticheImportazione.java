@@ -0,0 +1,38 @@
+package com.ortiVerdi.dashboard.data;
+
+/**
+ * Risultato di un'importazione: righe elaborate, byte letti e durata,
+ * da cui si ricava il throughput in righe al secondo.
+ */
+public final class StatisticheImportazione {
+
+    private final long righe;
+    private final long byteLetti;
+    private final long durataNanos;
+
+    public StatisticheImportazione(long righe, long byteLetti, long durataNanos) {
+        this.righe = righe;
+        this.byteLetti = byteLetti;
+        this.durataNanos = durataNanos;
+    }
+
+    public long getRighe() { return righe; }
+    public long getByteLetti() { return byteLetti; }
+    public long getDurataNanos() { return durataNanos; }
+
+    /** Throughput dell'importazione in righe al secondo */
+    public double getRigheAlSecondo() {
+        return durataNanos > 0 ? righe * 1e9 / durataNanos : 0;
+    }
+
+    /** Throughput dell'importazione in MB al secondo */
+    public double getMegabyteAlSecondo() {
+        return durataNanos > 0 ? byteLetti / 1_048_576.0 * 1e9 / durataNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d righe, %d byte in %.1f ms (%.0f righe/s, %.1f MB/s)",
+                righe, byteLetti, durataNanos / 1e6, getRigheAlSecondo(), getMegabyteAlSecondo());
+    }
+}
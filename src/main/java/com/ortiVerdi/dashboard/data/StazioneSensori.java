@@ -0,0 +1,145 @@
+package com.ortiVerdi.dashboard.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Sensori di un appezzamento: per ogni canale un buffer circolare delle
+ * letture grezze e gli aggregati per minuto, ora, giorno e mese.
+ *
+ * I metodi sono sincronizzati sulla stazione: ogni appezzamento ha il proprio
+ * lock, quindi letture di appezzamenti diversi non si contendono nulla.
+ *
+ * Persistenza: per ogni canale la stazione ricorda quante letture sono già
+ * state salvate. Il thread della persistenza prende a lotti quelle nuove dal
+ * buffer (prendiNonSalvate), così registra() non alloca e non accoda nulla;
+ * se il buffer si riempie prima della raccolta le letture sovrascritte restano
+ * solo negli aggregati e vengono contate come non salvate.
+ */
+public final class StazioneSensori {
+
+    private static final CanaleSensore[] CANALI = CanaleSensore.values();
+
+    private final String appezzamento;
+    private final SerieCircolare[] serie = new SerieCircolare[CANALI.length];
+    private final AggregatiSensore[] aggregati = new AggregatiSensore[CANALI.length];
+    private long letture;
+    private long ultimoIstante = Long.MIN_VALUE;
+    private final long[] salvate = new long[CANALI.length];   // per canale: letture già rese persistenti
+    private long nonSalvate;
+
+    public StazioneSensori(String appezzamento, int capacita) {
+        this.appezzamento = appezzamento;
+        for (CanaleSensore c : CANALI) {
+            serie[c.ordinal()] = new SerieCircolare(capacita);
+            aggregati[c.ordinal()] = new AggregatiSensore();
+        }
+    }
+
+    public String getAppezzamento() { return appezzamento; }
+
+    // ======================================================
+    // Registrazione di una lettura: nessuna allocazione
+    // ======================================================
+    public synchronized void registra(long istante, CanaleSensore canale, double valore) {
+        if (Double.isNaN(valore) || Double.isInfinite(valore)) {
+            throw new IllegalArgumentException("Valore non valido per " + canale + ": " + valore);
+        }
+        serie[canale.ordinal()].aggiungi(istante, valore);
+        aggregati[canale.ordinal()].aggiungi(istante, valore);
+        letture++;
+        if (istante > ultimoIstante) ultimoIstante = istante;
+    }
+
+    public synchronized long getLetture() { return letture; }
+
+    // ======================================================
+    // Persistenza a lotti: letture nuove, stato completo di un canale, ripristino
+    // ======================================================
+
+    /**
+     * Letture di un canale arrivate dopo la chiamata precedente (al massimo quelle
+     * ancora nel buffer), dalla più vecchia; null se non ce ne sono. Da qui in poi
+     * risultano salvate.
+     */
+    public synchronized LettureSensore prendiNonSalvate(CanaleSensore canale) {
+        SerieCircolare s = serie[canale.ordinal()];
+        long nuove = s.getAggiunte() - salvate[canale.ordinal()];
+        if (nuove == 0) return null;
+        int n = (int) Math.min(nuove, s.getDimensione());
+        nonSalvate += nuove - n;
+        salvate[canale.ordinal()] = s.getAggiunte();
+        long[] istanti = new long[n];
+        double[] valori = new double[n];
+        s.copiaUltime(n, istanti, valori);
+        return new LettureSensore(istanti, valori);
+    }
+
+    /** Letture sovrascritte nel buffer prima di essere salvate */
+    public synchronized long getNonSalvate() { return nonSalvate; }
+
+    /** Stato completo di un canale (buffer e aggregati) per un checkpoint: le sue letture risultano salvate */
+    public synchronized byte[] salvaCanale(CanaleSensore canale) {
+        ByteArrayOutputStream byteStato = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(byteStato);
+        try {
+            serie[canale.ordinal()].scrivi(out);
+            aggregati[canale.ordinal()].scrivi(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);   // su un array in memoria non succede
+        }
+        salvate[canale.ordinal()] = serie[canale.ordinal()].getAggiunte();
+        return byteStato.toByteArray();
+    }
+
+    /** Ripristina un canale salvato con salvaCanale; restituisce quante letture sono state aggiunte */
+    public synchronized long ripristinaCanale(CanaleSensore canale, byte[] stato) throws IOException {
+        SerieCircolare s = serie[canale.ordinal()];
+        long prima = s.getAggiunte();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(stato));
+        s.leggi(in);
+        aggregati[canale.ordinal()].leggi(in);
+        salvate[canale.ordinal()] = s.getAggiunte();
+        letture += s.getAggiunte() - prima;
+        ultimoIstante = Math.max(ultimoIstante, s.getMassimoIstante());
+        return s.getAggiunte() - prima;
+    }
+
+    /**
+     * Registra letture rilette dalla persistenza (ripristino all'avvio), già
+     * salvate: la raccolta successiva non le riscrive.
+     */
+    public synchronized void registraSalvate(CanaleSensore canale, long[] istanti, double[] valori) {
+        for (int i = 0; i < istanti.length; i++) {
+            registra(istanti[i], canale, valori[i]);
+            salvate[canale.ordinal()]++;
+        }
+    }
+
+    /** Istante della lettura più recente, Long.MIN_VALUE se non ce ne sono */
+    public synchronized long getUltimoIstante() { return ultimoIstante; }
+
+    /** Ultime letture grezze di un canale (al massimo limite) */
+    public synchronized LettureSensore getUltimeLetture(CanaleSensore canale, int limite) {
+        SerieCircolare s = serie[canale.ordinal()];
+        int n = Math.max(0, Math.min(limite, s.getDimensione()));
+        long[] istanti = new long[n];
+        double[] valori = new double[n];
+        s.copiaUltime(n, istanti, valori);
+        return new LettureSensore(istanti, valori);
+    }
+
+    public synchronized List<IntervalloAggregato> getIntervalli(CanaleSensore canale, RisoluzioneTemporale risoluzione) {
+        return aggregati[canale.ordinal()].getIntervalli(risoluzione);
+    }
+
+    /** Valore mensile di un canale (mese 1-12), NaN se il mese non ha letture */
+    public synchronized double getValoreMensile(CanaleSensore canale, int mese) {
+        return aggregati[canale.ordinal()].getValoreMensile(mese, canale.isCumulativo());
+    }
+}
@@ -0,0 +1,196 @@
+package com.ortiVerdi.dashboard.data;
+
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coefficienti del modello meteo -> resa, precompilati in array per coltura.
+ *
+ * Per ogni coltura del file dei coefficienti tiene: profilo stagionale (dal
+ * catalogo delle colture), temperatura ottimale e tolleranza, pioggia ottimale,
+ * sensibilità a pioggia e luce, aumento del fabbisogno irriguo per grado e
+ * riduzione per pioggia. I valori dell'archivio sono la produzione
+ * con il clima di riferimento; per un mese con meteo diverso:
+ *
+ *   g(T, P, L) = exp(-((T - Topt) / tol)^2 / 2) * max(0.05, 1 - sP * ((P - Popt) / Popt)^2) * (L / Lrif)^sL
+ *   resa       = max(0, 1 + profilo[m] * (g(T, P, L) / g(Trif, Prif, Lrif) - 1))
+ *   irrigazione = max(0, 1 + iT * (T - Trif) - iP * (P - Prif) / Prif)
+ *
+ * Il profilo pesa l'effetto del meteo: conta di più nei mesi di piena stagione.
+ * Le colture assenti dalla tabella hanno resa e irrigazione 1 (nessun effetto).
+ *
+ * La tabella è immutabile: i calcoli leggono solo array, senza ricerche per nome.
+ * Quando il catalogo cambia, conCatalogo() ricompila i profili con gli stessi coefficienti.
+ */
+public final class TabellaResa {
+
+    private static final AtomicLong versioni = new AtomicLong();
+    private static final int COLONNE = 8;
+
+    private final long versione;
+    private final long versioneCatalogo;
+    private final List<double[]> righe;      // coefficienti letti dal file, per ricompilare
+    private final String[] nomi;
+    private final Map<String, Integer> indici = new HashMap<>();
+    private final double[] profili;          // coltura*12 + mese
+    private final double[] temperaturaOttimale;
+    private final double[] tolleranzaTemperatura;
+    private final double[] pioggiaOttimale;
+    private final double[] sensibilitaPioggia;
+    private final double[] sensibilitaLuce;
+    private final double[] irrigazioneTemperatura;
+    private final double[] irrigazionePioggia;
+    private final double temperaturaRiferimento;
+    private final double pioggiaRiferimento;
+    private final double luceRiferimento;
+    private final double[] gRiferimento;     // g(clima di riferimento) per coltura
+
+    private TabellaResa(List<double[]> righe, List<String> nomi, CatalogoColture catalogo,
+                        double temperaturaRiferimento, double pioggiaRiferimento, double luceRiferimento) {
+        int n = nomi.size();
+        this.versione = versioni.incrementAndGet();
+        this.versioneCatalogo = catalogo.getVersione();
+        this.righe = righe;
+        this.nomi = nomi.toArray(new String[0]);
+        this.profili = new double[n * ArchivioColture.MESI];
+        this.temperaturaOttimale = new double[n];
+        this.tolleranzaTemperatura = new double[n];
+        this.pioggiaOttimale = new double[n];
+        this.sensibilitaPioggia = new double[n];
+        this.sensibilitaLuce = new double[n];
+        this.irrigazioneTemperatura = new double[n];
+        this.irrigazionePioggia = new double[n];
+        this.temperaturaRiferimento = temperaturaRiferimento;
+        this.pioggiaRiferimento = pioggiaRiferimento;
+        this.luceRiferimento = luceRiferimento;
+        this.gRiferimento = new double[n];
+
+        for (int c = 0; c < n; c++) {
+            String nome = this.nomi[c];
+            indici.put(nome, c);
+            int i = catalogo.indice(nome);
+            double[] profilo = i >= 0 ? catalogo.getProfiloStagionale(i) : null;
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                // Colture senza profilo censito: il meteo pesa uguale in tutti i mesi
+                profili[c * ArchivioColture.MESI + m] = profilo != null ? profilo[m] : 1;
+            }
+
+            double[] v = righe.get(c);
+            temperaturaOttimale[c] = v[0];
+            tolleranzaTemperatura[c] = v[1];
+            pioggiaOttimale[c] = v[2];
+            sensibilitaPioggia[c] = v[3];
+            sensibilitaLuce[c] = v[4];
+            irrigazioneTemperatura[c] = v[5];
+            irrigazionePioggia[c] = v[6];
+            gRiferimento[c] = g(c, temperaturaRiferimento, pioggiaRiferimento, luceRiferimento);
+        }
+    }
+
+    // ======================================================
+    // Lettura del file dei coefficienti (separatore ';', prima riga di intestazione):
+    // Nome;Temperatura ottimale;Tolleranza temperatura;Pioggia ottimale;
+    // Sensibilita pioggia;Sensibilita luce;Irrigazione temperatura;Irrigazione pioggia
+    // ======================================================
+    public static TabellaResa carica(InputStream in, double temperaturaRiferimento,
+                                     double pioggiaRiferimento, double luceRiferimento) throws IOException {
+        if (!(pioggiaRiferimento > 0) || !(luceRiferimento > 0)) {
+            throw new IllegalArgumentException("Pioggia e luce di riferimento devono essere positive");
+        }
+        BufferedReader lettore = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> nomi = new ArrayList<>();
+        List<double[]> righe = new ArrayList<>();
+        String riga = lettore.readLine();   // intestazione
+        int numero = 1;
+        while ((riga = lettore.readLine()) != null) {
+            numero++;
+            if (riga.isBlank()) continue;
+            String[] campi = riga.split(";");
+            if (campi.length != COLONNE) {
+                throw new IOException("Riga " + numero + ": attese " + COLONNE + " colonne, trovate " + campi.length);
+            }
+            double[] valori = new double[COLONNE - 1];
+            try {
+                for (int k = 1; k < COLONNE; k++) valori[k - 1] = Double.parseDouble(campi[k].trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Riga " + numero + ": valore non numerico", e);
+            }
+            if (!(valori[1] > 0) || !(valori[2] > 0)) {
+                throw new IOException("Riga " + numero + ": tolleranza e pioggia ottimale devono essere positive");
+            }
+            String nome = campi[0].trim();
+            if (nomi.contains(nome)) throw new IOException("Riga " + numero + ": coltura ripetuta " + nome);
+            nomi.add(nome);
+            righe.add(valori);
+        }
+        return new TabellaResa(righe, nomi, ParametriColture.getCatalogo(),
+                temperaturaRiferimento, pioggiaRiferimento, luceRiferimento);
+    }
+
+    /** Stessi coefficienti, profili presi dal catalogo indicato */
+    public TabellaResa conCatalogo(CatalogoColture catalogo) {
+        return new TabellaResa(righe, List.of(nomi), catalogo, temperaturaRiferimento, pioggiaRiferimento, luceRiferimento);
+    }
+
+    /** Versione del catalogo delle colture da cui sono stati presi i profili */
+    public long getVersioneCatalogo() { return versioneCatalogo; }
+
+    /** Identifica la tabella: cambia a ogni caricamento (chiave per le cache a valle) */
+    public long getVersione() { return versione; }
+
+    public int getNumeroColture() { return nomi.length; }
+
+    public String getNome(int coltura) { return nomi[coltura]; }
+
+    // ======================================================
+    // Indice di tabella per ogni id nome dell'archivio (-1 = coltura senza
+    // coefficienti). Risolto una volta per archivio, non per riga o per mese.
+    // ======================================================
+    public int[] compila(ArchivioColture archivio) {
+        int[] indice = new int[archivio.getNumeroNomi()];
+        for (int id = 0; id < indice.length; id++) {
+            Integer c = indici.get(archivio.getNomeDaId(id));
+            indice[id] = c != null ? c : -1;
+        }
+        return indice;
+    }
+
+    // ======================================================
+    // Fattori di resa e di irrigazione per coltura e mese (coltura*12 + mese)
+    // con il meteo dei 12 mesi modificato dallo scenario: temperatura + delta (°C),
+    // pioggia e luce moltiplicate per (1 + variazione), es. -0.3 = -30%
+    // ======================================================
+    public void fattori(DatiAmbientali[] meteo, double deltaTemperatura, double variazionePioggia,
+                        double variazioneLuce, double[] resa, double[] irrigazione) {
+        for (int m = 0; m < ArchivioColture.MESI; m++) {
+            double t = meteo[m].getTemperatura() + deltaTemperatura;
+            double p = Math.max(0, meteo[m].getPrecipitazioni() * (1 + variazionePioggia));
+            double l = Math.max(0, meteo[m].getLuminosita() * (1 + variazioneLuce));
+            for (int c = 0; c < nomi.length; c++) {
+                int k = c * ArchivioColture.MESI + m;
+                double rapporto = g(c, t, p, l) / gRiferimento[c];
+                resa[k] = Math.max(0, 1 + profili[k] * (rapporto - 1));
+                irrigazione[k] = Math.max(0, 1 + irrigazioneTemperatura[c] * (t - temperaturaRiferimento)
+                        - irrigazionePioggia[c] * (p - pioggiaRiferimento) / pioggiaRiferimento);
+            }
+        }
+    }
+
+    // Risposta della coltura a temperatura, pioggia e luce (non normalizzata)
+    private double g(int c, double t, double p, double l) {
+        double dt = (t - temperaturaOttimale[c]) / tolleranzaTemperatura[c];
+        double dp = (p - pioggiaOttimale[c]) / pioggiaOttimale[c];
+        double luce = l <= 0 ? 0 : Math.pow(l / luceRiferimento, sensibilitaLuce[c]);
+        return Math.exp(-0.5 * dt * dt) * Math.max(0.05, 1 - sensibilitaPioggia[c] * dp * dp) * luce;
+    }
+}
@@ -1,6 +1,7 @@
 package com.ortiVerdi.dashboard.model;
 
-import java.util.Arrays;
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.Metrica;
 
 /**
  * Modello dati per rappresentare una coltura agricola.
@@ -10,47 +11,51 @@ import java.util.Arrays;
  * - costi mensili di produzione
  * - raccolto mensile
  *
+ * È una vista leggera su una riga dell'ArchivioColture: non copia i dati,
+ * li legge direttamente dalle colonne dell'archivio.
+ *
  * Include metodi per calcolare quantitativi e valori economici annuali.
  */
 public class Coltura {
-    private String nome;
-    private double prezzoVendita;
-    private double[] costiMensili;
-    private double[] raccoltoMensile;
+    private final ArchivioColture archivio;
+    private final int riga;
 
-    // Costruttore per inizializzare la coltura con dati principali
+    // Costruttore per inizializzare la coltura con dati principali (archivio da una sola riga)
     public Coltura(String nome, double prezzoVendita, double[] costiMensili, double[] raccoltoMensile){
-        this.nome = nome;
-        this.prezzoVendita = prezzoVendita;
-        this.costiMensili = costiMensili;
-        this.raccoltoMensile = raccoltoMensile;
+        this(ArchivioColture.builder(1).aggiungi(nome, prezzoVendita, 0, raccoltoMensile, costiMensili).build(), 0);
+    }
+
+    // Costruttore della vista sulla riga indicata dell'archivio
+    public Coltura(ArchivioColture archivio, int riga){
+        this.archivio = archivio;
+        this.riga = riga;
     }
 
     // ==============================
     // Getter per i campi
     // ==============================
-    public String getNome() { return nome; }
-    public double getPrezzoVendita() { return prezzoVendita; }
-    public double[] getCostiMensili() { return costiMensili; }
-    public double[] getRaccoltoMensile() { return raccoltoMensile; }
+    public String getNome() { return archivio.getNome(riga); }
+    public double getPrezzoVendita() { return archivio.getPrezzo(riga); }
+    public double[] getCostiMensili() { return archivio.copiaRiga(Metrica.COSTI, riga); }
+    public double[] getRaccoltoMensile() { return archivio.copiaRiga(Metrica.RACCOLTO, riga); }
 
     // ==============================
     // Metodi di calcolo annuali
     // ==============================
 
-    /** Somma totale del raccolto su 12 mesi */
+    /** Somma totale del raccolto su 12 mesi (mantenuta dall'archivio, O(1)) */
     public double getQuantitaAnnuale() {
-        return Arrays.stream(raccoltoMensile).sum();
+        return archivio.getRaccoltoAnnuo(riga);
     }
 
-    /** Somma totale dei costi su 12 mesi */
+    /** Somma totale dei costi su 12 mesi (mantenuta dall'archivio, O(1)) */
     public double getCostoAnnuale() {
-        return Arrays.stream(costiMensili).sum();
+        return archivio.getCostoAnnuo(riga);
     }
 
     /** Ricavo annuale = quantità totale * prezzo unitario */
     public double getRicavoAnnuale() {
-        return getQuantitaAnnuale() * prezzoVendita;
+        return getQuantitaAnnuale() * getPrezzoVendita();
     }
 
     /** Profitto annuale = ricavo - costi */
@@ -0,0 +1,215 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.EventoDati;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Servizio per modificare i dati delle colture mentre la dashboard è in uso.
+ *
+ * Le colture si modificano per riga dell'archivio (un appezzamento), non per
+ * nome: più righe possono avere lo stesso nome (appezzamenti aggiunti con
+ * aggiungiColtura o importati dal CSV) e ognuna si modifica a sé. La riga è la
+ * posizione nell'elenco delle colture dello snapshot; il nome della coltura in
+ * quella riga viene letto dallo snapshot corrente e verificato di nuovo sotto
+ * il lock, così una rigenerazione concorrente non fa finire la modifica su
+ * un'altra coltura.
+ *
+ * Ogni modifica produce un nuovo archivio con la cella cambiata (copia su
+ * scrittura di un blocco di righe: gli snapshot già pubblicati restano
+ * invariati) e propaga solo la differenza
+ * agli aggregati: totali mensili e annuali di DatiProduzione, consumo idrico
+ * mensile e valori annuali della coltura. Il costo è O(1) per cella toccata
+ * (O(12) per un cambio di prezzo o una coltura nuova), indipendentemente dal
+ * numero di colture. Il risultato viene pubblicato come nuovo snapshot.
+ *
+ * Ogni modifica viene accodata come EventoDati al PersistenzaService
+ * (scrittura differita) mentre SimulatoreService tiene il lock di scrittura,
+ * prima di pubblicare lo snapshot: gli eventi arrivano al registro nell'ordine
+ * delle versioni anche con più richieste concorrenti. All'avvio ripristina()
+ * riapplica gli eventi salvati senza accodarli di nuovo.
+ */
+@Service
+public class AggiornamentiService {
+
+    private final SimulatoreService simulatoreService;
+    private final PersistenzaService persistenzaService;
+
+    @Autowired
+    public AggiornamentiService(SimulatoreService simulatoreService, PersistenzaService persistenzaService) {
+        this.simulatoreService = simulatoreService;
+        this.persistenzaService = persistenzaService;
+    }
+
+    // Senza persistenza, usato nei test
+    AggiornamentiService(SimulatoreService simulatoreService) {
+        this(simulatoreService, PersistenzaService.nessuna());
+    }
+
+    // ==============================
+    // Raccolto e/o costi di una riga in un mese (1-12): entrambi i valori
+    // vengono verificati prima e applicati insieme, in un solo snapshot e un
+    // solo evento. null = valore invariato
+    // ==============================
+    public SnapshotSimulazione aggiornaMese(int riga, int mese, Double raccolto, Double costi) {
+        verificaMese(mese);
+        if (raccolto == null && costi == null) throw new IllegalArgumentException("Né raccolto né costi da modificare");
+        if (raccolto != null) verificaValore(raccolto);
+        if (costi != null) verificaValore(costi);
+        return registra(EventoDati.mese(riga, nome(riga), mese,
+                raccolto != null ? raccolto : Double.NaN, costi != null ? costi : Double.NaN));
+    }
+
+    public SnapshotSimulazione aggiornaRaccolto(int riga, int mese, double valore) {
+        return aggiornaMese(riga, mese, valore, null);
+    }
+
+    public SnapshotSimulazione aggiornaCosto(int riga, int mese, double valore) {
+        return aggiornaMese(riga, mese, null, valore);
+    }
+
+    private static SimulatoreService.Modifica modificaMese(int riga, String nome, int mese, double raccolto, double costi) {
+        return (corrente, versione) -> {
+            ArchivioColture a = verificaRiga(corrente.getArchivio(), riga, nome);
+            int idx = mese - 1;
+            Differenze d = new Differenze();
+            if (!Double.isNaN(raccolto)) {
+                double dq = raccolto - a.getRaccolto(riga, idx);
+                a = a.conRaccolto(riga, idx, raccolto);
+                d.raccolto[idx] = dq;
+                d.profitto[idx] = dq * a.getPrezzo(riga);
+                d.consumo[idx] = dq * a.getConsumoIdricoPerKg(riga);
+            }
+            if (!Double.isNaN(costi)) {
+                double dc = costi - a.getCosto(riga, idx);
+                a = a.conCosto(riga, idx, costi);
+                d.costi[idx] = dc;
+                d.profitto[idx] -= dc;
+            }
+            return d.applica(corrente, versione, a, riga);
+        };
+    }
+
+    // ==============================
+    // Prezzo di vendita di una riga: cambia il profitto di tutti i 12 mesi
+    // ==============================
+    public SnapshotSimulazione aggiornaPrezzo(int riga, double prezzo) {
+        verificaValore(prezzo);
+        return registra(EventoDati.prezzo(riga, nome(riga), prezzo));
+    }
+
+    private static SimulatoreService.Modifica modificaPrezzo(int riga, String nome, double prezzo) {
+        return (corrente, versione) -> {
+            ArchivioColture prima = verificaRiga(corrente.getArchivio(), riga, nome);
+            double dp = prezzo - prima.getPrezzo(riga);
+            ArchivioColture a = prima.conPrezzo(riga, prezzo);
+
+            Differenze d = new Differenze();
+            for (int m = 0; m < 12; m++) d.profitto[m] = a.getRaccolto(riga, m) * dp;
+            return d.applica(corrente, versione, a, riga);
+        };
+    }
+
+    // ==============================
+    // Nuova coltura (o nuovo appezzamento di una coltura esistente):
+    // occupa l'ultima riga dello snapshot restituito
+    // ==============================
+    public SnapshotSimulazione aggiungiColtura(String nome, double prezzo, double consumoIdricoPerKg,
+                                               double[] raccoltoMensile, double[] costiMensili) {
+        if (nome == null || nome.isBlank()) throw new IllegalArgumentException("Nome coltura mancante");
+        if (raccoltoMensile == null || raccoltoMensile.length != 12 || costiMensili == null || costiMensili.length != 12) {
+            throw new IllegalArgumentException("Servono 12 valori mensili di raccolto e di costi");
+        }
+        verificaValore(prezzo);
+        verificaValore(consumoIdricoPerKg);
+        for (int m = 0; m < 12; m++) {
+            verificaValore(raccoltoMensile[m]);
+            verificaValore(costiMensili[m]);
+        }
+        return registra(EventoDati.coltura(nome, prezzo, consumoIdricoPerKg, raccoltoMensile, costiMensili));
+    }
+
+    private static SimulatoreService.Modifica modificaColtura(EventoDati evento) {
+        String nome = evento.getNome();
+        double prezzo = evento.getValore(), consumoIdricoPerKg = evento.getConsumoIdricoPerKg();
+        double[] raccolto = evento.getRaccoltoMensile();
+        double[] costi = evento.getCostiMensili();
+
+        return (corrente, versione) -> {
+            ArchivioColture a = corrente.getArchivio().conNuovaRiga(nome, prezzo, consumoIdricoPerKg, raccolto, costi);
+
+            Differenze d = new Differenze();
+            for (int m = 0; m < 12; m++) {
+                d.raccolto[m] = raccolto[m];
+                d.costi[m] = costi[m];
+                d.profitto[m] = raccolto[m] * prezzo - costi[m];
+                d.consumo[m] = raccolto[m] * consumoIdricoPerKg;
+            }
+            return d.applica(corrente, versione, a, a.getNumeroRighe() - 1);
+        };
+    }
+
+    // ======================================================
+    // Riapplica un evento salvato (ripristino all'avvio): nessuna nuova scrittura
+    // ======================================================
+    public SnapshotSimulazione ripristina(EventoDati evento) {
+        return simulatoreService.aggiorna(modifica(evento));
+    }
+
+    // Applica l'evento e lo accoda alla persistenza con la versione dello
+    // snapshot, nella stessa sezione critica che pubblica lo snapshot
+    private SnapshotSimulazione registra(EventoDati evento) {
+        return simulatoreService.aggiorna(modifica(evento),
+                nuovo -> persistenzaService.accoda(evento, nuovo.getVersione()));
+    }
+
+    private static SimulatoreService.Modifica modifica(EventoDati evento) {
+        return switch (evento.getTipo()) {
+            case MESE -> modificaMese(evento.getRiga(), evento.getNome(), evento.getMese(), evento.getValore(),
+                    evento.getCosto());
+            case PREZZO -> modificaPrezzo(evento.getRiga(), evento.getNome(), evento.getValore());
+            case COLTURA -> modificaColtura(evento);
+            case LETTURE, SENSORE -> throw new IllegalArgumentException("Gli eventi dei sensori vanno a SensoriService");
+        };
+    }
+
+    // Differenze mensili da applicare agli aggregati dello snapshot
+    private static final class Differenze {
+        final double[] raccolto = new double[12];
+        final double[] costi = new double[12];
+        final double[] profitto = new double[12];
+        final double[] consumo = new double[12];
+
+        SnapshotSimulazione applica(SnapshotSimulazione corrente, long versione, ArchivioColture archivio, int riga) {
+            return corrente.conDifferenze(versione, archivio, riga, raccolto, costi, profitto, consumo);
+        }
+    }
+
+    // Nome della coltura nella riga dello snapshot corrente
+    private String nome(int riga) {
+        ArchivioColture archivio = simulatoreService.getSnapshot().getArchivio();
+        if (riga < 0 || riga >= archivio.getNumeroRighe()) throw new NoSuchElementException("Riga non trovata: " + riga);
+        return archivio.getNome(riga);
+    }
+
+    // La riga esiste ancora e contiene la stessa coltura (dopo una rigenerazione o al ripristino può non essere così)
+    private static ArchivioColture verificaRiga(ArchivioColture archivio, int riga, String nome) {
+        if (riga < 0 || riga >= archivio.getNumeroRighe() || !archivio.getNome(riga).equals(nome)) {
+            throw new NoSuchElementException("Riga " + riga + " non contiene più la coltura " + nome);
+        }
+        return archivio;
+    }
+
+    private static void verificaMese(int mese) {
+        if (mese < 1 || mese > 12) throw new IllegalArgumentException("Mese non valido: " + mese);
+    }
+
+    private static void verificaValore(double valore) {
+        if (!(valore >= 0) || Double.isInfinite(valore)) {
+            throw new IllegalArgumentException("Valore non valido: " + valore);
+        }
+    }
+}
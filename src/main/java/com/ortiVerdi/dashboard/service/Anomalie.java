@@ -0,0 +1,38 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.Metrica;
+
+import java.util.List;
+
+/**
+ * Anomalie segnalate per una partizione: valori mensili delle colture lontani
+ * dalla linea di base stagionale e, per la partizione corrente, letture dei
+ * sensori lontane dalla loro media mobile. |z| oltre la soglia = anomalia.
+ */
+public class Anomalie {
+    private final double sogliaZ;
+    private final List<Produzione> produzione;
+    private final List<Sensore> sensori;
+
+    Anomalie(double sogliaZ, List<Produzione> produzione, List<Sensore> sensori) {
+        this.sogliaZ = sogliaZ;
+        this.produzione = produzione;
+        this.sensori = sensori;
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public double getSogliaZ() { return sogliaZ; }
+    /** Per |z| decrescente */
+    public List<Produzione> getProduzione() { return produzione; }
+    /** Dalla più recente */
+    public List<Sensore> getSensori() { return sensori; }
+
+    /** Valore di una coltura in un mese (1-12) e valore atteso dalla linea di base */
+    public record Produzione(String coltura, Metrica metrica, int mese, double valore, double atteso, double z) { }
+
+    /** Lettura di un sensore e media mobile del canale prima della lettura */
+    public record Sensore(String appezzamento, CanaleSensore canale, long istante, double valore, double atteso, double z) { }
+}
@@ -0,0 +1,234 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.CatalogoColture;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Rilevamento di anomalie su dati produttivi e letture dei sensori.
+ *
+ * Dati produttivi (raccolto, costi, consumo idrico per coltura e mese): ogni
+ * mese è confrontato con una linea di base stimata sugli altri 11 mesi della
+ * stessa coltura (leave-one-out, così il valore anomalo non sposta la sua
+ * linea di base):
+ * - raccolto e consumo idrico: profilo stagionale del catalogo scalato sui
+ *   totali degli altri mesi;
+ * - costi: retta costi = fissi + variabili × raccolto.
+ * z = (valore - atteso) / dispersione dei residui degli altri mesi. Il calcolo
+ * è O(colture × 12 × 12) e viene fatto una volta per versione dell'archivio,
+ * alla prima richiesta: le modifiche dei dati non costano nulla in più.
+ *
+ * Letture dei sensori: ogni appezzamento e canale ha un RilevatoreEwma (stato
+ * O(1)) aggiornato a ogni lettura dal thread che la registra; le anomalie
+ * finiscono in un buffer circolare delle più recenti, scritto senza lock.
+ * La pioggia è esclusa: le letture sono quasi sempre zero con picchi, e lo
+ * z-score segnalerebbe ogni pioggia.
+ */
+@Service
+public class AnomalieService {
+
+    private static final Metrica[] METRICHE = {Metrica.RACCOLTO, Metrica.COSTI, Metrica.CONSUMO_IDRICO};
+    private static final CanaleSensore[] CANALI = CanaleSensore.values();
+    // Dispersione minima dei residui, in frazione del valore più alto degli altri mesi:
+    // con pochi mesi produttivi la linea di base passa quasi esattamente per i punti
+    private static final double DISPERSIONE_MINIMA = 0.1;
+
+    private static final Counter ANOMALIE_SENSORI = Counter.builder("ortiverdi.anomalie.sensori")
+            .description("Letture dei sensori segnalate come anomale")
+            .register(Metrics.globalRegistry);
+
+    private final PartizioniService partizioniService;
+    private final double sogliaZ;
+    private final double alfa;
+    private final int riscaldamento;
+    private final ConcurrentHashMap<String, RilevatoreEwma[]> rilevatori = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Anomalie.Sensore> recenti;
+    private final AtomicLong segnalate = new AtomicLong();
+
+    public AnomalieService(PartizioniService partizioniService, SensoriService sensoriService,
+                           @Value("${ortiverdi.anomalie.soglia-z:3}") double sogliaZ,
+                           @Value("${ortiverdi.anomalie.alfa:0.05}") double alfa,
+                           @Value("${ortiverdi.anomalie.riscaldamento:20}") int riscaldamento,
+                           @Value("${ortiverdi.anomalie.recenti:256}") int recenti) {
+        if (!(sogliaZ > 0)) throw new IllegalArgumentException("Soglia z non valida: " + sogliaZ);
+        if (!(alfa > 0 && alfa < 1)) throw new IllegalArgumentException("Alfa non valido: " + alfa);
+        this.partizioniService = partizioniService;
+        this.sogliaZ = sogliaZ;
+        this.alfa = alfa;
+        this.riscaldamento = riscaldamento;
+        this.recenti = new AtomicReferenceArray<>(Math.max(1, recenti));
+        sensoriService.aggiungiAscoltatore(this::osserva);
+    }
+
+    // ======================================================
+    // Anomalie della partizione (metrica null = tutte), al massimo "limite"
+    // per tipo; le letture dei sensori valgono solo per la partizione corrente
+    // ======================================================
+    public Anomalie anomalie(ChiavePartizione partizione, Metrica metrica, int limite) {
+        if (limite < 1) throw new IllegalArgumentException("Limite non valido: " + limite);
+        SnapshotSimulazione snapshot = partizioniService.getSnapshot(partizione);
+        CatalogoColture catalogo = ParametriColture.getCatalogo();
+        // L'indice sta nella stessa tabella dei derivati: va preso fuori dal calcolo
+        IndiceIntervalli indice = IndiceIntervalli.di(snapshot);
+        List<Anomalie.Produzione> tutte = snapshot.derivatoArchivio("anomalie:" + catalogo.getVersione() + ":" + sogliaZ,
+                s -> produzione(indice, catalogo));
+
+        List<Anomalie.Produzione> produzione = new ArrayList<>();
+        for (Anomalie.Produzione a : tutte) {
+            if (produzione.size() == limite) break;
+            if (metrica == null || a.metrica() == metrica) produzione.add(a);
+        }
+        List<Anomalie.Sensore> sensori = partizione.equals(partizioniService.getCorrente())
+                ? sensoriRecenti(limite) : List.of();
+        return new Anomalie(sogliaZ, produzione, sensori);
+    }
+
+    /** Letture valutate come anomale dall'avvio */
+    public long getSegnalate() { return segnalate.get(); }
+
+    // ======================================================
+    // Lettura di un sensore (dal thread che la registra): z-score rispetto alla
+    // media mobile del canale dell'appezzamento
+    // ======================================================
+    void osserva(String appezzamento, long istante, CanaleSensore canale, double valore) {
+        if (canale.isCumulativo()) return;
+        RilevatoreEwma[] perCanale = rilevatori.get(appezzamento);
+        if (perCanale == null) perCanale = rilevatori.computeIfAbsent(appezzamento, k -> nuoviRilevatori());
+        RilevatoreEwma rilevatore = perCanale[canale.ordinal()];
+
+        double atteso, z;
+        synchronized (rilevatore) {
+            atteso = rilevatore.getMedia();
+            z = rilevatore.osserva(valore);
+        }
+        if (Math.abs(z) > sogliaZ) {
+            long n = segnalate.getAndIncrement();
+            recenti.set((int) (n % recenti.length()), new Anomalie.Sensore(appezzamento, canale,
+                    istante, valore, atteso, z));
+            ANOMALIE_SENSORI.increment();
+        }
+    }
+
+    private RilevatoreEwma[] nuoviRilevatori() {
+        RilevatoreEwma[] perCanale = new RilevatoreEwma[CANALI.length];
+        for (int c = 0; c < perCanale.length; c++) perCanale[c] = new RilevatoreEwma(alfa, sogliaZ, riscaldamento);
+        return perCanale;
+    }
+
+    // Dalla più recente; una posizione appena sovrascritta da un'anomalia più nuova viene saltata
+    private List<Anomalie.Sensore> sensoriRecenti(int limite) {
+        long fine = segnalate.get();
+        long inizio = Math.max(0, fine - Math.min(limite, recenti.length()));
+        List<Anomalie.Sensore> elenco = new ArrayList<>();
+        for (long n = fine - 1; n >= inizio; n--) {
+            Anomalie.Sensore a = recenti.get((int) (n % recenti.length()));
+            if (a != null && (elenco.isEmpty() || a != elenco.get(elenco.size() - 1))) elenco.add(a);
+        }
+        return elenco;
+    }
+
+    // ======================================================
+    // Anomalie dei dati produttivi dell'archivio, per |z| decrescente
+    // ======================================================
+    private List<Anomalie.Produzione> produzione(IndiceIntervalli indice, CatalogoColture catalogo) {
+        List<Anomalie.Produzione> elenco = new ArrayList<>();
+        double[] piatto = new double[ArchivioColture.MESI];
+        Arrays.fill(piatto, 1);
+        for (int id = 0; id < indice.getNumeroColture(); id++) {
+            String nome = indice.getNome(id);
+            int i = catalogo.indice(nome);
+            // Colture senza profilo nel catalogo: linea di base piatta
+            double[] profilo = i >= 0 ? catalogo.getProfiloStagionale(i) : piatto;
+            double[] raccolto = valori(indice, Metrica.RACCOLTO, id);
+            for (Metrica metrica : METRICHE) {
+                double[] x = metrica == Metrica.RACCOLTO ? raccolto : valori(indice, metrica, id);
+                boolean costi = metrica == Metrica.COSTI;
+                for (int m = 0; m < ArchivioColture.MESI; m++) {
+                    double[] stima = costi ? retta(x, raccolto, m) : proporzione(x, profilo, m);
+                    if (stima == null) continue;
+                    double atteso = Math.max(0, stima[0]);
+                    double z = (x[m] - atteso) / stima[1];
+                    if (Math.abs(z) > sogliaZ) elenco.add(new Anomalie.Produzione(nome, metrica, m + 1, x[m], atteso, z));
+                }
+            }
+        }
+        elenco.sort(Comparator.comparingDouble((Anomalie.Produzione a) -> Math.abs(a.z())).reversed());
+        return List.copyOf(elenco);
+    }
+
+    // x = k × profilo stimato sugli altri mesi: {atteso nel mese m, dispersione}, null se non stimabile
+    private static double[] proporzione(double[] x, double[] profilo, int m) {
+        double sx = 0, sp = 0, massimo = 0;
+        for (int j = 0; j < x.length; j++) {
+            if (j == m) continue;
+            sx += x[j];
+            sp += profilo[j];
+            massimo = Math.max(massimo, Math.abs(x[j]));
+        }
+        if (sp <= 0) return null;
+        double k = sx / sp;
+        double residui = 0;
+        for (int j = 0; j < x.length; j++) {
+            if (j == m) continue;
+            double r = x[j] - k * profilo[j];
+            residui += r * r;
+        }
+        return stima(k * profilo[m], residui, x.length - 2, massimo);
+    }
+
+    // x = a + b × regressore (minimi quadrati) sugli altri mesi
+    private static double[] retta(double[] x, double[] regressore, int m) {
+        int n = x.length - 1;
+        double mx = 0, mr = 0, massimo = 0;
+        for (int j = 0; j < x.length; j++) {
+            if (j == m) continue;
+            mx += x[j];
+            mr += regressore[j];
+            massimo = Math.max(massimo, Math.abs(x[j]));
+        }
+        mx /= n;
+        mr /= n;
+        double sxr = 0, srr = 0;
+        for (int j = 0; j < x.length; j++) {
+            if (j == m) continue;
+            sxr += (x[j] - mx) * (regressore[j] - mr);
+            srr += (regressore[j] - mr) * (regressore[j] - mr);
+        }
+        double b = srr > 0 ? sxr / srr : 0;
+        double a = mx - b * mr;
+        double residui = 0;
+        for (int j = 0; j < x.length; j++) {
+            if (j == m) continue;
+            double r = x[j] - a - b * regressore[j];
+            residui += r * r;
+        }
+        return stima(a + b * regressore[m], residui, n - 2, massimo);
+    }
+
+    // Dispersione dei residui con un minimo relativo alla scala dei valori
+    private static double[] stima(double atteso, double residui, int gradi, double massimo) {
+        double dispersione = Math.max(Math.sqrt(residui / gradi), DISPERSIONE_MINIMA * massimo);
+        return dispersione > 0 ? new double[]{atteso, dispersione} : null;
+    }
+
+    private static double[] valori(IndiceIntervalli indice, Metrica metrica, int id) {
+        double[] v = new double[ArchivioColture.MESI];
+        for (int m = 0; m < v.length; m++) v[m] = indice.somma(metrica, id, m + 1, m + 1);
+        return v;
+    }
+}
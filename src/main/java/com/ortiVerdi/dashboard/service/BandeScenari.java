@@ -0,0 +1,47 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.Map;
+
+/**
+ * Bande dei quantili P5/P50/P95 per mese (indici 0-11) di raccolto, consumo
+ * idrico e profitto, ottenute da una simulazione Monte Carlo.
+ */
+public class BandeScenari {
+
+    /** Quantili di una metrica per i 12 mesi */
+    public static class Banda {
+        private final double[] p5;
+        private final double[] p50;
+        private final double[] p95;
+
+        public Banda(double[] p5, double[] p50, double[] p95) {
+            this.p5 = p5;
+            this.p50 = p50;
+            this.p95 = p95;
+        }
+
+        public double[] getP5() { return p5; }
+        public double[] getP50() { return p50; }
+        public double[] getP95() { return p95; }
+    }
+
+    private final int realizzazioni;
+    private final long seme;
+    private final long durataMillis;
+    private final Map<String, Banda> bande;   // raccolto, consumoIdrico, profitto
+
+    public BandeScenari(int realizzazioni, long seme, long durataMillis, Map<String, Banda> bande) {
+        this.realizzazioni = realizzazioni;
+        this.seme = seme;
+        this.durataMillis = durataMillis;
+        this.bande = bande;
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public int getRealizzazioni() { return realizzazioni; }
+    public long getSeme() { return seme; }
+    public long getDurataMillis() { return durataMillis; }
+    public Map<String, Banda> getBande() { return bande; }
+}
@@ -0,0 +1,391 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache limitata e concorrente di risultati calcolati, sul modello W-TinyLFU
+ * di Caffeine (in forma ridotta, senza dipendenze).
+ *
+ * - Limiti: numero di voci e peso totale (stimato dal pesatore, es. in byte).
+ * - Espulsione: le voci nuove entrano in una piccola finestra LRU (1%); quando
+ *   ne escono competono con la voce meno recente della parte principale e
+ *   resta quella con più accessi stimati (schizzo di frequenze con
+ *   invecchiamento). Una raffica di chiavi viste una volta sola non svuota
+ *   così le voci usate spesso.
+ * - Una sola computazione per chiave: le richieste che arrivano mentre la
+ *   voce è in calcolo aspettano quel risultato invece di ricalcolarlo.
+ * - Versioni: ogni voce ricorda la versione dei dati da cui è stata calcolata
+ *   (versione(chiave)); se i dati sono cambiati la voce è scaduta e viene
+ *   ricalcolata. aggiornaInAnticipo() ricalcola in background le voci usate
+ *   più spesso subito dopo un cambio di versione, prima che arrivi la richiesta;
+ *   precalcola() fa lo stesso per una chiave indicata, anche mai richiesta.
+ *
+ * Le letture che trovano la voce non prendono lock: aggiornano ordine LRU e
+ * frequenze solo se il lock è libero (come i buffer di lettura di Caffeine,
+ * un accesso perso rende la stima appena meno precisa). I valori null non
+ * vengono memorizzati.
+ */
+public final class CacheRisultati<K, V> {
+
+    private final int maxVoci;
+    private final long pesoMassimo;
+    private final Function<K, V> calcolo;
+    private final ToLongFunction<K> versione;
+    private final ToLongFunction<V> pesatore;
+
+    private final ConcurrentHashMap<K, Voce<K, V>> voci = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Segmento<K, V> finestra = new Segmento<>();
+    private final Segmento<K, V> principale = new Segmento<>();
+    private final SchizzoFrequenze frequenze;
+    private final int vociFinestra;
+    private final long pesoFinestra;
+
+    private final LongAdder successi = new LongAdder();
+    private final LongAdder mancati = new LongAdder();
+    private final LongAdder espulsioni = new LongAdder();
+    private final LongAdder anticipati = new LongAdder();
+
+    public CacheRisultati(int maxVoci, long pesoMassimo, ToLongFunction<V> pesatore,
+                          ToLongFunction<K> versione, Function<K, V> calcolo) {
+        if (maxVoci <= 0) throw new IllegalArgumentException("Numero massimo di voci non valido: " + maxVoci);
+        if (pesoMassimo <= 0) throw new IllegalArgumentException("Peso massimo non valido: " + pesoMassimo);
+        this.maxVoci = maxVoci;
+        this.pesoMassimo = pesoMassimo;
+        this.pesatore = pesatore;
+        this.versione = versione;
+        this.calcolo = calcolo;
+        this.vociFinestra = Math.max(1, maxVoci / 100);
+        this.pesoFinestra = Math.max(1, pesoMassimo / 100);
+        this.frequenze = new SchizzoFrequenze(maxVoci);
+    }
+
+    // ======================================================
+    // Valore della chiave per la versione corrente dei dati: dalla cache se
+    // presente e non scaduto, altrimenti calcolato (una volta sola per chiave)
+    // ======================================================
+    public V get(K chiave) {
+        long corrente = versione.applyAsLong(chiave);
+        Voce<K, V> v = voci.get(chiave);
+        if (v != null && v.versione >= corrente) {
+            successi.increment();
+            tocca(v);
+            return attendi(v);
+        }
+        return calcola(chiave, corrente, false);
+    }
+
+    // ======================================================
+    // Ricalcola in background le voci scadute più usate (al massimo "quante"),
+    // da chiamare quando la versione dei dati cambia
+    // ======================================================
+    public int aggiornaInAnticipo(int quante, Executor esecutore) {
+        List<K> candidate = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Segmento<K, V> s : List.of(principale, finestra)) {
+                for (Voce<K, V> v = s.testa; v != null && candidate.size() < quante; v = v.succ) {
+                    // Solo le voci richieste più di una volta: le altre non valgono il ricalcolo
+                    if (frequenze.stima(v.chiave) > 1) candidate.add(v.chiave);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        int avviati = 0;
+        for (K chiave : candidate) {
+            long corrente = versione.applyAsLong(chiave);
+            Voce<K, V> v = voci.get(chiave);
+            if (v == null || v.versione >= corrente || !v.valore.isDone()) continue;
+            esecutore.execute(() -> {
+                try {
+                    calcola(chiave, corrente, true);
+                } catch (RuntimeException e) {
+                    // La prossima richiesta riprova e riceve l'errore
+                }
+            });
+            avviati++;
+        }
+        return avviati;
+    }
+
+    // ======================================================
+    // Calcola subito la voce della chiave se manca o è scaduta, senza contarla
+    // come accesso (preriscaldamento di chiavi note prima che arrivino le richieste)
+    // ======================================================
+    public void precalcola(K chiave) {
+        long corrente = versione.applyAsLong(chiave);
+        Voce<K, V> v = voci.get(chiave);
+        if (v != null && v.versione >= corrente) return;
+        calcola(chiave, corrente, true);
+    }
+
+    /** Svuota la cache; i calcoli in corso finiscono ma il loro risultato non viene tenuto */
+    public void invalida() {
+        lock.lock();
+        try {
+            finestra.svuota();
+            principale.svuota();
+            voci.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==============================
+    // Statistiche
+    // ==============================
+    public long getSuccessi() { return successi.sum(); }
+
+    public long getMancati() { return mancati.sum(); }
+
+    public long getEspulsioni() { return espulsioni.sum(); }
+
+    /** Voci ricalcolate in background dopo un cambio di versione */
+    public long getAnticipati() { return anticipati.sum(); }
+
+    public int getDimensione() { return voci.size(); }
+
+    public long getPeso() {
+        lock.lock();
+        try {
+            return finestra.peso + principale.peso;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxVoci() { return maxVoci; }
+
+    public long getPesoMassimo() { return pesoMassimo; }
+
+    // ======================================================
+    // Calcolo con una sola computazione per chiave: chi trova la voce già
+    // installata (in calcolo o appena calcolata) ne aspetta il risultato
+    // ======================================================
+    private V calcola(K chiave, long corrente, boolean anticipato) {
+        Voce<K, V> nuova = new Voce<>(chiave, corrente);
+        List<Voce<K, V>> sostituita = new ArrayList<>(1);
+        Voce<K, V> installata = voci.compute(chiave, (k, vecchia) -> {
+            if (vecchia != null && vecchia.versione >= corrente) return vecchia;
+            if (vecchia != null) sostituita.add(vecchia);
+            return nuova;
+        });
+        if (installata != nuova) {
+            if (!anticipato) successi.increment();
+            tocca(installata);
+            return attendi(installata);
+        }
+
+        if (anticipato) anticipati.increment();
+        else mancati.increment();
+        Voce<K, V> vecchia = sostituita.isEmpty() ? null : sostituita.get(0);
+        V valore;
+        try {
+            valore = calcolo.apply(chiave);
+        } catch (RuntimeException | Error e) {
+            voci.remove(chiave, nuova);
+            nuova.valore.completeExceptionally(e);
+            registra(nuova, vecchia, 0);
+            throw e;
+        }
+        nuova.valore.complete(valore);
+        if (valore == null) voci.remove(chiave, nuova);
+        registra(nuova, vecchia, valore != null ? Math.max(1, pesatore.applyAsLong(valore)) : 0);
+        return valore;
+    }
+
+    // Sostituisce la voce vecchia con la nuova nelle liste e riporta la cache nei limiti
+    private void registra(Voce<K, V> nuova, Voce<K, V> vecchia, long peso) {
+        lock.lock();
+        try {
+            if (vecchia != null && vecchia.segmento != null) vecchia.segmento.rimuovi(vecchia);
+            if (voci.get(nuova.chiave) != nuova) return;    // errore, null, invalidata o già sostituita
+            nuova.peso = peso;
+            frequenze.incrementa(nuova.chiave);
+            if (peso > pesoMassimo) {
+                espelli(nuova);
+                return;
+            }
+            finestra.aggiungiInTesta(nuova);
+            while (finestra.numero > vociFinestra || finestra.peso > pesoFinestra) {
+                Voce<K, V> candidata = finestra.coda;
+                finestra.rimuovi(candidata);
+                ammetti(candidata);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // La voce uscita dalla finestra entra nella parte principale solo se è più
+    // usata delle voci che dovrebbe far uscire
+    private void ammetti(Voce<K, V> candidata) {
+        int maxPrincipale = maxVoci - vociFinestra;
+        long pesoPrincipale = pesoMassimo - pesoFinestra;
+        while (principale.numero + 1 > maxPrincipale || principale.peso + candidata.peso > pesoPrincipale) {
+            Voce<K, V> vittima = principale.coda;
+            if (vittima == null || frequenze.stima(candidata.chiave) <= frequenze.stima(vittima.chiave)) {
+                espelli(candidata);
+                return;
+            }
+            principale.rimuovi(vittima);
+            espelli(vittima);
+        }
+        principale.aggiungiInTesta(candidata);
+    }
+
+    private void espelli(Voce<K, V> v) {
+        if (voci.remove(v.chiave, v)) espulsioni.increment();
+    }
+
+    // Accesso a una voce presente: ordine LRU e frequenza, solo se il lock è libero
+    private void tocca(Voce<K, V> v) {
+        if (!lock.tryLock()) return;
+        try {
+            frequenze.incrementa(v.chiave);
+            if (v.segmento != null) {
+                Segmento<K, V> s = v.segmento;
+                s.rimuovi(v);
+                s.aggiungiInTesta(v);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private V attendi(Voce<K, V> v) {
+        try {
+            return v.valore.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    // ==============================
+    // Voci e liste LRU (modificate solo sotto lock)
+    // ==============================
+    private static final class Voce<K, V> {
+        final K chiave;
+        final long versione;
+        final CompletableFuture<V> valore = new CompletableFuture<>();
+        long peso;
+        Voce<K, V> prec, succ;
+        Segmento<K, V> segmento;
+
+        Voce(K chiave, long versione) {
+            this.chiave = chiave;
+            this.versione = versione;
+        }
+    }
+
+    // Lista doppiamente collegata: testa = usata più di recente
+    private static final class Segmento<K, V> {
+        Voce<K, V> testa, coda;
+        int numero;
+        long peso;
+
+        void aggiungiInTesta(Voce<K, V> v) {
+            v.segmento = this;
+            v.prec = null;
+            v.succ = testa;
+            if (testa != null) testa.prec = v;
+            testa = v;
+            if (coda == null) coda = v;
+            numero++;
+            peso += v.peso;
+        }
+
+        void rimuovi(Voce<K, V> v) {
+            if (v.prec != null) v.prec.succ = v.succ;
+            else testa = v.succ;
+            if (v.succ != null) v.succ.prec = v.prec;
+            else coda = v.prec;
+            v.prec = v.succ = null;
+            v.segmento = null;
+            numero--;
+            peso -= v.peso;
+        }
+
+        void svuota() {
+            for (Voce<K, V> v = testa; v != null; ) {
+                Voce<K, V> succ = v.succ;
+                v.prec = v.succ = null;
+                v.segmento = null;
+                v = succ;
+            }
+            testa = coda = null;
+            numero = 0;
+            peso = 0;
+        }
+    }
+
+    // ======================================================
+    // Schizzo count-min delle frequenze di accesso: 4 contatori per chiave
+    // (fino a 15), si prende il minimo. Ogni riga ha 4 contatori per voce della
+    // cache; dopo 10 accessi per voce tutti i contatori vengono dimezzati, così
+    // contano gli accessi recenti e le collisioni restano poche
+    // ======================================================
+    private static final class SchizzoFrequenze {
+        private static final int RIGHE = 4;
+        private static final int MASSIMO = 15;
+
+        private final byte[] contatori;
+        private final int maschera;
+        private final int campioniPerInvecchiamento;
+        private int campioni;
+
+        SchizzoFrequenze(int voci) {
+            int potenza = Integer.highestOneBit(Math.max(64, Math.min(voci, 1 << 20)) * 2 - 1);
+            int larghezza = 4 * potenza;
+            contatori = new byte[RIGHE * larghezza];
+            maschera = larghezza - 1;
+            campioniPerInvecchiamento = 10 * potenza;
+        }
+
+        void incrementa(Object chiave) {
+            int h = rimescola(chiave.hashCode());
+            for (int r = 0; r < RIGHE; r++) {
+                int i = indice(h, r);
+                if (contatori[i] < MASSIMO) contatori[i]++;
+            }
+            if (++campioni >= campioniPerInvecchiamento) {
+                for (int i = 0; i < contatori.length; i++) contatori[i] >>>= 1;
+                campioni /= 2;
+            }
+        }
+
+        int stima(Object chiave) {
+            int h = rimescola(chiave.hashCode());
+            int minimo = MASSIMO;
+            for (int r = 0; r < RIGHE; r++) minimo = Math.min(minimo, contatori[indice(h, r)]);
+            return minimo;
+        }
+
+        private int indice(int h, int riga) {
+            int x = h * (0x9E3779B9 + 2 * riga + 1);
+            return riga * (maschera + 1) + ((x ^ (x >>> 16)) & maschera);
+        }
+
+        private static int rimescola(int h) {
+            h ^= h >>> 16;
+            h *= 0x45d9f3b;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CatalogoColture;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caricamento e ricarica a caldo del catalogo delle colture
+ * (ortiverdi.catalogo.percorso).
+ *
+ * All'avvio un catalogo non valido blocca l'applicazione. Dopo, una ricarica
+ * fallita lascia in uso il catalogo precedente. Se il catalogo è un file su
+ * disco viene controllata periodicamente la data di modifica e il file viene
+ * riletto quando cambia; in ogni caso si può forzare con ricarica().
+ *
+ * Il nuovo catalogo viene letto e validato per intero e poi pubblicato con
+ * ParametriColture.impostaCatalogo: le operazioni in corso finiscono con la
+ * versione che avevano preso, le successive usano la nuova. I dati già caricati
+ * (prezzi e consumi delle righe dell'archivio) non cambiano.
+ */
+@Service
+public class CatalogoColtureService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoColtureService.class);
+
+    private final Resource risorsa;
+    private long ultimaModifica;
+    private final AtomicLong ricariche = new AtomicLong();
+    private final AtomicLong ricaricheFallite = new AtomicLong();
+
+    public CatalogoColtureService(
+            @Value("${ortiverdi.catalogo.percorso:classpath:data/catalogo_colture.csv}") Resource risorsa) {
+        this.risorsa = risorsa;
+        try {
+            ricarica();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Catalogo delle colture " + risorsa.getDescription() + " non valido", e);
+        }
+    }
+
+    /** Catalogo attualmente in uso */
+    public CatalogoColture getCatalogo() {
+        return ParametriColture.getCatalogo();
+    }
+
+    // ======================================================
+    // Rilegge il catalogo e lo pubblica; se non è valido resta quello precedente
+    // ======================================================
+    public synchronized CatalogoColture ricarica() throws IOException {
+        long modifica = dataModifica();
+        CatalogoColture nuovo;
+        try (InputStream in = risorsa.getInputStream()) {
+            nuovo = CatalogoColture.carica(in);
+        } catch (IOException e) {
+            ricaricheFallite.incrementAndGet();
+            throw e;
+        }
+        ParametriColture.impostaCatalogo(nuovo);
+        ultimaModifica = modifica;
+        ricariche.incrementAndGet();
+        log.info("Catalogo delle colture {} caricato: {} colture (versione {})",
+                risorsa.getDescription(), nuovo.getNumeroColture(), nuovo.getVersione());
+        return nuovo;
+    }
+
+    // ======================================================
+    // Controllo periodico del file: ricarica solo se la data di modifica è cambiata
+    // ======================================================
+    @Scheduled(fixedDelayString = "${ortiverdi.catalogo.controllo-ms:5000}")
+    public synchronized void controllaModifiche() {
+        long modifica = dataModifica();
+        if (modifica <= 0 || modifica == ultimaModifica) return;
+        try {
+            ricarica();
+        } catch (IOException e) {
+            // Non si riprova finché il file non cambia di nuovo
+            ultimaModifica = modifica;
+            log.warn("Catalogo delle colture {} non valido, resta la versione {}: {}",
+                    risorsa.getDescription(), getCatalogo().getVersione(), e.getMessage());
+        }
+    }
+
+    public long getRicariche() { return ricariche.get(); }
+
+    public long getRicaricheFallite() { return ricaricheFallite.get(); }
+
+    /** Colori dei grafici per nome di coltura, nell'ordine del catalogo */
+    public Map<String, String> getColori() {
+        CatalogoColture c = getCatalogo();
+        Map<String, String> colori = new LinkedHashMap<>();
+        for (int i = 0; i < c.getNumeroColture(); i++) colori.put(c.getNome(i), c.getColore(i));
+        return colori;
+    }
+
+    // Data di modifica del file; 0 per risorse che non sono file (es. dentro il jar)
+    private long dataModifica() {
+        try {
+            return risorsa.isFile() ? risorsa.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
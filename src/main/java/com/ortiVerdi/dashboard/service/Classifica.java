@@ -0,0 +1,69 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.List;
+
+/**
+ * Classifica dei primi K appezzamenti di una partizione secondo un criterio.
+ * candidati è il numero di righe con valore definito, tra cui sono scelti i K.
+ */
+public class Classifica {
+
+    /** Una posizione della classifica */
+    public static class Voce {
+        private final int posizione;
+        private final int riga;
+        private final String nome;
+        private final double valore;
+        private final double raccoltoAnnuale;
+        private final double profittoAnnuale;
+
+        public Voce(int posizione, int riga, String nome, double valore, double raccoltoAnnuale, double profittoAnnuale) {
+            this.posizione = posizione;
+            this.riga = riga;
+            this.nome = nome;
+            this.valore = valore;
+            this.raccoltoAnnuale = raccoltoAnnuale;
+            this.profittoAnnuale = profittoAnnuale;
+        }
+
+        public int getPosizione() { return posizione; }
+        public int getRiga() { return riga; }
+        public String getNome() { return nome; }
+        public double getValore() { return valore; }
+        public double getRaccoltoAnnuale() { return raccoltoAnnuale; }
+        public double getProfittoAnnuale() { return profittoAnnuale; }
+    }
+
+    private final CriterioClassifica criterio;
+    private final String unita;
+    private final boolean decrescente;
+    private final Integer mese;
+    private final String azienda;
+    private final int anno;
+    private final int candidati;
+    private final List<Voce> voci;
+
+    public Classifica(CriterioClassifica criterio, boolean decrescente, Integer mese, String azienda, int anno,
+                      int candidati, List<Voce> voci) {
+        this.criterio = criterio;
+        this.unita = criterio.getUnita();
+        this.decrescente = decrescente;
+        this.mese = mese;
+        this.azienda = azienda;
+        this.anno = anno;
+        this.candidati = candidati;
+        this.voci = voci;
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public CriterioClassifica getCriterio() { return criterio; }
+    public String getUnita() { return unita; }
+    public boolean isDecrescente() { return decrescente; }
+    public Integer getMese() { return mese; }
+    public String getAzienda() { return azienda; }
+    public int getAnno() { return anno; }
+    public int getCandidati() { return candidati; }
+    public List<Voce> getVoci() { return voci; }
+}
@@ -0,0 +1,109 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classifiche lato server degli appezzamenti (righe dell'archivio): i primi o
+ * gli ultimi K per profitto annuale, margine per unità, acqua per euro di
+ * profitto o crescita del raccolto rispetto al mese precedente.
+ *
+ * Un solo passaggio sulle colonne primitive con un HeapLimitato di capacità K:
+ * O(N log K) tempo e O(K) memoria, senza ordinare né serializzare tutte le
+ * colture. I valori annuali vengono da ValoriAnnuali, calcolati una volta per
+ * snapshot; la crescita mensile si legge direttamente dalle celle.
+ */
+@Service
+public class ClassificheService {
+
+    /** Limite di K: oltre, tanto vale scaricare l'elenco completo */
+    public static final int K_MASSIMO = 1000;
+
+    /** Limite di da + k per le pagine successive: l'heap tiene da + k righe */
+    public static final int PROFONDITA_MASSIMA = 10_000;
+
+    private static final Timer TEMPO_CLASSIFICA = Timer.builder("ortiverdi.classifiche.calcolo")
+            .description("Calcolo di una classifica top-K sugli appezzamenti")
+            .register(Metrics.globalRegistry);
+
+    private final PartizioniService partizioniService;
+
+    public ClassificheService(PartizioniService partizioniService) {
+        this.partizioniService = partizioniService;
+    }
+
+    // ======================================================
+    // Primi K appezzamenti per valore decrescente (decrescente = true)
+    // o crescente; mese (2-12) serve solo per CRESCITA_MENSILE
+    // ======================================================
+    public Classifica classifica(ChiavePartizione chiave, CriterioClassifica criterio, int k,
+                                 boolean decrescente, Integer mese) {
+        return classifica(chiave, criterio, 0, k, decrescente, mese);
+    }
+
+    // ======================================================
+    // Pagina della classifica: K appezzamenti dalla posizione da + 1.
+    // A parità di valore l'ordine è per riga, quindi le pagine non si sovrappongono
+    // ======================================================
+    public Classifica classifica(ChiavePartizione chiave, CriterioClassifica criterio, int da, int k,
+                                 boolean decrescente, Integer mese) {
+        if (k < 1 || k > K_MASSIMO) throw new IllegalArgumentException("k deve essere tra 1 e " + K_MASSIMO + ": " + k);
+        if (da < 0 || da + k > PROFONDITA_MASSIMA) {
+            throw new IllegalArgumentException("da + k deve essere al massimo " + PROFONDITA_MASSIMA + ": " + (da + k));
+        }
+        if (criterio == CriterioClassifica.CRESCITA_MENSILE) {
+            if (mese == null || mese < 2 || mese > ArchivioColture.MESI) {
+                throw new IllegalArgumentException("La crescita mensile richiede un mese tra 2 e 12");
+            }
+        } else {
+            mese = null;
+        }
+        Integer meseRichiesto = mese;
+
+        return TEMPO_CLASSIFICA.record(() -> {
+            SnapshotSimulazione snapshot = partizioniService.getSnapshot(chiave);
+            ArchivioColture archivio = snapshot.getArchivio();
+            ValoriAnnuali valori = ValoriAnnuali.di(snapshot);
+            double segno = decrescente ? 1 : -1;   // l'heap tiene le chiavi più alte
+
+            HeapLimitato heap = new HeapLimitato(da + k);
+            int candidati = 0;
+            for (int r = 0; r < valori.getNumeroRighe(); r++) {
+                double v = valore(criterio, archivio, valori, r, meseRichiesto);
+                if (Double.isNaN(v)) continue;
+                candidati++;
+                heap.offri(r, segno * v);
+            }
+
+            int[] righe = heap.estraiOrdinate();
+            List<Classifica.Voce> voci = new ArrayList<>(Math.max(0, righe.length - da));
+            for (int i = da; i < righe.length; i++) {
+                int r = righe[i];
+                voci.add(new Classifica.Voce(i + 1, r, archivio.getNome(r), valore(criterio, archivio, valori, r, meseRichiesto),
+                        valori.getRaccolto(r), valori.getProfitto(r)));
+            }
+            return new Classifica(criterio, decrescente, meseRichiesto, chiave.getAzienda(), chiave.getAnno(),
+                    candidati, voci);
+        });
+    }
+
+    // Valore della riga per il criterio; NaN se non definito
+    private static double valore(CriterioClassifica criterio, ArchivioColture archivio, ValoriAnnuali valori,
+                                 int riga, Integer mese) {
+        return switch (criterio) {
+            case PROFITTO -> valori.getProfitto(riga);
+            case MARGINE_UNITA -> valori.getMarginePerUnita(riga);
+            case ACQUA_PER_EURO -> valori.getAcquaPerEuro(riga);
+            case CRESCITA_MENSILE -> {
+                double prima = archivio.getRaccolto(riga, mese - 2), dopo = archivio.getRaccolto(riga, mese - 1);
+                yield prima > 0 ? (dopo - prima) / prima * 100 : Double.NaN;
+            }
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package com.ortiVerdi.dashboard.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * CompositorePagina per Java 17: i pezzi girano su un pool fisso di thread di
+ * piattaforma (ortiverdi.pagine.thread; 0 = nel thread della richiesta, in
+ * sequenza). La semantica è quella di StructuredTaskScope.ShutdownOnFailure:
+ * al primo errore o alla scadenza tutti gli altri pezzi vengono annullati.
+ */
+@Service
+public class CompositoreConExecutor implements CompositorePagina {
+
+    private final long scadenzaMs;
+    private final ExecutorService esecutore;    // null = in sequenza
+
+    public CompositoreConExecutor(@Value("${ortiverdi.pagine.scadenza-ms:2000}") long scadenzaMs,
+                                  @Value("${ortiverdi.pagine.thread:0}") int thread) {
+        if (scadenzaMs <= 0) throw new IllegalArgumentException("Scadenza non valida: " + scadenzaMs);
+        this.scadenzaMs = scadenzaMs;
+        AtomicInteger numero = new AtomicInteger();
+        this.esecutore = thread > 0 ? Executors.newFixedThreadPool(thread, r -> {
+            Thread t = new Thread(r, "ortiverdi-pagina-" + numero.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    @Override
+    public Ambito apri() {
+        return new AmbitoExecutor(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scadenzaMs));
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        if (esecutore != null) esecutore.shutdownNow();
+    }
+
+    private final class AmbitoExecutor implements Ambito {
+        private final long scadenza;
+        private final List<Future<?>> pezzi = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Throwable> primoErrore = new AtomicReference<>();
+
+        AmbitoExecutor(long scadenza) {
+            this.scadenza = scadenza;
+        }
+
+        @Override
+        public <T> Supplier<T> avvia(Callable<T> pezzo) {
+            // Il primo pezzo che fallisce annulla subito gli altri, senza aspettare attendi()
+            Callable<T> sorvegliato = () -> {
+                try {
+                    return pezzo.call();
+                } catch (Throwable t) {
+                    if (primoErrore.compareAndSet(null, t)) close();
+                    throw t;
+                }
+            };
+            Future<T> futuro;
+            if (esecutore != null) {
+                futuro = esecutore.submit(sorvegliato);
+            } else {
+                FutureTask<T> compito = new FutureTask<>(sorvegliato);
+                compito.run();
+                futuro = compito;
+            }
+            pezzi.add(futuro);
+            return () -> {
+                if (!futuro.isDone()) throw new IllegalStateException("Pezzo letto prima di attendi()");
+                return risultato(futuro, 0);
+            };
+        }
+
+        @Override
+        public void attendi() {
+            try {
+                for (Future<?> f : pezzi) risultato(f, scadenza - System.nanoTime());
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            for (Future<?> f : pezzi) f.cancel(true);
+        }
+
+        private <T> T risultato(Future<T> futuro, long attesaNanos) {
+            try {
+                return futuro.isDone() ? futuro.get() : futuro.get(Math.max(attesaNanos, 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new ScadenzaPaginaException(scadenzaMs);
+            } catch (CancellationException e) {
+                // Annullato per l'errore di un altro pezzo: si riporta quell'errore
+                Throwable causa = primoErrore.get();
+                if (causa == null) throw e;
+                throw rilancia(causa);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } catch (ExecutionException e) {
+                throw rilancia(e.getCause());
+            }
+        }
+
+        private RuntimeException rilancia(Throwable causa) {
+            if (causa instanceof RuntimeException r) return r;
+            if (causa instanceof Error err) throw err;
+            return new CompletionException(causa);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Assemblaggio del modello di una pagina a partire da pezzi indipendenti
+ * (dati ambientali, dati del mese, serie annuali), eseguiti in parallelo con
+ * una scadenza per richiesta.
+ *
+ * Uso strutturato: ogni richiesta apre un Ambito, avvia i pezzi, attende e
+ * chiude. Nessun pezzo sopravvive al suo ambito: se uno fallisce o la scadenza
+ * passa, gli altri vengono annullati e l'errore arriva a chi ha aperto l'ambito.
+ *
+ * Implementazioni: CompositoreConExecutor (Java 17, thread di piattaforma) e,
+ * con il profilo Maven java21, CompositoreStrutturato (StructuredTaskScope su
+ * thread virtuali), che ha la precedenza.
+ */
+public interface CompositorePagina {
+
+    /** Apre un ambito con la scadenza configurata che parte adesso */
+    Ambito apri();
+
+    /** Pezzi di una sola richiesta; da usare in try-with-resources */
+    interface Ambito extends AutoCloseable {
+
+        /** Avvia un pezzo; il risultato si legge dal Supplier dopo attendi() */
+        <T> Supplier<T> avvia(Callable<T> pezzo);
+
+        /**
+         * Attende tutti i pezzi entro la scadenza. Un errore di un pezzo viene
+         * rilanciato così com'è se è unchecked; la scadenza superata diventa
+         * ScadenzaPaginaException.
+         */
+        void attendi();
+
+        /** Annulla i pezzi non ancora terminati */
+        @Override
+        void close();
+    }
+}
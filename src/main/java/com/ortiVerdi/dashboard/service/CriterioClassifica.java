@@ -0,0 +1,26 @@
+package com.ortiVerdi.dashboard.service;
+
+/**
+ * Criteri di ordinamento delle classifiche degli appezzamenti.
+ * I valori vengono da ValoriAnnuali; quelli non definiti (NaN) escludono la
+ * riga dalla classifica invece di finire in fondo come zeri.
+ */
+public enum CriterioClassifica {
+
+    /** Profitto annuale (€) */
+    PROFITTO("€"),
+    /** Profitto annuale per unità raccolta (€/kg), come Coltura.getMarginePerUnita */
+    MARGINE_UNITA("€/kg"),
+    /** Litri d'acqua per euro di profitto: più basso è meglio, definito solo con profitto positivo */
+    ACQUA_PER_EURO("L/€"),
+    /** Crescita percentuale del raccolto rispetto al mese precedente (serve il mese) */
+    CRESCITA_MENSILE("%");
+
+    private final String unita;
+
+    CriterioClassifica(String unita) {
+        this.unita = unita;
+    }
+
+    public String getUnita() { return unita; }
+}
@@ -1,17 +1,26 @@
 package com.ortiVerdi.dashboard.service;
 
-import com.ortiVerdi.dashboard.model.Coltura;
+import com.ortiVerdi.dashboard.data.Metrica;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-
 /**
  * Servizio per aggregare i dati delle colture e fornire statistiche
  * annuali o mensili all'interfaccia della dashboard.
+ * I metodi senza snapshot usano i dati correnti del SimulatoreService.
+ * Le serie vengono dall'IndiceIntervalli dello snapshot, che risponde anche a
+ * intervalli di mesi qualsiasi (vedi InterrogazioniService).
  */
 @Service
 public class DashboardService {
 
+    // Tempo di calcolo delle serie annuali, per serie
+    private static final Timer TEMPO_RACCOLTO = tempo("raccolto");
+    private static final Timer TEMPO_COSTI = tempo("costi");
+    private static final Timer TEMPO_PROFITTI = tempo("profitti");
+    private static final Timer TEMPO_CONSUMO = tempo("consumo");
+
     private final SimulatoreService simulatoreService;
 
     // Iniezione del servizio che genera i dati simulati
@@ -28,61 +37,49 @@ public class DashboardService {
     }
 
     // ==============================
-    // Calcola il raccolto totale annuale sommando tutte le colture
+    // Raccolto totale per mese di tutte le colture
     // ==============================
     public double[] getRaccoltoAnnuale() {
-        List<Coltura> colture = simulatoreService.getColture();  // Otteniamo tutte le colture
-        double[] totale = new double[12];  // Array con 12 mesi
-
-        for (Coltura c : colture) {
-            for (int mese = 0; mese < 12; mese++) {
-                totale[mese] += c.getRaccoltoMensile()[mese];  // Somma dei raccolti mensili
-            }
-        }
+        return getRaccoltoAnnuale(simulatoreService.getSnapshot());
+    }
 
-        return totale;
+    public double[] getRaccoltoAnnuale(SnapshotSimulazione snapshot) {
+        // Totali mensili dall'indice a somme prefisse dello snapshot (costruito una volta)
+        return TEMPO_RACCOLTO.record(() -> IndiceIntervalli.di(snapshot).serieMensile(Metrica.RACCOLTO));
     }
 
     // ==============================
     // Restituisce il consumo idrico totale annuale
     // ==============================
     public double[] getConsumoAnnuale() {
-        // Il consumo idrico mensile è già calcolato e memorizzato nel simulatore
-        return simulatoreService.getConsumoIdricoMensile();
+        return getConsumoAnnuale(simulatoreService.getSnapshot());
+    }
+
+    public double[] getConsumoAnnuale(SnapshotSimulazione snapshot) {
+        return TEMPO_CONSUMO.record(() -> IndiceIntervalli.di(snapshot).serieMensile(Metrica.CONSUMO_IDRICO));
     }
 
     // ==============================
-    // Calcola i costi annuali totali sommando i costi di tutte le colture
+    // Costi totali per mese di tutte le colture
     // ==============================
     public double[] getCostiAnnuali() {
-        List<Coltura> colture = simulatoreService.getColture();
-        double[] totale = new double[12];
-
-        for (Coltura c : colture) {
-            for (int mese = 0; mese < 12; mese++) {
-                totale[mese] += c.getCostiMensili()[mese];  // Somma dei costi mensili
-            }
-        }
+        return getCostiAnnuali(simulatoreService.getSnapshot());
+    }
 
-        return totale;
+    public double[] getCostiAnnuali(SnapshotSimulazione snapshot) {
+        return TEMPO_COSTI.record(() -> IndiceIntervalli.di(snapshot).serieMensile(Metrica.COSTI));
     }
 
     // ==============================
-    // Calcola i profitti annuali totali per tutte le colture
+    // Profitti totali per mese di tutte le colture
     // Profitto = ricavo - costi
     // ==============================
     public double[] getProfittiAnnuali() {
-        List<Coltura> colture = simulatoreService.getColture();
-        double[] totale = new double[12];
-
-        for (Coltura c : colture) {
-            for (int mese = 0; mese < 12; mese++) {
-                double ricavo = c.getRaccoltoMensile()[mese] * c.getPrezzoVendita(); // Ricavo mensile
-                totale[mese] += ricavo - c.getCostiMensili()[mese]; // Profitto mensile sommato
-            }
-        }
+        return getProfittiAnnuali(simulatoreService.getSnapshot());
+    }
 
-        return totale;
+    public double[] getProfittiAnnuali(SnapshotSimulazione snapshot) {
+        return TEMPO_PROFITTI.record(() -> IndiceIntervalli.di(snapshot).serieMensile(Metrica.PROFITTO));
     }
 
     // ==============================
@@ -96,4 +93,10 @@ public class DashboardService {
         return somma / valori.length;       // Media
     }
 
+    private static Timer tempo(String serie) {
+        return Timer.builder("ortiverdi.dashboard.calcolo")
+                .description("Calcolo di una serie annuale della dashboard")
+                .tag("serie", serie)
+                .register(Metrics.globalRegistry);
+    }
 }
@@ -0,0 +1,48 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.List;
+
+/**
+ * Risultato di una valutazione in blocco di scenari meteo su più partizioni:
+ * una stima per scenario sommata su tutte le partizioni e il dettaglio di ogni
+ * partizione (stesso ordine degli scenari).
+ */
+public class EsitiScenariMeteo {
+
+    /** Stime degli scenari per una partizione */
+    public static class Partizione {
+        private final String azienda;
+        private final int anno;
+        private final List<StimaResa> stime;
+
+        public Partizione(String azienda, int anno, List<StimaResa> stime) {
+            this.azienda = azienda;
+            this.anno = anno;
+            this.stime = stime;
+        }
+
+        public String getAzienda() { return azienda; }
+        public int getAnno() { return anno; }
+        public List<StimaResa> getStime() { return stime; }
+    }
+
+    private final int partizioni;
+    private final List<StimaResa> totali;
+    private final List<Partizione> perPartizione;
+    private final long durataMillis;
+
+    public EsitiScenariMeteo(int partizioni, List<StimaResa> totali, List<Partizione> perPartizione, long durataMillis) {
+        this.partizioni = partizioni;
+        this.totali = totali;
+        this.perPartizione = perPartizione;
+        this.durataMillis = durataMillis;
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public int getPartizioni() { return partizioni; }
+    public List<StimaResa> getTotali() { return totali; }
+    public List<Partizione> getPerPartizione() { return perPartizione; }
+    public long getDurataMillis() { return durataMillis; }
+}
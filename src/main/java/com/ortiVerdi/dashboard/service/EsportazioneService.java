@@ -0,0 +1,221 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.FormatoEsportazione;
+import com.ortiVerdi.dashboard.data.LettureSensore;
+import com.ortiVerdi.dashboard.data.ScrittoreTabella;
+import com.ortiVerdi.dashboard.data.ScrittoreTabella.Colonna;
+import com.ortiVerdi.dashboard.data.ScrittoreTabella.TipoColonna;
+import com.ortiVerdi.dashboard.data.StazioneSensori;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Esportazione delle tabelle di una partizione in CSV o nel formato colonnare
+ * compresso.
+ *
+ * Le righe vengono scritte direttamente dai valori primitivi dello snapshot
+ * (o delle stazioni dei sensori) allo stream della risposta, senza costruire
+ * oggetti per riga né la tabella intera in memoria: l'heap usato è quello del
+ * buffer dello scrittore, qualunque sia il numero di righe. Il CSV delle
+ * colture ha il layout di dati_colture.csv e si può reimportare così com'è;
+ * il consumo idrico per kg, che quel layout non ha, c'è solo nel colonnare.
+ *
+ * prepara() risolve la partizione e fissa lo snapshot, così gli errori
+ * (partizione inesistente, parametri) arrivano prima di iniziare la risposta;
+ * la scrittura vera e propria può girare su un altro thread.
+ */
+@Service
+public class EsportazioneService {
+
+    private static final String[] MESI = {"Gen", "Feb", "Mar", "Apr", "Mag", "Giu", "Lug", "Ago", "Set", "Ott", "Nov", "Dic"};
+    private static final CanaleSensore[] CANALI = CanaleSensore.values();
+
+    private final PartizioniService partizioniService;
+    private final SensoriService sensoriService;
+
+    public EsportazioneService(PartizioniService partizioniService, SensoriService sensoriService) {
+        this.partizioniService = partizioniService;
+        this.sensoriService = sensoriService;
+    }
+
+    // ======================================================
+    // Esportazione pronta da scrivere: snapshot fissato, nome del file e formato
+    // ======================================================
+    public Esportazione prepara(ChiavePartizione partizione, TabellaEsportazione tabella,
+                                FormatoEsportazione formato, boolean excel) {
+        if (tabella == TabellaEsportazione.LETTURE && !partizione.equals(partizioniService.getCorrente())) {
+            throw new IllegalArgumentException("Le letture dei sensori esistono solo per la partizione corrente");
+        }
+        SnapshotSimulazione snapshot = partizioniService.getSnapshot(partizione);
+        String nomeFile = tabella.name().toLowerCase(Locale.ROOT) + "-" + partizione.getAzienda() + "-"
+                + partizione.getAnno() + "." + formato.getEstensione();
+        return new Esportazione(snapshot, tabella, formato, excel, nomeFile);
+    }
+
+    /** Tabella di una partizione con snapshot fissato, da scrivere su uno stream */
+    public final class Esportazione {
+        private final SnapshotSimulazione snapshot;
+        private final TabellaEsportazione tabella;
+        private final FormatoEsportazione formato;
+        private final boolean excel;
+        private final String nomeFile;
+
+        private Esportazione(SnapshotSimulazione snapshot, TabellaEsportazione tabella,
+                             FormatoEsportazione formato, boolean excel, String nomeFile) {
+            this.snapshot = snapshot;
+            this.tabella = tabella;
+            this.formato = formato;
+            this.excel = excel;
+            this.nomeFile = nomeFile;
+        }
+
+        public FormatoEsportazione getFormato() { return formato; }
+
+        public String getNomeFile() { return nomeFile; }
+
+        /** Scrive la tabella sullo stream (che non viene chiuso) e restituisce le righe scritte */
+        public long scrivi(OutputStream out) throws IOException {
+            long inizio = System.nanoTime();
+            long righe;
+            try (ScrittoreTabella s = formato.apri(out, colonne(tabella, formato), excel)) {
+                righe = switch (tabella) {
+                    case COLTURE -> colture(snapshot.getArchivio(), formato != FormatoEsportazione.CSV, s);
+                    case MENSILI -> mensili(snapshot, s);
+                    case AMBIENTALI -> ambientali(snapshot, s);
+                    case LETTURE -> letture(s);
+                };
+                s.chiudi();
+            }
+            Timer.builder("ortiverdi.esportazione")
+                    .description("Esportazione di una tabella in streaming")
+                    .tag("tabella", tabella.name().toLowerCase(Locale.ROOT))
+                    .tag("formato", formato.name().toLowerCase(Locale.ROOT))
+                    .register(Metrics.globalRegistry)
+                    .record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+            return righe;
+        }
+    }
+
+    // ======================================================
+    // Colonne di ogni tabella
+    // ======================================================
+    static List<Colonna> colonne(TabellaEsportazione tabella, FormatoEsportazione formato) {
+        List<Colonna> colonne = new ArrayList<>();
+        switch (tabella) {
+            case COLTURE -> {
+                colonne.add(new Colonna("Nome", TipoColonna.TESTO));
+                colonne.add(decimale("Prezzo/Unita"));
+                for (String m : MESI) colonne.add(decimale("Raccolto " + m));
+                for (String m : MESI) colonne.add(decimale("Costo " + m));
+                if (formato != FormatoEsportazione.CSV) colonne.add(decimale("Consumo idrico/kg"));
+            }
+            case MENSILI -> {
+                colonne.add(new Colonna("Mese", TipoColonna.INTERO));
+                colonne.add(decimale("Raccolto"));
+                colonne.add(decimale("Consumo idrico"));
+                colonne.add(decimale("Costi"));
+                colonne.add(decimale("Profitto"));
+            }
+            case AMBIENTALI -> {
+                colonne.add(new Colonna("Mese", TipoColonna.INTERO));
+                colonne.add(decimale("Temperatura"));
+                colonne.add(decimale("Umidita"));
+                colonne.add(decimale("Precipitazioni"));
+                colonne.add(decimale("Vento"));
+                colonne.add(decimale("Luminosita"));
+            }
+            case LETTURE -> {
+                colonne.add(new Colonna("Appezzamento", TipoColonna.TESTO));
+                colonne.add(new Colonna("Canale", TipoColonna.TESTO));
+                colonne.add(new Colonna("Istante", TipoColonna.INTERO));
+                colonne.add(decimale("Valore"));
+            }
+        }
+        return colonne;
+    }
+
+    private static Colonna decimale(String nome) {
+        return new Colonna(nome, TipoColonna.DECIMALE);
+    }
+
+    // ======================================================
+    // Righe di ogni tabella
+    // ======================================================
+    static long colture(ArchivioColture a, boolean consumo, ScrittoreTabella s) throws IOException {
+        int righe = a.getNumeroRighe();
+        for (int r = 0; r < righe; r++) {
+            s.testo(a.getNome(r));
+            s.decimale(a.getPrezzo(r));
+            for (int m = 0; m < ArchivioColture.MESI; m++) s.decimale(a.getRaccolto(r, m));
+            for (int m = 0; m < ArchivioColture.MESI; m++) s.decimale(a.getCosto(r, m));
+            if (consumo) s.decimale(a.getConsumoIdricoPerKg(r));
+            s.fineRiga();
+        }
+        return righe;
+    }
+
+    private static long mensili(SnapshotSimulazione snapshot, ScrittoreTabella s) throws IOException {
+        for (int mese = 1; mese <= 12; mese++) {
+            DatiProduzione d = snapshot.getDatiMensili(mese);
+            s.intero(mese);
+            s.decimale(d.getQuantitaRaccolto());
+            s.decimale(d.getConsumoIdrico());
+            s.decimale(d.getCostiProduzione());
+            s.decimale(d.getProfitto());
+            s.fineRiga();
+        }
+        return 12;
+    }
+
+    private static long ambientali(SnapshotSimulazione snapshot, ScrittoreTabella s) throws IOException {
+        for (int mese = 1; mese <= 12; mese++) {
+            DatiAmbientali d = snapshot.getDatiAmbientali(mese);
+            s.intero(mese);
+            s.decimale(d.getTemperatura());
+            s.decimale(d.getUmiditaRelativa());
+            s.decimale(d.getPrecipitazioni());
+            s.decimale(d.getVelocitaVento());
+            s.decimale(d.getLuminosita());
+            s.fineRiga();
+        }
+        return 12;
+    }
+
+    // Per appezzamento e canale, dalla lettura più vecchia: una serie alla volta in memoria
+    private long letture(ScrittoreTabella s) throws IOException {
+        List<StazioneSensori> stazioni = sensoriService.getStazioni();
+        stazioni.sort(Comparator.comparing(StazioneSensori::getAppezzamento));
+        long righe = 0;
+        for (StazioneSensori stazione : stazioni) {
+            for (CanaleSensore canale : CANALI) {
+                LettureSensore l = stazione.getUltimeLetture(canale, Integer.MAX_VALUE);
+                String nome = canale.name().toLowerCase(Locale.ROOT);
+                long[] istanti = l.getIstanti();
+                double[] valori = l.getValori();
+                for (int i = 0; i < istanti.length; i++) {
+                    s.testo(stazione.getAppezzamento());
+                    s.testo(nome);
+                    s.intero(istanti[i]);
+                    s.decimale(valori[i]);
+                    s.fineRiga();
+                }
+                righe += istanti.length;
+            }
+        }
+        return righe;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ortiVerdi.dashboard.service;
+
+/**
+ * Heap di capacità fissa che tiene i K elementi con chiave più alta visti
+ * finora, su array primitivi (indice di riga + chiave double, nessun boxing).
+ *
+ * La radice è il peggiore dei K tenuti: un nuovo elemento entra solo se lo
+ * batte, con costo O(log K). Un passaggio su N righe costa O(N log K) con
+ * memoria O(K). A parità di chiave vince la riga con indice minore, così la
+ * classifica non dipende dall'ordine di inserimento.
+ */
+final class HeapLimitato {
+
+    private final int[] righe;
+    private final double[] chiavi;
+    private int dimensione;
+
+    HeapLimitato(int capacita) {
+        if (capacita <= 0) throw new IllegalArgumentException("Capacità non valida: " + capacita);
+        righe = new int[capacita];
+        chiavi = new double[capacita];
+    }
+
+    /** Propone una riga con la sua chiave; viene tenuta se è tra le K migliori */
+    void offri(int riga, double chiave) {
+        if (dimensione < righe.length) {
+            righe[dimensione] = riga;
+            chiavi[dimensione] = chiave;
+            sali(dimensione++);
+        } else if (peggiore(0, riga, chiave)) {
+            righe[0] = riga;
+            chiavi[0] = chiave;
+            scendi(0);
+        }
+    }
+
+    int getDimensione() { return dimensione; }
+
+    // ======================================================
+    // Svuota l'heap restituendo le righe dalla migliore alla peggiore
+    // ======================================================
+    int[] estraiOrdinate() {
+        int[] ordinate = new int[dimensione];
+        for (int i = ordinate.length - 1; i >= 0; i--) {
+            ordinate[i] = righe[0];
+            dimensione--;
+            righe[0] = righe[dimensione];
+            chiavi[0] = chiavi[dimensione];
+            scendi(0);
+        }
+        return ordinate;
+    }
+
+    // true se l'elemento in posizione i è peggiore di (riga, chiave)
+    private boolean peggiore(int i, int riga, double chiave) {
+        return chiavi[i] < chiave || (chiavi[i] == chiave && righe[i] > riga);
+    }
+
+    private void sali(int i) {
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (!peggiore(i, righe[padre], chiavi[padre])) return;
+            scambia(i, padre);
+            i = padre;
+        }
+    }
+
+    private void scendi(int i) {
+        while (true) {
+            int sinistro = 2 * i + 1, destro = sinistro + 1, minimo = i;
+            if (sinistro < dimensione && peggiore(sinistro, righe[minimo], chiavi[minimo])) minimo = sinistro;
+            if (destro < dimensione && peggiore(destro, righe[minimo], chiavi[minimo])) minimo = destro;
+            if (minimo == i) return;
+            scambia(i, minimo);
+            i = minimo;
+        }
+    }
+
+    private void scambia(int a, int b) {
+        int r = righe[a]; righe[a] = righe[b]; righe[b] = r;
+        double c = chiavi[a]; chiavi[a] = chiavi[b]; chiavi[b] = c;
+    }
+}
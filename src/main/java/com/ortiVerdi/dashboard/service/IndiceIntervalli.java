@@ -0,0 +1,171 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.Metrica;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Indice a somme prefisse sui dati mensili di uno snapshot.
+ *
+ * Per ogni metrica e ogni coltura (id nome dell'archivio: gli appezzamenti con
+ * lo stesso nome sono già sommati) tiene 13 somme prefisse: prefisso[k] è la
+ * somma dei mesi 1..k. La somma di un intervallo di mesi contiguo è quindi una
+ * sottrazione, O(1) per coltura; i totali di tutte le colture hanno un loro
+ * prefisso, quindi un intervallo senza filtro costa O(1) e uno filtrato
+ * O(colture selezionate). Le selezioni di colture sono BitSet di id nome.
+ *
+ * Viene costruito in un passaggio sull'archivio alla prima richiesta e resta
+ * legato all'archivio (valore derivato): gli snapshot che cambiano solo i dati
+ * ambientali lo riusano, una modifica ai dati produttivi ne crea uno nuovo.
+ */
+public final class IndiceIntervalli {
+
+    private static final int PREFISSI = ArchivioColture.MESI + 1;
+    private static final Metrica[] METRICHE = Metrica.values();
+
+    private final String[] nomi;               // id nome -> nome
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final double[][] mensili;          // [metrica][id*12 + mese]
+    private final double[][] prefissi;         // [metrica][id*13 + k]
+    private final double[][] totaliMensili;    // [metrica][mese], somme dirette
+    private final double[][] prefissiTotali;   // [metrica][k]
+
+    private IndiceIntervalli(ArchivioColture archivio) {
+        int tipi = archivio.getNumeroNomi();
+        nomi = new String[tipi];
+        for (int id = 0; id < tipi; id++) {
+            nomi[id] = archivio.getNomeDaId(id);
+            ids.put(nomi[id], id);
+        }
+
+        int k = METRICHE.length;
+        mensili = new double[k][tipi * ArchivioColture.MESI];
+        prefissi = new double[k][tipi * PREFISSI];
+        totaliMensili = new double[k][ArchivioColture.MESI];
+        prefissiTotali = new double[k][PREFISSI];
+
+        double[] raccolto = mensili[Metrica.RACCOLTO.ordinal()];
+        double[] costi = mensili[Metrica.COSTI.ordinal()];
+        double[] profitto = mensili[Metrica.PROFITTO.ordinal()];
+        double[] consumo = mensili[Metrica.CONSUMO_IDRICO.ordinal()];
+        for (int r = 0; r < archivio.getNumeroRighe(); r++) {
+            int base = archivio.getIdNome(r) * ArchivioColture.MESI;
+            double prezzo = archivio.getPrezzo(r), perKg = archivio.getConsumoIdricoPerKg(r);
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                double q = archivio.getRaccolto(r, m), c = archivio.getCosto(r, m);
+                raccolto[base + m] += q;
+                costi[base + m] += c;
+                profitto[base + m] += q * prezzo - c;
+                consumo[base + m] += q * perKg;
+            }
+        }
+
+        for (int metrica = 0; metrica < k; metrica++) {
+            for (int id = 0; id < tipi; id++) {
+                double somma = 0;
+                for (int m = 0; m < ArchivioColture.MESI; m++) {
+                    double v = mensili[metrica][id * ArchivioColture.MESI + m];
+                    somma += v;
+                    prefissi[metrica][id * PREFISSI + m + 1] = somma;
+                    totaliMensili[metrica][m] += v;
+                }
+            }
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                prefissiTotali[metrica][m + 1] = prefissiTotali[metrica][m] + totaliMensili[metrica][m];
+            }
+        }
+    }
+
+    /** Indice dell'archivio dello snapshot, costruito alla prima richiesta e poi riusato */
+    public static IndiceIntervalli di(SnapshotSimulazione snapshot) {
+        return snapshot.derivatoArchivio("indice-intervalli", s -> new IndiceIntervalli(s.getArchivio()));
+    }
+
+    // ==============================
+    // Interrogazioni (mesi 1-12, estremi inclusi, meseDa <= meseA)
+    // ==============================
+
+    /** Somma della metrica su tutte le colture nei mesi [meseDa, meseA]: O(1) */
+    public double somma(Metrica metrica, int meseDa, int meseA) {
+        verifica(meseDa, meseA);
+        double[] p = prefissiTotali[metrica.ordinal()];
+        return p[meseA] - p[meseDa - 1];
+    }
+
+    /** Somma della metrica per una coltura (id nome) nei mesi [meseDa, meseA]: O(1) */
+    public double somma(Metrica metrica, int idNome, int meseDa, int meseA) {
+        verifica(meseDa, meseA);
+        double[] p = prefissi[metrica.ordinal()];
+        int base = idNome * PREFISSI;
+        return p[base + meseA] - p[base + meseDa - 1];
+    }
+
+    /** Somma sulle colture selezionate (null = tutte): O(colture selezionate) */
+    public double somma(Metrica metrica, BitSet colture, int meseDa, int meseA) {
+        if (colture == null) return somma(metrica, meseDa, meseA);
+        verifica(meseDa, meseA);
+        double[] p = prefissi[metrica.ordinal()];
+        double somma = 0;
+        for (int id = colture.nextSetBit(0); id >= 0; id = colture.nextSetBit(id + 1)) {
+            int base = id * PREFISSI;
+            somma += p[base + meseA] - p[base + meseDa - 1];
+        }
+        return somma;
+    }
+
+    /** Serie dei 12 mesi della metrica su tutte le colture (copia) */
+    public double[] serieMensile(Metrica metrica) {
+        return totaliMensili[metrica.ordinal()].clone();
+    }
+
+    /** Serie dei 12 mesi sommata sulle colture selezionate (null = tutte) */
+    public double[] serieMensile(Metrica metrica, BitSet colture) {
+        if (colture == null) return serieMensile(metrica);
+        double[] serie = new double[ArchivioColture.MESI];
+        double[] valori = mensili[metrica.ordinal()];
+        for (int id = colture.nextSetBit(0); id >= 0; id = colture.nextSetBit(id + 1)) {
+            for (int m = 0; m < ArchivioColture.MESI; m++) serie[m] += valori[id * ArchivioColture.MESI + m];
+        }
+        return serie;
+    }
+
+    // ==============================
+    // Colture
+    // ==============================
+    public int getNumeroColture() { return nomi.length; }
+
+    public String getNome(int idNome) { return nomi[idNome]; }
+
+    /** Id nome della coltura, -1 se non è nello snapshot */
+    public int getIdNome(String nome) {
+        Integer id = ids.get(nome);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Colture selezionate come bitset di id nome (null = lista vuota = tutte).
+     * Con obbligatorie, una coltura che non è nello snapshot è un errore (404);
+     * altrimenti semplicemente non contribuisce.
+     */
+    public BitSet filtro(List<String> colture, boolean obbligatorie) {
+        if (colture.isEmpty()) return null;
+        BitSet filtro = new BitSet(nomi.length);
+        for (String nome : colture) {
+            int id = getIdNome(nome);
+            if (id >= 0) filtro.set(id);
+            else if (obbligatorie) throw new NoSuchElementException("Coltura non trovata: " + nome);
+        }
+        return filtro;
+    }
+
+    private static void verifica(int meseDa, int meseA) {
+        if (meseDa < 1 || meseA > ArchivioColture.MESI || meseDa > meseA) {
+            throw new IllegalArgumentException("Intervallo di mesi non valido: " + meseDa + "-" + meseA);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interrogazioni su intervalli di mesi qualsiasi ("Mar-Ago"), con raggruppamento
+ * per mese, trimestre, stagione o anno, filtro sulle colture e confronto con
+ * l'anno precedente della stessa azienda.
+ *
+ * Ogni somma è una differenza di somme prefisse (IndiceIntervalli): il costo
+ * dipende dal numero di gruppi e di colture, non dal numero di righe.
+ */
+@Service
+public class InterrogazioniService {
+
+    private static final Timer TEMPO_INTERROGAZIONE = Timer.builder("ortiverdi.interrogazioni.intervallo")
+            .description("Interrogazione su un intervallo di mesi con raggruppamento")
+            .register(Metrics.globalRegistry);
+
+    private final PartizioniService partizioniService;
+
+    public InterrogazioniService(PartizioniService partizioniService) {
+        this.partizioniService = partizioniService;
+    }
+
+    // ======================================================
+    // Esegue l'interrogazione sulla partizione indicata.
+    // colture vuoto = tutte; confronto = aggiunge l'anno precedente, se esiste
+    // ======================================================
+    public RisultatoInterrogazione interroga(ChiavePartizione chiave, Metrica metrica, int meseDa, int meseA,
+                                             Raggruppamento raggruppamento, List<String> colture, boolean confronto) {
+        return TEMPO_INTERROGAZIONE.record(() -> {
+            IndiceIntervalli indice = IndiceIntervalli.di(partizioniService.getSnapshot(chiave));
+            BitSet filtro = indice.filtro(colture, true);
+            indice.somma(metrica, filtro, meseDa, meseA);   // valida l'intervallo prima di tutto il resto
+
+            IndiceIntervalli precedente = null;
+            BitSet filtroPrecedente = null;
+            ChiavePartizione chiavePrecedente = new ChiavePartizione(chiave.getAzienda(), chiave.getAnno() - 1);
+            if (confronto && partizioniService.esiste(chiavePrecedente)) {
+                precedente = IndiceIntervalli.di(partizioniService.getSnapshot(chiavePrecedente));
+                // Colture assenti l'anno precedente: semplicemente non contribuiscono
+                filtroPrecedente = precedente.filtro(colture, false);
+            }
+
+            List<RisultatoInterrogazione.ValoreGruppo> gruppi = new ArrayList<>();
+            for (Raggruppamento.Gruppo g : raggruppamento.getGruppi()) {
+                List<Integer> mesi = new ArrayList<>();
+                double valore = 0, valorePrecedente = 0;
+                for (int[] tratto : g.tratti()) {
+                    // Tratto tagliato sull'intervallo richiesto
+                    int da = Math.max(tratto[0], meseDa), a = Math.min(tratto[1], meseA);
+                    if (da > a) continue;
+                    for (int m = da; m <= a; m++) mesi.add(m);
+                    valore += indice.somma(metrica, filtro, da, a);
+                    if (precedente != null) valorePrecedente += precedente.somma(metrica, filtroPrecedente, da, a);
+                }
+                if (mesi.isEmpty()) continue;
+                gruppi.add(new RisultatoInterrogazione.ValoreGruppo(g.etichetta(), mesi, valore,
+                        precedente != null ? valorePrecedente : null));
+            }
+
+            Map<String, Double> perColtura = new LinkedHashMap<>();
+            for (int id = 0; id < indice.getNumeroColture(); id++) {
+                if (filtro == null || filtro.get(id)) perColtura.put(indice.getNome(id), indice.somma(metrica, id, meseDa, meseA));
+            }
+
+            double totale = indice.somma(metrica, filtro, meseDa, meseA);
+            Double totalePrecedente = precedente != null ? precedente.somma(metrica, filtroPrecedente, meseDa, meseA) : null;
+            return new RisultatoInterrogazione(metrica, chiave.getAzienda(), chiave.getAnno(),
+                    precedente != null ? chiavePrecedente.getAnno() : null, meseDa, meseA, raggruppamento,
+                    colture.isEmpty() ? null : colture, totale, totalePrecedente, gruppi, perColtura);
+        });
+    }
+}
@@ -0,0 +1,357 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.TabellaResa;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Pianificazione dell'irrigazione: divide un budget mensile di acqua tra gli
+ * appezzamenti per massimizzare il profitto atteso.
+ *
+ * Modello, mese per mese, con i fattori di TabellaResa calcolati sul meteo del
+ * mese (temperatura, pioggia, luce; la pioggia si può sostituire con una
+ * previsione):
+ *   raccolto atteso  q = raccolto × resa
+ *   fabbisogno       w = q × consumo per kg × irrigazione   (la pioggia lo riduce)
+ *   ricavo           q × prezzo × frazione del fabbisogno coperta
+ * I costi di produzione restano a carico anche senza acqua; l'acqua ha un
+ * prezzo facoltativo per litro.
+ *
+ * Con ricavo proporzionale all'acqua il problema di ogni mese è uno zaino
+ * frazionario: la soluzione ottima assegna l'acqua in ordine di ricavo per
+ * litro (prezzo / (consumo per kg × irrigazione)) finché il budget finisce o il
+ * ricavo per litro scende sotto il prezzo dell'acqua, con l'ultimo
+ * appezzamento coperto in parte.
+ *
+ * Il lavoro è diviso per riusarlo quando cambiano budget o meteo:
+ * - per archivio (valore derivato che sopravvive agli aggiornamenti meteo):
+ *   appezzamenti di ogni coltura ordinati per prezzo / consumo per kg, ordine
+ *   che non dipende dal meteo;
+ * - per mese e meteo del mese: la graduatoria del mese, fusione delle liste
+ *   delle colture (O(n log colture)) con le somme cumulate di acqua e ricavo,
+ *   tenuta in una CacheRisultati. Cambiare la pioggia di un mese ricostruisce
+ *   solo la graduatoria di quel mese;
+ * - per budget: una ricerca binaria sulle somme cumulate. Cambiare il budget
+ *   non ricostruisce nulla.
+ */
+@Service
+public class IrrigazioneService {
+
+    private static final Timer TEMPO_PIANO = Timer.builder("ortiverdi.irrigazione.piano")
+            .description("Piano di irrigazione di una partizione con budget mensile")
+            .register(Metrics.globalRegistry);
+
+    private final PartizioniService partizioniService;
+    private final ModelloResaService modelloResaService;
+    private final CacheRisultati<Chiave, Graduatoria> graduatorie;
+
+    public IrrigazioneService(PartizioniService partizioniService, ModelloResaService modelloResaService,
+                              @Value("${ortiverdi.irrigazione.graduatorie:240}") int maxGraduatorie,
+                              @Value("${ortiverdi.irrigazione.peso-massimo-kb:32768}") long pesoMassimoKb) {
+        this.partizioniService = partizioniService;
+        this.modelloResaService = modelloResaService;
+        this.graduatorie = new CacheRisultati<>(maxGraduatorie, pesoMassimoKb * 1024, Graduatoria::peso,
+                this::versione, this::costruisci);
+    }
+
+    // ======================================================
+    // Piano dei 12 mesi: budget in litri per mese (indici 0-11), pioggia
+    // prevista in mm per mese (null o NaN = quella della partizione), prezzo
+    // dell'acqua in € per litro, dettaglio = litri per appezzamento
+    // ======================================================
+    public PianoIrrigazione pianifica(ChiavePartizione partizione, double[] budget, double[] pioggia,
+                                      double prezzoAcqua, boolean dettaglio) {
+        verifica(budget, pioggia, prezzoAcqua);
+        return TEMPO_PIANO.record(() -> {
+            long inizio = System.nanoTime();
+            SnapshotSimulazione snapshot = partizioniService.getSnapshot(partizione);
+            long versioneTabella = modelloResaService.getTabella().getVersione();
+
+            PianoIrrigazione piano = new PianoIrrigazione(prezzoAcqua);
+            double[][] litri = null, fabbisogni = null;
+            Graduatoria[] perMese = new Graduatoria[ArchivioColture.MESI];
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                DatiAmbientali meteo = snapshot.getDatiAmbientali(m + 1);
+                double p = pioggia != null && !Double.isNaN(pioggia[m]) ? pioggia[m] : meteo.getPrecipitazioni();
+                Graduatoria g = graduatorie.get(new Chiave(partizione, versioneTabella, m,
+                        meteo.getTemperatura(), p, meteo.getLuminosita()));
+                perMese[m] = g;
+                piano.getBudget()[m] = budget[m];
+                piano.getPioggia()[m] = p;
+                if (dettaglio && litri == null) {
+                    litri = new double[g.righeArchivio][ArchivioColture.MESI];
+                    fabbisogni = new double[g.righeArchivio][ArchivioColture.MESI];
+                }
+                assegna(g, m, budget[m], prezzoAcqua, piano, litri, fabbisogni);
+            }
+            if (dettaglio) piano.setAppezzamenti(appezzamenti(perMese, litri, fabbisogni));
+            piano.setDurataMs((System.nanoTime() - inizio) / 1_000_000);
+            return piano;
+        });
+    }
+
+    public CacheRisultati<?, ?> getCache() { return graduatorie; }
+
+    // ======================================================
+    // Assegnazione del budget di un mese sulla sua graduatoria: i primi k
+    // appezzamenti interi, il (k+1)-esimo in parte
+    // ======================================================
+    private static void assegna(Graduatoria g, int m, double budget, double prezzoAcqua,
+                                PianoIrrigazione piano, double[][] litri, double[][] fabbisogni) {
+        int n = g.numero;
+        // Oltre questa posizione un litro rende meno di quanto costa
+        int limite = prezzoAcqua > 0 ? g.primaSotto(prezzoAcqua) : n;
+        int k = Math.min(limite, g.interiEntro(budget));
+        double parziale = k < limite ? (budget - g.acquaCumulata[k]) / g.fabbisogno(k) : 0;
+
+        double acqua = g.acquaCumulata[k] + (k < limite ? parziale * g.fabbisogno(k) : 0);
+        double ricavo = g.ricavoSenzaAcqua + g.ricavoCumulato[k] + (k < limite ? parziale * g.ricavo(k) : 0);
+        piano.getFabbisogno()[m] = g.acquaCumulata[n];
+        piano.getAcquaAssegnata()[m] = acqua;
+        piano.getRicavo()[m] = ricavo;
+        piano.getCosti()[m] = g.costi;
+        piano.getProfitto()[m] = ricavo - g.costi - prezzoAcqua * acqua;
+        // Ricavo di un litro in più: quello del primo appezzamento non coperto del tutto
+        piano.getValoreMarginale()[m] = k < n ? g.densita(k) : 0;
+
+        for (int i = 0; i < n; i++) {
+            String nome = g.nomi[g.idNomi[i]];
+            double w = g.fabbisogno(i);
+            double assegnata = i < k ? w : i == k && k < limite ? parziale * w : 0;
+            StimaResa.perColtura(piano.getFabbisognoPerColtura(), nome)[m] += w;
+            StimaResa.perColtura(piano.getAcquaPerColtura(), nome)[m] += assegnata;
+            if (litri != null && g.righe[i] < litri.length) {
+                litri[g.righe[i]][m] = assegnata;
+                fabbisogni[g.righe[i]][m] = w;
+            }
+        }
+    }
+
+    // Appezzamenti con fabbisogno in almeno un mese, in ordine di riga
+    private static List<PianoIrrigazione.Appezzamento> appezzamenti(Graduatoria[] perMese, double[][] litri,
+                                                                   double[][] fabbisogni) {
+        String[] nomeRiga = new String[litri.length];
+        for (Graduatoria g : perMese) {
+            for (int i = 0; i < g.numero; i++) {
+                if (g.righe[i] < nomeRiga.length) nomeRiga[g.righe[i]] = g.nomi[g.idNomi[i]];
+            }
+        }
+        List<PianoIrrigazione.Appezzamento> elenco = new ArrayList<>();
+        for (int r = 0; r < litri.length; r++) {
+            if (nomeRiga[r] != null) elenco.add(new PianoIrrigazione.Appezzamento(r, nomeRiga[r], litri[r], fabbisogni[r]));
+        }
+        return elenco;
+    }
+
+    private static void verifica(double[] budget, double[] pioggia, double prezzoAcqua) {
+        if (budget == null || budget.length != ArchivioColture.MESI) {
+            throw new IllegalArgumentException("Servono 12 budget mensili");
+        }
+        for (double b : budget) {
+            if (!(b >= 0) || Double.isInfinite(b)) throw new IllegalArgumentException("Budget non valido: " + b);
+        }
+        if (pioggia != null) {
+            if (pioggia.length != ArchivioColture.MESI) throw new IllegalArgumentException("Servono 12 valori di pioggia");
+            for (double p : pioggia) {
+                if (p < 0 || Double.isInfinite(p)) throw new IllegalArgumentException("Pioggia non valida: " + p);
+            }
+        }
+        if (!(prezzoAcqua >= 0) || Double.isInfinite(prezzoAcqua)) {
+            throw new IllegalArgumentException("Prezzo dell'acqua non valido: " + prezzoAcqua);
+        }
+    }
+
+    // Partizione corrente: la graduatoria vale finché non cambiano i dati produttivi
+    // (il meteo fa già parte della chiave); le partizioni storiche non cambiano
+    private long versione(Chiave chiave) {
+        return chiave.partizione().equals(partizioniService.getCorrente())
+                ? partizioniService.getSnapshot(chiave.partizione()).getVersioneArchivio() : 0;
+    }
+
+    // ======================================================
+    // Graduatoria di un mese: fusione delle liste ordinate delle colture, con
+    // il ricavo per litro di ogni coltura scalato dal suo fattore di irrigazione
+    // ======================================================
+    private Graduatoria costruisci(Chiave chiave) {
+        SnapshotSimulazione snapshot = partizioniService.getSnapshot(chiave.partizione());
+        TabellaResa tabella = modelloResaService.getTabella();
+        Preparazione prep = snapshot.derivatoArchivio("irrigazione:" + tabella.getVersione(),
+                s -> new Preparazione(s.getArchivio(), tabella));
+        ArchivioColture archivio = snapshot.getArchivio();
+        int m = chiave.mese();
+
+        // Fattori del mese per coltura della tabella (fattori() lavora sui 12 mesi: stesso meteo in tutti)
+        DatiAmbientali[] meteo = new DatiAmbientali[ArchivioColture.MESI];
+        Arrays.fill(meteo, new DatiAmbientali(chiave.temperatura(), 0, chiave.pioggia(), 0, chiave.luce()));
+        double[] resa = new double[tabella.getNumeroColture() * ArchivioColture.MESI];
+        double[] irrigazione = new double[resa.length];
+        tabella.fattori(meteo, 0, 0, 0, resa, irrigazione);
+
+        int tipi = prep.nomi.length;
+        double[] fattoreResa = new double[tipi], fattoreIrrigazione = new double[tipi];
+        for (int id = 0; id < tipi; id++) {
+            int c = prep.indice[id];
+            fattoreResa[id] = c >= 0 ? resa[c * ArchivioColture.MESI + m] : 1;
+            fattoreIrrigazione[id] = c >= 0 ? irrigazione[c * ArchivioColture.MESI + m] : 1;
+        }
+
+        // Cursore per coltura; in testa alla coda la coltura con il prossimo litro più redditizio
+        int[] posizione = Arrays.copyOf(prep.inizio, tipi);
+        PriorityQueue<Integer> coda = new PriorityQueue<>(Math.max(1, tipi), (a, b) -> {
+            int confronto = Double.compare(prep.rapporto[posizione[b]] / fattoreIrrigazione[b],
+                    prep.rapporto[posizione[a]] / fattoreIrrigazione[a]);
+            return confronto != 0 ? confronto : Integer.compare(a, b);
+        });
+        for (int id = 0; id < tipi; id++) {
+            if (posizione[id] < prep.inizio[id + 1]) coda.add(id);
+        }
+
+        int righe = archivio.getNumeroRighe();
+        Graduatoria g = new Graduatoria(righe, prep.nomi, prep.costiMensili[m]);
+        while (!coda.isEmpty()) {
+            int id = coda.poll();
+            int r = prep.ordine[posizione[id]++];
+            if (posizione[id] < prep.inizio[id + 1]) coda.add(id);
+
+            double q = archivio.getRaccolto(r, m) * fattoreResa[id];
+            if (q <= 0) continue;
+            double ricavo = q * archivio.getPrezzo(r);
+            double fabbisogno = q * archivio.getConsumoIdricoPerKg(r) * fattoreIrrigazione[id];
+            if (fabbisogno > 0) g.aggiungi(r, id, fabbisogno, ricavo);
+            else g.ricavoSenzaAcqua += ricavo;      // la pioggia basta, o la coltura non consuma acqua
+        }
+        return g.compatta();
+    }
+
+    // ==============================
+    // Strutture interne
+    // ==============================
+
+    // Meteo nella chiave: la stessa pioggia su un nuovo snapshot ritrova la stessa graduatoria
+    private record Chiave(ChiavePartizione partizione, long versioneTabella, int mese,
+                          double temperatura, double pioggia, double luce) { }
+
+    // Per archivio e tabella: appezzamenti di ogni coltura per prezzo / consumo per kg decrescente
+    private static final class Preparazione {
+        final String[] nomi;
+        final int[] indice;          // id nome -> coltura della tabella (-1 = fattori 1)
+        final int[] inizio;          // id nome -> prima posizione in ordine (tipi + 1 valori)
+        final int[] ordine;          // righe raggruppate per coltura
+        final double[] rapporto;     // per posizione: prezzo / consumo per kg (infinito se non consuma)
+        final double[] costiMensili = new double[ArchivioColture.MESI];
+
+        Preparazione(ArchivioColture archivio, TabellaResa tabella) {
+            int tipi = archivio.getNumeroNomi(), righe = archivio.getNumeroRighe();
+            nomi = new String[tipi];
+            for (int id = 0; id < tipi; id++) nomi[id] = archivio.getNomeDaId(id);
+            indice = tabella.compila(archivio);
+
+            inizio = new int[tipi + 1];
+            for (int r = 0; r < righe; r++) inizio[archivio.getIdNome(r) + 1]++;
+            for (int id = 0; id < tipi; id++) inizio[id + 1] += inizio[id];
+            Integer[] righeOrdinate = new Integer[righe];
+            int[] riempite = Arrays.copyOf(inizio, tipi);
+            for (int r = 0; r < righe; r++) righeOrdinate[riempite[archivio.getIdNome(r)]++] = r;
+
+            double[] perRiga = new double[righe];
+            for (int r = 0; r < righe; r++) {
+                double perKg = archivio.getConsumoIdricoPerKg(r);
+                perRiga[r] = perKg > 0 ? archivio.getPrezzo(r) / perKg : Double.POSITIVE_INFINITY;
+                for (int m = 0; m < ArchivioColture.MESI; m++) costiMensili[m] += archivio.getCosto(r, m);
+            }
+            for (int id = 0; id < tipi; id++) {
+                Arrays.sort(righeOrdinate, inizio[id], inizio[id + 1],
+                        (a, b) -> Double.compare(perRiga[b], perRiga[a]));
+            }
+            ordine = new int[righe];
+            rapporto = new double[righe];
+            for (int i = 0; i < righe; i++) {
+                ordine[i] = righeOrdinate[i];
+                rapporto[i] = perRiga[ordine[i]];
+            }
+        }
+    }
+
+    // Appezzamenti con fabbisogno di un mese in ordine di ricavo per litro decrescente,
+    // con le somme cumulate: acquaCumulata[k] = acqua per coprire i primi k per intero
+    private static final class Graduatoria {
+        final int righeArchivio;
+        final String[] nomi;
+        final double costi;
+        double ricavoSenzaAcqua;
+        int numero;
+        int[] righe;
+        int[] idNomi;
+        double[] acquaCumulata;
+        double[] ricavoCumulato;
+
+        Graduatoria(int righeArchivio, String[] nomi, double costi) {
+            this.righeArchivio = righeArchivio;
+            this.nomi = nomi;
+            this.costi = costi;
+            righe = new int[righeArchivio];
+            idNomi = new int[righeArchivio];
+            acquaCumulata = new double[righeArchivio + 1];
+            ricavoCumulato = new double[righeArchivio + 1];
+        }
+
+        void aggiungi(int riga, int idNome, double fabbisogno, double ricavo) {
+            righe[numero] = riga;
+            idNomi[numero] = idNome;
+            acquaCumulata[numero + 1] = acquaCumulata[numero] + fabbisogno;
+            ricavoCumulato[numero + 1] = ricavoCumulato[numero] + ricavo;
+            numero++;
+        }
+
+        Graduatoria compatta() {
+            righe = Arrays.copyOf(righe, numero);
+            idNomi = Arrays.copyOf(idNomi, numero);
+            acquaCumulata = Arrays.copyOf(acquaCumulata, numero + 1);
+            ricavoCumulato = Arrays.copyOf(ricavoCumulato, numero + 1);
+            return this;
+        }
+
+        double fabbisogno(int i) { return acquaCumulata[i + 1] - acquaCumulata[i]; }
+
+        double ricavo(int i) { return ricavoCumulato[i + 1] - ricavoCumulato[i]; }
+
+        double densita(int i) { return ricavo(i) / fabbisogno(i); }
+
+        // Numero di appezzamenti coperti per intero dal budget: massimo k con acquaCumulata[k] <= budget
+        int interiEntro(double budget) {
+            int basso = 0, alto = numero;
+            while (basso < alto) {
+                int medio = (basso + alto + 1) >>> 1;
+                if (acquaCumulata[medio] <= budget) basso = medio;
+                else alto = medio - 1;
+            }
+            return basso;
+        }
+
+        // Prima posizione con ricavo per litro sotto la soglia (numero se nessuna)
+        int primaSotto(double soglia) {
+            int basso = 0, alto = numero;
+            while (basso < alto) {
+                int medio = (basso + alto) >>> 1;
+                if (densita(medio) < soglia) alto = medio;
+                else basso = medio + 1;
+            }
+            return basso;
+        }
+
+        // Peso stimato in byte: 2 int e 2 double per appezzamento
+        long peso() {
+            return 64 + 24L * numero;
+        }
+    }
+}
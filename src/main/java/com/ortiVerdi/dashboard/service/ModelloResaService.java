@@ -0,0 +1,213 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CatalogoColture;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import com.ortiVerdi.dashboard.data.TabellaResa;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modello meteo -> resa: stima raccolto e fabbisogno irriguo di ogni coltura
+ * dal meteo mensile della partizione (vedi TabellaResa per le formule), anche
+ * per scenari "what-if" come pioggia -30% o temperatura +2 °C.
+ *
+ * Il lavoro è diviso in due parti:
+ * - per archivio, una volta sola (valore derivato che sopravvive agli
+ *   aggiornamenti meteo): somme per coltura e mese di
+ *   raccolto, raccolto × consumo per kg, raccolto × prezzo e costi, più l'indice
+ *   di ogni coltura nella tabella dei coefficienti;
+ * - per scenario: i fattori di resa e irrigazione per coltura e mese (colture × 12
+ *   valori) applicati a quelle somme. Il costo non dipende dal numero di righe
+ *   (appezzamenti) dell'archivio, quindi molti scenari su tutte le aziende e gli
+ *   anni si valutano in tempi interattivi.
+ */
+@Service
+public class ModelloResaService {
+
+    private static final Timer TEMPO_VALUTAZIONE = Timer.builder("ortiverdi.resa.valutazione")
+            .description("Valutazione in blocco degli scenari meteo su più partizioni")
+            .register(Metrics.globalRegistry);
+
+    private final PartizioniService partizioniService;
+    private volatile TabellaResa tabella;
+    private final int maxScenari;
+
+    @Autowired
+    public ModelloResaService(PartizioniService partizioniService,
+                              @Value("${ortiverdi.resa.coefficienti:classpath:data/coefficienti_resa.csv}") Resource coefficienti,
+                              @Value("${ortiverdi.resa.temperatura-riferimento:18}") double temperaturaRiferimento,
+                              @Value("${ortiverdi.resa.pioggia-riferimento:80}") double pioggiaRiferimento,
+                              @Value("${ortiverdi.resa.luce-riferimento:20000}") double luceRiferimento,
+                              @Value("${ortiverdi.resa.max-scenari:64}") int maxScenari) {
+        this(partizioniService, carica(coefficienti, temperaturaRiferimento, pioggiaRiferimento, luceRiferimento), maxScenari);
+    }
+
+    ModelloResaService(PartizioniService partizioniService, TabellaResa tabella, int maxScenari) {
+        this.partizioniService = partizioniService;
+        this.tabella = tabella;
+        this.maxScenari = maxScenari;
+    }
+
+    // ======================================================
+    // Tabella compilata sul catalogo corrente: dopo una ricarica del catalogo
+    // viene ricompilata una volta e le cache per snapshot cambiano chiave
+    // ======================================================
+    public TabellaResa getTabella() {
+        TabellaResa t = tabella;
+        CatalogoColture catalogo = ParametriColture.getCatalogo();
+        if (t.getVersioneCatalogo() != catalogo.getVersione()) {
+            synchronized (this) {
+                t = tabella;
+                if (t.getVersioneCatalogo() != catalogo.getVersione()) {
+                    t = t.conCatalogo(catalogo);
+                    tabella = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    // ======================================================
+    // Stima di uno scenario su una singola partizione
+    // ======================================================
+    public StimaResa stima(SnapshotSimulazione snapshot, ScenarioMeteo scenario) {
+        scenario.verifica();
+        TabellaResa t = getTabella();
+        double[] resa = new double[t.getNumeroColture() * ArchivioColture.MESI];
+        return stima(t, aggregati(snapshot, t), meteo(snapshot), scenario, resa, new double[resa.length]);
+    }
+
+    // ======================================================
+    // Tutti gli scenari su tutte le partizioni selezionate (aziende vuoto = tutte,
+    // anni inclusivi). Le partizioni sono valutate in parallelo sul pool delle partizioni.
+    // ======================================================
+    public EsitiScenariMeteo valuta(List<ScenarioMeteo> scenari, Set<String> aziende, int annoDa, int annoA) {
+        if (scenari == null || scenari.isEmpty() || scenari.size() > maxScenari) {
+            throw new IllegalArgumentException("Numero di scenari non valido (1-" + maxScenari + ")");
+        }
+        for (ScenarioMeteo s : scenari) {
+            if (s == null) throw new IllegalArgumentException("Scenario vuoto");
+            s.verifica();
+        }
+        long inizio = System.nanoTime();
+
+        TabellaResa t = getTabella();   // stessa tabella per tutte le partizioni
+        List<ChiavePartizione> chiavi = partizioniService.seleziona(aziende, annoDa, annoA);
+        List<List<StimaResa>> stime = partizioniService.perPartizione(chiavi, snapshot -> {
+            Aggregati aggregati = aggregati(snapshot, t);
+            DatiAmbientali[] meteo = meteo(snapshot);
+            // Buffer dei fattori riusati per tutti gli scenari della partizione
+            double[] resa = new double[t.getNumeroColture() * ArchivioColture.MESI];
+            double[] irrigazione = new double[resa.length];
+            List<StimaResa> perScenario = new ArrayList<>(scenari.size());
+            for (ScenarioMeteo s : scenari) perScenario.add(stima(t, aggregati, meteo, s, resa, irrigazione));
+            return perScenario;
+        });
+
+        List<StimaResa> totali = new ArrayList<>(scenari.size());
+        for (ScenarioMeteo s : scenari) totali.add(new StimaResa(s.getNome()));
+        List<EsitiScenariMeteo.Partizione> perPartizione = new ArrayList<>(chiavi.size());
+        for (int p = 0; p < chiavi.size(); p++) {
+            ChiavePartizione k = chiavi.get(p);
+            for (int s = 0; s < scenari.size(); s++) totali.get(s).somma(stime.get(p).get(s));
+            perPartizione.add(new EsitiScenariMeteo.Partizione(k.getAzienda(), k.getAnno(), stime.get(p)));
+        }
+        long durata = System.nanoTime() - inizio;
+        TEMPO_VALUTAZIONE.record(durata, TimeUnit.NANOSECONDS);
+        return new EsitiScenariMeteo(chiavi.size(), totali, perPartizione, durata / 1_000_000);
+    }
+
+    // Applica i fattori dello scenario alle somme per coltura e mese
+    private static StimaResa stima(TabellaResa tabella, Aggregati a, DatiAmbientali[] meteo, ScenarioMeteo scenario,
+                                   double[] resa, double[] irrigazione) {
+        tabella.fattori(meteo, scenario.getTemperatura(), scenario.getPioggia() / 100,
+                scenario.getLuce() / 100, resa, irrigazione);
+        StimaResa stima = new StimaResa(scenario.getNome());
+        for (int id = 0; id < a.indice.length; id++) {
+            int c = a.indice[id];
+            double[] raccoltoColtura = StimaResa.perColtura(stima.getRaccoltoPerColtura(), a.nomi[id]);
+            double[] consumoColtura = StimaResa.perColtura(stima.getConsumoIdricoPerColtura(), a.nomi[id]);
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                int k = id * ArchivioColture.MESI + m;
+                double f = c >= 0 ? resa[c * ArchivioColture.MESI + m] : 1;
+                double i = c >= 0 ? irrigazione[c * ArchivioColture.MESI + m] : 1;
+                double q = f * a.raccolto[k];
+                double acqua = f * i * a.acqua[k];
+                raccoltoColtura[m] += q;
+                consumoColtura[m] += acqua;
+                stima.getRaccolto()[m] += q;
+                stima.getConsumoIdrico()[m] += acqua;
+                stima.getProfitto()[m] += f * a.ricavo[k] - a.costi[k];
+            }
+        }
+        return stima;
+    }
+
+    // Somme per archivio, calcolate una volta e legate alla versione della tabella
+    private static Aggregati aggregati(SnapshotSimulazione snapshot, TabellaResa tabella) {
+        return snapshot.derivatoArchivio("resa:" + tabella.getVersione(), s -> new Aggregati(s.getArchivio(), tabella));
+    }
+
+    private static DatiAmbientali[] meteo(SnapshotSimulazione snapshot) {
+        DatiAmbientali[] meteo = new DatiAmbientali[ArchivioColture.MESI];
+        for (int mese = 1; mese <= ArchivioColture.MESI; mese++) meteo[mese - 1] = snapshot.getDatiAmbientali(mese);
+        return meteo;
+    }
+
+    private static TabellaResa carica(Resource risorsa, double temperatura, double pioggia, double luce) {
+        try (InputStream in = risorsa.getInputStream()) {
+            return TabellaResa.carica(in, temperatura, pioggia, luce);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lettura dei coefficienti di resa da " + risorsa.getDescription() + " fallita", e);
+        }
+    }
+
+    // ======================================================
+    // Somme per id nome dell'archivio e mese (id*12 + mese)
+    // ======================================================
+    static final class Aggregati {
+        final String[] nomi;
+        final int[] indice;        // id nome -> coltura della tabella (-1 = nessun coefficiente)
+        final double[] raccolto;
+        final double[] acqua;      // raccolto × consumo per kg
+        final double[] ricavo;     // raccolto × prezzo
+        final double[] costi;
+
+        Aggregati(ArchivioColture archivio, TabellaResa tabella) {
+            int tipi = archivio.getNumeroNomi();
+            nomi = new String[tipi];
+            for (int id = 0; id < tipi; id++) nomi[id] = archivio.getNomeDaId(id);
+            indice = tabella.compila(archivio);
+            raccolto = new double[tipi * ArchivioColture.MESI];
+            acqua = new double[raccolto.length];
+            ricavo = new double[raccolto.length];
+            costi = new double[raccolto.length];
+            for (int r = 0; r < archivio.getNumeroRighe(); r++) {
+                int base = archivio.getIdNome(r) * ArchivioColture.MESI;
+                double prezzo = archivio.getPrezzo(r), perKg = archivio.getConsumoIdricoPerKg(r);
+                for (int m = 0; m < ArchivioColture.MESI; m++) {
+                    double q = archivio.getRaccolto(r, m);
+                    raccolto[base + m] += q;
+                    acqua[base + m] += q * perKg;
+                    ricavo[base + m] += q * prezzo;
+                    costi[base + m] += archivio.getCosto(r, m);
+                }
+            }
+        }
+    }
+}
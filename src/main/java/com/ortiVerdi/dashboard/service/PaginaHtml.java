@@ -0,0 +1,55 @@
+package com.ortiVerdi.dashboard.service;
+
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pagina HTML già renderizzata: i byte vengono prodotti una volta e poi
+ * inviati così come sono a ogni richiesta, come una risorsa statica.
+ * Le pagine in cache hanno anche la variante gzip, compressa al massimo
+ * livello una volta sola invece che da Tomcat a ogni richiesta.
+ * L'ETag è debole come quello di PayloadJson: vale per entrambe le codifiche.
+ */
+public final class PaginaHtml {
+
+    private final byte[] corpo;
+    private final byte[] gzip;
+    private final String etag;
+
+    PaginaHtml(byte[] corpo, boolean comprimi) {
+        this.corpo = corpo;
+        this.gzip = comprimi ? gzip(corpo) : null;
+        this.etag = "W/\"" + DigestUtils.md5DigestAsHex(corpo) + "\"";
+    }
+
+    /** Byte dell'HTML: condivisi, da non modificare */
+    public byte[] getCorpo() { return corpo; }
+
+    /** Variante gzip (condivisa), null se la pagina non è stata precompressa */
+    public byte[] getGzip() { return gzip; }
+
+    public String getEtag() { return etag; }
+
+    // Peso in cache: le due varianti più l'intestazione dell'oggetto
+    long getPeso() {
+        return 64L + corpo.length + (gzip != null ? gzip.length : 0);
+    }
+
+    private static byte[] gzip(byte[] dati) {
+        ByteArrayOutputStream uscita = new ByteArrayOutputStream(dati.length / 4 + 64);
+        try (OutputStream gz = new GZIPOutputStream(uscita, 8192) {
+            { def.setLevel(Deflater.BEST_COMPRESSION); }
+        }) {
+            gz.write(dati);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return uscita.toByteArray();
+    }
+}
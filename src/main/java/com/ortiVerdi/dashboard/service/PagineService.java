@@ -0,0 +1,254 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.ui.Model;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pagine HTML delle analisi renderizzate una volta per versione dei dati e
+ * servite come byte già pronti (PaginaHtml, anche in gzip).
+ *
+ * Senza filtro sulle colture una pagina dipende solo da vista, partizione,
+ * mese e versione dei dati: per la partizione corrente sono 12 mesi × 3 viste
+ * più /colture. I controller registrano qui come si compila il modello di
+ * ogni vista; le pagine stanno in una CacheRisultati con versione = snapshot
+ * della partizione corrente (0 per quelle storiche, che non cambiano) più
+ * versione del catalogo delle colture (i colori dei grafici).
+ *
+ * Preriscaldamento: all'avvio e a ogni nuovo snapshot tutte le pagine della
+ * partizione corrente vengono renderizzate in background, prima che arrivino
+ * le richieste. Le pagine delle partizioni storiche entrano alla prima visita.
+ * Alla chiusura del contesto (prima che i bean vengano distrutti) il
+ * preriscaldamento si ferma: nessuna pagina nuova, e quella in corso finisce
+ * finché i bean usati dai template ci sono ancora.
+ *
+ * I numeri dei template (#numbers.formatDecimal) seguono la lingua della
+ * richiesta: la chiave contiene i simboli usati (separatore decimale, segno
+ * meno, cifra zero), non la lingua, così it, it-IT e de condividono la pagina.
+ * Vengono preriscaldati i simboli già visti, a partire da italiano e lingua
+ * predefinita del server.
+ */
+@Service
+public class PagineService {
+
+    private static final Logger log = LoggerFactory.getLogger(PagineService.class);
+
+    /** Compila il modello di una vista per partizione e mese (0 per le viste senza mese) */
+    @FunctionalInterface
+    public interface Modello {
+        void compila(ChiavePartizione partizione, int mese, Model model);
+    }
+
+    private final PartizioniService partizioniService;
+    private final SimulatoreService simulatoreService;
+    private final ITemplateEngine motore;
+    private final boolean preriscaldamento;
+    private final CacheRisultati<Chiave, PaginaHtml> cache;
+    private final Map<String, Vista> viste = new ConcurrentHashMap<>();
+    private final Map<Formato, Locale> formati = new ConcurrentHashMap<>();
+    private final ExecutorService esecutore;
+    private final AtomicBoolean preriscaldamentoInCoda = new AtomicBoolean();
+    // Fino all'avvio completo gli URL a hash delle risorse non sono pronti: niente cache
+    private volatile boolean pronto;
+    private volatile boolean inChiusura;
+
+    public PagineService(PartizioniService partizioniService, SimulatoreService simulatoreService, ITemplateEngine motore,
+                         @Value("${ortiverdi.pagine.cache.max-voci:2048}") int maxVoci,
+                         @Value("${ortiverdi.pagine.cache.peso-massimo-kb:32768}") long pesoMassimoKb,
+                         @Value("${ortiverdi.pagine.cache.preriscaldamento:true}") boolean preriscaldamento) {
+        this.partizioniService = partizioniService;
+        this.simulatoreService = simulatoreService;
+        this.motore = motore;
+        this.preriscaldamento = preriscaldamento;
+        this.cache = new CacheRisultati<>(maxVoci, pesoMassimoKb * 1024, PaginaHtml::getPeso,
+                this::versione, this::calcola);
+        for (Locale locale : new Locale[]{Locale.ITALY, Locale.getDefault()}) {
+            formati.putIfAbsent(Formato.di(locale), locale);
+        }
+        this.esecutore = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ortiverdi-pagine");
+            t.setDaemon(true);
+            return t;
+        });
+        // L'ascoltatore gira nel thread che pubblica: si limita ad accodare il preriscaldamento
+        simulatoreService.aggiungiAscoltatore(s -> pianificaPreriscaldamento());
+    }
+
+    /** Registra una vista; perMese = la pagina ha il parametro mese (1-12) */
+    public void registra(String vista, boolean perMese, Modello modello) {
+        viste.put(vista, new Vista(vista, perMese, modello));
+    }
+
+    // ======================================================
+    // Pagina senza filtri della vista per partizione e mese, dalla cache se la
+    // versione dei dati non è cambiata
+    // ======================================================
+    public PaginaHtml get(String vista, ChiavePartizione partizione, int mese, Locale locale) {
+        Vista v = vista(vista);
+        Formato formato = Formato.di(locale);
+        formati.putIfAbsent(formato, locale);
+        int m = v.perMese() ? mese : 0;
+        if (!pronto) return calcola(new Chiave(vista, partizione, m, formato));
+        return cache.get(new Chiave(vista, partizione, m, formato));
+    }
+
+    /** Renderizza una vista con un modello già compilato (es. filtro sulle colture), senza cache */
+    public PaginaHtml renderizza(String vista, Model model, Locale locale) {
+        return renderizza(vista, model, locale, false);
+    }
+
+    public CacheRisultati<?, ?> getCache() { return cache; }
+
+    // ======================================================
+    // Preriscaldamento
+    // ======================================================
+    @EventListener(ApplicationReadyEvent.class)
+    public void avviato() {
+        pronto = true;
+        pianificaPreriscaldamento();
+    }
+
+    // Un solo preriscaldamento in coda alla volta: più snapshot ravvicinati ne producono uno
+    private void pianificaPreriscaldamento() {
+        if (!pronto || inChiusura || !preriscaldamento || !preriscaldamentoInCoda.compareAndSet(false, true)) return;
+        try {
+            esecutore.execute(() -> {
+                preriscaldamentoInCoda.set(false);
+                preriscalda();
+            });
+        } catch (RejectedExecutionException e) {
+            preriscaldamentoInCoda.set(false);   // in chiusura
+        }
+    }
+
+    // Tutte le pagine delle viste registrate per la partizione corrente, per ogni formato visto
+    int preriscalda() {
+        ChiavePartizione corrente = partizioniService.getCorrente();
+        int pagine = 0;
+        for (Formato formato : formati.keySet()) {
+            for (Vista v : viste.values()) {
+                for (int mese = v.perMese() ? 1 : 0; mese <= (v.perMese() ? 12 : 0); mese++) {
+                    if (inChiusura || Thread.currentThread().isInterrupted()) return pagine;
+                    try {
+                        cache.precalcola(new Chiave(v.nome(), corrente, mese, formato));
+                        pagine++;
+                    } catch (RuntimeException e) {
+                        // Le richieste riprovano e ricevono l'errore
+                        log.warn("Preriscaldamento della pagina {} (mese {}) non riuscito: {}", v.nome(), mese, e.toString());
+                        return pagine;
+                    }
+                }
+            }
+        }
+        return pagine;
+    }
+
+    // Chiusura del contesto, prima della distruzione dei bean: ferma il preriscaldamento
+    // e aspetta (poco) la pagina in corso, che usa ancora i bean dei template
+    @EventListener(ContextClosedEvent.class)
+    public void chiusuraContesto() {
+        inChiusura = true;
+        esecutore.shutdownNow();
+        try {
+            if (!esecutore.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Preriscaldamento delle pagine ancora in corso alla chiusura");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        inChiusura = true;
+        esecutore.shutdownNow();
+    }
+
+    // ======================================================
+    // Calcolo di una pagina
+    // ======================================================
+    private long versione(Chiave chiave) {
+        long dati = chiave.partizione().equals(partizioniService.getCorrente())
+                ? simulatoreService.getSnapshot().getVersione() : 0;
+        // Entrambe crescono soltanto: la somma cambia quando cambia una delle due
+        return dati + ParametriColture.getCatalogo().getVersione();
+    }
+
+    private PaginaHtml calcola(Chiave chiave) {
+        Model model = new ExtendedModelMap();
+        vista(chiave.vista()).modello().compila(chiave.partizione(), chiave.mese(), model);
+        return renderizza(chiave.vista(), model, formati.get(chiave.formato()), true);
+    }
+
+    private PaginaHtml renderizza(String vista, Model model, Locale locale, boolean comprimi) {
+        long inizio = System.nanoTime();
+        String esito = "errore";
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+            try (Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                motore.process(vista, new Context(locale, model.asMap()), w);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            PaginaHtml pagina = new PaginaHtml(out.toByteArray(), comprimi);
+            esito = "ok";
+            return pagina;
+        } finally {
+            // Stessa metrica di IntercettoreRendering per le viste renderizzate da Spring MVC
+            Timer.builder("ortiverdi.template.rendering")
+                    .description("Rendering di un template Thymeleaf")
+                    .tag("vista", vista)
+                    .tag("esito", esito)
+                    .register(Metrics.globalRegistry)
+                    .record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Vista vista(String nome) {
+        Vista v = viste.get(nome);
+        if (v == null) throw new NoSuchElementException("Vista non registrata: " + nome);
+        return v;
+    }
+
+    private record Vista(String nome, boolean perMese, Modello modello) { }
+
+    private record Chiave(String vista, ChiavePartizione partizione, int mese, Formato formato) { }
+
+    // Simboli che #numbers.formatDecimal prende dalla lingua della richiesta
+    private record Formato(char decimale, char meno, char zero) {
+        static Formato di(Locale locale) {
+            DecimalFormatSymbols s = DecimalFormatSymbols.getInstance(locale);
+            return new Formato(s.getDecimalSeparator(), s.getMinusSign(), s.getZeroDigit());
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CatalogoPartizioni;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.DatiPartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Year;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Dati partizionati per (azienda, anno).
+ *
+ * La partizione corrente è quella del SimulatoreService (dati vivi: modifiche,
+ * sensori, aggiornamenti live). Le altre vengono dal CatalogoPartizioni, sono in
+ * sola lettura e vengono caricate alla prima richiesta; in memoria ne restano al
+ * massimo ortiverdi.partizioni.residenti, le meno usate di recente vengono espulse.
+ * Richieste concorrenti della stessa partizione condividono un unico caricamento.
+ *
+ * Le interrogazioni su più partizioni vengono eseguite in parallelo su un pool
+ * dedicato e poi unite. I totali mensili di ogni partizione storica (12 valori
+ * per metrica) restano in cache anche dopo l'espulsione, quindi ripetere una
+ * interrogazione non ricarica i dati.
+ */
+@Service
+public class PartizioniService {
+
+    private static final Logger log = LoggerFactory.getLogger(PartizioniService.class);
+
+    private static final Timer TEMPO_CARICAMENTO = Timer.builder("ortiverdi.partizioni.caricamento")
+            .description("Caricamento e calcolo degli aggregati di una partizione storica")
+            .register(Metrics.globalRegistry);
+    private static final Timer TEMPO_SERIE = Timer.builder("ortiverdi.partizioni.serie")
+            .description("Interrogazione parallela su più partizioni")
+            .register(Metrics.globalRegistry);
+
+    private final SimulatoreService simulatoreService;
+    private final CatalogoPartizioni catalogo;
+    private final ChiavePartizione corrente;
+    private final int maxResidenti;
+
+    // Partizioni storiche in memoria, in ordine di accesso (LRU)
+    private final LinkedHashMap<ChiavePartizione, SnapshotSimulazione> residenti = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<ChiavePartizione, CompletableFuture<SnapshotSimulazione>> inCaricamento = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, double[]> totali = new ConcurrentHashMap<>();
+    private final ExecutorService esecutore;
+
+    private final AtomicLong accessiInMemoria = new AtomicLong();
+    private final AtomicLong caricamenti = new AtomicLong();
+    private final AtomicLong espulsioni = new AtomicLong();
+
+    public PartizioniService(SimulatoreService simulatoreService, CatalogoPartizioni catalogo,
+                             @Value("${ortiverdi.partizioni.azienda-corrente:OrtiVerdi}") String aziendaCorrente,
+                             @Value("${ortiverdi.partizioni.anno-corrente:0}") int annoCorrente,
+                             @Value("${ortiverdi.partizioni.residenti:32}") int maxResidenti,
+                             @Value("${ortiverdi.partizioni.parallelismo:0}") int parallelismo) {
+        this.simulatoreService = simulatoreService;
+        this.catalogo = catalogo;
+        this.corrente = new ChiavePartizione(aziendaCorrente, annoCorrente > 0 ? annoCorrente : Year.now().getValue());
+        this.maxResidenti = Math.max(1, maxResidenti);
+        int thread = parallelismo > 0 ? parallelismo : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contatore = new AtomicInteger();
+        this.esecutore = Executors.newFixedThreadPool(thread, r -> {
+            Thread t = new Thread(r, "partizioni-" + contatore.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Partizione dei dati vivi, usata quando la richiesta non indica azienda e anno */
+    public ChiavePartizione getCorrente() {
+        return corrente;
+    }
+
+    public boolean esiste(ChiavePartizione chiave) {
+        return corrente.equals(chiave) || catalogo.contiene(chiave);
+    }
+
+    /** Tutte le partizioni disponibili, compresa quella corrente */
+    public List<ChiavePartizione> elenca() {
+        TreeSet<ChiavePartizione> tutte = new TreeSet<>(catalogo.elenca());
+        tutte.add(corrente);
+        return new ArrayList<>(tutte);
+    }
+
+    // ======================================================
+    // Snapshot di una partizione: dalla memoria o caricato al primo accesso
+    // ======================================================
+    public SnapshotSimulazione getSnapshot(ChiavePartizione chiave) {
+        if (chiave == null || corrente.equals(chiave)) return simulatoreService.getSnapshot();
+
+        SnapshotSimulazione s = residente(chiave);
+        if (s != null) {
+            accessiInMemoria.incrementAndGet();
+            return s;
+        }
+
+        CompletableFuture<SnapshotSimulazione> futuro = new CompletableFuture<>();
+        CompletableFuture<SnapshotSimulazione> esistente = inCaricamento.putIfAbsent(chiave, futuro);
+        if (esistente != null) return attendi(esistente);
+        try {
+            s = residente(chiave);          // caricata nel frattempo da un altro thread
+            if (s == null) {
+                s = carica(chiave);
+                synchronized (residenti) {
+                    residenti.put(chiave, s);
+                    Iterator<ChiavePartizione> it = residenti.keySet().iterator();
+                    while (residenti.size() > maxResidenti) {
+                        it.next();
+                        it.remove();
+                        espulsioni.incrementAndGet();
+                    }
+                }
+            }
+            futuro.complete(s);
+            return s;
+        } catch (RuntimeException e) {
+            futuro.completeExceptionally(e);
+            throw e;
+        } finally {
+            inCaricamento.remove(chiave, futuro);
+        }
+    }
+
+    // ======================================================
+    // Serie mensile di una metrica su più partizioni, calcolata in parallelo.
+    // aziende vuoto = tutte le aziende; l'intervallo di anni è inclusivo.
+    // ======================================================
+    public SerieMultiPartizione serieMensili(Metrica metrica, Set<String> aziende, int annoDa, int annoA) {
+        long inizio = System.nanoTime();
+        List<ChiavePartizione> selezione = seleziona(aziende, annoDa, annoA);
+
+        List<CompletableFuture<double[]>> futuri = new ArrayList<>(selezione.size());
+        for (ChiavePartizione k : selezione) {
+            futuri.add(CompletableFuture.supplyAsync(() -> totaliMensili(k, metrica), esecutore));
+        }
+
+        // Unione in ordine di partizione: il risultato non dipende dall'ordine di completamento
+        double[] totale = new double[ArchivioColture.MESI];
+        Map<Integer, double[]> perAnno = new TreeMap<>();
+        Map<String, double[]> perAzienda = new TreeMap<>();
+        for (int i = 0; i < selezione.size(); i++) {
+            ChiavePartizione k = selezione.get(i);
+            double[] serie = attendi(futuri.get(i));
+            somma(totale, serie);
+            somma(perAnno.computeIfAbsent(k.getAnno(), a -> new double[ArchivioColture.MESI]), serie);
+            somma(perAzienda.computeIfAbsent(k.getAzienda(), a -> new double[ArchivioColture.MESI]), serie);
+        }
+        long durata = System.nanoTime() - inizio;
+        TEMPO_SERIE.record(durata, TimeUnit.NANOSECONDS);
+        return new SerieMultiPartizione(metrica, selezione.size(), totale, perAnno, perAzienda, durata / 1_000_000);
+    }
+
+    /** Partizioni delle aziende indicate (vuoto = tutte) nell'intervallo di anni inclusivo */
+    public List<ChiavePartizione> seleziona(Set<String> aziende, int annoDa, int annoA) {
+        List<ChiavePartizione> selezione = new ArrayList<>();
+        for (ChiavePartizione k : elenca()) {
+            if (k.getAnno() < annoDa || k.getAnno() > annoA) continue;
+            if (!aziende.isEmpty() && !aziende.contains(k.getAzienda())) continue;
+            selezione.add(k);
+        }
+        return selezione;
+    }
+
+    // ======================================================
+    // Applica un calcolo allo snapshot di ogni partizione, in parallelo sul pool
+    // delle partizioni. I risultati sono nello stesso ordine delle chiavi.
+    // ======================================================
+    public <T> List<T> perPartizione(List<ChiavePartizione> chiavi, Function<SnapshotSimulazione, T> calcolo) {
+        List<CompletableFuture<T>> futuri = new ArrayList<>(chiavi.size());
+        for (ChiavePartizione k : chiavi) {
+            futuri.add(CompletableFuture.supplyAsync(() -> calcolo.apply(getSnapshot(k)), esecutore));
+        }
+        List<T> risultati = new ArrayList<>(chiavi.size());
+        for (CompletableFuture<T> f : futuri) risultati.add(attendi(f));
+        return risultati;
+    }
+
+    /** Totali mensili di una metrica per una partizione (in cache per le partizioni storiche) */
+    public double[] totaliMensili(ChiavePartizione chiave, Metrica metrica) {
+        if (corrente.equals(chiave)) return simulatoreService.getSnapshot().getArchivio().totaliMensili(metrica);
+        double[] serie = totali.get(chiave + "|" + metrica);
+        if (serie == null) {
+            serie = getSnapshot(chiave).getArchivio().totaliMensili(metrica);
+            totali.put(chiave + "|" + metrica, serie);
+        }
+        return serie.clone();
+    }
+
+    // ==============================
+    // Statistiche della cache delle partizioni
+    // ==============================
+    public int getNumeroResidenti() {
+        synchronized (residenti) {
+            return residenti.size();
+        }
+    }
+
+    public int getMaxResidenti() { return maxResidenti; }
+
+    /** Richieste servite da una partizione già in memoria */
+    public long getAccessiInMemoria() { return accessiInMemoria.get(); }
+
+    public long getCaricamenti() { return caricamenti.get(); }
+
+    public long getEspulsioni() { return espulsioni.get(); }
+
+    @PreDestroy
+    public void chiudi() {
+        esecutore.shutdownNow();
+    }
+
+    private SnapshotSimulazione residente(ChiavePartizione chiave) {
+        synchronized (residenti) {
+            return residenti.get(chiave);
+        }
+    }
+
+    // Le partizioni storiche senza dati ambientali li ricevono simulati con un seme fisso
+    private SnapshotSimulazione carica(ChiavePartizione chiave) {
+        long inizio = System.nanoTime();
+        DatiPartizione dati;
+        try {
+            dati = catalogo.carica(chiave);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Caricamento della partizione " + chiave + " fallito", e);
+        }
+        DatiAmbientali[] ambientali = dati.getDatiAmbientali() != null
+                ? dati.getDatiAmbientali()
+                : SimulatoreService.generaAmbientali(new Random(31L * chiave.getAzienda().hashCode() + chiave.getAnno()));
+        caricamenti.incrementAndGet();
+        SnapshotSimulazione s = SnapshotSimulazione.calcola(1, dati.getArchivio(), ambientali);
+        long durata = System.nanoTime() - inizio;
+        TEMPO_CARICAMENTO.record(durata, TimeUnit.NANOSECONDS);
+        log.debug("Partizione {} caricata in {} ms", chiave, durata / 1_000_000);
+        return s;
+    }
+
+    private static <T> T attendi(CompletableFuture<T> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            throw e;
+        }
+    }
+
+    private static void somma(double[] destinazione, double[] valori) {
+        for (int m = 0; m < destinazione.length; m++) destinazione[m] += valori[m];
+    }
+}
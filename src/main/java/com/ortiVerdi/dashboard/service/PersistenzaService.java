@@ -0,0 +1,350 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.EventoDati;
+import com.ortiVerdi.dashboard.data.Persistenza;
+import com.ortiVerdi.dashboard.data.PersistenzaNulla;
+import com.ortiVerdi.dashboard.data.SnapshotBinario;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Scrittura differita (write-behind) delle modifiche sulla Persistenza configurata.
+ *
+ * Chi modifica i dati accoda l'evento e prosegue: il thread della richiesta
+ * non aspetta il disco. Un solo thread scrittore svuota la coda a lotti (fino
+ * a ortiverdi.persistenza.lotto eventi) e scrive ogni lotto con un'unica
+ * operazione, quindi il costo di fsync si divide fra tutti gli eventi arrivati
+ * nel frattempo: più traffico significa lotti più grandi, non più fsync.
+ *
+ * Le letture dei sensori non passano dalla coda: ogni
+ * ortiverdi.persistenza.intervallo-letture-ms il thread scrittore le raccoglie
+ * dalle sorgenti registrate (i buffer circolari delle stazioni), un evento per
+ * canale con tutte le letture nuove.
+ *
+ * Checkpoint: quando il registro supera ortiverdi.persistenza.checkpoint-mb, o
+ * su richiesta (dopo una rigenerazione dei dati), lo stato completo fornito da
+ * impostaCheckpoint() sostituisce tutti gli eventi scritti. Gli eventi accodati
+ * con una versione di snapshot già inclusa nel checkpoint vengono scartati.
+ * Un evento viene accodato prima che il suo snapshot sia pubblicato: se lo
+ * stato fornito è più vecchio dell'ultimo evento scritto il checkpoint viene
+ * rimandato al giro successivo, altrimenti l'evento sparirebbe dal registro.
+ *
+ * La coda è limitata: se il disco non tiene il passo chi accoda aspetta
+ * (contropressione) invece di perdere eventi. Se la scrittura fallisce il
+ * lotto viene riprovato. Un evento accodato ma non ancora scritto si perde solo
+ * in caso di crash del processo, non con uno spegnimento ordinato (chiudi()
+ * svuota la coda e raccoglie le ultime letture).
+ */
+@Service
+public class PersistenzaService {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenzaService.class);
+
+    private static final Timer TEMPO_LOTTO = Timer.builder("ortiverdi.persistenza.lotto")
+            .description("Scrittura di un lotto di eventi sulla persistenza")
+            .register(Metrics.globalRegistry);
+    private static final Timer TEMPO_CHECKPOINT = Timer.builder("ortiverdi.persistenza.checkpoint")
+            .description("Scrittura di un checkpoint e azzeramento del registro")
+            .register(Metrics.globalRegistry);
+    private static final long PAUSA_RIPROVA_MS = 1000;
+    private static final long PAUSA_CHECKPOINT_MS = 60_000;
+    private static final long ATTESA_CODA_MS = 100;
+
+    private final Persistenza persistenza;
+    private final BlockingQueue<Voce> coda;
+    private final int maxLotto;
+    private final long sogliaCheckpoint;
+    private final long intervalloLettureNs;
+    private final List<Consumer<List<EventoDati>>> sorgenti = new CopyOnWriteArrayList<>();
+    private volatile Supplier<Persistenza.Checkpoint> statoCheckpoint;
+    private volatile boolean checkpointRichiesto;
+    private volatile boolean raccoltaRichiesta;
+    private final Thread scrittore;
+    private volatile boolean attivo = true;
+
+    // Solo thread scrittore: versione dello snapshot dell'ultimo checkpoint e dell'ultimo evento scritto,
+    // prossimo tentativo dopo un errore
+    private long versioneCheckpoint = Long.MIN_VALUE;
+    private long versioneScritta = Long.MIN_VALUE;
+    private long riprovaCheckpoint;
+    private boolean scrittoDalCheckpoint;
+
+    private final AtomicLong accodati = new AtomicLong();
+    private final AtomicLong completati = new AtomicLong();   // accodati già scritti o inclusi in un checkpoint
+    private final AtomicLong giri = new AtomicLong();
+    private final AtomicLong scritti = new AtomicLong();
+    private final AtomicLong lotti = new AtomicLong();
+    private final AtomicLong attese = new AtomicLong();
+    private final AtomicLong errori = new AtomicLong();
+    private final AtomicLong checkpoint = new AtomicLong();
+
+    @Autowired
+    public PersistenzaService(Persistenza persistenza,
+                              @Value("${ortiverdi.persistenza.coda:65536}") int capacitaCoda,
+                              @Value("${ortiverdi.persistenza.lotto:4096}") int maxLotto,
+                              @Value("${ortiverdi.persistenza.checkpoint-mb:64}") long checkpointMb,
+                              @Value("${ortiverdi.persistenza.intervallo-letture-ms:1000}") long intervalloLettureMs) {
+        if (capacitaCoda <= 0 || maxLotto <= 0) throw new IllegalArgumentException("Coda e lotto devono essere positivi");
+        this.persistenza = persistenza;
+        this.coda = new ArrayBlockingQueue<>(capacitaCoda);
+        this.maxLotto = maxLotto;
+        this.sogliaCheckpoint = checkpointMb * 1024 * 1024;
+        this.intervalloLettureNs = TimeUnit.MILLISECONDS.toNanos(intervalloLettureMs);
+        if (persistenza.isAttiva()) {
+            scrittore = new Thread(this::scriviLotti, "ortiverdi-persistenza");
+            scrittore.setDaemon(true);
+            scrittore.start();
+            log.info("Persistenza '{}' attiva: coda {} eventi, lotti fino a {}, checkpoint oltre {} MB",
+                    persistenza.getNome(), capacitaCoda, maxLotto, checkpointMb);
+        } else {
+            scrittore = null;
+        }
+    }
+
+    // Soglia di checkpoint e intervallo di raccolta predefiniti, usato nei test
+    PersistenzaService(Persistenza persistenza, int capacitaCoda, int maxLotto) {
+        this(persistenza, capacitaCoda, maxLotto, 64, 1000);
+    }
+
+    // Persistenza disattivata, per i servizi costruiti nei test e nei benchmark
+    public static PersistenzaService nessuna() {
+        return new PersistenzaService(new PersistenzaNulla(), 1, 1);
+    }
+
+    // ======================================================
+    // Accoda un evento già applicato in memoria nello snapshot con la versione
+    // indicata. Non blocca finché la coda ha posto
+    // ======================================================
+    public void accoda(EventoDati evento, long versione) {
+        if (scrittore == null) return;
+        if (!attivo) throw new IllegalStateException("Persistenza chiusa");
+        accodati.incrementAndGet();
+        Voce voce = new Voce(evento, versione);
+        if (coda.offer(voce)) return;
+        attese.incrementAndGet();
+        try {
+            coda.put(voce);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accodati.decrementAndGet();
+            throw new IllegalStateException("Interrotto in attesa della coda di persistenza", e);
+        }
+    }
+
+    /**
+     * Registra una sorgente di eventi raccolti dal thread scrittore a intervalli
+     * regolari (le letture dei sensori): aggiunge al lotto gli eventi nuovi.
+     */
+    public void aggiungiSorgente(Consumer<List<EventoDati>> sorgente) {
+        sorgenti.add(sorgente);
+    }
+
+    /** Imposta chi fornisce lo stato completo per i checkpoint (dopo il ripristino all'avvio) */
+    public void impostaCheckpoint(Supplier<Persistenza.Checkpoint> stato) {
+        statoCheckpoint = stato;
+    }
+
+    /** Chiede un checkpoint al prossimo giro del thread scrittore (es. dopo una rigenerazione) */
+    public void richiediCheckpoint() {
+        checkpointRichiesto = true;
+    }
+
+    /** Rilegge tutti gli eventi salvati dopo l'ultimo checkpoint (all'avvio, prima di accodarne di nuovi) */
+    public long rileggi(Consumer<EventoDati> consumatore) throws IOException {
+        return persistenza.rileggi(consumatore);
+    }
+
+    /** Archivio e dati ambientali dell'ultimo checkpoint, null se non ce n'è uno */
+    public SnapshotBinario leggiCheckpoint() throws IOException {
+        return persistenza.leggiCheckpoint();
+    }
+
+    // ======================================================
+    // Attende che tutti gli eventi accodati finora e le letture registrate
+    // finora siano scritti
+    // ======================================================
+    public synchronized boolean svuota(long timeoutMs) throws InterruptedException {
+        if (scrittore == null) return true;
+        long obiettivo = accodati.get();
+        raccoltaRichiesta = true;
+        long giro = giri.get() + 2;   // un giro completo iniziato dopo questa chiamata
+        long limite = System.currentTimeMillis() + timeoutMs;
+        while (completati.get() < obiettivo || giri.get() < giro) {
+            long resta = limite - System.currentTimeMillis();
+            if (resta <= 0) return false;
+            wait(Math.min(resta, 100));
+        }
+        return true;
+    }
+
+    // ======================================================
+    // Thread scrittore: un lotto per giro (eventi in coda più letture raccolte),
+    // riprovato finché non riesce; poi l'eventuale checkpoint
+    // ======================================================
+    private void scriviLotti() {
+        List<Voce> lotto = new ArrayList<>(maxLotto);
+        List<EventoDati> eventi = new ArrayList<>(maxLotto);
+        long ultimaRaccolta = System.nanoTime();
+        long versioneLotto = versioneScritta;   // ultima versione fra gli eventi del lotto
+        while (true) {
+            boolean ultimo = !attivo;
+            try {
+                if (eventi.isEmpty()) {
+                    lotto.clear();
+                    versioneLotto = versioneScritta;
+                    Voce primo = ultimo ? coda.poll() : coda.poll(ATTESA_CODA_MS, TimeUnit.MILLISECONDS);
+                    if (primo != null) {
+                        lotto.add(primo);
+                        coda.drainTo(lotto, maxLotto - 1);
+                    }
+                    // Già inclusi nell'ultimo checkpoint: non vanno riscritti
+                    for (Voce v : lotto) {
+                        if (v.versione() <= versioneCheckpoint) continue;
+                        eventi.add(v.evento());
+                        versioneLotto = Math.max(versioneLotto, v.versione());
+                    }
+                    if (ultimo || raccoltaRichiesta || System.nanoTime() - ultimaRaccolta >= intervalloLettureNs) {
+                        raccoltaRichiesta = false;
+                        ultimaRaccolta = System.nanoTime();
+                        raccogli(eventi);
+                    }
+                }
+                if (!eventi.isEmpty()) {
+                    long inizio = System.nanoTime();
+                    persistenza.scrivi(eventi);
+                    TEMPO_LOTTO.record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+                    scritti.addAndGet(eventi.size());
+                    lotti.incrementAndGet();
+                    eventi.clear();
+                    versioneScritta = versioneLotto;
+                    scrittoDalCheckpoint = true;
+                }
+                completati.addAndGet(lotto.size());
+                lotto.clear();
+                if (checkpointRichiesto || (scrittoDalCheckpoint && persistenza.getDimensione() > sogliaCheckpoint)) {
+                    checkpoint();
+                }
+                giri.incrementAndGet();
+                synchronized (this) {
+                    notifyAll();
+                }
+                if (ultimo && coda.isEmpty()) return;
+            } catch (IOException e) {
+                errori.incrementAndGet();
+                log.error("Scrittura di {} eventi su '{}' fallita, nuovo tentativo tra {} ms: {}",
+                        eventi.size(), persistenza.getNome(), PAUSA_RIPROVA_MS, e.getMessage());
+                if (ultimo) {
+                    log.error("Persistenza in chiusura: {} eventi non salvati", eventi.size() + coda.size());
+                    return;
+                }
+                try {
+                    Thread.sleep(PAUSA_RIPROVA_MS);
+                } catch (InterruptedException interrotto) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Eventi nuovi delle sorgenti (letture dei sensori); una sorgente che fallisce non blocca le altre
+    private void raccogli(List<EventoDati> eventi) {
+        for (Consumer<List<EventoDati>> sorgente : sorgenti) {
+            try {
+                sorgente.accept(eventi);
+            } catch (RuntimeException e) {
+                log.warn("Raccolta degli eventi da una sorgente fallita", e);
+            }
+        }
+    }
+
+    // ======================================================
+    // Checkpoint sul thread scrittore, a lotto già scritto: dopo un errore si
+    // riprova fra PAUSA_CHECKPOINT_MS, nel frattempo il registro continua a crescere.
+    // Uno stato che non contiene ancora l'ultimo evento scritto (accodato, non
+    // ancora pubblicato) non può sostituire il registro: si riprova al giro dopo
+    // ======================================================
+    private void checkpoint() {
+        Supplier<Persistenza.Checkpoint> fonte = statoCheckpoint;
+        if (fonte == null || System.currentTimeMillis() < riprovaCheckpoint) return;
+        long inizio = System.nanoTime();
+        try {
+            Persistenza.Checkpoint stato = fonte.get();
+            if (stato.versione() < versioneScritta) {
+                checkpointRichiesto = true;
+                return;
+            }
+            checkpointRichiesto = false;
+            persistenza.salvaCheckpoint(stato);
+            versioneCheckpoint = stato.versione();
+            scrittoDalCheckpoint = false;
+            checkpoint.incrementAndGet();
+            TEMPO_CHECKPOINT.record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+            log.info("Checkpoint della persistenza '{}' (snapshot {}) in {} ms", persistenza.getNome(),
+                    stato.versione(), (System.nanoTime() - inizio) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            errori.incrementAndGet();
+            riprovaCheckpoint = System.currentTimeMillis() + PAUSA_CHECKPOINT_MS;
+            log.error("Checkpoint della persistenza '{}' fallito, nuovo tentativo tra {} ms: {}",
+                    persistenza.getNome(), PAUSA_CHECKPOINT_MS, e.toString());
+        }
+    }
+
+    // ======================================================
+    // Spegnimento ordinato: svuota la coda e chiude la persistenza
+    // ======================================================
+    @PreDestroy
+    public void chiudi() {
+        attivo = false;
+        try {
+            if (scrittore != null) scrittore.join(TimeUnit.SECONDS.toMillis(30));
+            persistenza.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Chiusura della persistenza '{}' fallita: {}", persistenza.getNome(), e.getMessage());
+        }
+    }
+
+    // ==============================
+    // Statistiche (esposte come metriche)
+    // ==============================
+    public String getNome() { return persistenza.getNome(); }
+
+    public int getInCoda() { return coda.size(); }
+
+    /** Eventi scritti sul registro, lotti di letture compresi */
+    public long getScritti() { return scritti.get(); }
+
+    public long getLotti() { return lotti.get(); }
+
+    public long getAttese() { return attese.get(); }
+
+    public long getErrori() { return errori.get(); }
+
+    public long getCheckpoint() { return checkpoint.get(); }
+
+    /** Byte del registro dopo l'ultimo checkpoint */
+    public long getDimensione() { return persistenza.getDimensione(); }
+
+    // Evento in coda con la versione dello snapshot che lo contiene
+    private record Voce(EventoDati evento, long versione) { }
+}
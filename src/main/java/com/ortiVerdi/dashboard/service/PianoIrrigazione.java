@@ -0,0 +1,68 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Piano di irrigazione di una partizione: acqua assegnata per mese (indici 0-11)
+ * entro il budget mensile, in totale e per coltura, con ricavi, costi e
+ * profitto attesi e valore marginale dell'acqua (€ per litro in più).
+ * Con il dettaglio richiesto contiene anche i litri per appezzamento.
+ */
+public class PianoIrrigazione {
+    private final double prezzoAcqua;
+    private final double[] budget = new double[12];
+    private final double[] pioggia = new double[12];
+    private final double[] fabbisogno = new double[12];
+    private final double[] acquaAssegnata = new double[12];
+    private final double[] ricavo = new double[12];
+    private final double[] costi = new double[12];
+    private final double[] profitto = new double[12];
+    private final double[] valoreMarginale = new double[12];
+    private final Map<String, double[]> acquaPerColtura = new TreeMap<>();
+    private final Map<String, double[]> fabbisognoPerColtura = new TreeMap<>();
+    private List<Appezzamento> appezzamenti;
+    private long durataMs;
+
+    PianoIrrigazione(double prezzoAcqua) {
+        this.prezzoAcqua = prezzoAcqua;
+    }
+
+    void setAppezzamenti(List<Appezzamento> appezzamenti) { this.appezzamenti = appezzamenti; }
+
+    void setDurataMs(long durataMs) { this.durataMs = durataMs; }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public double getPrezzoAcqua() { return prezzoAcqua; }
+    public double[] getBudget() { return budget; }
+    public double[] getPioggia() { return pioggia; }
+    public double[] getFabbisogno() { return fabbisogno; }
+    public double[] getAcquaAssegnata() { return acquaAssegnata; }
+    public double[] getRicavo() { return ricavo; }
+    public double[] getCosti() { return costi; }
+    public double[] getProfitto() { return profitto; }
+    public double[] getValoreMarginale() { return valoreMarginale; }
+    public Map<String, double[]> getAcquaPerColtura() { return acquaPerColtura; }
+    public Map<String, double[]> getFabbisognoPerColtura() { return fabbisognoPerColtura; }
+    /** Litri per appezzamento; null se il dettaglio non è stato richiesto */
+    public List<Appezzamento> getAppezzamenti() { return appezzamenti; }
+    public long getDurataMs() { return durataMs; }
+
+    public double getProfittoTotale() {
+        double totale = 0;
+        for (double p : profitto) totale += p;
+        return totale;
+    }
+
+    public double getAcquaTotale() {
+        double totale = 0;
+        for (double a : acquaAssegnata) totale += a;
+        return totale;
+    }
+
+    /** Appezzamento (riga dell'archivio) con acqua assegnata e fabbisogno per mese */
+    public record Appezzamento(int riga, String coltura, double[] litri, double[] fabbisogno) { }
+}
@@ -0,0 +1,37 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.List;
+
+/**
+ * Raggruppamenti dei mesi per le interrogazioni su intervalli.
+ * Ogni gruppo è fatto di uno o più tratti di mesi contigui (1-12): l'inverno
+ * (Dic-Feb) nello stesso anno solare è Gen-Feb più Dic.
+ */
+public enum Raggruppamento {
+
+    MESE(List.of(
+            gruppo("Gen", 1, 1), gruppo("Feb", 2, 2), gruppo("Mar", 3, 3), gruppo("Apr", 4, 4),
+            gruppo("Mag", 5, 5), gruppo("Giu", 6, 6), gruppo("Lug", 7, 7), gruppo("Ago", 8, 8),
+            gruppo("Set", 9, 9), gruppo("Ott", 10, 10), gruppo("Nov", 11, 11), gruppo("Dic", 12, 12))),
+    TRIMESTRE(List.of(
+            gruppo("T1", 1, 3), gruppo("T2", 4, 6), gruppo("T3", 7, 9), gruppo("T4", 10, 12))),
+    STAGIONE(List.of(
+            new Gruppo("Inverno", new int[][]{{1, 2}, {12, 12}}),
+            gruppo("Primavera", 3, 5), gruppo("Estate", 6, 8), gruppo("Autunno", 9, 11))),
+    ANNO(List.of(gruppo("Anno", 1, 12)));
+
+    /** Gruppo con nome e tratti [da, a] di mesi contigui */
+    public record Gruppo(String etichetta, int[][] tratti) { }
+
+    private final List<Gruppo> gruppi;
+
+    Raggruppamento(List<Gruppo> gruppi) {
+        this.gruppi = gruppi;
+    }
+
+    public List<Gruppo> getGruppi() { return gruppi; }
+
+    private static Gruppo gruppo(String etichetta, int da, int a) {
+        return new Gruppo(etichetta, new int[][]{{da, a}});
+    }
+}
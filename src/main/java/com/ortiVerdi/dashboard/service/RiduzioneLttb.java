@@ -0,0 +1,73 @@
+package com.ortiVerdi.dashboard.service;
+
+/**
+ * Sottocampionamento Largest-Triangle-Three-Buckets di una serie (istante, valore).
+ *
+ * Il primo e l'ultimo punto restano; gli altri vengono divisi in punti-2
+ * secchi consecutivi e da ogni secchio si tiene il punto che forma il
+ * triangolo più grande con il punto scelto prima e con la media del secchio
+ * successivo. Così picchi e valli sopravvivono, al contrario di una media.
+ *
+ * Un solo passaggio sugli array primitivi, O(n); le uniche allocazioni sono
+ * i due array del risultato. Gli istanti vengono presi relativi al primo, così
+ * i prodotti in double non perdono precisione con gli epoch in millisecondi.
+ */
+final class RiduzioneLttb {
+
+    private RiduzioneLttb() {
+    }
+
+    /** Serie ridotta ai primi n punti di istanti/valori (ordinati per istante) */
+    static SerieRidotta riduci(long[] istanti, double[] valori, int n, int punti) {
+        if (punti < 3) throw new IllegalArgumentException("Punti non validi (minimo 3): " + punti);
+        if (n <= punti) {
+            long[] x = new long[n];
+            double[] y = new double[n];
+            System.arraycopy(istanti, 0, x, 0, n);
+            System.arraycopy(valori, 0, y, 0, n);
+            return new SerieRidotta(n, x, y);
+        }
+
+        long[] x = new long[punti];
+        double[] y = new double[punti];
+        long base = istanti[0];
+        double secchio = (double) (n - 2) / (punti - 2);
+
+        int scelto = 0;
+        x[0] = istanti[0];
+        y[0] = valori[0];
+        for (int i = 0; i < punti - 2; i++) {
+            // Media del secchio successivo (per l'ultimo secchio: l'ultimo punto)
+            int mediaDa = (int) ((i + 1) * secchio) + 1;
+            int mediaA = Math.min((int) ((i + 2) * secchio) + 1, n);
+            double mediaX = 0, mediaY = 0;
+            for (int j = mediaDa; j < mediaA; j++) {
+                mediaX += istanti[j] - base;
+                mediaY += valori[j];
+            }
+            int quanti = mediaA - mediaDa;
+            mediaX /= quanti;
+            mediaY /= quanti;
+
+            // Punto del secchio corrente con il triangolo più grande
+            int da = (int) (i * secchio) + 1;
+            int a = (int) ((i + 1) * secchio) + 1;
+            double ax = istanti[scelto] - base, ay = valori[scelto];
+            double areaMassima = -1;
+            int migliore = da;
+            for (int j = da; j < a; j++) {
+                double area = Math.abs((ax - mediaX) * (valori[j] - ay) - (ax - (istanti[j] - base)) * (mediaY - ay));
+                if (area > areaMassima) {
+                    areaMassima = area;
+                    migliore = j;
+                }
+            }
+            x[i + 1] = istanti[migliore];
+            y[i + 1] = valori[migliore];
+            scelto = migliore;
+        }
+        x[punti - 1] = istanti[n - 1];
+        y[punti - 1] = valori[n - 1];
+        return new SerieRidotta(n, x, y);
+    }
+}
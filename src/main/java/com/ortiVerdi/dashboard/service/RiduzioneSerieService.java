@@ -0,0 +1,143 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.LettureSensore;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.data.StazioneSensori;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Serie lunghe ridotte per i grafici: letture grezze dei sensori e storico
+ * mensile su più anni, sottocampionati con LTTB al numero di punti richiesto.
+ *
+ * Ogni serie ridotta resta in una cache LRU per (serie, punti) insieme alla
+ * versione dei dati da cui è stata calcolata (letture della stazione, versione
+ * dello snapshot corrente): finché i dati non cambiano, passare da una
+ * risoluzione all'altra e tornare indietro non ricalcola nulla.
+ * punti = 0 restituisce la serie completa, senza passare dalla cache.
+ */
+@Service
+public class RiduzioneSerieService {
+
+    private static final Timer TEMPO_RIDUZIONE = Timer.builder("ortiverdi.riduzione.calcolo")
+            .description("Sottocampionamento LTTB di una serie")
+            .register(Metrics.globalRegistry);
+
+    private final SensoriService sensoriService;
+    private final PartizioniService partizioniService;
+    private final int capacita;
+    private final LinkedHashMap<String, Voce> cache;
+
+    // Richieste passate dalla cache e serie effettivamente calcolate (la differenza sono i successi)
+    private final LongAdder richieste = new LongAdder();
+    private final LongAdder calcoli = new LongAdder();
+
+    public RiduzioneSerieService(SensoriService sensoriService, PartizioniService partizioniService,
+                                 @Value("${ortiverdi.riduzione.cache:256}") int capacita) {
+        if (capacita <= 0) throw new IllegalArgumentException("Capacità della cache non valida: " + capacita);
+        this.sensoriService = sensoriService;
+        this.partizioniService = partizioniService;
+        this.capacita = capacita;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // ======================================================
+    // Ultime letture grezze di un canale, al massimo limite, ridotte a punti
+    // ======================================================
+    public SerieRidotta letture(String appezzamento, CanaleSensore canale, int limite, int punti) {
+        StazioneSensori stazione = sensoriService.getStazione(appezzamento);
+        if (stazione == null) throw new NoSuchElementException("Nessun sensore per l'appezzamento: " + appezzamento);
+        verifica(punti);
+        if (punti == 0) {
+            LettureSensore l = stazione.getUltimeLetture(canale, limite);
+            return new SerieRidotta(l.getIstanti().length, l.getIstanti(), l.getValori());
+        }
+        // Versione letta prima dei dati: se nel frattempo arrivano letture, la prossima richiesta ricalcola
+        long versione = stazione.getLetture();
+        return riduci("sensore|" + appezzamento + "|" + canale + "|" + limite + "|" + punti, versione, () -> {
+            LettureSensore l = stazione.getUltimeLetture(canale, limite);
+            return RiduzioneLttb.riduci(l.getIstanti(), l.getValori(), l.getIstanti().length, punti);
+        });
+    }
+
+    // ======================================================
+    // Storico mensile di una metrica sugli anni [da, a] delle aziende indicate
+    // (vuoto = tutte), un punto per mese (istante = primo giorno del mese, UTC)
+    // ======================================================
+    public SerieRidotta storico(Metrica metrica, Set<String> aziende, int da, int a, int punti) {
+        verifica(punti);
+        Supplier<SerieRidotta> calcolo = () -> {
+            SerieMultiPartizione serie = partizioniService.serieMensili(metrica, aziende, da, a);
+            int n = serie.getPerAnno().size() * ArchivioColture.MESI;
+            long[] istanti = new long[n];
+            double[] valori = new double[n];
+            int i = 0;
+            for (Map.Entry<Integer, double[]> anno : serie.getPerAnno().entrySet()) {
+                for (int m = 0; m < ArchivioColture.MESI; m++, i++) {
+                    istanti[i] = LocalDate.of(anno.getKey(), m + 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+                    valori[i] = anno.getValue()[m];
+                }
+            }
+            return punti == 0 ? new SerieRidotta(n, istanti, valori) : RiduzioneLttb.riduci(istanti, valori, n, punti);
+        };
+        if (punti == 0) return calcolo.get();
+        // Le partizioni storiche non cambiano; quella corrente segue lo snapshot
+        long versione = partizioniService.getSnapshot(partizioniService.getCorrente()).getVersione();
+        return riduci("storico|" + metrica + "|" + new TreeSet<>(aziende) + "|" + da + "|" + a + "|" + punti, versione, calcolo);
+    }
+
+    // ==============================
+    // Statistiche della cache
+    // ==============================
+    public long getRichieste() { return richieste.sum(); }
+
+    public long getCalcoli() { return calcoli.sum(); }
+
+    public int getDimensione() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    // Serie dalla cache se calcolata sulla stessa versione dei dati, altrimenti ricalcolata.
+    // Il calcolo avviene fuori dal lock: due richieste uguali e contemporanee calcolano entrambe
+    private SerieRidotta riduci(String chiave, long versione, Supplier<SerieRidotta> calcolo) {
+        richieste.increment();
+        synchronized (cache) {
+            Voce v = cache.get(chiave);
+            if (v != null && v.versione == versione) return v.serie;
+        }
+        calcoli.increment();
+        SerieRidotta serie = TEMPO_RIDUZIONE.record(calcolo);
+        synchronized (cache) {
+            cache.put(chiave, new Voce(versione, serie));
+            Iterator<String> it = cache.keySet().iterator();
+            while (cache.size() > capacita) {
+                it.next();
+                it.remove();
+            }
+        }
+        return serie;
+    }
+
+    private static void verifica(int punti) {
+        if (punti != 0 && punti < 3) throw new IllegalArgumentException("Punti non validi (0 = tutti, minimo 3): " + punti);
+    }
+
+    private record Voce(long versione, SerieRidotta serie) { }
+}
@@ -0,0 +1,50 @@
+package com.ortiVerdi.dashboard.service;
+
+/**
+ * Media e varianza a decadimento esponenziale (EWMA) di una serie, con
+ * z-score di ogni nuovo valore rispetto ai valori precedenti. Stato O(1):
+ * media, varianza e numero di osservazioni.
+ *
+ *   z = (x - media) / dev. standard        (prima di includere x)
+ *   media    += α (x - media)
+ *   varianza  = (1 - α) (varianza + α (x - media)²)
+ *
+ * Un valore anomalo entra nella media tagliato a media ± soglia × dev.
+ * standard: un picco isolato non sposta la linea di base e non nasconde i
+ * picchi successivi. Nelle prime osservazioni (riscaldamento) lo z-score
+ * non viene calcolato. Non è thread-safe: chi lo usa sincronizza.
+ */
+final class RilevatoreEwma {
+
+    private final double alfa;
+    private final double soglia;
+    private final int riscaldamento;
+    private double media;
+    private double varianza;
+    private long osservazioni;
+
+    RilevatoreEwma(double alfa, double soglia, int riscaldamento) {
+        this.alfa = alfa;
+        this.soglia = soglia;
+        this.riscaldamento = riscaldamento;
+    }
+
+    /** Z-score del valore rispetto alla storia (NaN durante il riscaldamento), poi aggiorna la storia */
+    double osserva(double x) {
+        if (osservazioni++ == 0) {
+            media = x;
+            return Double.NaN;
+        }
+        double dev = Math.sqrt(varianza);
+        double z = osservazioni > riscaldamento ? (x - media) / Math.max(dev, 1e-9 * (1 + Math.abs(media))) : Double.NaN;
+        double incluso = Math.abs(z) > soglia ? media + Math.signum(z) * soglia * dev : x;
+        double scarto = incluso - media;
+        double passo = alfa * scarto;
+        media += passo;
+        varianza = (1 - alfa) * (varianza + scarto * passo);
+        return z;
+    }
+
+    /** Valore atteso: media delle osservazioni passate */
+    double getMedia() { return media; }
+}
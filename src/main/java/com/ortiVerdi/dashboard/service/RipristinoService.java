@@ -0,0 +1,106 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.EventoDati;
+import com.ortiVerdi.dashboard.data.Persistenza;
+import com.ortiVerdi.dashboard.data.SnapshotBinario;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Ripristino all'avvio e checkpoint della persistenza.
+ *
+ * All'avvio: se la persistenza ha un checkpoint, il suo archivio sostituisce i
+ * dati appena caricati dalla sorgente; poi gli eventi salvati dopo il
+ * checkpoint vengono riapplicati in ordine, le modifiche alle colture sopra
+ * l'archivio e le letture (e gli stati dei canali) nelle stazioni dei sensori.
+ * Un checkpoint preso da una sorgente o da un catalogo diversi da quelli
+ * attuali (impronta diversa, come per lo snapshot binario) è vecchio: checkpoint
+ * e registro vengono ignorati e sostituiti da un checkpoint dei dati nuovi.
+ *
+ * Avviene durante la creazione dei bean, prima che il server accetti richieste.
+ * Un evento che non si può più applicare (es. coltura sparita dalla sorgente)
+ * viene saltato e contato, non blocca l'avvio.
+ *
+ * Dopo il ripristino fornisce al PersistenzaService lo stato per i checkpoint
+ * (snapshot corrente e stato dei sensori) e ne chiede uno a ogni rigenerazione
+ * dei dati: le modifiche precedenti non devono essere riapplicate ai dati nuovi.
+ */
+@Service
+public class RipristinoService {
+
+    private static final Logger log = LoggerFactory.getLogger(RipristinoService.class);
+
+    private final SimulatoreService simulatoreService;
+    private final SensoriService sensoriService;
+    private long ripristinati;
+    private long scartati;
+    private long generazione;
+    private boolean ignorato;
+
+    public RipristinoService(PersistenzaService persistenzaService, SimulatoreService simulatoreService,
+                             AggiornamentiService aggiornamentiService, SensoriService sensoriService) {
+        this.simulatoreService = simulatoreService;
+        this.sensoriService = sensoriService;
+        long inizio = System.nanoTime();
+        try {
+            SnapshotBinario checkpoint = persistenzaService.leggiCheckpoint();
+            if (checkpoint != null && checkpoint.getImpronta() != simulatoreService.getImpronta()) {
+                log.warn("Checkpoint di '{}' preso da una sorgente o da un catalogo diversi (impronta {}, attesa {}): "
+                                + "checkpoint e registro ignorati", persistenzaService.getNome(),
+                        Long.toHexString(checkpoint.getImpronta()), Long.toHexString(simulatoreService.getImpronta()));
+                ignorato = true;
+                persistenzaService.richiediCheckpoint();
+            } else {
+                if (checkpoint != null) simulatoreService.ripristina(checkpoint.getArchivio(), checkpoint.getDatiAmbientali());
+                persistenzaService.rileggi(evento -> {
+                    try {
+                        switch (evento.getTipo()) {
+                            case LETTURE, SENSORE -> sensoriService.ripristina(evento);
+                            default -> aggiornamentiService.ripristina(evento);
+                        }
+                        ripristinati++;
+                    } catch (RuntimeException e) {
+                        if (scartati++ == 0) log.warn("Evento {} non applicabile, saltato: {}", evento, e.getMessage());
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ripristino dalla persistenza '" + persistenzaService.getNome() + "' fallito", e);
+        }
+        if (ripristinati + scartati > 0) {
+            log.info("Ripristinati {} eventi da '{}' in {} ms ({} saltati)", ripristinati, persistenzaService.getNome(),
+                    (System.nanoTime() - inizio) / 1_000_000, scartati);
+        }
+
+        // L'ascoltatore gira sotto il lock di scrittura: chiede soltanto il checkpoint
+        generazione = simulatoreService.getVersioneGenerazione();
+        simulatoreService.aggiungiAscoltatore(s -> {
+            long g = simulatoreService.getVersioneGenerazione();
+            if (g == generazione) return;
+            generazione = g;
+            persistenzaService.richiediCheckpoint();
+        });
+        persistenzaService.impostaCheckpoint(this::statoCorrente);
+    }
+
+    // Thread della persistenza: snapshot corrente e stato completo dei sensori
+    private Persistenza.Checkpoint statoCorrente() {
+        SnapshotSimulazione s = simulatoreService.getSnapshot();
+        DatiAmbientali[] ambientali = new DatiAmbientali[12];
+        for (int mese = 1; mese <= 12; mese++) ambientali[mese - 1] = s.getDatiAmbientali(mese);
+        return new Persistenza.Checkpoint(s.getVersione(), simulatoreService.getImpronta(), s.getArchivio(), ambientali,
+                sensoriService.statoSensori());
+    }
+
+    public long getRipristinati() { return ripristinati; }
+
+    public long getScartati() { return scartati; }
+
+    /** true se all'avvio checkpoint e registro erano di una sorgente o di un catalogo diversi */
+    public boolean isIgnorato() { return ignorato; }
+}
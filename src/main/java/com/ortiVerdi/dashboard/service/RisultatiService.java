@@ -0,0 +1,123 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Risultati parametrizzati delle pagine (dati produttivi e serie mensili per
+ * partizione, intervallo di mesi e filtro sulle colture) in una CacheRisultati
+ * limitata per numero di voci e per peso.
+ *
+ * Le combinazioni senza filtro di un singolo mese sono già precalcolate nello
+ * snapshot e vengono lette da lì; la cache serve le altre, il cui numero cresce
+ * con i parametri. La versione di una voce è quella dello snapshot corrente per
+ * la partizione corrente e 0 per le partizioni storiche, che non cambiano: a
+ * ogni nuovo snapshot le voci più usate della partizione corrente vengono
+ * ricalcolate in background.
+ */
+@Service
+public class RisultatiService {
+
+    private final PartizioniService partizioniService;
+    private final SimulatoreService simulatoreService;
+    private final CacheRisultati<Chiave, Object> cache;
+    private final int anticipo;
+    private final ExecutorService esecutore;
+    private final AtomicBoolean aggiornamentoInCoda = new AtomicBoolean();
+
+    public RisultatiService(PartizioniService partizioniService, SimulatoreService simulatoreService,
+                            @Value("${ortiverdi.risultati.max-voci:10000}") int maxVoci,
+                            @Value("${ortiverdi.risultati.peso-massimo-kb:8192}") long pesoMassimoKb,
+                            @Value("${ortiverdi.risultati.anticipo:64}") int anticipo) {
+        this.partizioniService = partizioniService;
+        this.simulatoreService = simulatoreService;
+        this.anticipo = anticipo;
+        this.cache = new CacheRisultati<>(maxVoci, pesoMassimoKb * 1024, RisultatiService::peso,
+                this::versione, this::calcola);
+        this.esecutore = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ortiverdi-risultati");
+            t.setDaemon(true);
+            return t;
+        });
+        // L'ascoltatore gira nel thread che pubblica: si limita ad accodare un aggiornamento
+        if (anticipo > 0) simulatoreService.aggiungiAscoltatore(s -> pianificaAggiornamento());
+    }
+
+    // ======================================================
+    // Dati produttivi sommati sui mesi [meseDa, meseA] e sulle colture indicate
+    // (vuoto = tutte); mese del risultato = meseDa se l'intervallo è un mese solo, 0 altrimenti
+    // ======================================================
+    public DatiProduzione getDatiProduzione(ChiavePartizione partizione, int meseDa, int meseA, List<String> colture) {
+        List<String> selezione = normalizza(colture);
+        if (meseDa == meseA && selezione.isEmpty()) return partizioniService.getSnapshot(partizione).getDatiMensili(meseDa);
+        return (DatiProduzione) cache.get(new Chiave(partizione, null, meseDa, meseA, selezione));
+    }
+
+    /** Serie dei 12 mesi di una metrica sulle colture indicate (array condiviso: non va modificato) */
+    public double[] getSerieMensile(ChiavePartizione partizione, Metrica metrica, List<String> colture) {
+        List<String> selezione = normalizza(colture);
+        if (selezione.isEmpty()) return IndiceIntervalli.di(partizioniService.getSnapshot(partizione)).serieMensile(metrica);
+        return (double[]) cache.get(new Chiave(partizione, metrica, 1, 12, selezione));
+    }
+
+    public CacheRisultati<?, ?> getCache() { return cache; }
+
+    @PreDestroy
+    public void chiudi() {
+        esecutore.shutdownNow();
+    }
+
+    // Un solo aggiornamento in coda alla volta: più snapshot ravvicinati ne producono uno
+    private void pianificaAggiornamento() {
+        if (!aggiornamentoInCoda.compareAndSet(false, true)) return;
+        esecutore.execute(() -> {
+            aggiornamentoInCoda.set(false);
+            cache.aggiornaInAnticipo(anticipo, esecutore);
+        });
+    }
+
+    private long versione(Chiave chiave) {
+        return chiave.partizione().equals(partizioniService.getCorrente())
+                ? simulatoreService.getSnapshot().getVersione() : 0;
+    }
+
+    private Object calcola(Chiave chiave) {
+        IndiceIntervalli indice = IndiceIntervalli.di(partizioniService.getSnapshot(chiave.partizione()));
+        BitSet filtro = indice.filtro(chiave.colture(), true);
+        if (chiave.metrica() != null) return indice.serieMensile(chiave.metrica(), filtro);
+        int da = chiave.meseDa(), a = chiave.meseA();
+        return new DatiProduzione(da == a ? da : 0,
+                indice.somma(Metrica.RACCOLTO, filtro, da, a),
+                indice.somma(Metrica.CONSUMO_IDRICO, filtro, da, a),
+                indice.somma(Metrica.COSTI, filtro, da, a),
+                indice.somma(Metrica.PROFITTO, filtro, da, a));
+    }
+
+    // Peso stimato in byte: oggetto DatiProduzione o array di 12 double
+    private static long peso(Object valore) {
+        return valore instanceof double[] serie ? 16 + 8L * serie.length : 64;
+    }
+
+    // Stesso insieme di colture = stessa chiave, in qualunque ordine vengano passate
+    private static List<String> normalizza(List<String> colture) {
+        TreeSet<String> nomi = new TreeSet<>();
+        for (String c : colture) {
+            if (!c.isBlank()) nomi.add(c.trim());
+        }
+        return List.copyOf(nomi);
+    }
+
+    // metrica null = dati produttivi dell'intervallo, altrimenti serie mensile della metrica
+    private record Chiave(ChiavePartizione partizione, Metrica metrica, int meseDa, int meseA, List<String> colture) { }
+}
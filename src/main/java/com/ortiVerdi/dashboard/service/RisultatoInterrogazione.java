@@ -0,0 +1,94 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.Metrica;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Risultato di una interrogazione su un intervallo di mesi: totale, valori per
+ * gruppo (mese, trimestre, stagione o anno, tagliati sull'intervallo) e per
+ * coltura. Con il confronto, gli stessi valori dell'anno precedente della
+ * stessa azienda e la variazione percentuale (null se non calcolabile).
+ */
+public class RisultatoInterrogazione {
+
+    /** Valore di un gruppo di mesi */
+    public static class ValoreGruppo {
+        private final String etichetta;
+        private final List<Integer> mesi;
+        private final double valore;
+        private final Double precedente;
+        private final Double variazione;
+
+        public ValoreGruppo(String etichetta, List<Integer> mesi, double valore, Double precedente) {
+            this.etichetta = etichetta;
+            this.mesi = mesi;
+            this.valore = valore;
+            this.precedente = precedente;
+            this.variazione = variazione(valore, precedente);
+        }
+
+        public String getEtichetta() { return etichetta; }
+        public List<Integer> getMesi() { return mesi; }
+        public double getValore() { return valore; }
+        public Double getPrecedente() { return precedente; }
+        public Double getVariazione() { return variazione; }
+    }
+
+    private final Metrica metrica;
+    private final String azienda;
+    private final int anno;
+    private final Integer annoPrecedente;
+    private final int meseDa;
+    private final int meseA;
+    private final Raggruppamento raggruppamento;
+    private final List<String> colture;            // null = tutte
+    private final double totale;
+    private final Double totalePrecedente;
+    private final Double variazione;
+    private final List<ValoreGruppo> gruppi;
+    private final Map<String, Double> perColtura;
+
+    public RisultatoInterrogazione(Metrica metrica, String azienda, int anno, Integer annoPrecedente,
+                                   int meseDa, int meseA, Raggruppamento raggruppamento, List<String> colture,
+                                   double totale, Double totalePrecedente,
+                                   List<ValoreGruppo> gruppi, Map<String, Double> perColtura) {
+        this.metrica = metrica;
+        this.azienda = azienda;
+        this.anno = anno;
+        this.annoPrecedente = annoPrecedente;
+        this.meseDa = meseDa;
+        this.meseA = meseA;
+        this.raggruppamento = raggruppamento;
+        this.colture = colture;
+        this.totale = totale;
+        this.totalePrecedente = totalePrecedente;
+        this.variazione = variazione(totale, totalePrecedente);
+        this.gruppi = gruppi;
+        this.perColtura = perColtura;
+    }
+
+    // Variazione percentuale rispetto al valore precedente (null se manca o è zero)
+    static Double variazione(double valore, Double precedente) {
+        if (precedente == null || precedente == 0) return null;
+        return (valore - precedente) / Math.abs(precedente) * 100;
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public Metrica getMetrica() { return metrica; }
+    public String getAzienda() { return azienda; }
+    public int getAnno() { return anno; }
+    public Integer getAnnoPrecedente() { return annoPrecedente; }
+    public int getMeseDa() { return meseDa; }
+    public int getMeseA() { return meseA; }
+    public Raggruppamento getRaggruppamento() { return raggruppamento; }
+    public List<String> getColture() { return colture; }
+    public double getTotale() { return totale; }
+    public Double getTotalePrecedente() { return totalePrecedente; }
+    public Double getVariazione() { return variazione; }
+    public List<ValoreGruppo> getGruppi() { return gruppi; }
+    public Map<String, Double> getPerColtura() { return perColtura; }
+}
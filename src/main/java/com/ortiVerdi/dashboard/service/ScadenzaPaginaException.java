@@ -0,0 +1,16 @@
+package com.ortiVerdi.dashboard.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * I pezzi di una pagina non sono arrivati entro la scadenza della richiesta
+ * (ortiverdi.pagine.scadenza-ms): meglio una 503 subito che una pagina lenta.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ScadenzaPaginaException extends RuntimeException {
+
+    public ScadenzaPaginaException(long scadenzaMs) {
+        super("Pagina non assemblata entro " + scadenzaMs + " ms");
+    }
+}
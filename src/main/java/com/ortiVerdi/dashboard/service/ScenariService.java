@@ -0,0 +1,196 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.SchizzoQuantili;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulazione Monte Carlo degli scenari produttivi sui dati di uno snapshot.
+ *
+ * Ogni realizzazione ridisegna raccolto e costi di ogni coltura e mese con le
+ * stesse distribuzioni uniformi del simulatore (produzione base 20-100, fattore
+ * di costo 0.5-1), applicate come fattori di media 1 ai valori dello snapshot;
+ * consumo idrico e profitto seguono dal raccolto come negli aggregati.
+ *
+ * Le realizzazioni sono divise tra i thread di un ForkJoinPool. Ogni realizzazione
+ * ha un proprio SplittableRandom con seme derivato dal suo indice, quindi il
+ * risultato non dipende dal numero di thread. I totali mensili di ogni
+ * realizzazione finiscono subito in sketch dei quantili (SchizzoQuantili) locali
+ * al compito, uniti poi a coppie: la memoria non cresce con le realizzazioni e i
+ * thread non condividono nulla in scrittura, quindi i tempi scalano con i core.
+ */
+@Service
+public class ScenariService {
+
+    public static final long SEME_PREDEFINITO = 42L;
+    static final double ACCURATEZZA = 0.005;   // errore relativo massimo dei quantili
+
+    private static final String[] METRICHE = {"raccolto", "consumoIdrico", "profitto"};
+    private static final Timer TEMPO_SIMULAZIONE = Timer.builder("ortiverdi.scenari.simulazione")
+            .description("Simulazione Monte Carlo completa")
+            .register(Metrics.globalRegistry);
+
+    private final ForkJoinPool pool;
+    private final int maxRealizzazioni;
+
+    public ScenariService(@Value("${ortiverdi.scenari.parallelismo:0}") int parallelismo,
+                          @Value("${ortiverdi.scenari.max-realizzazioni:100000}") int maxRealizzazioni) {
+        this.pool = new ForkJoinPool(parallelismo > 0 ? parallelismo : Runtime.getRuntime().availableProcessors());
+        this.maxRealizzazioni = maxRealizzazioni;
+    }
+
+    public int getMaxRealizzazioni() { return maxRealizzazioni; }
+
+    // ======================================================
+    // Esegue la simulazione e restituisce le bande P5/P50/P95
+    // ======================================================
+    public BandeScenari simula(SnapshotSimulazione snapshot, int realizzazioni, long seme) {
+        if (realizzazioni < 1 || realizzazioni > maxRealizzazioni) {
+            throw new IllegalArgumentException("Numero di realizzazioni non valido (1-" + maxRealizzazioni + "): " + realizzazioni);
+        }
+        long inizio = System.nanoTime();
+        Modello modello = new Modello(snapshot.getArchivio());
+        // Circa 8 compiti per thread: bilanciamento senza troppo lavoro di unione
+        int soglia = Math.max(1, realizzazioni / (pool.getParallelism() * 8));
+        Schizzi totale = pool.invoke(new Compito(modello, seme, 0, realizzazioni, soglia));
+
+        Map<String, BandeScenari.Banda> bande = new LinkedHashMap<>();
+        for (int k = 0; k < METRICHE.length; k++) bande.put(METRICHE[k], totale.banda(k));
+        long durata = System.nanoTime() - inizio;
+        TEMPO_SIMULAZIONE.record(durata, TimeUnit.NANOSECONDS);
+        return new BandeScenari(realizzazioni, seme, durata / 1_000_000, bande);
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        pool.shutdownNow();
+    }
+
+    // ======================================================
+    // Dati dello snapshot copiati in array primitivi, letti da tutti i thread
+    // ======================================================
+    static final class Modello {
+        final int righe;
+        final double[] raccolto;   // riga*12 + mese
+        final double[] costi;
+        final double[] prezzi;
+        final double[] acquaPerKg;
+
+        Modello(ArchivioColture a) {
+            righe = a.getNumeroRighe();
+            raccolto = new double[righe * ArchivioColture.MESI];
+            costi = new double[righe * ArchivioColture.MESI];
+            prezzi = new double[righe];
+            acquaPerKg = new double[righe];
+            for (int r = 0; r < righe; r++) {
+                prezzi[r] = a.getPrezzo(r);
+                acquaPerKg[r] = a.getConsumoIdricoPerKg(r);
+                for (int m = 0; m < ArchivioColture.MESI; m++) {
+                    raccolto[r * ArchivioColture.MESI + m] = a.getRaccolto(r, m);
+                    costi[r * ArchivioColture.MESI + m] = a.getCosto(r, m);
+                }
+            }
+        }
+
+        // Una realizzazione: totali mensili nei tre array (azzerati qui)
+        void realizza(SplittableRandom rnd, double[] totRaccolto, double[] totAcqua, double[] totProfitto) {
+            Arrays.fill(totRaccolto, 0);
+            Arrays.fill(totAcqua, 0);
+            Arrays.fill(totProfitto, 0);
+            for (int r = 0; r < righe; r++) {
+                double prezzo = prezzi[r], acqua = acquaPerKg[r];
+                int base = r * ArchivioColture.MESI;
+                for (int m = 0; m < ArchivioColture.MESI; m++) {
+                    double q = raccolto[base + m] * ((20 + rnd.nextDouble() * 80) / 60);   // media 1
+                    double c = costi[base + m] * ((0.5 + rnd.nextDouble() * 0.5) / 0.75);  // media 1
+                    totRaccolto[m] += q;
+                    totAcqua[m] += q * acqua;
+                    totProfitto[m] += q * prezzo - c;
+                }
+            }
+        }
+    }
+
+    // Sketch per metrica e mese: [metrica][mese]
+    static final class Schizzi {
+        final SchizzoQuantili[][] s = new SchizzoQuantili[METRICHE.length][ArchivioColture.MESI];
+
+        Schizzi() {
+            for (SchizzoQuantili[] riga : s) {
+                for (int m = 0; m < riga.length; m++) riga[m] = new SchizzoQuantili(ACCURATEZZA);
+            }
+        }
+
+        void aggiungi(int metrica, double[] mensili) {
+            for (int m = 0; m < mensili.length; m++) s[metrica][m].aggiungi(mensili[m]);
+        }
+
+        Schizzi unisci(Schizzi altro) {
+            for (int k = 0; k < s.length; k++) {
+                for (int m = 0; m < s[k].length; m++) s[k][m].unisci(altro.s[k][m]);
+            }
+            return this;
+        }
+
+        BandeScenari.Banda banda(int metrica) {
+            double[] p5 = new double[ArchivioColture.MESI], p50 = new double[ArchivioColture.MESI], p95 = new double[ArchivioColture.MESI];
+            for (int m = 0; m < ArchivioColture.MESI; m++) {
+                p5[m] = s[metrica][m].quantile(0.05);
+                p50[m] = s[metrica][m].quantile(0.50);
+                p95[m] = s[metrica][m].quantile(0.95);
+            }
+            return new BandeScenari.Banda(p5, p50, p95);
+        }
+    }
+
+    // ======================================================
+    // Compito fork/join su un intervallo di realizzazioni [da, a)
+    // ======================================================
+    private static final class Compito extends RecursiveTask<Schizzi> {
+        private final Modello modello;
+        private final long seme;
+        private final int da, a, soglia;
+
+        Compito(Modello modello, long seme, int da, int a, int soglia) {
+            this.modello = modello;
+            this.seme = seme;
+            this.da = da;
+            this.a = a;
+            this.soglia = soglia;
+        }
+
+        @Override
+        protected Schizzi compute() {
+            if (a - da <= soglia) {
+                Schizzi schizzi = new Schizzi();
+                double[] raccolto = new double[ArchivioColture.MESI];
+                double[] acqua = new double[ArchivioColture.MESI];
+                double[] profitto = new double[ArchivioColture.MESI];
+                for (int i = da; i < a; i++) {
+                    modello.realizza(new SplittableRandom(seme + i * 0x9E3779B97F4A7C15L), raccolto, acqua, profitto);
+                    schizzi.aggiungi(0, raccolto);
+                    schizzi.aggiungi(1, acqua);
+                    schizzi.aggiungi(2, profitto);
+                }
+                return schizzi;
+            }
+            int meta = (da + a) >>> 1;
+            Compito sinistra = new Compito(modello, seme, da, meta, soglia);
+            sinistra.fork();
+            Schizzi destra = new Compito(modello, seme, meta, a, soglia).compute();
+            return sinistra.join().unisci(destra);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.Locale;
+
+/**
+ * Scenario "what-if" sul meteo dei 12 mesi: variazione di temperatura in gradi
+ * e variazioni percentuali di pioggia e luce, es. pioggia = -30 -> pioggia -30%.
+ * Zero in tutti i campi = meteo della partizione così com'è.
+ */
+public class ScenarioMeteo {
+    private String nome;
+    private double temperatura;   // °C da aggiungere
+    private double pioggia;       // % di variazione
+    private double luce;          // % di variazione
+
+    public ScenarioMeteo() { }
+
+    public ScenarioMeteo(String nome, double temperatura, double pioggia, double luce) {
+        this.nome = nome;
+        this.temperatura = temperatura;
+        this.pioggia = pioggia;
+        this.luce = luce;
+    }
+
+    /** Nome dello scenario; se assente viene composto dalle variazioni */
+    public String getNome() {
+        if (nome != null && !nome.isBlank()) return nome;
+        return String.format(Locale.ROOT, "temperatura %+.1f, pioggia %+.0f%%, luce %+.0f%%",
+                temperatura, pioggia, luce);
+    }
+    public void setNome(String nome) { this.nome = nome; }
+
+    public double getTemperatura() { return temperatura; }
+    public void setTemperatura(double temperatura) { this.temperatura = temperatura; }
+
+    public double getPioggia() { return pioggia; }
+    public void setPioggia(double pioggia) { this.pioggia = pioggia; }
+
+    public double getLuce() { return luce; }
+    public void setLuce(double luce) { this.luce = luce; }
+
+    // Variazioni oltre -100% o non finite non hanno senso fisico -> 400
+    void verifica() {
+        if (!Double.isFinite(temperatura) || Math.abs(temperatura) > 50) {
+            throw new IllegalArgumentException("Variazione di temperatura non valida: " + temperatura);
+        }
+        if (!Double.isFinite(pioggia) || pioggia < -100 || !Double.isFinite(luce) || luce < -100) {
+            throw new IllegalArgumentException("Variazioni percentuali di pioggia e luce devono essere >= -100");
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.EventoDati;
+import com.ortiVerdi.dashboard.data.LettureSensore;
+import com.ortiVerdi.dashboard.data.StazioneSensori;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Acquisizione delle letture dei sensori in campo.
+ *
+ * Ogni appezzamento ha una StazioneSensori con buffer circolari preallocati e
+ * aggregati per minuto/ora/giorno/mese. A intervalli regolari i valori mensili
+ * (media fra gli appezzamenti) sostituiscono i DatiAmbientali simulati nello
+ * snapshot: i mesi o i canali senza letture mantengono il valore precedente.
+ *
+ * registra() non alloca e non accoda nulla: il thread del PersistenzaService
+ * raccoglie a intervalli regolari le letture nuove dai buffer delle stazioni
+ * (un evento per canale) e, per i checkpoint, lo stato completo dei canali;
+ * all'avvio ripristina() le riporta nelle stazioni. Gli ascoltatori ricevono
+ * ogni lettura registrata, sul thread che la registra.
+ */
+@Service
+public class SensoriService {
+
+    private static final Logger log = LoggerFactory.getLogger(SensoriService.class);
+    private static final CanaleSensore[] CANALI = CanaleSensore.values();
+
+    private final SimulatoreService simulatoreService;
+    private final int capacita;
+    private final int maxAppezzamenti;
+    private final ConcurrentHashMap<String, StazioneSensori> stazioni = new ConcurrentHashMap<>();
+    // Array copiato a ogni aggiunta: scorrerlo in registra() non alloca un iteratore
+    private volatile AscoltatoreLetture[] ascoltatori = new AscoltatoreLetture[0];
+    private long nonSalvateSegnalate;   // solo thread della persistenza
+
+    // Letture ricevute e letture già riflesse nello snapshot
+    private final AtomicLong letture = new AtomicLong();
+    private long letturePubblicate;
+    private DatiAmbientali[] pubblicati;
+
+    @Autowired
+    public SensoriService(SimulatoreService simulatoreService, PersistenzaService persistenzaService,
+                          @Value("${ortiverdi.sensori.capacita:8192}") int capacita,
+                          @Value("${ortiverdi.sensori.max-appezzamenti:1000}") int maxAppezzamenti) {
+        this.simulatoreService = simulatoreService;
+        this.capacita = capacita;
+        this.maxAppezzamenti = maxAppezzamenti;
+        persistenzaService.aggiungiSorgente(this::raccogliLetture);
+    }
+
+    // Senza persistenza, usato nei test
+    SensoriService(SimulatoreService simulatoreService, int capacita, int maxAppezzamenti) {
+        this(simulatoreService, PersistenzaService.nessuna(), capacita, maxAppezzamenti);
+    }
+
+    // ======================================================
+    // Registra una lettura di un canale; l'appezzamento viene creato al primo uso
+    // ======================================================
+    public void registra(String appezzamento, long istante, CanaleSensore canale, double valore) {
+        stazione(appezzamento).registra(istante, canale, valore);
+        letture.incrementAndGet();
+        for (AscoltatoreLetture a : ascoltatori) {
+            try {
+                a.lettura(appezzamento, istante, canale, valore);
+            } catch (RuntimeException e) {
+                log.warn("Ascoltatore delle letture fallito", e);
+            }
+        }
+    }
+
+    /** Riceve una lettura registrata, sul thread che la registra: deve essere O(1) */
+    @FunctionalInterface
+    public interface AscoltatoreLetture {
+        void lettura(String appezzamento, long istante, CanaleSensore canale, double valore);
+    }
+
+    /**
+     * Registra un ascoltatore chiamato a ogni lettura registrata (non per quelle
+     * ripristinate all'avvio). Gira sul thread di chi registra: deve essere O(1).
+     */
+    public synchronized void aggiungiAscoltatore(AscoltatoreLetture ascoltatore) {
+        AscoltatoreLetture[] nuovi = Arrays.copyOf(ascoltatori, ascoltatori.length + 1);
+        nuovi[nuovi.length - 1] = ascoltatore;
+        ascoltatori = nuovi;
+    }
+
+    // ======================================================
+    // Ripristino all'avvio: lotti di letture e stati completi dei canali,
+    // senza riscriverli
+    // ======================================================
+    public void ripristina(EventoDati evento) {
+        StazioneSensori s = stazione(evento.getNome());
+        switch (evento.getTipo()) {
+            case LETTURE -> s.registraSalvate(evento.getCanale(), evento.getIstanti(), evento.getValori());
+            case SENSORE -> {
+                try {
+                    letture.addAndGet(s.ripristinaCanale(evento.getCanale(), evento.getStato()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Stato del canale non valido", e);
+                }
+                return;
+            }
+            default -> throw new IllegalArgumentException("Non è un evento dei sensori: " + evento);
+        }
+        letture.addAndGet(evento.getIstanti().length);
+    }
+
+    // ======================================================
+    // Thread della persistenza: per ogni canale un evento con le letture
+    // arrivate dalla raccolta precedente
+    // ======================================================
+    private void raccogliLetture(List<EventoDati> lotto) {
+        long nonSalvate = 0;
+        for (StazioneSensori s : stazioni.values()) {
+            for (CanaleSensore c : CANALI) {
+                LettureSensore nuove = s.prendiNonSalvate(c);
+                if (nuove != null) {
+                    lotto.add(EventoDati.letture(s.getAppezzamento(), c, nuove.getIstanti(), nuove.getValori()));
+                }
+            }
+            nonSalvate += s.getNonSalvate();
+        }
+        if (nonSalvate > nonSalvateSegnalate) {
+            log.warn("{} letture sovrascritte nei buffer prima di essere salvate (ortiverdi.sensori.capacita = {})",
+                    nonSalvate - nonSalvateSegnalate, capacita);
+            nonSalvateSegnalate = nonSalvate;
+        }
+    }
+
+    /** Stato completo di tutti i canali per un checkpoint: da qui le loro letture risultano salvate */
+    List<EventoDati> statoSensori() {
+        List<EventoDati> stato = new ArrayList<>();
+        for (StazioneSensori s : stazioni.values()) {
+            for (CanaleSensore c : CANALI) stato.add(EventoDati.sensore(s.getAppezzamento(), c, s.salvaCanale(c)));
+        }
+        return stato;
+    }
+
+    /** Stazione di un appezzamento, null se non ha mai inviato letture */
+    public StazioneSensori getStazione(String appezzamento) {
+        return stazioni.get(appezzamento);
+    }
+
+    public List<StazioneSensori> getStazioni() {
+        return new ArrayList<>(stazioni.values());
+    }
+
+    public long getLetture() {
+        return letture.get();
+    }
+
+    // ======================================================
+    // Pubblica i dati ambientali derivati dai sensori, se ci sono letture nuove
+    // o se una rigenerazione ha rimesso i valori simulati
+    // ======================================================
+    @Scheduled(fixedDelayString = "${ortiverdi.sensori.pubblicazione-ms:5000}")
+    public synchronized void pubblica() {
+        if (stazioni.isEmpty()) return;
+        long ricevute = letture.get();
+        if (ricevute == letturePubblicate && !sovrascritti(simulatoreService.getSnapshot())) return;
+
+        simulatoreService.aggiorna((corrente, versione) -> {
+            DatiAmbientali[] nuovi = derivaDatiAmbientali(corrente);
+            pubblicati = nuovi;
+            return corrente.conDatiAmbientali(versione, nuovi);
+        });
+        letturePubblicate = ricevute;
+    }
+
+    /**
+     * Dati ambientali dei 12 mesi: per ogni canale la media fra gli appezzamenti
+     * dei valori mensili (per la pioggia il totale del mese di ciascun appezzamento).
+     * Dove non ci sono letture resta il valore dello snapshot.
+     */
+    DatiAmbientali[] derivaDatiAmbientali(SnapshotSimulazione base) {
+        DatiAmbientali[] risultato = new DatiAmbientali[12];
+        double[] valori = new double[CANALI.length];
+        for (int mese = 1; mese <= 12; mese++) {
+            DatiAmbientali attuali = base.getDatiAmbientali(mese);
+            valori[CanaleSensore.TEMPERATURA.ordinal()] = attuali.getTemperatura();
+            valori[CanaleSensore.UMIDITA.ordinal()] = attuali.getUmiditaRelativa();
+            valori[CanaleSensore.PRECIPITAZIONI.ordinal()] = attuali.getPrecipitazioni();
+            valori[CanaleSensore.VENTO.ordinal()] = attuali.getVelocitaVento();
+            valori[CanaleSensore.LUMINOSITA.ordinal()] = attuali.getLuminosita();
+
+            boolean cambiato = false;
+            for (CanaleSensore c : CANALI) {
+                double somma = 0;
+                int n = 0;
+                for (StazioneSensori s : stazioni.values()) {
+                    double v = s.getValoreMensile(c, mese);
+                    if (!Double.isNaN(v)) { somma += v; n++; }
+                }
+                if (n > 0) { valori[c.ordinal()] = somma / n; cambiato = true; }
+            }
+            risultato[mese - 1] = !cambiato ? attuali : new DatiAmbientali(
+                    valori[CanaleSensore.TEMPERATURA.ordinal()],
+                    valori[CanaleSensore.UMIDITA.ordinal()],
+                    valori[CanaleSensore.PRECIPITAZIONI.ordinal()],
+                    valori[CanaleSensore.VENTO.ordinal()],
+                    valori[CanaleSensore.LUMINOSITA.ordinal()]);
+        }
+        return risultato;
+    }
+
+    // true se lo snapshot non contiene più i dati ambientali pubblicati dai sensori
+    private boolean sovrascritti(SnapshotSimulazione s) {
+        if (pubblicati == null) return true;
+        for (int mese = 1; mese <= 12; mese++) {
+            if (s.getDatiAmbientali(mese) != pubblicati[mese - 1]) return true;
+        }
+        return false;
+    }
+
+    private StazioneSensori stazione(String appezzamento) {
+        if (appezzamento == null || appezzamento.isBlank()) {
+            throw new IllegalArgumentException("Appezzamento mancante");
+        }
+        StazioneSensori s = stazioni.get(appezzamento);
+        if (s != null) return s;
+        if (stazioni.size() >= maxAppezzamenti) {
+            throw new IllegalArgumentException("Raggiunto il limite di " + maxAppezzamenti + " appezzamenti");
+        }
+        return stazioni.computeIfAbsent(appezzamento, nome -> new StazioneSensori(nome, capacita));
+    }
+}
@@ -0,0 +1,38 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.Metrica;
+
+import java.util.Map;
+
+/**
+ * Risultato di una interrogazione su più partizioni: serie mensile di una
+ * metrica sommata su tutte le partizioni, per anno e per azienda.
+ */
+public class SerieMultiPartizione {
+    private final Metrica metrica;
+    private final int partizioni;
+    private final double[] totale;                    // 12 mesi
+    private final Map<Integer, double[]> perAnno;     // anno -> 12 mesi
+    private final Map<String, double[]> perAzienda;   // azienda -> 12 mesi
+    private final long durataMillis;
+
+    public SerieMultiPartizione(Metrica metrica, int partizioni, double[] totale, Map<Integer, double[]> perAnno,
+                                Map<String, double[]> perAzienda, long durataMillis) {
+        this.metrica = metrica;
+        this.partizioni = partizioni;
+        this.totale = totale;
+        this.perAnno = perAnno;
+        this.perAzienda = perAzienda;
+        this.durataMillis = durataMillis;
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public Metrica getMetrica() { return metrica; }
+    public int getPartizioni() { return partizioni; }
+    public double[] getTotale() { return totale; }
+    public Map<Integer, double[]> getPerAnno() { return perAnno; }
+    public Map<String, double[]> getPerAzienda() { return perAzienda; }
+    public long getDurataMillis() { return durataMillis; }
+}
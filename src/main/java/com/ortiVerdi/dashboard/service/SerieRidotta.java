@@ -0,0 +1,25 @@
+package com.ortiVerdi.dashboard.service;
+
+/**
+ * Serie (istante, valore) pronta per un grafico, eventualmente ridotta con
+ * LTTB a un numero di punti richiesto. Gli istanti sono epoch in millisecondi.
+ * Istanti e valori hanno gli stessi nomi di LettureSensore.
+ */
+public class SerieRidotta {
+    private final int puntiOriginali;
+    private final long[] istanti;
+    private final double[] valori;
+
+    public SerieRidotta(int puntiOriginali, long[] istanti, double[] valori) {
+        this.puntiOriginali = puntiOriginali;
+        this.istanti = istanti;
+        this.valori = valori;
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public int getPuntiOriginali() { return puntiOriginali; }
+    public long[] getIstanti() { return istanti; }
+    public double[] getValori() { return valori; }
+}
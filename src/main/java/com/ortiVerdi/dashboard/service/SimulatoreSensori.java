@@ -0,0 +1,57 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Sensori simulati per provare la dashboard senza hardware in campo:
+ * a intervalli regolari invia una lettura per canale per ogni appezzamento,
+ * con un ciclo giornaliero di temperatura e luce e una stagionalità annuale.
+ *
+ * Si attiva con ortiverdi.sensori.simulatore.attivo=true.
+ */
+@Component
+@ConditionalOnProperty(name = "ortiverdi.sensori.simulatore.attivo", havingValue = "true")
+public class SimulatoreSensori {
+
+    private final SensoriService sensoriService;
+    private final int appezzamenti;
+    private final SplittableRandom rnd = new SplittableRandom();
+
+    public SimulatoreSensori(SensoriService sensoriService,
+                             @Value("${ortiverdi.sensori.simulatore.appezzamenti:4}") int appezzamenti) {
+        this.sensoriService = sensoriService;
+        this.appezzamenti = appezzamenti;
+    }
+
+    @Scheduled(fixedRateString = "${ortiverdi.sensori.simulatore.intervallo-ms:2000}")
+    public void invia() {
+        long adesso = System.currentTimeMillis();
+        ZonedDateTime t = Instant.ofEpochMilli(adesso).atZone(ZoneOffset.UTC);
+        double ora = t.getHour() + t.getMinute() / 60.0;
+        double giornaliero = Math.sin((ora - 9) / 24 * 2 * Math.PI);                 // massimo verso le 15
+        double stagionale = -Math.cos((t.getDayOfYear() - 15) / 365.0 * 2 * Math.PI); // massimo a luglio
+        double luce = Math.max(0, Math.sin((ora - 6) / 12 * Math.PI));
+
+        for (int i = 1; i <= appezzamenti; i++) {
+            String nome = "Appezzamento " + i;
+            double temperatura = 16 + 9 * stagionale + 5 * giornaliero + rnd.nextDouble(-1, 1);
+            sensoriService.registra(nome, adesso, CanaleSensore.TEMPERATURA, temperatura);
+            sensoriService.registra(nome, adesso, CanaleSensore.UMIDITA,
+                    Math.min(100, Math.max(10, 60 - 15 * giornaliero + rnd.nextDouble(-5, 5))));
+            sensoriService.registra(nome, adesso, CanaleSensore.PRECIPITAZIONI,
+                    rnd.nextDouble() < 0.02 ? rnd.nextDouble(0, 0.5) : 0);
+            sensoriService.registra(nome, adesso, CanaleSensore.VENTO, Math.abs(3 + rnd.nextDouble(-2, 2)));
+            sensoriService.registra(nome, adesso, CanaleSensore.LUMINOSITA,
+                    luce * (25000 + 15000 * stagionale) + rnd.nextDouble(0, 500));
+        }
+    }
+}
@@ -1,189 +1,312 @@
 package com.ortiVerdi.dashboard.service;
 
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import com.ortiVerdi.dashboard.data.SnapshotBinario;
+import com.ortiVerdi.dashboard.data.SorgenteDati;
+import com.ortiVerdi.dashboard.data.SorgenteDatiSimulati;
 import com.ortiVerdi.dashboard.model.Coltura;
 import com.ortiVerdi.dashboard.model.DatiAmbientali;
 import com.ortiVerdi.dashboard.model.DatiProduzione;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 public class SimulatoreService {
 
-    private final Random rnd = new Random(); // Generatore di numeri casuali
+    private static final Logger log = LoggerFactory.getLogger(SimulatoreService.class);
+
+    // Durata della generazione completa di uno snapshot e delle modifiche incrementali
+    private static final Timer TEMPO_GENERAZIONE = Timer.builder("ortiverdi.simulatore.generazione")
+            .description("Caricamento dalla sorgente e calcolo degli aggregati di uno snapshot")
+            .register(Metrics.globalRegistry);
+    private static final Timer TEMPO_AGGIORNAMENTO = Timer.builder("ortiverdi.simulatore.aggiornamento")
+            .description("Modifica incrementale dello snapshot pubblicato")
+            .register(Metrics.globalRegistry);
 
     // ======================================================
-    // CACHE: I DATI SI GENERANO UNA VOLTA SOLA per migliorare le performance
+    // SNAPSHOT: tutti i dati vengono generati insieme e pubblicati con un'unica
+    // scrittura volatile. Le letture non usano lock e vedono sempre una
+    // generazione completa e coerente.
     // ======================================================
-    private List<Coltura> coltureCache = null;
-    private double[] consumoIdricoCache = null;
-    private DatiProduzione datiAnnualiCache = null;
-    private Map<Integer, DatiProduzione> datiMensiliCache = new HashMap<>();
-    private Map<Integer, DatiAmbientali> datiAmbientaliCache = new HashMap<>(); // Cache dei dati ambientali
+    private volatile SnapshotSimulazione snapshot;
+    private final AtomicLong versioni = new AtomicLong();
+    // Versione dell'ultimo snapshot completo (generato, caricato o ripristinato)
+    private volatile long versioneGenerazione;
+    // Impronta di sorgente e catalogo da cui vengono le colture dell'ultimo snapshot completo
+    private volatile long impronta;
+
+    // Notificati dopo ogni pubblicazione, dal thread che scrive: devono essere rapidi
+    private final List<Consumer<SnapshotSimulazione>> ascoltatori = new CopyOnWriteArrayList<>();
+
+    // Sorgente delle colture (CSV o simulatore) e semi per i dati ambientali
+    private final SorgenteDati sorgente;
+    private final Random semi;
+
+    // Snapshot binario su disco (null se disabilitato)
+    private final Path fileSnapshot;
+    private final boolean verificaChecksum;
+
+    @Autowired
+    public SimulatoreService(SorgenteDati sorgente,
+                             @Value("${ortiverdi.snapshot.percorso:}") String percorsoSnapshot,
+                             @Value("${ortiverdi.snapshot.verifica-checksum:true}") boolean verificaChecksum) {
+        this(sorgente, System.nanoTime(), percorsoSnapshot.isBlank() ? null : Path.of(percorsoSnapshot), verificaChecksum);
+    }
+
+    // Costruttore con seme fisso, usato nei test per avere dati riproducibili
+    SimulatoreService(long seme) {
+        this(new SorgenteDatiSimulati(seme), seme, null, true);
+    }
+
+    SimulatoreService(SorgenteDati sorgente, long seme, Path fileSnapshot, boolean verificaChecksum) {
+        this.sorgente = sorgente;
+        this.semi = new Random(seme);
+        this.fileSnapshot = fileSnapshot;
+        this.verificaChecksum = verificaChecksum;
+        this.snapshot = caricaIniziale();
+    }
 
     // ======================================================
     // Helper per generare valori con distribuzione gaussiana
     // ======================================================
-    private double gauss(double media, double deviazione) {
+    private static double gauss(Random rnd, double media, double deviazione) {
         return media + rnd.nextGaussian() * deviazione;
     }
 
     // ======================================================
-    // Generazione dati ambientali per un mese (memorizzati nella cache)
+    // Restituisce lo snapshot corrente (una sola lettura volatile)
     // ======================================================
-    public DatiAmbientali generaDatiAmbientali(int mese) {
-        if (datiAmbientaliCache.containsKey(mese)) {
-            return datiAmbientaliCache.get(mese); // Restituisce dati già generati
-        }
-
-        // Generazione randomica dei valori ambientali, con distribuzione realistica
-        DatiAmbientali da = new DatiAmbientali(
-                gauss(18, 7),       // Temperatura media ± deviazione
-                gauss(55, 15),      // Umidità relativa
-                Math.abs(gauss(80, 40)), // Precipitazioni (valore positivo)
-                Math.abs(gauss(3, 1)),   // Velocità del vento
-                Math.abs(gauss(20000, 8000)) // Luminosità
-        );
-
-        datiAmbientaliCache.put(mese, da); // Salva nella cache
-        return da;
+    public SnapshotSimulazione getSnapshot() {
+        return snapshot;
     }
 
     // ======================================================
-    // Profili stagionali delle colture (valori normalizzati 0-1)
+    // Rigenera tutti i dati e pubblica atomicamente il nuovo snapshot
     // ======================================================
-    private final double[] pomodoroStagionale = {0,0,0.1,0.3,0.6,1,1,0.9,0.6,0.3,0.1,0};
-    private final double[] limoneStagionale   = {0.2,0.2,0.3,0.5,0.7,0.9,0.9,0.8,0.7,0.6,0.4,0.3};
-    private final double[] uvaStagionale      = {0,0,0.1,0.2,0.4,0.7,1,1,0.8,0.5,0.2,0};
-    private final double[] olivoStagionale    = {0.3,0.3,0.4,0.5,0.6,0.8,0.9,0.8,0.6,0.5,0.4,0.3};
-    private final double[] granoStagionale    = {0,0.1,0.3,0.6,0.9,1,0.8,0.5,0.2,0.1,0,0};
-    private final double[] nocciolaStagionale = {0.1,0.1,0.2,0.4,0.5,0.7,0.8,0.8,0.6,0.4,0.2,0.1};
-    private final double[] pescheStagionale   = {0,0,0.2,0.5,0.8,1,1,0.9,0.6,0.3,0.1,0};
-
-    private final String[] nomiColture = {"Pomodoro","Limone","Uva","Olivo","Grano Duro","Nocciola","Pesche"};
-    private final double[] prezziUnitari = {2.0,1.5,3.0,5.0,1.2,4.0,2.5};
-
-    // Consumo idrico stimato per kg di prodotto
-    private final Map<String, Double> consumoIdricoPerKg = Map.of(
-            "Pomodoro", 2.0,
-            "Limone", 1.5,
-            "Uva", 2.5,
-            "Olivo", 3.0,
-            "Grano Duro", 1.2,
-            "Nocciola", 3.5,
-            "Pesche", 2.8
-    );
+    public synchronized SnapshotSimulazione rigenera() {
+        SnapshotSimulazione nuovo = generaSnapshot();
+        pubblica(nuovo);
+        salvaSnapshot(nuovo);
+        return nuovo;
+    }
 
     // ======================================================
-    // Restituisce il profilo stagionale di una coltura
+    // Sostituisce i dati con quelli di un checkpoint della persistenza (all'avvio)
     // ======================================================
-    private double[] getProfiloStagionale(String nome) {
-        return switch (nome) {
-            case "Pomodoro" -> pomodoroStagionale;
-            case "Limone" -> limoneStagionale;
-            case "Uva" -> uvaStagionale;
-            case "Olivo" -> olivoStagionale;
-            case "Grano Duro" -> granoStagionale;
-            case "Nocciola" -> nocciolaStagionale;
-            case "Pesche" -> pescheStagionale;
-            default -> new double[12]; // Se non esiste, array di zeri
-        };
+    public synchronized SnapshotSimulazione ripristina(ArchivioColture archivio, DatiAmbientali[] ambientali) {
+        SnapshotSimulazione nuovo = costruisciSnapshot(archivio, ambientali);
+        pubblica(nuovo);
+        return nuovo;
+    }
+
+    /** Versione dell'ultimo snapshot completo: le modifiche applicate prima non valgono più */
+    public long getVersioneGenerazione() {
+        return versioneGenerazione;
+    }
+
+    /**
+     * Impronta della sorgente e del catalogo da cui sono state caricate le
+     * colture (all'avvio o all'ultima rigenerazione): chi salva i dati la
+     * registra per riconoscerli come vecchi se l'origine cambia.
+     */
+    public long getImpronta() {
+        return impronta;
     }
 
     // ======================================================
-    // Genera le colture e le loro statistiche (una sola volta)
+    // Applica una modifica allo snapshot corrente e pubblica il risultato.
+    // Le scritture (modifiche e rigenerazioni) sono serializzate; le letture no.
     // ======================================================
-    public List<Coltura> getColture() {
-        if (coltureCache != null) return coltureCache;
-
-        List<Coltura> lista = new ArrayList<>();
+    synchronized SnapshotSimulazione aggiorna(Modifica modifica) {
+        return aggiorna(modifica, null);
+    }
 
-        for (int i = 0; i < nomiColture.length; i++) {
-            String nome = nomiColture[i];
-            double prezzo = prezziUnitari[i];
+    // Come aggiorna(modifica), ma prima di pubblicare passa il nuovo snapshot a
+    // registra, con il lock ancora tenuto: chi registra (la coda di persistenza)
+    // riceve le modifiche nell'ordine delle versioni. Se registra fallisce lo
+    // snapshot non viene pubblicato.
+    synchronized SnapshotSimulazione aggiorna(Modifica modifica, Consumer<SnapshotSimulazione> registra) {
+        long inizio = System.nanoTime();
+        SnapshotSimulazione nuovo = modifica.applica(snapshot, versioni.incrementAndGet());
+        TEMPO_AGGIORNAMENTO.record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+        if (registra != null) registra.accept(nuovo);
+        pubblica(nuovo);
+        return nuovo;
+    }
 
-            double[] raccolto = new double[12];
-            double[] costi = new double[12];
+    /**
+     * Registra un ascoltatore chiamato a ogni nuovo snapshot pubblicato.
+     * Viene eseguito mentre il lock di scrittura è tenuto: deve solo
+     * segnalare il cambiamento e lasciare il lavoro a un altro thread.
+     */
+    public void aggiungiAscoltatore(Consumer<SnapshotSimulazione> ascoltatore) {
+        ascoltatori.add(ascoltatore);
+    }
 
-            double[] profilo = getProfiloStagionale(nome);
+    public void rimuoviAscoltatore(Consumer<SnapshotSimulazione> ascoltatore) {
+        ascoltatori.remove(ascoltatore);
+    }
 
-            for (int m = 0; m < 12; m++) {
-                // Genera valori casuali di raccolto proporzionati al profilo stagionale
-                double base = 20 + rnd.nextDouble() * 80; // produzione base
-                raccolto[m] = base * profilo[m];
-                // Calcolo dei costi in funzione della produzione
-                costi[m] = 5 + raccolto[m] * (0.5 + rnd.nextDouble() * 0.5);
+    private void pubblica(SnapshotSimulazione nuovo) {
+        snapshot = nuovo;
+        for (Consumer<SnapshotSimulazione> a : ascoltatori) {
+            try {
+                a.accept(nuovo);
+            } catch (RuntimeException e) {
+                log.warn("Ascoltatore dello snapshot fallito", e);
             }
-
-            lista.add(new Coltura(nome, prezzo, costi, raccolto));
         }
+    }
 
-        coltureCache = lista; // Salva nella cache
-        return lista;
+    /** Trasforma lo snapshot corrente in quello successivo con la versione indicata */
+    @FunctionalInterface
+    interface Modifica {
+        SnapshotSimulazione applica(SnapshotSimulazione corrente, long nuovaVersione);
     }
 
     // ======================================================
-    // Calcola il consumo idrico totale mensile di tutte le colture
+    // Dati ambientali per un mese (precalcolati nello snapshot)
     // ======================================================
-    public double[] getConsumoIdricoMensile() {
-        if (consumoIdricoCache != null) return consumoIdricoCache;
-
-        double[] totale = new double[12];
-
-        for (Coltura c : getColture()) {
-            double coeff = consumoIdricoPerKg.get(c.getNome());
+    public DatiAmbientali generaDatiAmbientali(int mese) {
+        return snapshot.getDatiAmbientali(mese);
+    }
 
-            for (int m = 0; m < 12; m++) {
-                totale[m] += c.getRaccoltoMensile()[m] * coeff; // consumo per mese
-            }
-        }
+    // ======================================================
+    // Restituisce le colture dello snapshot corrente
+    // ======================================================
+    public List<Coltura> getColture() {
+        return snapshot.getColture();
+    }
 
-        consumoIdricoCache = totale;
-        return totale;
+    // ======================================================
+    // Consumo idrico totale mensile di tutte le colture
+    // ======================================================
+    public double[] getConsumoIdricoMensile() {
+        return snapshot.getConsumoIdricoMensile();
     }
 
     // ======================================================
-    // Calcola i dati produttivi mensili aggregati
+    // Dati produttivi mensili aggregati
     // ======================================================
     public DatiProduzione getDatiMensili(int mese) {
-        if (datiMensiliCache.containsKey(mese)) return datiMensiliCache.get(mese);
+        return snapshot.getDatiMensili(mese);
+    }
 
-        int idx = mese - 1; // indice array 0-11
-        double raccolto = 0, costi = 0, profitto = 0, consumo = 0;
+    // ======================================================
+    // Dati produttivi annuali aggregati
+    // ======================================================
+    public DatiProduzione getDatiAnnuali() {
+        return snapshot.getDatiAnnuali();
+    }
 
-        for (Coltura c : getColture()) {
-            double r = c.getRaccoltoMensile()[idx];
-            double costo = c.getCostiMensili()[idx];
+    // ======================================================
+    // Avvio: se esiste uno snapshot binario valido lo mappa in memoria,
+    // altrimenti carica dalla sorgente e scrive lo snapshot per gli avvii successivi
+    // ======================================================
+    private SnapshotSimulazione caricaIniziale() {
+        if (fileSnapshot != null && Files.exists(fileSnapshot)) {
+            try {
+                long inizio = System.nanoTime();
+                SnapshotBinario binario = SnapshotBinario.leggi(fileSnapshot, verificaChecksum);
+                long attesa = improntaDati();
+                if (binario.getImpronta() != attesa) {
+                    throw new IOException("sorgente o catalogo cambiati dall'ultima scrittura (impronta "
+                            + Long.toHexString(binario.getImpronta()) + ", attesa " + Long.toHexString(attesa) + ")");
+                }
+                log.info("Snapshot {} mappato in {} ms", fileSnapshot, (System.nanoTime() - inizio) / 1_000_000);
+                impronta = attesa;
+                return costruisciSnapshot(binario.getArchivio(), binario.getDatiAmbientali());
+            } catch (IOException e) {
+                log.warn("Snapshot {} non utilizzabile, ricarico dalla sorgente: {}", fileSnapshot, e.getMessage());
+            }
+        }
+        SnapshotSimulazione iniziale = generaSnapshot();
+        salvaSnapshot(iniziale);
+        return iniziale;
+    }
 
-            raccolto += r;
-            costi += costo;
-            profitto += r * c.getPrezzoVendita() - costo;
-            consumo += r * consumoIdricoPerKg.get(c.getNome());
+    // Scrive lo snapshot binario su disco; un errore non blocca la dashboard
+    private void salvaSnapshot(SnapshotSimulazione s) {
+        if (fileSnapshot == null) return;
+        try {
+            DatiAmbientali[] ambientali = new DatiAmbientali[12];
+            for (int mese = 1; mese <= 12; mese++) ambientali[mese - 1] = s.getDatiAmbientali(mese);
+            SnapshotBinario.scrivi(fileSnapshot, s.getArchivio(), ambientali, impronta);
+        } catch (IOException e) {
+            log.warn("Scrittura snapshot {} fallita: {}", fileSnapshot, e.getMessage());
         }
+    }
 
-        DatiProduzione dp = new DatiProduzione(mese, raccolto, consumo, costi, profitto);
-        datiMensiliCache.put(mese, dp); // Salva nella cache
-        return dp;
+    // Impronta di sorgente e catalogo correnti, salvata nello snapshot binario e
+    // nei checkpoint: se uno dei due cambia, i dati su disco non vengono più riusati
+    private long improntaDati() throws IOException {
+        return 31 * sorgente.impronta() + ParametriColture.getCatalogo().getImpronta();
     }
 
     // ======================================================
-    // Calcola i dati produttivi annuali aggregati
+    // Generazione completa di uno snapshot: colture dalla sorgente configurata,
+    // dati ambientali simulati. Il generatore casuale è locale: due rigenerazioni
+    // concorrenti non condividono mai lo stesso Random.
     // ======================================================
-    public DatiProduzione getDatiAnnuali() {
-        if (datiAnnualiCache != null) return datiAnnualiCache;
+    private SnapshotSimulazione generaSnapshot() {
+        long inizio = System.nanoTime();
+        ArchivioColture archivio;
+        try {
+            // Presa prima del caricamento: un file cambiato nel frattempo risulta vecchio al prossimo avvio
+            impronta = improntaDati();
+            archivio = sorgente.carica();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Caricamento dati dalla sorgente '" + sorgente.getNome() + "' fallito", e);
+        }
+        Random rnd;
+        synchronized (semi) {
+            rnd = new Random(semi.nextLong());
+        }
 
-        double raccolto = 0, costi = 0, profitto = 0, consumo = 0;
+        SnapshotSimulazione nuovo = costruisciSnapshot(archivio, generaAmbientali(rnd));
+        TEMPO_GENERAZIONE.record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+        return nuovo;
+    }
 
-        // Somma tutti i dati mensili per ottenere i valori annuali
-        for (int mese = 1; mese <= 12; mese++) {
-            DatiProduzione dp = getDatiMensili(mese);
-            raccolto += dp.getQuantitaRaccolto();
-            costi += dp.getCostiProduzione();
-            profitto += dp.getProfitto();
-            consumo += dp.getConsumoIdrico();
+    // ======================================================
+    // Generazione randomica dei valori ambientali dei 12 mesi, con distribuzione realistica
+    // ======================================================
+    static DatiAmbientali[] generaAmbientali(Random rnd) {
+        DatiAmbientali[] ambientali = new DatiAmbientali[12];
+        for (int idx = 0; idx < 12; idx++) {
+            ambientali[idx] = new DatiAmbientali(
+                    gauss(rnd, 18, 7),       // Temperatura media ± deviazione
+                    gauss(rnd, 55, 15),      // Umidità relativa
+                    Math.abs(gauss(rnd, 80, 40)), // Precipitazioni (valore positivo)
+                    Math.abs(gauss(rnd, 3, 1)),   // Velocità del vento
+                    Math.abs(gauss(rnd, 20000, 8000)) // Luminosità
+            );
         }
+        return ambientali;
+    }
 
-        datiAnnualiCache = new DatiProduzione(0, raccolto, consumo, costi, profitto);
-        return datiAnnualiCache;
+    // ======================================================
+    // Precalcola gli aggregati mensili e annuali sull'archivio colonnare
+    // ======================================================
+    private SnapshotSimulazione costruisciSnapshot(ArchivioColture archivio, DatiAmbientali[] ambientali) {
+        SnapshotSimulazione s = SnapshotSimulazione.calcola(versioni.incrementAndGet(), archivio, ambientali);
+        versioneGenerazione = s.getVersione();
+        return s;
     }
 }
@@ -0,0 +1,205 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.model.Coltura;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Fotografia immutabile e completamente precalcolata dei dati simulati.
+ *
+ * Viene costruita una sola volta dal SimulatoreService e pubblicata tramite
+ * un unico riferimento volatile: i controller leggono sempre una vista coerente
+ * (colture, aggregati mensili/annuali e dati ambientali della stessa generazione)
+ * senza bisogno di lock.
+ */
+public final class SnapshotSimulazione {
+
+    /** getRigaModificata(): stesse colture dello snapshot precedente (cambia solo il meteo) */
+    public static final int NESSUNA_RIGA = -1;
+    /** getRigaModificata(): archivio nuovo (generato, caricato o ripristinato), righe tutte da rileggere */
+    public static final int TUTTE_LE_RIGHE = -2;
+
+    private final long versione;
+    private final long versioneArchivio;
+    private final int rigaModificata;
+    private final ArchivioColture archivio;
+    private volatile List<Coltura> colture;        // viste create alla prima richiesta
+    private final double[] consumoIdricoMensile;   // indici 0-11
+    private final DatiProduzione[] datiMensili;    // indici 0-11
+    private final DatiProduzione datiAnnuali;
+    private final DatiAmbientali[] datiAmbientali; // indici 0-11
+
+    // Valori derivati (payload JSON, indici, ...) calcolati una volta per snapshot
+    private final ConcurrentHashMap<String, Object> derivati = new ConcurrentHashMap<>();
+    // Valori derivati dai soli dati produttivi: condivisi con gli snapshot che cambiano solo il meteo
+    private final ConcurrentHashMap<String, Object> derivatiArchivio;
+
+    SnapshotSimulazione(long versione, ArchivioColture archivio, double[] consumoIdricoMensile,
+                        DatiProduzione[] datiMensili, DatiProduzione datiAnnuali,
+                        DatiAmbientali[] datiAmbientali) {
+        this(versione, versione, TUTTE_LE_RIGHE, new ConcurrentHashMap<>(), archivio, consumoIdricoMensile,
+                datiMensili, datiAnnuali, datiAmbientali);
+    }
+
+    private SnapshotSimulazione(long versione, long versioneArchivio, int rigaModificata,
+                                ConcurrentHashMap<String, Object> derivatiArchivio,
+                                ArchivioColture archivio, double[] consumoIdricoMensile,
+                                DatiProduzione[] datiMensili, DatiProduzione datiAnnuali,
+                                DatiAmbientali[] datiAmbientali) {
+        this.versione = versione;
+        this.versioneArchivio = versioneArchivio;
+        this.rigaModificata = rigaModificata;
+        this.derivatiArchivio = derivatiArchivio;
+        this.archivio = archivio;
+        this.consumoIdricoMensile = consumoIdricoMensile.clone();
+        this.datiMensili = datiMensili.clone();
+        this.datiAnnuali = datiAnnuali;
+        this.datiAmbientali = datiAmbientali.clone();
+    }
+
+    /**
+     * Snapshot con gli aggregati mensili e annuali calcolati sull'archivio colonnare.
+     */
+    static SnapshotSimulazione calcola(long versione, ArchivioColture archivio, DatiAmbientali[] ambientali) {
+        DatiProduzione[] mensili = new DatiProduzione[12];
+        double raccoltoAnno = 0, costiAnno = 0, profittoAnno = 0, consumoAnno = 0;
+
+        for (int mese = 1; mese <= 12; mese++) {
+            DatiProduzione dp = archivio.aggregaMese(mese);
+            mensili[mese - 1] = dp;
+
+            // Somma dei dati mensili per ottenere i valori annuali
+            raccoltoAnno += dp.getQuantitaRaccolto();
+            costiAnno += dp.getCostiProduzione();
+            profittoAnno += dp.getProfitto();
+            consumoAnno += dp.getConsumoIdrico();
+        }
+        double[] consumo = archivio.totaliMensili(Metrica.CONSUMO_IDRICO);
+
+        DatiProduzione annuali = new DatiProduzione(0, raccoltoAnno, consumoAnno, costiAnno, profittoAnno);
+        return new SnapshotSimulazione(versione, archivio, consumo, mensili, annuali, ambientali);
+    }
+
+    /**
+     * Nuovo snapshot ottenuto applicando differenze mensili agli aggregati
+     * (12 valori per metrica, zero dove il mese non cambia) per una modifica
+     * alla riga indicata. Il costo non dipende dal numero di colture: i mesi
+     * invariati riusano gli stessi oggetti.
+     */
+    SnapshotSimulazione conDifferenze(long nuovaVersione, ArchivioColture nuovoArchivio, int riga,
+                                      double[] dRaccolto, double[] dCosti, double[] dProfitto, double[] dConsumo) {
+        DatiProduzione[] mensili = datiMensili.clone();
+        double[] consumo = consumoIdricoMensile.clone();
+        double raccoltoAnno = datiAnnuali.getQuantitaRaccolto(), costiAnno = datiAnnuali.getCostiProduzione();
+        double profittoAnno = datiAnnuali.getProfitto(), consumoAnno = datiAnnuali.getConsumoIdrico();
+
+        for (int idx = 0; idx < 12; idx++) {
+            if (dRaccolto[idx] == 0 && dCosti[idx] == 0 && dProfitto[idx] == 0 && dConsumo[idx] == 0) continue;
+            DatiProduzione dp = mensili[idx];
+            mensili[idx] = new DatiProduzione(idx + 1,
+                    dp.getQuantitaRaccolto() + dRaccolto[idx],
+                    dp.getConsumoIdrico() + dConsumo[idx],
+                    dp.getCostiProduzione() + dCosti[idx],
+                    dp.getProfitto() + dProfitto[idx]);
+            consumo[idx] += dConsumo[idx];
+            raccoltoAnno += dRaccolto[idx];
+            costiAnno += dCosti[idx];
+            profittoAnno += dProfitto[idx];
+            consumoAnno += dConsumo[idx];
+        }
+
+        DatiProduzione annuali = new DatiProduzione(0, raccoltoAnno, consumoAnno, costiAnno, profittoAnno);
+        SnapshotSimulazione nuovo = new SnapshotSimulazione(nuovaVersione, nuovaVersione, riga, new ConcurrentHashMap<>(),
+                nuovoArchivio, consumo, mensili, annuali, datiAmbientali);
+        // Le viste Coltura restano valide se l'archivio è lo stesso oggetto
+        if (nuovoArchivio == archivio) nuovo.colture = colture;
+        return nuovo;
+    }
+
+    /** Nuovo snapshot con gli stessi dati produttivi e nuovi dati ambientali (indici 0-11) */
+    SnapshotSimulazione conDatiAmbientali(long nuovaVersione, DatiAmbientali[] nuoviAmbientali) {
+        SnapshotSimulazione nuovo = new SnapshotSimulazione(nuovaVersione, versioneArchivio, NESSUNA_RIGA, derivatiArchivio,
+                archivio, consumoIdricoMensile, datiMensili, datiAnnuali, nuoviAmbientali);
+        nuovo.colture = colture;
+        return nuovo;
+    }
+
+    // ==============================
+    // Getter (nessun setter: la fotografia non cambia mai dopo la pubblicazione)
+    // ==============================
+
+    /** Numero progressivo della generazione, utile per invalidare cache a valle */
+    public long getVersione() { return versione; }
+
+    /**
+     * Riga dell'archivio cambiata rispetto allo snapshot precedente, oppure
+     * NESSUNA_RIGA o TUTTE_LE_RIGHE: chi diffonde le modifiche non deve
+     * confrontare tutte le righe.
+     */
+    public int getRigaModificata() { return rigaModificata; }
+
+    /** Versione dell'ultimo snapshot che ha cambiato i dati produttivi (non cambia con il solo meteo) */
+    public long getVersioneArchivio() { return versioneArchivio; }
+
+    /** Archivio colonnare su cui sono calcolati tutti gli aggregati */
+    public ArchivioColture getArchivio() { return archivio; }
+
+    /** Viste Coltura sulle righe dell'archivio */
+    public List<Coltura> getColture() {
+        List<Coltura> viste = colture;
+        if (viste == null) {
+            viste = archivio.getColture();
+            colture = viste;
+        }
+        return viste;
+    }
+
+    /** Copia difensiva: l'array interno resta condiviso solo in lettura */
+    public double[] getConsumoIdricoMensile() { return consumoIdricoMensile.clone(); }
+
+    /** Dati produttivi aggregati per un mese (1-12) */
+    public DatiProduzione getDatiMensili(int mese) { return datiMensili[indiceMese(mese)]; }
+
+    public DatiProduzione getDatiAnnuali() { return datiAnnuali; }
+
+    /** Dati ambientali per un mese (1-12) */
+    public DatiAmbientali getDatiAmbientali(int mese) { return datiAmbientali[indiceMese(mese)]; }
+
+    /**
+     * Valore derivato da questo snapshot, calcolato alla prima richiesta e poi riusato.
+     * Vive quanto lo snapshot: una nuova versione parte con la tabella vuota.
+     * Un calcolo che restituisce null non viene memorizzato. Il calcolo non
+     * deve chiedere altri valori alla stessa tabella (computeIfAbsent di
+     * ConcurrentHashMap non è rientrante): i valori che gli servono vanno
+     * ottenuti prima e catturati.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T derivato(String chiave, Function<SnapshotSimulazione, T> calcolo) {
+        return (T) derivati.computeIfAbsent(chiave, k -> calcolo.apply(this));
+    }
+
+    /**
+     * Come derivato(), per valori che dipendono solo dai dati produttivi
+     * (archivio): restano validi negli snapshot successivi che cambiano solo i
+     * dati ambientali, quindi il calcolo non va rifatto a ogni aggiornamento meteo.
+     * Stesso vincolo sul calcolo: niente derivatoArchivio() annidati.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T derivatoArchivio(String chiave, Function<SnapshotSimulazione, T> calcolo) {
+        return (T) derivatiArchivio.computeIfAbsent(chiave, k -> calcolo.apply(this));
+    }
+
+    // Converte il mese (1-12) nell'indice dell'array, rifiutando valori fuori intervallo
+    private static int indiceMese(int mese) {
+        if (mese < 1 || mese > 12) {
+            throw new IllegalArgumentException("Mese non valido: " + mese);
+        }
+        return mese - 1;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ortiVerdi.dashboard.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stima del modello meteo -> resa per uno scenario: raccolto, consumo idrico e
+ * profitto per mese (indici 0-11), in totale e per coltura.
+ */
+public class StimaResa {
+    private final String scenario;
+    private final double[] raccolto = new double[12];
+    private final double[] consumoIdrico = new double[12];
+    private final double[] profitto = new double[12];
+    private final Map<String, double[]> raccoltoPerColtura = new TreeMap<>();
+    private final Map<String, double[]> consumoIdricoPerColtura = new TreeMap<>();
+
+    StimaResa(String scenario) {
+        this.scenario = scenario;
+    }
+
+    // Somma un'altra stima dello stesso scenario (es. di un'altra partizione)
+    void somma(StimaResa altra) {
+        somma(raccolto, altra.raccolto);
+        somma(consumoIdrico, altra.consumoIdrico);
+        somma(profitto, altra.profitto);
+        altra.raccoltoPerColtura.forEach((nome, v) -> somma(perColtura(raccoltoPerColtura, nome), v));
+        altra.consumoIdricoPerColtura.forEach((nome, v) -> somma(perColtura(consumoIdricoPerColtura, nome), v));
+    }
+
+    static double[] perColtura(Map<String, double[]> mappa, String nome) {
+        return mappa.computeIfAbsent(nome, n -> new double[12]);
+    }
+
+    private static void somma(double[] destinazione, double[] valori) {
+        for (int m = 0; m < destinazione.length; m++) destinazione[m] += valori[m];
+    }
+
+    // ==============================
+    // Getter
+    // ==============================
+    public String getScenario() { return scenario; }
+    public double[] getRaccolto() { return raccolto; }
+    public double[] getConsumoIdrico() { return consumoIdrico; }
+    public double[] getProfitto() { return profitto; }
+    public Map<String, double[]> getRaccoltoPerColtura() { return raccoltoPerColtura; }
+    public Map<String, double[]> getConsumoIdricoPerColtura() { return consumoIdricoPerColtura; }
+}
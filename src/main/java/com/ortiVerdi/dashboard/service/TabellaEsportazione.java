@@ -0,0 +1,15 @@
+package com.ortiVerdi.dashboard.service;
+
+/**
+ * Tabelle esportabili di una partizione.
+ */
+public enum TabellaEsportazione {
+    /** Una riga per appezzamento: prezzo, raccolto e costi mensili (layout di dati_colture.csv) */
+    COLTURE,
+    /** Totali mensili di raccolto, consumo idrico, costi e profitto */
+    MENSILI,
+    /** Dati ambientali mensili */
+    AMBIENTALI,
+    /** Letture grezze dei sensori in memoria (solo partizione corrente) */
+    LETTURE
+}
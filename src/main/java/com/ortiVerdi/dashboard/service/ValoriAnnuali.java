@@ -0,0 +1,51 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+
+/**
+ * Valori annuali per riga dell'archivio (un appezzamento), calcolati in un
+ * solo passaggio e tenuti come valore derivato dell'archivio: le classifiche
+ * leggono array primitivi invece di ricalcolare ricavo, profitto e margine
+ * attraverso le viste Coltura a ogni richiesta.
+ *
+ * Margine per unità e acqua per euro sono NaN dove non sono definiti
+ * (raccolto nullo, profitto non positivo).
+ */
+public final class ValoriAnnuali {
+
+    private final double[] raccolto;
+    private final double[] profitto;
+    private final double[] marginePerUnita;
+    private final double[] acquaPerEuro;
+
+    private ValoriAnnuali(ArchivioColture archivio) {
+        int n = archivio.getNumeroRighe();
+        raccolto = new double[n];
+        profitto = new double[n];
+        marginePerUnita = new double[n];
+        acquaPerEuro = new double[n];
+        for (int r = 0; r < n; r++) {
+            double q = archivio.getRaccoltoAnnuo(r);
+            double p = q * archivio.getPrezzo(r) - archivio.getCostoAnnuo(r);
+            raccolto[r] = q;
+            profitto[r] = p;
+            marginePerUnita[r] = q > 0 ? p / q : Double.NaN;
+            acquaPerEuro[r] = p > 0 ? q * archivio.getConsumoIdricoPerKg(r) / p : Double.NaN;
+        }
+    }
+
+    /** Valori dell'archivio dello snapshot, calcolati alla prima richiesta e poi riusati */
+    public static ValoriAnnuali di(SnapshotSimulazione snapshot) {
+        return snapshot.derivatoArchivio("valori-annuali", s -> new ValoriAnnuali(s.getArchivio()));
+    }
+
+    public int getNumeroRighe() { return raccolto.length; }
+
+    public double getRaccolto(int riga) { return raccolto[riga]; }
+
+    public double getProfitto(int riga) { return profitto[riga]; }
+
+    public double getMarginePerUnita(int riga) { return marginePerUnita[riga]; }
+
+    public double getAcquaPerEuro(int riga) { return acquaPerEuro[riga]; }
+}
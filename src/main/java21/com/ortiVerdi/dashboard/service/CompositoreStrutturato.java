@@ -0,0 +1,84 @@
+package com.ortiVerdi.dashboard.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * CompositorePagina per Java 21 (profilo Maven java21, --enable-preview):
+ * ogni ambito è uno StructuredTaskScope.ShutdownOnFailure, ogni pezzo un
+ * thread virtuale. joinUntil applica la scadenza della richiesta; al primo
+ * errore lo scope si chiude e interrompe gli altri pezzi.
+ *
+ * Ha la precedenza su CompositoreConExecutor; ortiverdi.pagine.strutturata=false
+ * torna al pool di thread di piattaforma (per i confronti della prova di carico).
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "ortiverdi.pagine.strutturata", havingValue = "true", matchIfMissing = true)
+public class CompositoreStrutturato implements CompositorePagina {
+
+    private final long scadenzaMs;
+
+    public CompositoreStrutturato(@Value("${ortiverdi.pagine.scadenza-ms:2000}") long scadenzaMs) {
+        if (scadenzaMs <= 0) throw new IllegalArgumentException("Scadenza non valida: " + scadenzaMs);
+        this.scadenzaMs = scadenzaMs;
+    }
+
+    @Override
+    public Ambito apri() {
+        return new AmbitoStrutturato(Instant.now().plusMillis(scadenzaMs));
+    }
+
+    private final class AmbitoStrutturato implements Ambito {
+        private final Instant scadenza;
+        private final StructuredTaskScope.ShutdownOnFailure scope = new StructuredTaskScope.ShutdownOnFailure();
+
+        AmbitoStrutturato(Instant scadenza) {
+            this.scadenza = scadenza;
+        }
+
+        @Override
+        public <T> Supplier<T> avvia(Callable<T> pezzo) {
+            StructuredTaskScope.Subtask<T> sotto = scope.fork(pezzo);
+            return sotto::get;
+        }
+
+        @Override
+        public void attendi() {
+            try {
+                scope.joinUntil(scadenza);
+                scope.throwIfFailed(causa -> {
+                    if (causa instanceof RuntimeException r) return r;
+                    if (causa instanceof Error e) throw e;
+                    return new CompletionException(causa);
+                });
+            } catch (TimeoutException e) {
+                throw new ScadenzaPaginaException(scadenzaMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+
+        // close() vuole un join dopo i fork: dopo shutdown() ritorna subito
+        @Override
+        public void close() {
+            scope.shutdown();
+            try {
+                scope.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scope.close();
+        }
+    }
+}
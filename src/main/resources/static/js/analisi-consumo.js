@@ -6,13 +6,18 @@
  *
  * ⚙️ Dipendenze:
  *  - Chart.js (v3 o superiore)
- *  - Variabili globali fornite lato server: labelsData, consumoData, sogliaData
+ *  - Variabili globali fornite lato server: labelsData, consumoData, sogliaData, meseSelezionato
+ *  - live.js per gli aggiornamenti in tempo reale
+ *  - scenari.js per le bande degli scenari Monte Carlo
+ *  - anomalie.js per evidenziare i mesi con valori anomali
+ *  - irrigazione.js per il piano di irrigazione con budget mensile
  *
  * 📊 Funzionalità principali:
  *  - Creazione di un grafico a barre + linea della soglia media
  *  - Gradienti dinamici per le barre
  *  - Tooltip e legenda personalizzati
  *  - Animazioni fluide
+ *  - Aggiornamento live del grafico e della tabella quando cambiano i dati
  *  - Navbar interattiva che cambia pagina senza ricaricare manualmente
  */
 
@@ -27,7 +32,7 @@ document.addEventListener("DOMContentLoaded", function() {
     gradient.addColorStop(1, 'rgba(56, 142, 60, 0.9)');   // verde scuro in basso
 
     // 🧭 Inizializzazione del grafico con Chart.js
-    new Chart(ctx, {
+    const grafico = new Chart(ctx, {
         type: 'bar', // Grafico a barre principale
         data: {
             labels: labelsData, // Nomi dei mesi da visualizzare sull'asse X
@@ -93,6 +98,24 @@ document.addEventListener("DOMContentLoaded", function() {
             }
         }
     });
+
+    // 📈 Bande degli scenari Monte Carlo: area P5-P95 e mediana P50
+    aggiungiBandeScenari(grafico, 'consumoIdrico', 'Consumo', 'rgba(255, 152, 0, 1)');
+
+    // 🚨 Mesi con valori anomali rispetto alla linea di base stagionale delle colture
+    evidenziaAnomalie(grafico, 0, 'consumo-idrico');
+
+    // 💧 Piano di irrigazione ottimo per il budget del modulo sotto il grafico
+    collegaPianoIrrigazione(grafico, 'pianoIrrigazioneForm', 'riepilogoIrrigazione');
+
+    // 🔄 Aggiornamenti live: nuovi consumi mensili e soglia senza ricaricare la pagina
+    collegaLive('consumo-idrico', function (stato) {
+        grafico.data.datasets[0].data = stato.consumo.slice();
+        grafico.data.datasets[1].data = Array(labelsData.length).fill(stato.soglia[0]);
+        grafico.update();
+        aggiornaTabellaMese(stato, meseSelezionato);
+        evidenziaAnomalie(grafico, 0, 'consumo-idrico');
+    });
 });
 
 // ===================== GESTIONE NAVBAR =====================
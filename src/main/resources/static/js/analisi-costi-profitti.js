@@ -10,6 +10,10 @@
  *      -> mesi: array dei nomi dei mesi
  *      -> costi: array di costi mensili (€)
  *      -> profitti: array di profitti mensili (€)
+ *      -> meseSelezionato: mese mostrato nella tabella
+ *  - live.js per gli aggiornamenti in tempo reale
+ *  - scenari.js per le bande degli scenari Monte Carlo
+ *  - anomalie.js per evidenziare i mesi con valori anomali
  */
 
 document.addEventListener("DOMContentLoaded", function () {
@@ -21,7 +25,7 @@ document.addEventListener("DOMContentLoaded", function () {
     const guadagni = profitti.map((p, i) => p + costi[i]);
 
     // 📊 Creazione del grafico con Chart.js
-    new Chart(ctx, {
+    const grafico = new Chart(ctx, {
         type: 'bar', // Tipo di grafico: barre
         data: {
             labels: mesi, // Etichette sull'asse X
@@ -102,6 +106,21 @@ document.addEventListener("DOMContentLoaded", function () {
             }
         }
     });
+
+    // 📈 Bande degli scenari Monte Carlo: area P5-P95 e mediana P50
+    aggiungiBandeScenari(grafico, 'profitto', 'Profitto', 'rgba(76, 175, 80, 1)');
+
+    // 🚨 Mesi con valori anomali rispetto alla linea di base stagionale delle colture
+    evidenziaAnomalie(grafico, 0, 'costi');
+
+    // 🔄 Aggiornamenti live: costi e guadagni ricalcolati dai nuovi valori mensili
+    collegaLive('costi-profitti', function (stato) {
+        grafico.data.datasets[0].data = stato.costi.slice();
+        grafico.data.datasets[1].data = stato.profitti.map((p, i) => p + stato.costi[i]);
+        grafico.update();
+        aggiornaTabellaMese(stato, meseSelezionato);
+        evidenziaAnomalie(grafico, 0, 'costi');
+    });
 });
 
 // ===================== GESTIONE NAVBAR =====================
@@ -10,6 +10,10 @@
  *      -> labelsData: array dei mesi
  *      -> raccoltoData: valori mensili del raccolto
  *      -> sogliaData: valore medio del raccolto
+ *      -> meseSelezionato: mese mostrato nella tabella
+ *  - live.js per gli aggiornamenti in tempo reale
+ *  - scenari.js per le bande degli scenari Monte Carlo
+ *  - anomalie.js per evidenziare i mesi con valori anomali
  */
 
 document.addEventListener("DOMContentLoaded", function() {
@@ -21,7 +25,7 @@ document.addEventListener("DOMContentLoaded", function() {
     gradient.addColorStop(1, 'rgba(33, 150, 243, 0.9)');  // parte bassa blu intenso
 
     // 📊 Creazione del grafico Chart.js
-    new Chart(ctx, {
+    const grafico = new Chart(ctx, {
         type: 'bar',   // Grafico a barre
         data: {
             labels: labelsData,   // Etichette asse X (mesi)
@@ -91,6 +95,21 @@ document.addEventListener("DOMContentLoaded", function() {
             animation: { duration: 1000, easing: 'easeOutQuart' }
         }
     });
+
+    // 📈 Bande degli scenari Monte Carlo: area P5-P95 e mediana P50
+    aggiungiBandeScenari(grafico, 'raccolto', 'Raccolto', 'rgba(103, 58, 183, 1)');
+
+    // 🚨 Mesi con valori anomali rispetto alla linea di base stagionale delle colture
+    evidenziaAnomalie(grafico, 0, 'raccolto');
+
+    // 🔄 Aggiornamenti live: nuovi valori mensili e soglia senza ricaricare la pagina
+    collegaLive('raccolto', function (stato) {
+        grafico.data.datasets[0].data = stato.raccolto.slice();
+        grafico.data.datasets[1].data = Array(labelsData.length).fill(stato.soglia[0]);
+        grafico.update();
+        aggiornaTabellaMese(stato, meseSelezionato);
+        evidenziaAnomalie(grafico, 0, 'raccolto');
+    });
 });
 
 // ===================== NAVBAR DINAMICA =====================
@@ -0,0 +1,63 @@
+/**
+ * SCRIPT: anomalie.js
+ * ------------------------------------------
+ * Evidenzia sui grafici a barre i mesi con valori anomali.
+ *
+ * Scarica da /api/v1/anomalie le colture il cui valore mensile è lontano
+ * dalla linea di base stagionale (|z| oltre la soglia) e:
+ *  - colora di rosso le barre dei mesi con almeno un'anomalia
+ *  - aggiunge al tooltip l'elenco delle colture con valore atteso e z
+ * Va richiamata dopo ogni aggiornamento live: il server ricalcola solo se i dati sono cambiati.
+ */
+
+// ==========================================================
+// 🚨 Evidenzia le anomalie di una metrica su un dataset del grafico
+// ==========================================================
+function evidenziaAnomalie(grafico, indiceDataset, metrica) {
+    const dataset = grafico.data.datasets[indiceDataset];
+    if (!dataset) return;
+    const numero = new Intl.NumberFormat('it-IT', { maximumFractionDigits: 0 });
+    if (!dataset._anomalie) {
+        // Colori originali conservati: i mesi senza anomalie restano com'erano
+        const sfondo = dataset.backgroundColor, bordo = dataset.borderColor, spessore = dataset.borderWidth || 0;
+        dataset._anomalie = {};
+        dataset.backgroundColor = function (c) { return dataset._anomalie[c.dataIndex] ? 'rgba(229, 57, 53, 0.85)' : sfondo; };
+        dataset.borderColor = function (c) { return dataset._anomalie[c.dataIndex] ? 'rgba(183, 28, 28, 1)' : bordo; };
+        dataset.borderWidth = function (c) { return dataset._anomalie[c.dataIndex] ? 3 : spessore; };
+
+        const tooltip = grafico.options.plugins.tooltip;
+        tooltip.callbacks = tooltip.callbacks || {};
+        tooltip.callbacks.footer = function (elementi) {
+            const righe = [];
+            elementi.forEach(function (e) {
+                if (e.datasetIndex !== indiceDataset) return;
+                (dataset._anomalie[e.dataIndex] || []).forEach(function (a) {
+                    righe.push('⚠ ' + a.coltura + ': ' + numero.format(a.valore) + ' (atteso ' + numero.format(a.atteso)
+                        + ', z = ' + a.z.toFixed(1) + ')');
+                });
+            });
+            return righe;
+        };
+    }
+
+    const parametri = new URLSearchParams();
+    const pagina = new URLSearchParams(window.location.search);
+    ['azienda', 'farm', 'anno'].forEach(function (nome) {
+        if (pagina.get(nome)) parametri.set(nome, pagina.get(nome));
+    });
+    parametri.set('metrica', metrica);
+    parametri.set('limite', '200');
+
+    fetch('/api/v1/anomalie?' + parametri.toString())
+        .then(function (risposta) { return risposta.ok ? risposta.json() : null; })
+        .then(function (anomalie) {
+            if (!anomalie) return;
+            const perMese = {};
+            anomalie.produzione.forEach(function (a) {
+                (perMese[a.mese - 1] = perMese[a.mese - 1] || []).push(a);
+            });
+            dataset._anomalie = perMese;
+            grafico.update();
+        })
+        .catch(function () { /* evidenziazione facoltativa: il grafico resta com'è */ });
+}
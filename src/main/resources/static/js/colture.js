@@ -5,27 +5,46 @@
  *  - Grafico 1: Andamento mensile del raccolto per coltura (line chart)
  *  - Grafico 2: Confronto costi e guadagni annuali per coltura (bar chart)
  *  - Interazione: Attivazione/disattivazione delle colture tramite rettangoli colorati
+ *  - Elenco delle colture a pagine, per profitto annuale (/api/v1/classifiche)
+ *  - Serie mensili scaricate solo per le colture selezionate (/api/v1/righe/{riga})
+ *  - Aggiornamenti live dei due grafici quando cambiano i dati delle colture
+ *  - Classifica dei primi/ultimi 10 appezzamenti, calcolata dal server (/api/v1/classifiche)
  *
  * ⚙️ Dipendenze:
  *   - Chart.js
+ *   - live.js per gli aggiornamenti in tempo reale
  *   - Variabili globali dal backend:
- *       → coltureArray: array di oggetti "Coltura"
  *       → mesi: nomi brevi dei mesi
+ *       → coltureTotali, colturePagina: colture elencabili e dimensione di una pagina
+ *       → coloriColture: colore dei grafici per coltura (dal catalogo delle colture)
  */
 
- // ==========================================================
- // 🎨 Mappa colori fissi per le colture
- // Serve a garantire coerenza dei colori dei grafici per ogni coltura
- // ==========================================================
-const coloriColture = {
-    "Pomodoro": "#FF0000",    // Rosso
-    "Limone": "#FFFF00",      // Giallo
-    "Uva": "#00008B",         // Blu scuro
-    "Olivo": "#00BFFF",       // Azzurro
-    "Grano Duro": "#008000",  // Verde
-    "Nocciola": "#C8A2C8",    // Lilla
-    "Pesche": "#000000"       // Nero
-};
+// Colture già scaricate: riga -> { nome, prezzoVendita, raccoltoMensile, costiMensili }
+const serieColture = new Map();
+
+// Parametri della partizione (azienda, anno) della pagina, per le chiamate REST
+function parametriPartizione(parametri) {
+    const pagina = new URLSearchParams(window.location.search);
+    ['azienda', 'farm', 'anno'].forEach(function (nome) {
+        if (pagina.get(nome)) parametri.set(nome, pagina.get(nome));
+    });
+    return parametri;
+}
+
+// ==========================================================
+// 📥 Serie mensili di una coltura, scaricate alla prima selezione
+// ==========================================================
+function caricaColtura(riga) {
+    if (serieColture.has(riga)) return Promise.resolve(serieColture.get(riga));
+    const url = '/api/v1/righe/' + encodeURIComponent(riga) + '?' + parametriPartizione(new URLSearchParams());
+    return fetch(url)
+        .then(function (risposta) { return risposta.ok ? risposta.json() : null; })
+        .then(function (coltura) {
+            if (coltura) serieColture.set(riga, coltura);
+            return coltura;
+        })
+        .catch(function () { return null; });   // la coltura resta senza grafico
+}
 
 // ==========================================================
 // 📈 Funzione per creare i dataset del grafico lineare
@@ -47,16 +66,12 @@ function creaDatasets(coltureSelezionate) {
 // ==========================================================
 const ctxLine = document.getElementById('graficoColture').getContext('2d');
 
-// Tutte le colture attive inizialmente
-let coltureSelezionate = [...coltureArray];
-let datasetsLine = creaDatasets(coltureSelezionate);
-
-// Inizializzazione grafico Chart.js
+// Inizializzazione grafico Chart.js (i dataset arrivano con le serie scaricate)
 let graficoColture = new Chart(ctxLine, {
     type: 'line',                  // Grafico a linee
     data: {
         labels: mesi,              // Etichette asse X: mesi
-        datasets: datasetsLine     // Dataset generati dalla funzione
+        datasets: []
     },
     options: {
         responsive: true,
@@ -82,52 +97,33 @@ let graficoColture = new Chart(ctxLine, {
     }
 });
 
-// ==========================================================
-// 🟩 Gestione interattiva dei rettangoli-colture
-// Cliccando su un rettangolo si mostra/nasconde la relativa linea nel grafico
-// ==========================================================
-const rettangoli = document.querySelectorAll('#checkbox-colture li');
-
-rettangoli.forEach(rect => {
-    rect.addEventListener('click', () => {
-        rect.classList.toggle('active'); // Cambia lo stato visivo (attivo/non attivo)
-
-        // Filtra solo le colture attive (quelle con classe 'active')
-        const coltureSelezionate = Array.from(rettangoli)
-            .filter(r => r.classList.contains('active'))
-            .map(r => coltureArray.find(c => c.nome === r.dataset.nome))
-            .filter(c => c !== undefined);
-
-        // Aggiorna dinamicamente il grafico con le colture selezionate
-        graficoColture.data.datasets = creaDatasets(coltureSelezionate);
-        graficoColture.update();
-    });
-});
-
 // ==========================================================
 // 💰 GRAFICO 2 — Confronto Costi vs Guadagni annuali per coltura
 // ==========================================================
 const ctxBar = document.getElementById('graficoCostiGuadagni').getContext('2d');
 
-// Etichette e dati per il grafico a barre
-const labelsBar = coltureArray.map(c => c.nome);  // Nomi delle colture
-const costiAnnuali = coltureArray.map(c => c.costiMensili.reduce((a, b) => a + b, 0)); // Somma costi
-const guadagniAnnuali = coltureArray.map(c => c.raccoltoMensile.reduce((a, b) => a + b, 0) * c.prezzoVendita); // Somma guadagni
+function costoAnnuale(c) {
+    return c.costiMensili.reduce((a, b) => a + b, 0);
+}
+
+function guadagnoAnnuale(c) {
+    return c.raccoltoMensile.reduce((a, b) => a + b, 0) * c.prezzoVendita;
+}
 
 // Creazione grafico a barre
 let graficoCostiGuadagni = new Chart(ctxBar, {
     type: 'bar',
     data: {
-        labels: labelsBar,
+        labels: [],
         datasets: [
             {
                 label: 'Costi Annuali (€)',
-                data: costiAnnuali,
+                data: [],
                 backgroundColor: 'rgba(255, 99, 132, 0.8)'
             },
             {
                 label: 'Guadagni Annuali (€)',
-                data: guadagniAnnuali,
+                data: [],
                 backgroundColor: 'rgba(76, 175, 80, 0.8)'
             }
         ]
@@ -158,6 +154,151 @@ let graficoCostiGuadagni = new Chart(ctxBar, {
     }
 });
 
+// ==========================================================
+// 🟩 Gestione interattiva dei rettangoli-colture
+// Cliccando su un rettangolo si mostra/nasconde la coltura nei due grafici
+// ==========================================================
+// Colture attive (quelle con classe 'active') già scaricate, nell'ordine dei rettangoli
+function coltureAttive() {
+    return Array.from(document.querySelectorAll('#checkbox-colture li'))
+        .filter(r => r.classList.contains('active'))
+        .map(r => serieColture.get(r.dataset.riga))
+        .filter(c => c !== undefined);
+}
+
+function aggiornaGrafici() {
+    const attive = coltureAttive();
+    graficoColture.data.datasets = creaDatasets(attive);
+    graficoColture.update();
+
+    graficoCostiGuadagni.data.labels = attive.map(c => c.nome);
+    graficoCostiGuadagni.data.datasets[0].data = attive.map(costoAnnuale);
+    graficoCostiGuadagni.data.datasets[1].data = attive.map(guadagnoAnnuale);
+    graficoCostiGuadagni.update();
+}
+
+function attivaRettangolo(rect) {
+    rect.addEventListener('click', () => {
+        rect.classList.toggle('active'); // Cambia lo stato visivo (attivo/non attivo)
+        if (rect.classList.contains('active')) caricaColtura(rect.dataset.riga).then(aggiornaGrafici);
+        else aggiornaGrafici();
+    });
+}
+
+// Scarica (di nuovo) le righe selezionate e ridisegna i grafici
+function caricaAttive() {
+    const attive = Array.from(document.querySelectorAll('#checkbox-colture li.active'));
+    return Promise.all(attive.map(r => caricaColtura(r.dataset.riga))).then(aggiornaGrafici);
+}
+
+document.querySelectorAll('#checkbox-colture li').forEach(attivaRettangolo);
+caricaAttive();
+
+// ==========================================================
+// 📄 Pagina successiva dell'elenco, nello stesso ordine della prima
+// (profitto annuale decrescente, calcolato dal server)
+// ==========================================================
+document.getElementById('altreColture').addEventListener('click', function () {
+    const pulsante = this;
+    const lista = document.querySelector('#checkbox-colture ul');
+    const parametri = parametriPartizione(new URLSearchParams({
+        criterio: 'profitto',
+        da: lista.children.length,
+        k: colturePagina
+    }));
+    pulsante.disabled = true;
+    fetch('/api/v1/classifiche?' + parametri.toString())
+        .then(function (risposta) { return risposta.ok ? risposta.json() : null; })
+        .then(function (classifica) {
+            if (!classifica) return;
+            classifica.voci.forEach(function (v) {
+                const li = document.createElement('li');
+                li.dataset.nome = v.nome;
+                li.dataset.riga = v.riga;
+                li.textContent = v.nome;
+                lista.appendChild(li);
+                attivaRettangolo(li);
+            });
+            const mostrate = lista.children.length;
+            document.getElementById('conteggioColture').textContent =
+                mostrate + ' di ' + classifica.candidati + ' colture, per profitto annuale';
+            pulsante.hidden = classifica.voci.length === 0 || mostrate >= classifica.candidati;
+        })
+        .catch(function () { /* l'elenco resta com'è */ })
+        .finally(function () { pulsante.disabled = false; });
+});
+
+// ==========================================================
+// 🔄 Aggiornamenti live — per ogni riga cambiata il server invia
+// [prezzo, raccolto Gen..Dic, costi Gen..Dic]; si aggiornano solo le
+// righe già scaricate, le altre verranno lette aggiornate alla selezione.
+// Un "completo" dopo il primo (riconnessione, archivio sostituito) fa
+// riscaricare le righe selezionate
+// ==========================================================
+let primoCompleto = true;
+collegaLive('colture', function (stato, chiavi, completo) {
+    if (completo) {
+        if (!primoCompleto) {
+            serieColture.clear();
+            caricaAttive();
+            aggiornaClassifica();
+        }
+        primoCompleto = false;
+        return;
+    }
+    chiavi.forEach(function (riga) {
+        const coltura = serieColture.get(riga);
+        if (!coltura) return;
+        const valori = stato[riga];
+        coltura.prezzoVendita = valori[0];
+        coltura.raccoltoMensile = valori.slice(1, 13);
+        coltura.costiMensili = valori.slice(13, 25);
+    });
+
+    aggiornaGrafici();
+    aggiornaClassifica();
+});
+
+// ==========================================================
+// 🏆 Classifica appezzamenti — ordinamento e selezione dei primi K
+// avvengono sul server: qui arrivano solo le righe da mostrare
+// ==========================================================
+function aggiornaClassifica() {
+    const criterio = document.getElementById('criterioClassifica').value;
+    const parametri = new URLSearchParams({
+        criterio: criterio,
+        ordine: document.getElementById('ordineClassifica').value,
+        k: 10
+    });
+    if (criterio === 'crescita-mensile') parametri.set('mese', document.getElementById('meseClassifica').value);
+    parametriPartizione(parametri);
+
+    fetch('/api/v1/classifiche?' + parametri.toString())
+        .then(function (risposta) { return risposta.ok ? risposta.json() : null; })
+        .then(function (classifica) {
+            const corpo = document.getElementById('tabellaClassifica');
+            corpo.innerHTML = '';
+            if (!classifica) return;
+            classifica.voci.forEach(function (v) {
+                const tr = document.createElement('tr');
+                [v.posizione, v.nome, v.riga,
+                 v.valore.toFixed(2) + ' ' + classifica.unita,
+                 v.profittoAnnuale.toFixed(2)].forEach(function (testo) {
+                    const td = document.createElement('td');
+                    td.textContent = testo;
+                    tr.appendChild(td);
+                });
+                corpo.appendChild(tr);
+            });
+        })
+        .catch(function () { /* la classifica resta vuota */ });
+}
+
+['criterioClassifica', 'ordineClassifica', 'meseClassifica'].forEach(function (id) {
+    document.getElementById(id).addEventListener('change', aggiornaClassifica);
+});
+aggiornaClassifica();
+
 // ==========================================================
 // 🧭 GESTIONE NAVBAR — Selezione dinamica pagina
 // ==========================================================
@@ -0,0 +1,68 @@
+/**
+ * SCRIPT: irrigazione.js
+ * ------------------------------------------
+ * Piano di irrigazione sul grafico del consumo idrico.
+ *
+ * Scarica da /api/v1/irrigazione il piano ottimo per il budget mensile
+ * indicato nel modulo della pagina e aggiunge al grafico Chart.js:
+ *  - il fabbisogno irriguo con il meteo del mese (linea tratteggiata)
+ *  - l'acqua assegnata dal piano (linea piena)
+ * e riassume sotto il modulo profitto atteso e valore dell'acqua.
+ * Cambiare il budget non ricarica la pagina: il server riusa le graduatorie già calcolate.
+ */
+
+// ==========================================================
+// 💧 Collega il modulo del budget al grafico
+// ==========================================================
+function collegaPianoIrrigazione(grafico, formId, riepilogoId) {
+    const form = document.getElementById(formId);
+    const riepilogo = document.getElementById(riepilogoId);
+    if (!form) return;
+    const comune = { type: 'line', pointRadius: 3, borderWidth: 2, tension: 0.3, fill: false, order: 5 };
+    let serie = null;
+
+    function aggiorna() {
+        const parametri = new URLSearchParams();
+        const pagina = new URLSearchParams(window.location.search);
+        ['azienda', 'farm', 'anno'].forEach(function (nome) {
+            if (pagina.get(nome)) parametri.set(nome, pagina.get(nome));
+        });
+        parametri.set('budget', form.elements['budget'].value);
+        parametri.set('prezzoAcqua', form.elements['prezzoAcqua'].value || '0');
+
+        fetch('/api/v1/irrigazione?' + parametri.toString())
+            .then(function (risposta) { return risposta.ok ? risposta.json() : null; })
+            .then(function (piano) {
+                if (!piano) return;
+                if (!serie) {
+                    serie = [
+                        Object.assign({}, comune, {
+                            label: 'Fabbisogno irriguo (meteo del mese)',
+                            borderColor: 'rgba(33, 150, 243, 0.9)',
+                            borderDash: [6, 4]
+                        }),
+                        Object.assign({}, comune, {
+                            label: 'Acqua assegnata dal piano',
+                            borderColor: 'rgba(13, 71, 161, 1)'
+                        })
+                    ];
+                    grafico.data.datasets.push(serie[0], serie[1]);
+                }
+                serie[0].data = piano.fabbisogno;
+                serie[1].data = piano.acquaAssegnata;
+                grafico.update();
+                if (riepilogo) {
+                    const euro = new Intl.NumberFormat('it-IT', { maximumFractionDigits: 0 });
+                    riepilogo.textContent = 'Profitto atteso: ' + euro.format(piano.profittoTotale) + ' € — '
+                        + 'acqua assegnata: ' + euro.format(piano.acquaTotale) + ' litri';
+                }
+            })
+            .catch(function () { /* piano facoltativo: il grafico resta com'è */ });
+    }
+
+    form.addEventListener('submit', function (evento) {
+        evento.preventDefault();
+        aggiorna();
+    });
+    aggiorna();
+}
@@ -0,0 +1,80 @@
+/**
+ * SCRIPT: live.js
+ * ------------------------------------------
+ * Aggiornamenti in tempo reale delle pagine tramite Server-Sent Events.
+ *
+ * Il server invia:
+ *  - "completo": tutte le serie della vista  → { versione, valori: { nome: [..] } }
+ *  - "delta": solo i valori cambiati         → { versione, base, valori: { nome: { indice: valore } } }
+ *
+ * Lo stato locale viene aggiornato e passato alla funzione della pagina,
+ * che modifica i grafici Chart.js già esistenti senza ricaricare la pagina.
+ * La vista delle colture manda solo le righe cambiate (chiave = numero di
+ * riga): il suo "completo" è vuoto e chiede di rileggere le righe mostrate.
+ * Se un delta non parte dalla versione locale (evento perso) la connessione
+ * viene riaperta e il server rimanda lo stato completo.
+ * Le pagine di una partizione storica (liveAttivo = false) non si collegano.
+ */
+
+// ==========================================================
+// 🔌 Collegamento allo stream di una vista
+//    applica(stato, chiaviModificate, completo) viene chiamata a ogni aggiornamento
+// ==========================================================
+function collegaLive(vista, applica) {
+    if (!window.EventSource) return;   // browser senza SSE: la pagina resta statica
+    if (typeof liveAttivo !== 'undefined' && !liveAttivo) return;   // partizione storica: dati fissi
+
+    let stato = {};
+    let versione = null;
+    let sorgente = null;
+
+    function apri() {
+        sorgente = new EventSource('/api/v1/eventi/' + vista);
+
+        sorgente.addEventListener('completo', function (e) {
+            const msg = JSON.parse(e.data);
+            stato = msg.valori;
+            versione = msg.versione;
+            applica(stato, Object.keys(stato), true);
+        });
+
+        sorgente.addEventListener('delta', function (e) {
+            const msg = JSON.parse(e.data);
+            if (msg.base !== versione) {
+                // Delta perso: si riparte da uno stato completo
+                sorgente.close();
+                apri();
+                return;
+            }
+            const chiavi = Object.keys(msg.valori);
+            chiavi.forEach(function (k) {
+                const serie = stato[k] || (stato[k] = []);
+                const modifiche = msg.valori[k];
+                for (const i in modifiche) serie[+i] = modifiche[i];
+            });
+            versione = msg.versione;
+            applica(stato, chiavi, false);
+        });
+    }
+
+    apri();
+}
+
+// ==========================================================
+// 📋 Aggiorna la tabella del mese selezionato (celle con data-campo)
+// ==========================================================
+const CAMPI_PRODUZIONE = ['quantitaRaccolto', 'consumoIdrico', 'costiProduzione', 'profitto'];
+const CAMPI_AMBIENTALI = ['temperatura', 'umiditaRelativa', 'precipitazioni', 'velocitaVento', 'luminosita'];
+
+function aggiornaTabellaMese(stato, mese) {
+    function scrivi(campi, serie) {
+        if (!serie) return;
+        campi.forEach(function (campo, i) {
+            const cella = document.querySelector('[data-campo="' + campo + '"]');
+            const valore = serie[(mese - 1) * campi.length + i];
+            if (cella && valore !== undefined) cella.textContent = valore.toFixed(2);
+        });
+    }
+    scrivi(CAMPI_PRODUZIONE, stato.produzione);
+    scrivi(CAMPI_AMBIENTALI, stato.ambientali);
+}
@@ -0,0 +1,56 @@
+/**
+ * SCRIPT: scenari.js
+ * ------------------------------------------
+ * Bande degli scenari Monte Carlo sui grafici mensili.
+ *
+ * Scarica da /api/v1/scenari i quantili P5/P50/P95 di una metrica
+ * (raccolto, consumoIdrico, profitto) e aggiunge al grafico Chart.js:
+ *  - l'area tra P5 e P95 (90% degli scenari simulati)
+ *  - la mediana P50 tratteggiata
+ * La partizione (azienda, anno) è quella della pagina.
+ */
+
+// ==========================================================
+// 📈 Aggiunge le bande di una metrica a un grafico esistente
+// ==========================================================
+function aggiungiBandeScenari(grafico, metrica, etichetta, colore) {
+    const parametri = new URLSearchParams();
+    const pagina = new URLSearchParams(window.location.search);
+    ['azienda', 'farm', 'anno'].forEach(function (nome) {
+        if (pagina.get(nome)) parametri.set(nome, pagina.get(nome));
+    });
+
+    fetch('/api/v1/scenari?' + parametri.toString())
+        .then(function (risposta) { return risposta.ok ? risposta.json() : null; })
+        .then(function (scenari) {
+            if (!scenari || !scenari.bande[metrica]) return;
+            const banda = scenari.bande[metrica];
+            const comune = { type: 'line', pointRadius: 0, borderWidth: 1, tension: 0.3, order: 10 };
+
+            grafico.data.datasets.push(
+                Object.assign({}, comune, {
+                    label: etichetta + ' P5',
+                    data: banda.p5,
+                    borderColor: colore,
+                    fill: false
+                }),
+                Object.assign({}, comune, {
+                    label: etichetta + ' P95',
+                    data: banda.p95,
+                    borderColor: colore,
+                    backgroundColor: colore.replace(/[\d.]+\)$/, '0.15)'),   // stessa tinta, trasparente
+                    fill: '-1'                                                 // area fino a P5
+                }),
+                Object.assign({}, comune, {
+                    label: etichetta + ' P50 (' + scenari.realizzazioni + ' scenari)',
+                    data: banda.p50,
+                    borderColor: colore,
+                    borderDash: [6, 4],
+                    borderWidth: 2,
+                    fill: false
+                })
+            );
+            grafico.update();
+        })
+        .catch(function () { /* bande facoltative: il grafico resta com'è */ });
+}
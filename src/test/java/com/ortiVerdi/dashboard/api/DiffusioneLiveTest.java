@@ -0,0 +1,188 @@
+package com.ortiVerdi.dashboard.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ortiVerdi.dashboard.service.AggiornamentiService;
+import com.ortiVerdi.dashboard.service.DashboardService;
+import com.ortiVerdi.dashboard.service.SimulatoreService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Stream SSE delle pagine: stato completo alla connessione, poi solo i valori
+ * cambiati; un client che non legge viene scartato senza fermare gli altri.
+ */
+@SpringBootTest(properties = "ortiverdi.persistenza.tipo=nessuna")
+@AutoConfigureMockMvc
+@DirtiesContext
+class DiffusioneLiveTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AggiornamentiService aggiornamentiService;
+
+    @Autowired
+    private DiffusioneLiveService diffusioneLiveService;
+
+    @Autowired
+    private SimulatoreService simulatoreService;
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void differenzeContengonoSoloIValoriCambiati() {
+        Map<String, double[]> prima = new LinkedHashMap<>();
+        prima.put("raccolto", new double[]{1, 2, 3});
+        prima.put("soglia", new double[]{2});
+        Map<String, double[]> dopo = new LinkedHashMap<>();
+        dopo.put("raccolto", new double[]{1, 5, 3});
+        dopo.put("soglia", new double[]{2});
+        dopo.put("Zafferano", new double[]{7, 8});
+
+        Map<String, Map<String, Double>> d = DiffusioneLiveService.differenze(prima, dopo);
+        assertEquals(Map.of("1", 5.0), d.get("raccolto"));
+        assertFalse(d.containsKey("soglia"));
+        assertEquals(Map.of("0", 7.0, "1", 8.0), d.get("Zafferano"));
+    }
+
+    @Test
+    void completoPoiDeltaDopoUnaModifica() throws Exception {
+        MvcResult risultato = mockMvc.perform(get("/api/v1/eventi/colture"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String completo = attendi(risultato, "event:completo");
+        assertTrue(completo.contains("\"valori\":{}"), completo);   // le righe si leggono a parte
+
+        int riga = rigaUva();
+        aggiornamentiService.aggiornaRaccolto(riga, 3, 1234.5);
+        String corpo = attendi(risultato, "event:delta");
+        String delta = corpo.substring(corpo.indexOf("event:delta"));
+        assertTrue(delta.contains("\"valori\":{\"" + riga + "\":{\"0\":"), delta);
+        assertTrue(delta.contains("\"3\":1234.5"), delta);
+        assertEquals(1, delta.split("\":\\{\"0\":", -1).length - 1, delta);   // solo la riga cambiata
+
+        assertTrue(risultato.getResponse().getContentType().startsWith("text/event-stream"),
+                risultato.getResponse().getContentType());
+        mockMvc.perform(get("/api/v1/eventi/inesistente")).andExpect(status().isBadRequest());
+        assertTrue(diffusioneLiveService.getNumeroIscritti() >= 1);
+    }
+
+    @Test
+    void clientBloccatoScartatoSenzaFermareGliAltri() throws Exception {
+        // Due mittenti fissi e scadenza di 200 ms
+        DiffusioneLiveService servizio = new DiffusioneLiveService(simulatoreService, dashboardService, objectMapper,
+                32, 100, 3, 2, 60_000, 200);
+        CountDownLatch bloccato = new CountDownLatch(1), sblocca = new CountDownLatch(1), chiuso = new CountDownLatch(1);
+        EmettitoreSse lento = new EmettitoreSse() {
+            @Override
+            void invia(MessaggioSse messaggio) {
+                bloccato.countDown();   // come una write su un socket che il client non legge più
+                try {
+                    sblocca.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void complete() {
+                chiuso.countDown();
+            }
+        };
+        List<String> ricevuti = new CopyOnWriteArrayList<>();
+        EmettitoreSse veloce = new EmettitoreSse() {
+            @Override
+            void invia(MessaggioSse messaggio) {
+                ricevuti.add(new String(messaggio.getFrame(), StandardCharsets.UTF_8));
+            }
+        };
+        try {
+            servizio.iscrivi(VistaLive.COLTURE, lento);
+            assertTrue(bloccato.await(5, TimeUnit.SECONDS));
+            servizio.iscrivi(VistaLive.COLTURE, veloce);
+            attendi(() -> ricevuti.stream().anyMatch(r -> r.contains("event:completo")), "completo al client veloce");
+
+            attendi(() -> servizio.getScaduti() == 1 && servizio.getNumeroIscritti() == 1, "client lento scartato");
+            int riga = rigaUva();
+            aggiornamentiService.aggiornaRaccolto(riga, 4, 4321.5);
+            attendi(() -> ricevuti.stream().anyMatch(r -> r.contains("\"" + riga + "\":{") && r.contains("\"4\":4321.5")),
+                    "delta al client veloce");
+            assertEquals(2, servizio.getMittenti());
+
+            // Altri client bloccati vengono scartati senza avviare altri mittenti
+            CountDownLatch altroBloccato = new CountDownLatch(1);
+            for (int i = 0; i < 5; i++) {
+                servizio.iscrivi(VistaLive.COLTURE, new EmettitoreSse() {
+                    @Override
+                    void invia(MessaggioSse messaggio) {
+                        altroBloccato.countDown();
+                        try {
+                            sblocca.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            assertTrue(altroBloccato.await(5, TimeUnit.SECONDS));
+            attendi(() -> servizio.getScaduti() >= 2 && servizio.getNumeroIscritti() <= 5, "client bloccati scartati");
+            assertEquals(2, servizio.getMittenti());
+
+            // Quando la scrittura bloccata ritorna, il mittente chiude la connessione
+            sblocca.countDown();
+            assertTrue(chiuso.await(5, TimeUnit.SECONDS));
+        } finally {
+            sblocca.countDown();
+            servizio.chiudi();
+        }
+    }
+
+    private int rigaUva() {
+        return simulatoreService.getSnapshot().getArchivio().cercaRiga("Uva");
+    }
+
+    private static void attendi(BooleanSupplier condizione, String descrizione) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condizione.getAsBoolean()) {
+            if (System.currentTimeMillis() > limite) fail(descrizione + ": non avvenuto");
+            Thread.sleep(20);
+        }
+    }
+
+    // Attende che il corpo della risposta asincrona contenga il testo indicato
+    private static String attendi(MvcResult risultato, String testo) throws Exception {
+        long limite = System.currentTimeMillis() + 5000;
+        while (true) {
+            String corpo = risultato.getResponse().getContentAsString();
+            if (corpo.contains(testo)) return corpo;
+            if (System.currentTimeMillis() > limite) fail("Evento '" + testo + "' non ricevuto: " + corpo);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.ortiVerdi.dashboard.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Le metriche di richieste, rendering, servizi e cache compaiono nel formato Prometheus.
+ */
+@SpringBootTest(properties = "ortiverdi.persistenza.tipo=nessuna")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void metricheEspostePerPrometheus() throws Exception {
+        mockMvc.perform(get("/colture")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/colture")).andExpect(status().isOk());
+        mockMvc.perform(get("/analisi-raccolto")).andExpect(status().isOk());
+
+        String testo = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(testo.contains("http_server_requests_seconds_bucket"), "istogramma delle richieste");
+        assertTrue(testo.contains("ortiverdi_template_rendering_seconds_count{esito=\"ok\",vista=\"colture\""));
+        assertTrue(testo.contains("ortiverdi_dashboard_calcolo_seconds_count{serie=\"raccolto\""));
+        assertTrue(testo.contains("ortiverdi_api_serializzazione_seconds_count{payload=\"colture\""));
+        assertTrue(testo.contains("cache_gets_total{cache=\"payload-api\",result=\"hit\""));
+        assertTrue(testo.contains("cache_size{cache=\"partizioni\""));
+        assertTrue(testo.contains("ortiverdi_snapshot_versione"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.ortiVerdi.dashboard.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Byte trasferiti per caricamento di pagina, prima e dopo URL a hash, cache
+ * immutable e compressione. "Prima" = pagina e risorse senza compressione,
+ * riscaricate a ogni visita (cache predefinita); "dopo" = primo caricamento
+ * compresso e visite successive in cui solo l'HTML viaggia, Chart.js
+ * compreso (copiato in static/vendor dalla build).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "ortiverdi.persistenza.tipo=nessuna")
+class RisorseStaticheTest {
+
+    private static final Pattern RISORSA = Pattern.compile("(?:src|href)=\"(/(?:css|js|images|vendor)/[^\"]+)\"");
+    private static final Pattern HASH = Pattern.compile("-[0-9a-f]{32}\\.[a-z]+$");
+
+    @LocalServerPort
+    private int porta;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void risorseAHashImmutabiliECompresse() throws Exception {
+        List<String> risorse = risorse(scarica("/analisi-raccolto", "identity"));
+        assertTrue(risorse.stream().anyMatch(r -> r.startsWith("/css/")), "foglio di stile nella pagina");
+        assertTrue(risorse.stream().anyMatch(r -> r.startsWith("/vendor/chart.js/")), "Chart.js in copia locale");
+        for (String r : risorse) {
+            assertTrue(HASH.matcher(r).find(), "URL con hash del contenuto: " + r);
+
+            HttpResponse<byte[]> compressa = scarica(r, "gzip");
+            assertEquals(200, compressa.statusCode(), r);
+            String cache = compressa.headers().firstValue("Cache-Control").orElse("");
+            assertTrue(cache.contains("max-age=31536000") && cache.contains("immutable"), r + ": " + cache);
+            if (r.endsWith(".css") || r.endsWith(".js")) {
+                assertEquals("gzip", compressa.headers().firstValue("Content-Encoding").orElse(null), r);
+            }
+        }
+    }
+
+    @Test
+    void bytePerCaricamentoDiPagina() throws Exception {
+        HttpResponse<byte[]> pagina = scarica("/analisi-raccolto", "identity");
+        List<String> risorse = risorse(pagina);
+        for (String r : risorse) assertTrue(presente(r), "Risorsa non servita: " + r);
+
+        long prima = pagina.body().length, dopoPrimaVisita = 0;
+        for (String r : risorse) {
+            prima += scarica(r.replaceFirst(HASH.pattern(), "." + r.substring(r.lastIndexOf('.') + 1)), "identity").body().length;
+            dopoPrimaVisita += scarica(r, "gzip").body().length;
+        }
+
+        HttpResponse<byte[]> paginaCompressa = scarica("/analisi-raccolto", "gzip");
+        assertEquals("gzip", paginaCompressa.headers().firstValue("Content-Encoding").orElse(null));
+        long dopoVisiteSuccessive = paginaCompressa.body().length;
+        dopoPrimaVisita += dopoVisiteSuccessive;
+
+        System.out.printf(Locale.ROOT, "Byte per caricamento di /analisi-raccolto (%d risorse): prima %d, "
+                + "dopo %d al primo caricamento, %d alle visite successive%n",
+                risorse.size(), prima, dopoPrimaVisita, dopoVisiteSuccessive);
+        assertTrue(dopoPrimaVisita < prima);
+        assertTrue(dopoVisiteSuccessive * 10 < prima);
+    }
+
+    @Test
+    void jsonDinamicoCompresso() throws Exception {
+        HttpResponse<byte[]> json = scarica("/api/v1/colture", "gzip");
+        assertEquals(200, json.statusCode());
+        assertEquals("gzip", json.headers().firstValue("Content-Encoding").orElse(null));
+        assertTrue(json.headers().firstValue("ETag").orElse("").startsWith("W/"));
+    }
+
+    // Risorse locali (css, js, immagini, vendor) collegate dalla pagina
+    private static List<String> risorse(HttpResponse<byte[]> pagina) {
+        List<String> risorse = new ArrayList<>();
+        Matcher m = RISORSA.matcher(new String(pagina.body()));
+        while (m.find()) risorse.add(m.group(1));
+        return risorse;
+    }
+
+    private boolean presente(String risorsa) throws Exception {
+        return scarica(risorsa, "identity").statusCode() == 200;
+    }
+
+    // HttpClient non decomprime: la lunghezza del corpo è quella trasferita
+    private HttpResponse<byte[]> scarica(String percorso, String codifica) throws Exception {
+        HttpRequest richiesta = HttpRequest.newBuilder(URI.create("http://localhost:" + porta + percorso))
+                .header("Accept-Encoding", codifica)
+                .GET().build();
+        return client.send(richiesta, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
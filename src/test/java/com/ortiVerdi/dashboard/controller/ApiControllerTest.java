@@ -0,0 +1,69 @@
+package com.ortiVerdi.dashboard.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Verifica dell'API REST: payload JSON, ETag stabili, risposte 304 e
+ * 400/404 uguali per tutti i controller.
+ */
+@SpringBootTest(properties = "ortiverdi.persistenza.tipo=nessuna")
+@AutoConfigureMockMvc
+class ApiControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void serieAnnualiConEtagE304() throws Exception {
+        MvcResult prima = mockMvc.perform(get("/api/v1/serie-annuali"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.raccolto.length()").value(12))
+                .andReturn();
+        String etag = prima.getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        // Stessi byte alla seconda richiesta
+        MvcResult seconda = mockMvc.perform(get("/api/v1/serie-annuali")).andReturn();
+        assertArrayEquals(prima.getResponse().getContentAsByteArray(), seconda.getResponse().getContentAsByteArray());
+
+        mockMvc.perform(get("/api/v1/serie-annuali").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void dettaglioMeseEColture() throws Exception {
+        mockMvc.perform(get("/api/v1/mesi/7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.datiProduttivi.mese").value(7))
+                .andExpect(jsonPath("$.datiAmbientali.temperatura").exists());
+        mockMvc.perform(get("/api/v1/mesi/13")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/colture/Pomodoro"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.raccoltoMensile.length()").value(12));
+        mockMvc.perform(get("/api/v1/colture/Inesistente")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void erroriComuniATuttiIControllerDellApi() throws Exception {
+        mockMvc.perform(get("/api/v1/classifiche").param("ordine", "casuale"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Ordine non valido (decrescente o crescente): casuale"));
+        mockMvc.perform(get("/api/v1/irrigazione").param("budget", "1", "2"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/esportazioni/inesistente")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/sensori/Nessuno/temperatura"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("Nessun sensore per l'appezzamento: Nessuno"));
+    }
+}
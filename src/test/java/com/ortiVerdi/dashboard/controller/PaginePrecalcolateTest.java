@@ -0,0 +1,164 @@
+package com.ortiVerdi.dashboard.controller;
+
+import com.ortiVerdi.dashboard.service.CacheRisultati;
+import com.ortiVerdi.dashboard.service.PagineService;
+import com.ortiVerdi.dashboard.service.SimulatoreService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pagine delle analisi renderizzate in anticipo: servite dalla cache senza
+ * rendering, in gzip già pronto, con ETag e 304; rinnovate in background a
+ * ogni nuovo snapshot; numeri nella lingua della richiesta; con filtro sulle
+ * colture renderizzate a ogni richiesta; pagina delle colture con la sola
+ * prima pagina dell'elenco.
+ */
+@SpringBootTest(properties = "ortiverdi.persistenza.tipo=nessuna")
+@AutoConfigureMockMvc
+class PaginePrecalcolateTest {
+
+    private static final Pattern TEMPERATURA = Pattern.compile("data-campo=\"temperatura\">([^<]+)<");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PagineService pagineService;
+
+    @Autowired
+    private SimulatoreService simulatoreService;
+
+    @Test
+    void paginePreriscaldateServiteDallaCache() throws Exception {
+        CacheRisultati<?, ?> cache = pagineService.getCache();
+        attendiPreriscaldamento(cache, 0);
+        long mancati = cache.getMancati();
+
+        MockHttpServletResponse compressa = pagina("/analisi-costi-profitti?mese=4", "gzip, deflate", Locale.ITALY);
+        MockHttpServletResponse semplice = pagina("/analisi-costi-profitti?mese=4", null, Locale.ITALY);
+        assertEquals("gzip", compressa.getHeader("Content-Encoding"));
+        assertNull(semplice.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", compressa.getHeader("Vary"));
+        assertArrayEquals(semplice.getContentAsByteArray(), gunzip(compressa.getContentAsByteArray()));
+        assertTrue(compressa.getContentAsByteArray().length * 2 < semplice.getContentAsByteArray().length);
+
+        // Stesso ETag per le due codifiche, 304 alla rivalidazione
+        String etag = semplice.getHeader("ETag");
+        assertNotNull(etag);
+        assertEquals(etag, compressa.getHeader("ETag"));
+        mockMvc.perform(get("/analisi-costi-profitti?mese=4").header("If-None-Match", etag).locale(Locale.ITALY))
+                .andExpect(status().isNotModified());
+
+        // Link alle risorse con l'hash del contenuto, come nelle pagine renderizzate da Spring MVC
+        String html = semplice.getContentAsString(StandardCharsets.UTF_8);
+        assertTrue(Pattern.compile("href=\"/css/style-[0-9a-f]{32}\\.css\"").matcher(html).find(), "foglio di stile a hash");
+        String home = mockMvc.perform(get("/")).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertTrue(home.contains(html.substring(html.indexOf("href=\"/css/"), html.indexOf(".css\"") + 5)));
+
+        pagina("/colture", null, Locale.ITALY);
+        for (int mese = 1; mese <= 12; mese++) pagina("/analisi-raccolto?mese=" + mese, null, Locale.ITALY);
+        assertEquals(mancati, cache.getMancati(), "nessun rendering durante le richieste");
+    }
+
+    @Test
+    void nuovoSnapshotRinnovaLePagineInBackground() throws Exception {
+        CacheRisultati<?, ?> cache = pagineService.getCache();
+        attendiPreriscaldamento(cache, 0);
+        MockHttpServletResponse prima = pagina("/analisi-consumo-idrico?mese=3", null, Locale.ITALY);
+
+        long anticipati = cache.getAnticipati();
+        simulatoreService.rigenera();
+        attendiPreriscaldamento(cache, anticipati);
+        long mancati = cache.getMancati();
+
+        MockHttpServletResponse dopo = pagina("/analisi-consumo-idrico?mese=3", null, Locale.ITALY);
+        assertNotEquals(prima.getHeader("ETag"), dopo.getHeader("ETag"));
+        assertNotEquals(temperatura(prima), temperatura(dopo));
+        assertEquals(mancati, cache.getMancati(), "pagina già renderizzata in background");
+    }
+
+    @Test
+    void numeriNellaLinguaEFiltroSenzaCache() throws Exception {
+        CacheRisultati<?, ?> cache = pagineService.getCache();
+        attendiPreriscaldamento(cache, 0);
+        String italiano = temperatura(pagina("/analisi-raccolto?mese=6", null, Locale.ITALY));
+        String inglese = temperatura(pagina("/analisi-raccolto?mese=6", null, Locale.US));
+        assertTrue(italiano.contains(","), italiano);
+        assertEquals(italiano.replace(',', '.'), inglese);
+
+        long successi = cache.getSuccessi(), mancati = cache.getMancati();
+        MockHttpServletResponse filtrata = pagina("/analisi-raccolto?mese=6&colture=Pomodoro", "gzip", Locale.ITALY);
+        assertNull(filtrata.getHeader("Content-Encoding"));
+        assertNotNull(filtrata.getHeader("ETag"));
+        assertEquals(italiano, temperatura(filtrata));
+        assertEquals(successi, cache.getSuccessi());
+        assertEquals(mancati, cache.getMancati());
+    }
+
+    @Test
+    void pagineColtureSenzaSerieDelleColture() throws Exception {
+        String html = pagina("/colture", null, Locale.ITALY).getContentAsString(StandardCharsets.UTF_8);
+        int righe = simulatoreService.getSnapshot().getArchivio().getNumeroRighe();
+        int elencate = Math.min(ColtureController.COLTURE_PAGINA, righe);
+
+        // Solo nomi e righe della prima pagina: le serie mensili le scarica colture.js
+        assertFalse(html.contains("raccoltoMensile"), "serie delle colture incorporate nella pagina");
+        assertEquals(elencate, conta(html, "data-riga=\""));
+        assertEquals(Math.min(ColtureController.COLTURE_ATTIVE, elencate), conta(html, "class=\"active\""));
+        assertEquals(elencate >= righe, html.contains("id=\"altreColture\" type=\"button\" hidden"));
+    }
+
+    private MockHttpServletResponse pagina(String url, String codifiche, Locale locale) throws Exception {
+        var richiesta = get(url).locale(locale);
+        if (codifiche != null) richiesta.header("Accept-Encoding", codifiche);
+        MockHttpServletResponse risposta = mockMvc.perform(richiesta).andExpect(status().isOk()).andReturn().getResponse();
+        assertEquals("text/html;charset=UTF-8", risposta.getContentType());
+        return risposta;
+    }
+
+    // Almeno le 37 pagine di un formato ricalcolate dopo "da", poi nessun ricalcolo per un po'
+    private static void attendiPreriscaldamento(CacheRisultati<?, ?> cache, long da) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 30_000, ultimo = -1;
+        while (System.currentTimeMillis() < limite) {
+            long anticipati = cache.getAnticipati();
+            if (anticipati >= da + 37 && anticipati == ultimo) return;
+            ultimo = anticipati;
+            Thread.sleep(300);
+        }
+        fail("Preriscaldamento non terminato: " + cache.getAnticipati() + " pagine");
+    }
+
+    private static String temperatura(MockHttpServletResponse risposta) throws IOException {
+        Matcher m = TEMPERATURA.matcher(risposta.getContentAsString(StandardCharsets.UTF_8));
+        assertTrue(m.find());
+        return m.group(1);
+    }
+
+    private static int conta(String testo, String cercato) {
+        int n = 0;
+        for (int i = testo.indexOf(cercato); i >= 0; i = testo.indexOf(cercato, i + 1)) n++;
+        return n;
+    }
+
+    private static byte[] gunzip(byte[] dati) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(dati))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.ortiVerdi.dashboard.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Quantili dello sketch entro l'errore relativo dichiarato, anche dopo l'unione.
+ */
+class SchizzoQuantiliTest {
+
+    private static final double[] QUANTILI = {0, 0.05, 0.25, 0.5, 0.75, 0.95, 1};
+
+    @Test
+    void quantiliEntroErroreRelativo() {
+        SplittableRandom rnd = new SplittableRandom(3);
+        double[] valori = new double[50_000];
+        SchizzoQuantili schizzo = new SchizzoQuantili(0.01);
+        for (int i = 0; i < valori.length; i++) {
+            // Valori positivi, negativi e zeri su molti ordini di grandezza
+            double v = i % 10 == 0 ? 0 : Math.exp(rnd.nextGaussian() * 4) * (rnd.nextDouble() < 0.3 ? -1 : 1);
+            valori[i] = v;
+            schizzo.aggiungi(v);
+        }
+        Arrays.sort(valori);
+        for (double q : QUANTILI) {
+            double esatto = valori[(int) (q * (valori.length - 1))];
+            assertEquals(esatto, schizzo.quantile(q), Math.abs(esatto) * 0.01 + 1e-12, "quantile " + q);
+        }
+    }
+
+    @Test
+    void unioneEquivaleAUnUnicoSchizzo() {
+        SplittableRandom rnd = new SplittableRandom(11);
+        SchizzoQuantili unico = new SchizzoQuantili(0.005);
+        SchizzoQuantili[] parti = new SchizzoQuantili[8];
+        for (int p = 0; p < parti.length; p++) parti[p] = new SchizzoQuantili(0.005);
+        for (int i = 0; i < 20_000; i++) {
+            double v = 1000 + rnd.nextGaussian() * (i % 8 + 1) * 100;
+            unico.aggiungi(v);
+            parti[i % 8].aggiungi(v);
+        }
+        SchizzoQuantili unione = new SchizzoQuantili(0.005);
+        for (int p = parti.length - 1; p >= 0; p--) unione.unisci(parti[p]);
+
+        assertEquals(unico.getConteggio(), unione.getConteggio());
+        for (double q : QUANTILI) assertEquals(unico.quantile(q), unione.quantile(q), 0);
+        assertThrows(IllegalArgumentException.class, () -> unione.unisci(new SchizzoQuantili(0.01)));
+        assertTrue(Double.isNaN(new SchizzoQuantili(0.01).quantile(0.5)));
+    }
+}
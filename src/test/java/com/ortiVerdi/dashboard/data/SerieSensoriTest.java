@@ -0,0 +1,68 @@
+package com.ortiVerdi.dashboard.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Buffer circolari e aggregati mobili delle letture dei sensori.
+ */
+class SerieSensoriTest {
+
+    private static final long LUGLIO = Instant.parse("2025-07-10T12:00:00Z").toEpochMilli();
+
+    @Test
+    void bufferCircolareConservaLeUltimeLetture() {
+        SerieCircolare serie = new SerieCircolare(4);
+        for (int i = 0; i < 10; i++) serie.aggiungi(i, i * 10);
+
+        long[] istanti = new long[8];
+        double[] valori = new double[8];
+        assertEquals(4, serie.copiaUltime(8, istanti, valori));
+        assertArrayEquals(new long[]{6, 7, 8, 9}, java.util.Arrays.copyOf(istanti, 4));
+        assertArrayEquals(new double[]{70, 80, 90}, java.util.Arrays.copyOfRange(valori, 1, 4));
+        assertEquals(2, serie.copiaUltime(2, istanti, valori));
+        assertEquals(8, istanti[0]);
+    }
+
+    @Test
+    void aggregatiPerMinutoOraEMese() {
+        AggregatiSensore a = new AggregatiSensore();
+        for (int s = 0; s < 180; s++) a.aggiungi(LUGLIO + s * 1000L, s);       // 3 minuti, una lettura al secondo
+
+        List<IntervalloAggregato> minuti = a.getIntervalli(RisoluzioneTemporale.MINUTO);
+        assertEquals(3, minuti.size());
+        assertEquals(60, minuti.get(0).getConteggio());
+        assertEquals(29.5, minuti.get(0).getMedia(), 1e-9);
+        assertEquals(120, minuti.get(2).getMinimo());
+        assertEquals(179, minuti.get(2).getMassimo());
+        assertEquals(1, a.getIntervalli(RisoluzioneTemporale.ORA).size());
+
+        IntervalloAggregato mese = a.getIntervalli(RisoluzioneTemporale.MESE).get(0);
+        assertEquals(Instant.parse("2025-07-01T00:00:00Z").toEpochMilli(), mese.getInizio());
+        assertEquals(89.5, a.getValoreMensile(7, false), 1e-9);
+        assertEquals(179 * 180 / 2.0, a.getValoreMensile(7, true), 1e-9);
+        assertTrue(Double.isNaN(a.getValoreMensile(8, false)));
+    }
+
+    @Test
+    void intervalliVecchiVengonoRiusati() {
+        AggregatiSensore a = new AggregatiSensore();
+        a.aggiungi(LUGLIO, 1);
+        a.aggiungi(LUGLIO + 120 * 60_000L, 5);    // 120 minuti dopo: stessa posizione dell'anello
+        a.aggiungi(LUGLIO, 100);                   // lettura in ritardo, più vecchia dell'intervallo: ignorata
+
+        List<IntervalloAggregato> minuti = a.getIntervalli(RisoluzioneTemporale.MINUTO);
+        assertEquals(1, minuti.size());
+        assertEquals(5, minuti.get(0).getSomma());
+        // Nelle risoluzioni più ampie la lettura in ritardo viene comunque contata
+        assertEquals(3, a.getIntervalli(RisoluzioneTemporale.GIORNO).get(0).getConteggio());
+
+        // Luglio dell'anno successivo prende il posto di quello precedente per il valore mensile
+        a.aggiungi(Instant.parse("2026-07-02T00:00:00Z").toEpochMilli(), 42);
+        assertEquals(42, a.getValoreMensile(7, false));
+    }
+}
@@ -0,0 +1,99 @@
+package com.ortiVerdi.dashboard.data;
+
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica del formato binario: andata e ritorno dei dati, controllo della
+ * versione e rilevamento di file corrotti tramite checksum.
+ */
+class SnapshotBinarioTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void riletturaIdenticaAiDatiScritti() throws IOException {
+        ArchivioColture originale = new SorgenteDatiSimulati(3L).carica();
+        DatiAmbientali[] ambientali = ambientali();
+        Path file = cartella.resolve("colture.ovs");
+
+        SnapshotBinario.scrivi(file, originale, ambientali);
+        SnapshotBinario letto = SnapshotBinario.leggi(file, true);
+        ArchivioColture copia = letto.getArchivio();
+
+        assertEquals(originale.getNumeroRighe(), copia.getNumeroRighe());
+        for (int r = 0; r < originale.getNumeroRighe(); r++) {
+            assertEquals(originale.getNome(r), copia.getNome(r));
+            assertEquals(originale.getPrezzo(r), copia.getPrezzo(r));
+            assertEquals(originale.getConsumoIdricoPerKg(r), copia.getConsumoIdricoPerKg(r));
+            for (int m = 0; m < 12; m++) {
+                assertEquals(originale.getRaccolto(r, m), copia.getRaccolto(r, m));
+                assertEquals(originale.getCosto(r, m), copia.getCosto(r, m));
+            }
+        }
+        assertArrayEquals(originale.totaliMensili(Metrica.PROFITTO), copia.totaliMensili(Metrica.PROFITTO));
+        assertEquals(ambientali[6].getPrecipitazioni(), letto.getDatiAmbientali()[6].getPrecipitazioni());
+    }
+
+    @Test
+    void rilevaCorruzioneEVersioneNonSupportata() throws IOException {
+        Path file = cartella.resolve("colture.ovs");
+        SnapshotBinario.scrivi(file, new SorgenteDatiSimulati(5L).carica(), ambientali());
+
+        // Un byte alterato nella zona dati invalida il checksum
+        modifica(file, SnapshotBinario.INTESTAZIONE + 40, (byte) 0x7F);
+        IOException corrotto = assertThrows(IOException.class, () -> SnapshotBinario.leggi(file, true));
+        assertTrue(corrotto.getMessage().contains("Checksum"));
+
+        // Versione del formato diversa da quella attesa
+        modifica(file, 4, (byte) 99);
+        IOException versione = assertThrows(IOException.class, () -> SnapshotBinario.leggi(file, false));
+        assertTrue(versione.getMessage().contains("Versione"));
+    }
+
+    @Test
+    void improntaRiletta() throws IOException {
+        Path file = cartella.resolve("colture.ovs");
+        SnapshotBinario.scrivi(file, new SorgenteDatiSimulati(5L).carica(), ambientali(), 0x1234_5678_9ABCL);
+        assertEquals(0x1234_5678_9ABCL, SnapshotBinario.leggi(file, true).getImpronta());
+
+        SnapshotBinario.scrivi(file, new SorgenteDatiSimulati(5L).carica(), ambientali());
+        assertEquals(0L, SnapshotBinario.leggi(file, true).getImpronta());
+    }
+
+    @Test
+    void contenutoIncoerenteDiventaIOException() throws IOException {
+        Path file = cartella.resolve("colture.ovs");
+        SnapshotBinario.scrivi(file, new SorgenteDatiSimulati(5L).carica(), ambientali());
+
+        // Righe dichiarate oltre la dimensione dei dati: senza checksum l'errore emerge nelle sezioni
+        modifica(file, 10, (byte) 0x7F);
+        IOException malformato = assertThrows(IOException.class, () -> SnapshotBinario.leggi(file, false));
+        assertTrue(malformato.getMessage().contains("malformato"));
+    }
+
+    private static DatiAmbientali[] ambientali() {
+        DatiAmbientali[] da = new DatiAmbientali[12];
+        for (int m = 0; m < 12; m++) da[m] = new DatiAmbientali(10 + m, 50, 80 + m, 3, 20000);
+        return da;
+    }
+
+    private static void modifica(Path file, long posizione, byte valore) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{valore}).order(ByteOrder.LITTLE_ENDIAN), posizione);
+        }
+        assertTrue(Files.size(file) > posizione);
+    }
+}
@@ -0,0 +1,111 @@
+package com.ortiVerdi.dashboard.data;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica dell'importazione CSV: file reale incluso nel progetto,
+ * formati numerici alternativi, aggregazione per appezzamento e stream grandi.
+ */
+class SorgenteDatiCsvTest {
+
+    @Test
+    void importaIlFileDelleColture() throws IOException {
+        SorgenteDatiCsv sorgente = new SorgenteDatiCsv(new ClassPathResource("data/dati_colture.csv"), false);
+        ArchivioColture archivio = sorgente.carica();
+
+        assertEquals(7, archivio.getNumeroRighe());
+        int pomodoro = archivio.cercaRiga("Pomodoro");
+        assertEquals(0.18, archivio.getPrezzo(pomodoro));
+        assertEquals(20000, archivio.getRaccolto(pomodoro, 6));
+        assertEquals(15000, archivio.getCosto(pomodoro, 6));
+        assertEquals(2.0, archivio.getConsumoIdricoPerKg(pomodoro));
+        assertEquals(7, sorgente.getUltimaImportazione().getRighe());
+    }
+
+    @Test
+    void accettaVirgolaDecimaleCrlfERigheVuote() throws IOException {
+        String csv = "Nome;Prezzo\r\n"
+                + "Uva;1,25;" + "1,5;".repeat(12) + "-2.75;".repeat(11) + "3e2\r\n"
+                + "\r\n";
+        ArchivioColture archivio = new SorgenteDatiCsv(risorsa(csv), false).carica();
+
+        assertEquals(1, archivio.getNumeroRighe());
+        assertEquals(1.25, archivio.getPrezzo(0));
+        assertEquals(1.5, archivio.getRaccolto(0, 11));
+        assertEquals(-2.75, archivio.getCosto(0, 0));
+        assertEquals(300, archivio.getCosto(0, 11));
+    }
+
+    @Test
+    void segnalaRigheConColonneMancanti() {
+        String csv = "Nome;Prezzo\nUva;1.0;2;3\n";
+        IOException e = assertThrows(IOException.class, () -> new SorgenteDatiCsv(risorsa(csv), false).carica());
+        assertTrue(e.getMessage().startsWith("Riga 2"));
+    }
+
+    @Test
+    void aggregaMilioniDiAppezzamentiConMemoriaLimitata() throws IOException {
+        int righe = 1_000_000;
+        byte[] riga = ("Olivo;1.5;" + "10;".repeat(12) + "4;".repeat(11) + "4\n").getBytes(StandardCharsets.UTF_8);
+        byte[] intestazione = "Nome;Prezzo/Unita\n".getBytes(StandardCharsets.UTF_8);
+
+        ArchivioColture archivio = new SorgenteDatiCsv(risorsa(""), true).carica(new RigheRipetute(intestazione, riga, righe));
+
+        assertEquals(1, archivio.getNumeroRighe());
+        assertEquals(10.0 * righe, archivio.getRaccolto(0, 3), 1e-6);
+        assertEquals(4.0 * righe, archivio.getCosto(0, 11), 1e-6);
+        assertEquals(1.5, archivio.getPrezzo(0), 1e-12);
+    }
+
+    private static ByteArrayResource risorsa(String testo) {
+        return new ByteArrayResource(testo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Stream che genera al volo la stessa riga molte volte, senza tenerle in memoria
+    private static final class RigheRipetute extends InputStream {
+        private final byte[] intestazione;
+        private final byte[] riga;
+        private long rimanenti;
+        private byte[] corrente;
+        private int pos;
+
+        RigheRipetute(byte[] intestazione, byte[] riga, long righe) {
+            this.intestazione = intestazione;
+            this.riga = riga;
+            this.rimanenti = righe;
+            this.corrente = intestazione;
+        }
+
+        @Override
+        public int read() {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int scritti = 0;
+            while (scritti < len) {
+                if (pos == corrente.length) {
+                    if (rimanenti == 0) break;
+                    rimanenti--;
+                    corrente = riga;
+                    pos = 0;
+                }
+                int n = Math.min(len - scritti, corrente.length - pos);
+                System.arraycopy(corrente, pos, b, off + scritti, n);
+                pos += n;
+                scritti += n;
+            }
+            return scritti == 0 ? -1 : scritti;
+        }
+    }
+}
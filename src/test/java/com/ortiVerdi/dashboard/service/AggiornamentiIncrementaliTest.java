@@ -0,0 +1,211 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.model.Coltura;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gli aggregati aggiornati per differenza devono coincidere con quelli
+ * ricalcolati da zero sull'archivio dopo ogni sequenza di modifiche.
+ */
+class AggiornamentiIncrementaliTest {
+
+    private static final double TOLLERANZA = 1e-7;
+
+    @Test
+    void aggregatiIncrementaliUgualiAlRicalcoloCompleto() {
+        SimulatoreService simulatore = new SimulatoreService(11L);
+        AggiornamentiService aggiornamenti = new AggiornamentiService(simulatore);
+        Random rnd = new Random(99);
+
+        for (int i = 0; i < 2_000; i++) {
+            // Anche le righe aggiunte nel frattempo
+            int riga = rnd.nextInt(simulatore.getSnapshot().getArchivio().getNumeroRighe());
+            int mese = 1 + rnd.nextInt(12);
+            switch (rnd.nextInt(10)) {
+                case 0 -> aggiornamenti.aggiornaPrezzo(riga, rnd.nextDouble() * 6);
+                case 1 -> aggiornamenti.aggiungiColtura("Appezzamento " + i, 1 + rnd.nextDouble(), 2.0,
+                        valoriCasuali(rnd), valoriCasuali(rnd));
+                case 2, 3, 4, 5 -> aggiornamenti.aggiornaRaccolto(riga, mese, rnd.nextDouble() * 100);
+                default -> aggiornamenti.aggiornaCosto(riga, mese, rnd.nextDouble() * 80);
+            }
+            if (i % 100 == 0) verificaCoerenza(simulatore.getSnapshot());
+        }
+        verificaCoerenza(simulatore.getSnapshot());
+    }
+
+    @Test
+    void ogniModificaPubblicaUnaNuovaVersione() {
+        SimulatoreService simulatore = new SimulatoreService(3L);
+        AggiornamentiService aggiornamenti = new AggiornamentiService(simulatore);
+        SnapshotSimulazione prima = simulatore.getSnapshot();
+        double raccoltoLuglio = prima.getDatiMensili(7).getQuantitaRaccolto();
+        int uva = prima.getArchivio().cercaRiga("Uva");
+        double vecchio = prima.getArchivio().getRaccolto(uva, 6);
+
+        SnapshotSimulazione dopo = aggiornamenti.aggiornaRaccolto(uva, 7, vecchio + 50);
+
+        assertTrue(dopo.getVersione() > prima.getVersione());
+        assertSame(dopo, simulatore.getSnapshot());
+        assertEquals(raccoltoLuglio, prima.getDatiMensili(7).getQuantitaRaccolto());   // il vecchio snapshot non cambia
+        assertEquals(raccoltoLuglio + 50, dopo.getDatiMensili(7).getQuantitaRaccolto(), TOLLERANZA);
+        assertSame(prima.getDatiMensili(1), dopo.getDatiMensili(1));                      // mesi non toccati riusati
+    }
+
+    @Test
+    void snapshotPubblicatoNonCambiaDopoLeModifiche() {
+        SimulatoreService simulatore = new SimulatoreService(17L);
+        AggiornamentiService aggiornamenti = new AggiornamentiService(simulatore);
+        SnapshotSimulazione prima = simulatore.getSnapshot();
+        ArchivioColture a = prima.getArchivio();
+        int righe = a.getNumeroRighe();
+        double[][] raccolto = new double[righe][], costi = new double[righe][];
+        double[] prezzi = new double[righe], raccoltoAnnuo = new double[righe], costoAnnuo = new double[righe];
+        for (int r = 0; r < righe; r++) {
+            raccolto[r] = a.copiaRiga(Metrica.RACCOLTO, r);
+            costi[r] = a.copiaRiga(Metrica.COSTI, r);
+            prezzi[r] = a.getPrezzo(r);
+            raccoltoAnnuo[r] = a.getRaccoltoAnnuo(r);
+            costoAnnuo[r] = a.getCostoAnnuo(r);
+        }
+        double[] profittoMensile = a.totaliMensili(Metrica.PROFITTO);
+        DatiProduzione marzo = a.aggregaMese(3);
+
+        // Più righe dello stesso blocco, lo stesso mese più volte, poi una riga nuova
+        Random rnd = new Random(4);
+        for (int i = 0; i < 300; i++) {
+            int riga = rnd.nextInt(Math.min(righe, 8));
+            int mese = 1 + rnd.nextInt(12);
+            switch (i % 3) {
+                case 0 -> aggiornamenti.aggiornaRaccolto(riga, mese, rnd.nextDouble() * 100);
+                case 1 -> aggiornamenti.aggiornaCosto(riga, mese, rnd.nextDouble() * 80);
+                default -> aggiornamenti.aggiornaPrezzo(riga, rnd.nextDouble() * 6);
+            }
+        }
+        aggiornamenti.aggiungiColtura("Appezzamento nuovo", 2, 1, valoriCasuali(rnd), valoriCasuali(rnd));
+        verificaCoerenza(simulatore.getSnapshot());
+
+        assertEquals(righe, a.getNumeroRighe());
+        for (int r = 0; r < righe; r++) {
+            assertArrayEquals(raccolto[r], a.copiaRiga(Metrica.RACCOLTO, r));
+            assertArrayEquals(costi[r], a.copiaRiga(Metrica.COSTI, r));
+            assertEquals(prezzi[r], a.getPrezzo(r));
+            assertEquals(raccoltoAnnuo[r], a.getRaccoltoAnnuo(r));
+            assertEquals(costoAnnuo[r], a.getCostoAnnuo(r));
+        }
+        assertArrayEquals(profittoMensile, a.totaliMensili(Metrica.PROFITTO));
+        assertEquals(marzo.getQuantitaRaccolto(), a.aggregaMese(3).getQuantitaRaccolto());
+        assertEquals(marzo.getProfitto(), a.aggregaMese(3).getProfitto());
+        assertEquals(marzo.getQuantitaRaccolto(), prima.getDatiMensili(3).getQuantitaRaccolto(), TOLLERANZA);
+        List<Coltura> colture = prima.getColture();
+        for (int r = 0; r < righe; r++) {
+            assertEquals(raccoltoAnnuo[r], colture.get(r).getQuantitaAnnuale());
+            assertEquals(costoAnnuo[r], colture.get(r).getCostoAnnuale());
+        }
+    }
+
+    @Test
+    void secondoAppezzamentoDiUnaColturaSiModificaASe() {
+        SimulatoreService simulatore = new SimulatoreService(13L);
+        AggiornamentiService aggiornamenti = new AggiornamentiService(simulatore);
+        int uva = simulatore.getSnapshot().getArchivio().cercaRiga("Uva");
+        double[] raccolto = new double[12], costi = new double[12];
+        Arrays.fill(raccolto, 10);
+        Arrays.fill(costi, 5);
+
+        int secondo = aggiornamenti.aggiungiColtura("Uva", 2, 1, raccolto, costi).getArchivio().getNumeroRighe() - 1;
+        double primoMarzo = simulatore.getSnapshot().getArchivio().getRaccolto(uva, 2);
+        aggiornamenti.aggiornaRaccolto(secondo, 3, 250);
+        aggiornamenti.aggiornaCosto(secondo, 3, 40);
+        SnapshotSimulazione dopo = aggiornamenti.aggiornaPrezzo(secondo, 3.5);
+
+        ArchivioColture a = dopo.getArchivio();
+        assertEquals("Uva", a.getNome(secondo));
+        assertEquals(250, a.getRaccolto(secondo, 2));
+        assertEquals(40, a.getCosto(secondo, 2));
+        assertEquals(3.5, a.getPrezzo(secondo));
+        assertEquals(primoMarzo, a.getRaccolto(uva, 2));   // il primo appezzamento non cambia
+        assertEquals(uva, a.cercaRiga("Uva"));
+        verificaCoerenza(dopo);
+    }
+
+    @Test
+    void raccoltoECostiInsiemeInUnaSolaVersione() {
+        SimulatoreService simulatore = new SimulatoreService(19L);
+        AggiornamentiService aggiornamenti = new AggiornamentiService(simulatore);
+        SnapshotSimulazione prima = simulatore.getSnapshot();
+        double profittoMarzo = prima.getDatiMensili(3).getProfitto();
+
+        // Costi non validi: nemmeno il raccolto viene applicato
+        assertThrows(IllegalArgumentException.class, () -> aggiornamenti.aggiornaMese(0, 3, 500.0, -1.0));
+        assertSame(prima, simulatore.getSnapshot());
+
+        SnapshotSimulazione dopo = aggiornamenti.aggiornaMese(0, 3, 500.0, 70.0);
+        assertEquals(prima.getVersione() + 1, dopo.getVersione());
+        assertEquals(500, dopo.getArchivio().getRaccolto(0, 2));
+        assertEquals(70, dopo.getArchivio().getCosto(0, 2));
+        double atteso = profittoMarzo
+                + (500 - prima.getArchivio().getRaccolto(0, 2)) * prima.getArchivio().getPrezzo(0)
+                - (70 - prima.getArchivio().getCosto(0, 2));
+        assertEquals(atteso, dopo.getDatiMensili(3).getProfitto(), TOLLERANZA);
+        verificaCoerenza(dopo);
+    }
+
+    @Test
+    void modificheNonValideVengonoRifiutate() {
+        SimulatoreService simulatore = new SimulatoreService(5L);
+        AggiornamentiService aggiornamenti = new AggiornamentiService(simulatore);
+        int righe = simulatore.getSnapshot().getArchivio().getNumeroRighe();
+        assertThrows(NoSuchElementException.class, () -> aggiornamenti.aggiornaCosto(righe, 3, 10));
+        assertThrows(NoSuchElementException.class, () -> aggiornamenti.aggiornaCosto(-1, 3, 10));
+        assertThrows(IllegalArgumentException.class, () -> aggiornamenti.aggiornaRaccolto(0, 13, 10));
+        assertThrows(IllegalArgumentException.class, () -> aggiornamenti.aggiornaPrezzo(0, Double.NaN));
+    }
+
+    // Confronta gli aggregati mantenuti con un ricalcolo completo sulle colonne
+    private static void verificaCoerenza(SnapshotSimulazione s) {
+        ArchivioColture a = s.getArchivio();
+        double[] consumo = a.totaliMensili(Metrica.CONSUMO_IDRICO);
+        double raccoltoAnno = 0, profittoAnno = 0;
+
+        for (int mese = 1; mese <= 12; mese++) {
+            DatiProduzione atteso = a.aggregaMese(mese);
+            DatiProduzione incrementale = s.getDatiMensili(mese);
+            assertEquals(atteso.getQuantitaRaccolto(), incrementale.getQuantitaRaccolto(), TOLLERANZA);
+            assertEquals(atteso.getCostiProduzione(), incrementale.getCostiProduzione(), TOLLERANZA);
+            assertEquals(atteso.getProfitto(), incrementale.getProfitto(), TOLLERANZA);
+            assertEquals(atteso.getConsumoIdrico(), incrementale.getConsumoIdrico(), TOLLERANZA);
+            assertEquals(consumo[mese - 1], s.getConsumoIdricoMensile()[mese - 1], TOLLERANZA);
+            raccoltoAnno += atteso.getQuantitaRaccolto();
+            profittoAnno += atteso.getProfitto();
+        }
+        assertEquals(raccoltoAnno, s.getDatiAnnuali().getQuantitaRaccolto(), TOLLERANZA);
+        assertEquals(profittoAnno, s.getDatiAnnuali().getProfitto(), TOLLERANZA);
+
+        for (Coltura c : s.getColture()) {
+            double q = 0, costo = 0;
+            for (int m = 0; m < 12; m++) {
+                q += c.getRaccoltoMensile()[m];
+                costo += c.getCostiMensili()[m];
+            }
+            assertEquals(q, c.getQuantitaAnnuale(), TOLLERANZA);
+            assertEquals(costo, c.getCostoAnnuale(), TOLLERANZA);
+            assertEquals(q * c.getPrezzoVendita() - costo, c.getProfittoAnnuale(), TOLLERANZA);
+        }
+    }
+
+    private static double[] valoriCasuali(Random rnd) {
+        double[] v = new double[12];
+        for (int m = 0; m < 12; m++) v[m] = rnd.nextDouble() * 50;
+        return v;
+    }
+}
@@ -0,0 +1,216 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.CatalogoColture;
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import com.ortiVerdi.dashboard.data.SorgenteDati;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Anomalie: un valore mensile fuori scala viene segnalato e i dati che
+ * seguono il profilo stagionale no; un picco in una serie di letture
+ * stabili dà una sola anomalia; le letture concorrenti non perdono stato;
+ * un aggiornamento del solo meteo non fa ricalcolare le anomalie di produzione.
+ */
+class AnomalieServiceTest {
+
+    @Test
+    void valoreMensileFuoriScalaVieneSegnalato() {
+        Contesto c = new Contesto(new SimulatoreService(stagionale(), 3L, null, true));
+        try {
+            Anomalie prima = c.anomalie.anomalie(c.corrente, null, 100);
+            assertEquals(List.of(), prima.getProduzione());
+
+            // Il raccolto di luglio di una coltura decuplicato
+            String nome = ParametriColture.getCatalogo().getNome(0);
+            int luglio = 7;
+            SnapshotSimulazione s = c.partizioni.getSnapshot(c.corrente);
+            double normale = IndiceIntervalli.di(s).somma(Metrica.RACCOLTO, idColtura(s, nome), luglio, luglio);
+            c.aggiornamenti.aggiornaRaccolto(s.getArchivio().cercaRiga(nome), luglio, normale * 10);
+
+            Anomalie dopo = c.anomalie.anomalie(c.corrente, Metrica.RACCOLTO, 100);
+            assertFalse(dopo.getProduzione().isEmpty());
+            Anomalie.Produzione a = dopo.getProduzione().get(0);
+            assertEquals(nome, a.coltura());
+            assertEquals(luglio, a.mese());
+            assertEquals(normale * 10, a.valore(), 1e-6);
+            assertEquals(normale, a.atteso(), normale * 0.2);
+            assertTrue(a.z() > dopo.getSogliaZ());
+            for (Anomalie.Produzione p : dopo.getProduzione()) assertEquals(Metrica.RACCOLTO, p.metrica());
+
+            // Il consumo idrico è proporzionale al raccolto: anomalo anche lui
+            assertTrue(c.anomalie.anomalie(c.corrente, Metrica.CONSUMO_IDRICO, 100).getProduzione().stream()
+                    .anyMatch(p -> p.coltura().equals(nome) && p.mese() == luglio));
+            assertThrows(IllegalArgumentException.class, () -> c.anomalie.anomalie(c.corrente, null, 0));
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void anomalieDiProduzioneRestanoConIlSoloMeteoNuovo() {
+        Contesto c = new Contesto(new SimulatoreService(stagionale(), 3L, null, true));
+        try {
+            String nome = ParametriColture.getCatalogo().getNome(0);
+            SnapshotSimulazione s = c.partizioni.getSnapshot(c.corrente);
+            IndiceIntervalli indice = IndiceIntervalli.di(s);
+            double normale = indice.somma(Metrica.RACCOLTO, idColtura(s, nome), 7, 7);
+            c.aggiornamenti.aggiornaRaccolto(s.getArchivio().cercaRiga(nome), 7, normale * 10);
+
+            // Indice già calcolato, poi le anomalie che lo usano
+            SnapshotSimulazione modificato = c.partizioni.getSnapshot(c.corrente);
+            IndiceIntervalli dopoModifica = IndiceIntervalli.di(modificato);
+            List<Anomalie.Produzione> prima = c.anomalie.anomalie(c.corrente, null, 100).getProduzione();
+            assertFalse(prima.isEmpty());
+
+            // Solo meteo nuovo: stesso indice, stesse anomalie
+            c.sensori.registra("Appezzamento 1", 1_700_000_000_000L, CanaleSensore.TEMPERATURA, 21);
+            c.sensori.pubblica();
+            SnapshotSimulazione meteo = c.partizioni.getSnapshot(c.corrente);
+            assertTrue(meteo.getVersione() > modificato.getVersione());
+            assertSame(dopoModifica, IndiceIntervalli.di(meteo));
+            assertEquals(prima, c.anomalie.anomalie(c.corrente, null, 100).getProduzione());
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void piccoInLettureStabiliDaUnaSolaAnomalia() {
+        Contesto c = new Contesto(new SimulatoreService(3L));
+        try {
+            Random rnd = new Random(5);
+            long istante = 1_700_000_000_000L;
+            for (int i = 0; i < 500; i++) {
+                istante += 60_000;
+                c.sensori.registra("Appezzamento 1", istante, CanaleSensore.TEMPERATURA, 20 + (rnd.nextDouble() - 0.5) * 0.6);
+                // La pioggia è fatta di picchi: non viene valutata
+                c.sensori.registra("Appezzamento 1", istante, CanaleSensore.PRECIPITAZIONI, i % 50 == 0 ? 12 : 0);
+            }
+            assertEquals(0, c.anomalie.getSegnalate());
+
+            c.sensori.registra("Appezzamento 1", istante + 60_000, CanaleSensore.TEMPERATURA, 35);
+            for (int i = 0; i < 50; i++) {
+                c.sensori.registra("Appezzamento 1", istante + (i + 2) * 60_000L, CanaleSensore.TEMPERATURA,
+                        20 + (rnd.nextDouble() - 0.5) * 0.6);
+            }
+            List<Anomalie.Sensore> sensori = c.anomalie.anomalie(c.corrente, null, 10).getSensori();
+            assertEquals(1, sensori.size());
+            Anomalie.Sensore a = sensori.get(0);
+            assertEquals("Appezzamento 1", a.appezzamento());
+            assertEquals(CanaleSensore.TEMPERATURA, a.canale());
+            assertEquals(35, a.valore());
+            assertEquals(20, a.atteso(), 0.3);
+
+            // Solo la partizione corrente ha i sensori
+            ChiavePartizione storica = new ChiavePartizione("Nord", 2022);
+            assertEquals(List.of(), c.anomalie.anomalie(storica, null, 10).getSensori());
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void lettureConcorrentiDaPiuAppezzamenti() throws Exception {
+        Contesto c = new Contesto(new SimulatoreService(3L), 16);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> lavori = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int filo = t;
+                lavori.add(pool.submit(() -> {
+                    Random rnd = new Random(filo);
+                    for (int i = 0; i < 20_000; i++) {
+                        // Due fili per appezzamento: stesso rilevatore aggiornato in concorrenza
+                        String appezzamento = "Appezzamento " + (filo / 2);
+                        double valore = i % 1_000 == 999 ? 90 : 40 + rnd.nextDouble();
+                        c.sensori.registra(appezzamento, i, CanaleSensore.UMIDITA, valore);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : lavori) f.get();
+
+            // 20 picchi per filo, tutti segnalati; il buffer tiene solo i più recenti
+            assertEquals(8 * 20, c.anomalie.getSegnalate());
+            List<Anomalie.Sensore> recenti = c.anomalie.anomalie(c.corrente, null, 100).getSensori();
+            assertEquals(16, recenti.size());
+            for (Anomalie.Sensore a : recenti) assertEquals(90, a.valore());
+        } finally {
+            pool.shutdownNow();
+            c.chiudi();
+        }
+    }
+
+    // Un appezzamento per coltura, raccolto = profilo stagionale ± 3 %, costi lineari nel raccolto
+    private static SorgenteDati stagionale() {
+        return new SorgenteDati() {
+            @Override
+            public String getNome() { return "prova"; }
+
+            @Override
+            public ArchivioColture carica() {
+                CatalogoColture catalogo = ParametriColture.getCatalogo();
+                Random rnd = new Random(11);
+                ArchivioColture.Builder builder = ArchivioColture.builder(catalogo.getNumeroColture());
+                double[] raccolto = new double[12], costi = new double[12];
+                for (int i = 0; i < catalogo.getNumeroColture(); i++) {
+                    double scala = 500 + rnd.nextDouble() * 1_000;
+                    for (int m = 0; m < 12; m++) {
+                        raccolto[m] = scala * catalogo.getProfiloStagionale(i)[m] * (0.97 + rnd.nextDouble() * 0.06);
+                        costi[m] = 100 + raccolto[m] * 0.4;
+                    }
+                    builder.aggiungi(catalogo.getNome(i), 2, 30, raccolto, costi);
+                }
+                return builder.build();
+            }
+        };
+    }
+
+    private static int idColtura(SnapshotSimulazione s, String nome) {
+        IndiceIntervalli indice = IndiceIntervalli.di(s);
+        for (int id = 0; id < indice.getNumeroColture(); id++) {
+            if (nome.equals(indice.getNome(id))) return id;
+        }
+        throw new AssertionError(nome);
+    }
+
+    // Servizi collegati su una partizione corrente Nord/2024
+    private static final class Contesto {
+        final PartizioniService partizioni;
+        final SensoriService sensori;
+        final AggiornamentiService aggiornamenti;
+        final AnomalieService anomalie;
+        final ChiavePartizione corrente;
+
+        Contesto(SimulatoreService simulatore) {
+            this(simulatore, 256);
+        }
+
+        Contesto(SimulatoreService simulatore, int recenti) {
+            partizioni = new PartizioniService(simulatore,
+                    new CatalogoPartizioniSimulate(List.of("Nord"), 2022, 2023), "Nord", 2024, 4, 1);
+            sensori = new SensoriService(simulatore, 1024, 10);
+            aggiornamenti = new AggiornamentiService(simulatore);
+            anomalie = new AnomalieService(partizioni, sensori, 3, 0.05, 20, recenti);
+            corrente = partizioni.getCorrente();
+        }
+
+        void chiudi() {
+            partizioni.chiudi();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cache dei risultati: limiti di voci e di peso, voci frequenti che resistono
+ * a una scansione, un solo calcolo per chiave sotto richieste concorrenti,
+ * invalidazione per versione e ricalcolo anticipato.
+ */
+class CacheRisultatiTest {
+
+    @Test
+    void limitiDiVociEPeso() {
+        CacheRisultati<Integer, String> perNumero = new CacheRisultati<>(100, Long.MAX_VALUE, v -> 1, k -> 0, k -> "v" + k);
+        for (int i = 0; i < 10_000; i++) assertEquals("v" + i, perNumero.get(i));
+        assertTrue(perNumero.getDimensione() <= 100, "voci: " + perNumero.getDimensione());
+        assertEquals(10_000 - perNumero.getDimensione(), perNumero.getEspulsioni());
+
+        // Ogni valore pesa quanto la sua lunghezza; uno più pesante del limite non viene tenuto
+        CacheRisultati<Integer, String> perPeso = new CacheRisultati<>(1_000, 500, String::length, k -> 0, "x"::repeat);
+        for (int i = 1; i <= 200; i++) perPeso.get(i);
+        assertTrue(perPeso.getPeso() <= 500, "peso: " + perPeso.getPeso());
+        perPeso.get(600);
+        assertTrue(perPeso.getPeso() <= 500);
+    }
+
+    @Test
+    void vociFrequentiResistonoAUnaScansione() {
+        CacheRisultati<Integer, Integer> cache = new CacheRisultati<>(200, Long.MAX_VALUE, v -> 1, k -> 0, k -> k);
+        // 100 chiavi frequenti, ognuna riletta ogni 300 chiavi distinte (100 frequenti
+        // + 200 viste una volta sola): una LRU da 200 voci le perderebbe tutte
+        int scansione = 1_000;
+        long mancatiFrequenti = 0;
+        for (int giro = 0; giro < 100; giro++) {
+            for (int k = 0; k < 100; k++) {
+                long prima = cache.getMancati();
+                cache.get(k);
+                if (giro >= 10) mancatiFrequenti += cache.getMancati() - prima;
+                cache.get(scansione++);
+                cache.get(scansione++);
+            }
+        }
+        assertTrue(mancatiFrequenti < 900, "mancati sulle chiavi frequenti: " + mancatiFrequenti + " su 9000");
+    }
+
+    @Test
+    void unSoloCalcoloPerChiave() throws Exception {
+        AtomicInteger calcoli = new AtomicInteger();
+        CountDownLatch via = new CountDownLatch(1);
+        CacheRisultati<String, Integer> cache = new CacheRisultati<>(10, 1_000, v -> 1, k -> 0, k -> {
+            calcoli.incrementAndGet();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 42;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> risultati = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                risultati.add(pool.submit(() -> {
+                    via.await();
+                    return cache.get("pagina");
+                }));
+            }
+            via.countDown();
+            for (Future<Integer> r : risultati) assertEquals(42, r.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, calcoli.get());
+        assertEquals(1, cache.getMancati());
+        assertEquals(63, cache.getSuccessi());
+    }
+
+    @Test
+    void versioneErroriEAggiornamentoAnticipato() throws Exception {
+        AtomicLong versione = new AtomicLong(1);
+        AtomicInteger calcoli = new AtomicInteger();
+        CacheRisultati<Integer, String> cache = new CacheRisultati<>(100, 1_000, v -> 1, k -> versione.get(), k -> {
+            if (k < 0) throw new IllegalArgumentException("chiave negativa");
+            calcoli.incrementAndGet();
+            return k + "@" + versione.get();
+        });
+
+        assertEquals("1@1", cache.get(1));
+        assertEquals("1@1", cache.get(1));
+        assertEquals("2@1", cache.get(2));          // vista una volta sola
+        assertEquals(2, calcoli.get());
+
+        // Gli errori arrivano al chiamante e non restano in cache
+        assertThrows(IllegalArgumentException.class, () -> cache.get(-1));
+        assertThrows(IllegalArgumentException.class, () -> cache.get(-1));
+
+        // Nuova versione: solo la voce usata più volte viene ricalcolata in anticipo
+        versione.set(2);
+        assertEquals(1, cache.aggiornaInAnticipo(10, Runnable::run));
+        assertEquals(1, cache.getAnticipati());
+        assertEquals(3, calcoli.get());
+        assertEquals("1@2", cache.get(1));
+        assertEquals(3, calcoli.get());
+        assertEquals("2@2", cache.get(2));          // scaduta: ricalcolata alla richiesta
+        assertEquals(4, calcoli.get());
+
+        cache.invalida();
+        assertEquals(0, cache.getDimensione());
+        assertEquals("1@2", cache.get(1));
+        assertEquals(5, calcoli.get());
+    }
+
+    @Test
+    void risultatiFiltratiPerColtura() {
+        SimulatoreService simulatore = new SimulatoreService(5L);
+        PartizioniService partizioni = new PartizioniService(simulatore,
+                new CatalogoPartizioniSimulate(List.of("Nord"), 2022, 2023), "Nord", 2024, 4, 1);
+        RisultatiService risultati = new RisultatiService(partizioni, simulatore, 100, 64, 8);
+        try {
+            ChiavePartizione corrente = partizioni.getCorrente();
+            String coltura = simulatore.getSnapshot().getArchivio().getNome(0);
+
+            DatiProduzione tutte = risultati.getDatiProduzione(corrente, 3, 3, List.of());
+            assertSame(simulatore.getSnapshot().getDatiMensili(3), tutte);
+
+            DatiProduzione una = risultati.getDatiProduzione(corrente, 3, 5, List.of(coltura, " "));
+            IndiceIntervalli indice = IndiceIntervalli.di(simulatore.getSnapshot());
+            int id = indice.getIdNome(coltura);
+            assertEquals(indice.somma(Metrica.RACCOLTO, id, 3, 5), una.getQuantitaRaccolto(), 1e-9);
+            assertEquals(0, una.getMese());
+            assertSame(una, risultati.getDatiProduzione(corrente, 3, 5, List.of(coltura)));
+
+            double[] serie = risultati.getSerieMensile(corrente, Metrica.COSTI, List.of(coltura));
+            assertEquals(indice.somma(Metrica.COSTI, id, 7, 7), serie[6], 1e-9);
+            assertThrows(NoSuchElementException.class,
+                    () -> risultati.getDatiProduzione(corrente, 1, 12, List.of("Inesistente")));
+        } finally {
+            risultati.chiudi();
+            partizioni.chiudi();
+        }
+    }
+}
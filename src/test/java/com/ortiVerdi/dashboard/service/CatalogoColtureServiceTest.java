@@ -0,0 +1,80 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CatalogoColture;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import com.ortiVerdi.dashboard.data.SorgenteDatiSimulati;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Catalogo delle colture da file: ricarica a caldo quando il file cambia,
+ * catalogo precedente mantenuto se il nuovo non è valido.
+ */
+class CatalogoColtureServiceTest {
+
+    private static final String INTESTAZIONE = "Nome;Prezzo/Unita;Consumo idrico per kg;Colore;"
+            + "Gen;Feb;Mar;Apr;Mag;Giu;Lug;Ago;Set;Ott;Nov;Dic\n";
+    private static final String POMODORO = "Pomodoro;2.0;2.0;#FF0000;0;0;0.1;0.3;0.6;1;1;0.9;0.6;0.3;0.1;0\n";
+
+    private final CatalogoColture originale = ParametriColture.getCatalogo();
+
+    @TempDir
+    Path cartella;
+
+    @AfterEach
+    void ripristina() {
+        ParametriColture.impostaCatalogo(originale);
+    }
+
+    @Test
+    void catalogoPredefinitoIndicizzato() throws Exception {
+        CatalogoColture c;
+        try (InputStream in = getClass().getResourceAsStream("/data/catalogo_colture.csv")) {
+            c = CatalogoColture.carica(in);
+        }
+        assertEquals(7, c.getNumeroColture());
+        int uva = c.indice("Uva");
+        assertEquals("Uva", c.getNome(uva));
+        assertEquals(2.5, c.getConsumoIdricoPerKg(uva));
+        assertEquals("#00008B", c.getColore(uva));
+        assertEquals(1.0, c.getProfiloStagionale(uva)[6]);
+        assertEquals(-1, c.indice("Mango"));
+        assertEquals(0.0, c.getConsumoIdricoPerKg("Mango"));
+    }
+
+    @Test
+    void ricaricaACaldoConScambioAtomico() throws Exception {
+        Path file = cartella.resolve("catalogo.csv");
+        Files.writeString(file, INTESTAZIONE + POMODORO);
+        CatalogoColtureService servizio = new CatalogoColtureService(new FileSystemResource(file));
+        CatalogoColture primo = ParametriColture.getCatalogo();
+        assertEquals(1, primo.getNumeroColture());
+
+        // Nuova coltura nel file: viene vista dal controllo periodico
+        Files.writeString(file, INTESTAZIONE + POMODORO + "Mango;3.0;4.0;#FFA500;0;0;0;0;0.5;1;1;0.5;0;0;0;0\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        servizio.controllaModifiche();
+        CatalogoColture secondo = ParametriColture.getCatalogo();
+        assertTrue(secondo.getVersione() > primo.getVersione());
+        assertEquals(4.0, ParametriColture.getConsumoIdricoPerKg("Mango"));
+        assertEquals(2, new SorgenteDatiSimulati(1L).carica().getNumeroRighe());
+        // Chi aveva preso il catalogo precedente continua a vederlo invariato
+        assertEquals(1, primo.getNumeroColture());
+
+        // File non valido (colore errato): resta il catalogo precedente
+        Files.writeString(file, INTESTAZIONE + "Mango;3.0;4.0;arancione;0;0;0;0;0.5;1;1;0.5;0;0;0;0\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 20_000));
+        servizio.controllaModifiche();
+        assertSame(secondo, ParametriColture.getCatalogo());
+        assertEquals(1, servizio.getRicaricheFallite());
+    }
+}
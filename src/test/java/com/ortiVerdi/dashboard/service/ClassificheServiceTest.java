@@ -0,0 +1,86 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.model.Coltura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classifiche top-K: l'heap limitato deve dare lo stesso risultato di un
+ * ordinamento completo, e i valori devono coincidere con quelli delle viste Coltura.
+ */
+class ClassificheServiceTest {
+
+    private final SimulatoreService simulatore = new SimulatoreService(21L);
+    private final PartizioniService partizioni = new PartizioniService(simulatore,
+            new CatalogoPartizioniSimulate(List.of("Nord"), 2023, 2023), "Nord", 2024, 2, 1);
+    private final ClassificheService classifiche = new ClassificheService(partizioni);
+
+    @AfterEach
+    void chiudi() {
+        partizioni.chiudi();
+    }
+
+    @Test
+    void heapLimitatoComeOrdinamentoCompleto() {
+        Random caso = new Random(5);
+        double[] chiavi = new double[5000];
+        for (int i = 0; i < chiavi.length; i++) chiavi[i] = caso.nextInt(200);   // molti pari merito
+
+        HeapLimitato heap = new HeapLimitato(25);
+        for (int i = 0; i < chiavi.length; i++) heap.offri(i, chiavi[i]);
+
+        int[] attese = IntStream.range(0, chiavi.length).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> -chiavi[i]).thenComparingInt(i -> i))
+                .limit(25).mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(attese, heap.estraiOrdinate());
+        assertEquals(0, heap.getDimensione());
+    }
+
+    @Test
+    void classificaUgualeAlleVisteColtura() {
+        List<Coltura> colture = simulatore.getSnapshot().getColture();
+        int k = Math.min(3, colture.size());
+
+        Classifica primi = classifiche.classifica(partizioni.getCorrente(), CriterioClassifica.PROFITTO, k, true, null);
+        List<Double> attesi = colture.stream().map(Coltura::getProfittoAnnuale)
+                .sorted(Comparator.reverseOrder()).limit(k).toList();
+        assertEquals(attesi, primi.getVoci().stream().map(Classifica.Voce::getValore).toList());
+        assertEquals(colture.size(), primi.getCandidati());
+        assertEquals(1, primi.getVoci().get(0).getPosizione());
+
+        Classifica ultimi = classifiche.classifica(partizioni.getCorrente(), CriterioClassifica.MARGINE_UNITA, k, false, null);
+        Classifica.Voce peggiore = ultimi.getVoci().get(0);
+        double minimo = colture.stream().filter(c -> c.getQuantitaAnnuale() > 0)
+                .mapToDouble(Coltura::getMarginePerUnita).min().orElseThrow();
+        assertEquals(minimo, peggiore.getValore(), 1e-9);
+        assertEquals(colture.get(peggiore.getRiga()).getMarginePerUnita(), peggiore.getValore(), 1e-9);
+
+        Classifica crescita = classifiche.classifica(partizioni.getCorrente(), CriterioClassifica.CRESCITA_MENSILE, k, true, 6);
+        assertEquals(6, crescita.getMese());
+        Classifica.Voce prima = crescita.getVoci().get(0);
+        double[] raccolto = colture.get(prima.getRiga()).getRaccoltoMensile();
+        assertEquals((raccolto[5] - raccolto[4]) / raccolto[4] * 100, prima.getValore(), 1e-9);
+
+        // Le pagine successive continuano la classifica senza sovrapporsi
+        Classifica tutti = classifiche.classifica(partizioni.getCorrente(), CriterioClassifica.PROFITTO, colture.size(), true, null);
+        Classifica seconda = classifiche.classifica(partizioni.getCorrente(), CriterioClassifica.PROFITTO, k, k, true, null);
+        assertEquals(tutti.getVoci().subList(k, Math.min(2 * k, colture.size())).stream().map(Classifica.Voce::getRiga).toList(),
+                seconda.getVoci().stream().map(Classifica.Voce::getRiga).toList());
+        if (!seconda.getVoci().isEmpty()) assertEquals(k + 1, seconda.getVoci().get(0).getPosizione());
+
+        assertThrows(IllegalArgumentException.class, () -> classifiche.classifica(partizioni.getCorrente(),
+                CriterioClassifica.CRESCITA_MENSILE, k, true, 1));
+        assertThrows(IllegalArgumentException.class, () -> classifiche.classifica(partizioni.getCorrente(),
+                CriterioClassifica.PROFITTO, -1, k, true, null));
+        assertThrows(IllegalArgumentException.class, () -> classifiche.classifica(partizioni.getCorrente(),
+                CriterioClassifica.PROFITTO, 0, true, null));
+    }
+}
@@ -0,0 +1,80 @@
+package com.ortiVerdi.dashboard.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Assemblaggio concorrente dei pezzi di pagina: i pezzi girano in parallelo,
+ * il primo errore annulla gli altri e arriva a chi chiama così com'è, la
+ * scadenza della richiesta diventa ScadenzaPaginaException.
+ */
+class CompositoreConExecutorTest {
+
+    @Test
+    void pezziInParalleloEInSequenza() {
+        for (int thread : new int[]{4, 0}) {
+            CompositoreConExecutor compositore = new CompositoreConExecutor(2000, thread);
+            try (CompositorePagina.Ambito ambito = compositore.apri()) {
+                Supplier<Integer> a = ambito.avvia(() -> 1);
+                Supplier<String> b = ambito.avvia(() -> "due");
+                ambito.attendi();
+                assertEquals(1, a.get());
+                assertEquals("due", b.get());
+            } finally {
+                compositore.chiudi();
+            }
+        }
+    }
+
+    @Test
+    void primoErroreAnnullaGliAltri() throws Exception {
+        CompositoreConExecutor compositore = new CompositoreConExecutor(5000, 4);
+        CountDownLatch avviato = new CountDownLatch(1), interrotto = new CountDownLatch(1);
+        try (CompositorePagina.Ambito ambito = compositore.apri()) {
+            ambito.avvia(() -> lento(avviato, interrotto));
+            // Fallisce solo quando il pezzo lento è partito: annullato prima di partire non verrebbe interrotto
+            ambito.avvia(() -> {
+                assertTrue(avviato.await(5, TimeUnit.SECONDS), "il pezzo lento parte");
+                throw new IllegalArgumentException("mese non valido");
+            });
+            long inizio = System.nanoTime();
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, ambito::attendi);
+            assertEquals("mese non valido", e.getMessage());
+            assertTrue(System.nanoTime() - inizio < TimeUnit.SECONDS.toNanos(5), "attendi() non aspetta il pezzo lento");
+            assertTrue(interrotto.await(5, TimeUnit.SECONDS), "il pezzo lento viene interrotto");
+        } finally {
+            compositore.chiudi();
+        }
+    }
+
+    @Test
+    void scadenzaDellaRichiesta() throws Exception {
+        CompositoreConExecutor compositore = new CompositoreConExecutor(100, 2);
+        CountDownLatch avviato = new CountDownLatch(1), interrotto = new CountDownLatch(1);
+        try (CompositorePagina.Ambito ambito = compositore.apri()) {
+            ambito.avvia(() -> 1);
+            ambito.avvia(() -> lento(avviato, interrotto));
+            assertTrue(avviato.await(5, TimeUnit.SECONDS), "il pezzo lento parte");
+            assertThrows(ScadenzaPaginaException.class, ambito::attendi);
+            assertTrue(interrotto.await(5, TimeUnit.SECONDS));
+        } finally {
+            compositore.chiudi();
+        }
+    }
+
+    // Pezzo che segnala la partenza e poi aspetta di essere interrotto
+    private static Object lento(CountDownLatch avviato, CountDownLatch interrotto) {
+        avviato.countDown();
+        try {
+            Thread.sleep(10_000);
+        } catch (InterruptedException e) {
+            interrotto.countDown();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,233 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.FormatoEsportazione;
+import com.ortiVerdi.dashboard.data.LettoreColonnare;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import com.ortiVerdi.dashboard.data.SorgenteDati;
+import com.ortiVerdi.dashboard.data.SorgenteDatiCsv;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Esportazioni: il CSV delle colture si reimporta con gli stessi valori, il
+ * colonnare si rilegge per intero ed è più piccolo del CSV, l'uscita arriva
+ * allo stream a blocchi limitati, le tabelle mensili e le letture dei sensori
+ * hanno le righe attese.
+ */
+class EsportazioneServiceTest {
+
+    private static final int RIGHE = 30_000;
+
+    @Test
+    void csvDelleColtureSiReimportaConGliStessiValori() throws IOException {
+        Contesto c = new Contesto(archivioCasuale(RIGHE));
+        try {
+            byte[] csv = esporta(c, TabellaEsportazione.COLTURE, FormatoEsportazione.CSV);
+            ArchivioColture originale = c.partizioni.getSnapshot(c.corrente).getArchivio();
+            ArchivioColture riletto = new SorgenteDatiCsv(new ByteArrayResource(csv), false)
+                    .carica(new ByteArrayInputStream(csv));
+
+            assertEquals(RIGHE, riletto.getNumeroRighe());
+            for (int r = 0; r < RIGHE; r++) {
+                assertEquals(originale.getNome(r), riletto.getNome(r));
+                assertEquals(originale.getPrezzo(r), riletto.getPrezzo(r));
+                for (int m = 0; m < 12; m++) {
+                    assertEquals(originale.getRaccolto(r, m), riletto.getRaccolto(r, m));
+                    assertEquals(originale.getCosto(r, m), riletto.getCosto(r, m));
+                }
+            }
+
+            // Stessa intestazione del file delle colture
+            try (InputStream in = getClass().getResourceAsStream("/data/dati_colture.csv")) {
+                String intestazione = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).readLine();
+                assertTrue(new String(csv, 0, 1_000, StandardCharsets.UTF_8).startsWith(intestazione + "\n"));
+            }
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void colonnareSiRileggePerInteroEPiuPiccoloDelCsv() throws IOException {
+        Contesto c = new Contesto(archivioCasuale(RIGHE));
+        try {
+            byte[] colonnare = esporta(c, TabellaEsportazione.COLTURE, FormatoEsportazione.COLONNARE);
+            byte[] csv = esporta(c, TabellaEsportazione.COLTURE, FormatoEsportazione.CSV);
+            ArchivioColture a = c.partizioni.getSnapshot(c.corrente).getArchivio();
+
+            LettoreColonnare lettore = new LettoreColonnare(new ByteArrayInputStream(colonnare));
+            assertEquals(27, lettore.getColonne().size());
+            assertEquals("Consumo idrico/kg", lettore.getColonne().get(26).nome());
+            int[] riga = {0};
+            long righe = lettore.leggi((n, colonne) -> {
+                for (int i = 0; i < n; i++, riga[0]++) {
+                    int r = riga[0];
+                    assertEquals(a.getNome(r), ((String[]) colonne[0])[i]);
+                    assertEquals(a.getPrezzo(r), ((double[]) colonne[1])[i]);
+                    for (int m = 0; m < 12; m++) {
+                        assertEquals(a.getRaccolto(r, m), ((double[]) colonne[2 + m])[i]);
+                        assertEquals(a.getCosto(r, m), ((double[]) colonne[14 + m])[i]);
+                    }
+                    assertEquals(a.getConsumoIdricoPerKg(r), ((double[]) colonne[26])[i]);
+                }
+            });
+            assertEquals(RIGHE, righe);
+            assertTrue(colonnare.length < csv.length * 0.6, colonnare.length + " byte contro " + csv.length);
+
+            // Un file troncato viene riconosciuto
+            byte[] troncato = Arrays.copyOf(colonnare, colonnare.length - 5);
+            assertThrows(IOException.class, () -> new LettoreColonnare(new ByteArrayInputStream(troncato)).leggi((n, col) -> { }));
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void lUscitaArrivaAlloStreamABlocchiLimitati() throws IOException {
+        Contesto c = new Contesto(archivioCasuale(RIGHE));
+        try {
+            for (FormatoEsportazione formato : FormatoEsportazione.values()) {
+                Blocchi out = new Blocchi();
+                c.esportazioni.prepara(c.corrente, TabellaEsportazione.COLTURE, formato, false).scrivi(out);
+                assertTrue(out.scritture > 10, formato + ": " + out.scritture + " scritture");
+                assertTrue(out.massimo <= 1 << 17, formato + ": blocco di " + out.massimo + " byte");
+            }
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void tabelleMensiliELettureDeiSensori() throws IOException {
+        Contesto c = new Contesto(archivioCasuale(10));
+        try {
+            SnapshotSimulazione s = c.partizioni.getSnapshot(c.corrente);
+            String[] mensili = new String(esporta(c, TabellaEsportazione.MENSILI, FormatoEsportazione.CSV),
+                    StandardCharsets.UTF_8).split("\n");
+            assertEquals(13, mensili.length);
+            assertEquals("Mese;Raccolto;Consumo idrico;Costi;Profitto", mensili[0]);
+            assertEquals(s.getDatiMensili(7).getQuantitaRaccolto(), Double.parseDouble(mensili[7].split(";")[1]));
+            String[] ambientali = new String(esporta(c, TabellaEsportazione.AMBIENTALI, FormatoEsportazione.CSV),
+                    StandardCharsets.UTF_8).split("\n");
+            assertEquals(13, ambientali.length);
+            assertEquals(s.getDatiAmbientali(1).getTemperatura(), Double.parseDouble(ambientali[1].split(";")[1]));
+
+            for (int i = 0; i < 100; i++) {
+                c.sensori.registra("Appezzamento B", 1_000L * i, CanaleSensore.TEMPERATURA, 20 + i * 0.1);
+                c.sensori.registra("Appezzamento A", 1_000L * i, CanaleSensore.UMIDITA, 60);
+            }
+            byte[] letture = esporta(c, TabellaEsportazione.LETTURE, FormatoEsportazione.COLONNARE);
+            List<String> appezzamenti = new ArrayList<>();
+            long righe = new LettoreColonnare(new ByteArrayInputStream(letture)).leggi((n, colonne) -> {
+                for (int i = 0; i < n; i++) {
+                    String a = ((String[]) colonne[0])[i];
+                    if (appezzamenti.isEmpty() || !appezzamenti.get(appezzamenti.size() - 1).equals(a)) appezzamenti.add(a);
+                }
+                assertEquals("umidita", ((String[]) colonne[1])[0]);
+                assertEquals(0L, ((long[]) colonne[2])[0]);
+                assertEquals(99_000L, ((long[]) colonne[2])[n - 1]);
+                assertEquals(20 + 99 * 0.1, ((double[]) colonne[3])[n - 1]);
+            });
+            assertEquals(200, righe);
+            assertEquals(List.of("Appezzamento A", "Appezzamento B"), appezzamenti);
+
+            // Le letture esistono solo per la partizione corrente; una partizione inesistente è un 404
+            assertThrows(IllegalArgumentException.class, () -> c.esportazioni.prepara(new ChiavePartizione("Nord", 2022),
+                    TabellaEsportazione.LETTURE, FormatoEsportazione.CSV, false));
+            assertThrows(NoSuchElementException.class, () -> c.esportazioni.prepara(new ChiavePartizione("Sud", 2022),
+                    TabellaEsportazione.COLTURE, FormatoEsportazione.CSV, false));
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    private static byte[] esporta(Contesto c, TabellaEsportazione tabella, FormatoEsportazione formato) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.esportazioni.prepara(c.corrente, tabella, formato, false).scrivi(out);
+        return out.toByteArray();
+    }
+
+    // Colture del catalogo con raccolti e costi a due decimali, come nei dati reali, e qualche valore a precisione piena
+    private static SorgenteDati archivioCasuale(int righe) {
+        return new SorgenteDati() {
+            @Override
+            public String getNome() { return "prova"; }
+
+            @Override
+            public ArchivioColture carica() {
+                Random rnd = new Random(9);
+                ArchivioColture.Builder builder = ArchivioColture.builder(righe);
+                double[] raccolto = new double[12], costi = new double[12];
+                for (int r = 0; r < righe; r++) {
+                    int i = r % ParametriColture.getNumeroColture();
+                    for (int m = 0; m < 12; m++) {
+                        raccolto[m] = Math.round(rnd.nextDouble() * 500_000) / 100.0;
+                        costi[m] = r % 100 == 0 ? rnd.nextDouble() * 1e4 : Math.round(rnd.nextDouble() * 200_000) / 100.0;
+                    }
+                    String nome = ParametriColture.getNome(i);
+                    builder.aggiungi(nome, ParametriColture.getPrezzoUnitario(i),
+                            ParametriColture.getConsumoIdricoPerKg(nome), raccolto, costi);
+                }
+                return builder.build();
+            }
+        };
+    }
+
+    // Conta le scritture sullo stream e la più grande
+    private static final class Blocchi extends OutputStream {
+        int scritture;
+        int massimo;
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int da, int n) {
+            scritture++;
+            massimo = Math.max(massimo, n);
+        }
+    }
+
+    // Servizi collegati su una partizione corrente Nord/2024
+    private static final class Contesto {
+        final PartizioniService partizioni;
+        final SensoriService sensori;
+        final EsportazioneService esportazioni;
+        final ChiavePartizione corrente;
+
+        Contesto(SorgenteDati sorgente) {
+            SimulatoreService simulatore = new SimulatoreService(sorgente, 3L, null, true);
+            partizioni = new PartizioniService(simulatore,
+                    new CatalogoPartizioniSimulate(List.of("Nord"), 2022, 2023), "Nord", 2024, 4, 1);
+            sensori = new SensoriService(simulatore, 1024, 10);
+            esportazioni = new EsportazioneService(partizioni, sensori);
+            corrente = partizioni.getCorrente();
+        }
+
+        void chiudi() {
+            partizioni.chiudi();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Interrogazioni su intervalli: somme prefisse uguali alla somma diretta delle
+ * celle, raggruppamenti tagliati sull'intervallo e confronto con l'anno precedente.
+ */
+class InterrogazioniServiceTest {
+
+    private final SimulatoreService simulatore = new SimulatoreService(13L);
+    private final PartizioniService partizioni = new PartizioniService(simulatore,
+            new CatalogoPartizioniSimulate(List.of("Nord"), 2021, 2023), "Nord", 2024, 4, 2);
+    private final InterrogazioniService interrogazioni = new InterrogazioniService(partizioni);
+
+    @AfterEach
+    void chiudi() {
+        partizioni.chiudi();
+    }
+
+    @Test
+    void intervalloUgualeAllaSommaDelleCelle() {
+        ArchivioColture a = simulatore.getSnapshot().getArchivio();
+        RisultatoInterrogazione r = interrogazioni.interroga(partizioni.getCorrente(), Metrica.PROFITTO, 3, 8,
+                Raggruppamento.TRIMESTRE, List.of("Pomodoro", "Uva"), false);
+
+        double atteso = 0;
+        for (int riga = 0; riga < a.getNumeroRighe(); riga++) {
+            String nome = a.getNome(riga);
+            if (!nome.equals("Pomodoro") && !nome.equals("Uva")) continue;
+            for (int m = 2; m <= 7; m++) atteso += a.valoreCella(Metrica.PROFITTO, riga, m);
+        }
+        assertEquals(atteso, r.getTotale(), 1e-6);
+        assertEquals(2, r.getPerColtura().size());
+
+        // Mar-Ago per trimestri: T1 = solo Mar, T2 = Apr-Giu, T3 = Lug-Ago
+        assertEquals(List.of("T1", "T2", "T3"), r.getGruppi().stream().map(RisultatoInterrogazione.ValoreGruppo::getEtichetta).toList());
+        assertEquals(List.of(3), r.getGruppi().get(0).getMesi());
+        assertEquals(List.of(7, 8), r.getGruppi().get(2).getMesi());
+        double somma = r.getGruppi().stream().mapToDouble(RisultatoInterrogazione.ValoreGruppo::getValore).sum();
+        assertEquals(r.getTotale(), somma, 1e-6);
+        assertNull(r.getTotalePrecedente());
+
+        assertThrows(NoSuchElementException.class, () -> interrogazioni.interroga(partizioni.getCorrente(),
+                Metrica.RACCOLTO, 1, 12, Raggruppamento.ANNO, List.of("Mango"), false));
+        assertThrows(IllegalArgumentException.class, () -> interrogazioni.interroga(partizioni.getCorrente(),
+                Metrica.RACCOLTO, 9, 3, Raggruppamento.ANNO, List.of(), false));
+    }
+
+    @Test
+    void stagioniEConfrontoConAnnoPrecedente() {
+        ChiavePartizione chiave = new ChiavePartizione("Nord", 2023);
+        RisultatoInterrogazione r = interrogazioni.interroga(chiave, Metrica.RACCOLTO, 1, 12,
+                Raggruppamento.STAGIONE, List.of(), true);
+
+        // L'inverno dello stesso anno solare è Gen, Feb e Dic
+        assertEquals(List.of(1, 2, 12), r.getGruppi().get(0).getMesi());
+        assertEquals(2022, r.getAnnoPrecedente());
+        double[] precedente = partizioni.getSnapshot(new ChiavePartizione("Nord", 2022)).getArchivio().totaliMensili(Metrica.RACCOLTO);
+        assertEquals(precedente[0] + precedente[1] + precedente[11], r.getGruppi().get(0).getPrecedente(), 1e-6);
+        assertEquals((r.getTotale() - r.getTotalePrecedente()) / r.getTotalePrecedente() * 100, r.getVariazione(), 1e-9);
+
+        // Il primo anno del catalogo non ha un anno precedente
+        assertNull(interrogazioni.interroga(new ChiavePartizione("Nord", 2021), Metrica.RACCOLTO, 1, 12,
+                Raggruppamento.ANNO, List.of(), true).getAnnoPrecedente());
+    }
+}
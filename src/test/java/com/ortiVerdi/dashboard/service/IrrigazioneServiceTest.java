@@ -0,0 +1,239 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CatalogoColture;
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.ParametriColture;
+import com.ortiVerdi.dashboard.data.SorgenteDati;
+import com.ortiVerdi.dashboard.data.TabellaResa;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Piano di irrigazione: con acqua a volontà coincide con il modello di resa,
+ * con budget limitato è la soluzione ottima dello zaino frazionario, cambiare
+ * budget o pioggia di un mese ricalcola solo quello che serve, 10 000
+ * appezzamenti si pianificano in meno di un secondo.
+ */
+class IrrigazioneServiceTest {
+
+    @Test
+    void acquaAVolontaCoincideConIlModelloDiResa() {
+        Contesto c = new Contesto(new SimulatoreService(7L));
+        try {
+            SnapshotSimulazione s = c.partizioni.getSnapshot(c.corrente);
+            PianoIrrigazione piano = c.irrigazione.pianifica(c.corrente, mensili(1e15), null, 0, false);
+            StimaResa stima = c.modello.stima(s, new ScenarioMeteo());
+
+            assertArrayEquals(stima.getConsumoIdrico(), piano.getFabbisogno(), 1e-6);
+            assertArrayEquals(piano.getFabbisogno(), piano.getAcquaAssegnata(), 1e-6);
+            assertArrayEquals(stima.getProfitto(), piano.getProfitto(), 1e-6);
+            assertArrayEquals(new double[12], piano.getValoreMarginale());
+
+            // Senza acqua resta solo il raccolto che non ne ha bisogno, i costi restano tutti
+            PianoIrrigazione secco = c.irrigazione.pianifica(c.corrente, mensili(0), null, 0, false);
+            assertArrayEquals(new double[12], secco.getAcquaAssegnata());
+            for (int m = 0; m < 12; m++) {
+                assertEquals(s.getDatiMensili(m + 1).getCostiProduzione(), secco.getCosti()[m], 1e-6);
+                assertTrue(secco.getProfitto()[m] <= piano.getProfitto()[m] + 1e-9);
+            }
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void budgetLimitatoDaLaSoluzioneOttima() {
+        Contesto c = new Contesto(new SimulatoreService(7L));
+        try {
+            SnapshotSimulazione s = c.partizioni.getSnapshot(c.corrente);
+            double[] budget = new double[12];
+            PianoIrrigazione pieno = c.irrigazione.pianifica(c.corrente, mensili(1e15), null, 0, false);
+            for (int m = 0; m < 12; m++) budget[m] = pieno.getFabbisogno()[m] * 0.4;
+
+            PianoIrrigazione piano = c.irrigazione.pianifica(c.corrente, budget, null, 0, true);
+            double[] atteso = ricavoOttimo(s, c.modello.getTabella(), budget, 0);
+            for (int m = 0; m < 12; m++) {
+                assertEquals(budget[m], piano.getAcquaAssegnata()[m], 1e-6 * (1 + budget[m]));
+                assertEquals(atteso[m], piano.getRicavo()[m], 1e-6 * (1 + atteso[m]));
+                if (budget[m] > 0) assertTrue(piano.getValoreMarginale()[m] > 0);
+            }
+
+            // Il dettaglio per appezzamento somma all'acqua assegnata e resta entro il fabbisogno
+            double[] somma = new double[12];
+            for (PianoIrrigazione.Appezzamento a : piano.getAppezzamenti()) {
+                for (int m = 0; m < 12; m++) {
+                    assertTrue(a.litri()[m] <= a.fabbisogno()[m] + 1e-9);
+                    somma[m] += a.litri()[m];
+                }
+            }
+            assertArrayEquals(piano.getAcquaAssegnata(), somma, 1e-6);
+
+            // Con un prezzo dell'acqua alto si irriga meno, anche se il budget basterebbe
+            double prezzo = 0.05;
+            PianoIrrigazione caro = c.irrigazione.pianifica(c.corrente, mensili(1e15), null, prezzo, false);
+            double[] attesoCaro = ricavoOttimo(s, c.modello.getTabella(), mensili(1e15), prezzo);
+            for (int m = 0; m < 12; m++) {
+                assertTrue(caro.getAcquaAssegnata()[m] <= pieno.getAcquaAssegnata()[m] + 1e-6);
+                assertEquals(attesoCaro[m], caro.getRicavo()[m], 1e-6 * (1 + attesoCaro[m]));
+            }
+            assertThrows(IllegalArgumentException.class,
+                    () -> c.irrigazione.pianifica(c.corrente, mensili(-1), null, 0, false));
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void budgetEPioggiaRicalcolanoSoloIlNecessario() {
+        Contesto c = new Contesto(new SimulatoreService(7L));
+        try {
+            CacheRisultati<?, ?> cache = c.irrigazione.getCache();
+            c.irrigazione.pianifica(c.corrente, mensili(5_000), null, 0, false);
+            assertEquals(12, cache.getMancati());
+
+            // Nuovo budget: stesse graduatorie
+            c.irrigazione.pianifica(c.corrente, mensili(9_000), null, 0, false);
+            assertEquals(12, cache.getMancati());
+
+            // Pioggia diversa solo a luglio: una graduatoria nuova
+            double[] pioggia = new double[12];
+            Arrays.fill(pioggia, Double.NaN);
+            pioggia[6] = 5;
+            PianoIrrigazione siccita = c.irrigazione.pianifica(c.corrente, mensili(1e15), pioggia, 0, false);
+            assertEquals(13, cache.getMancati());
+            PianoIrrigazione normale = c.irrigazione.pianifica(c.corrente, mensili(1e15), null, 0, false);
+            assertNotEquals(normale.getFabbisogno()[6], siccita.getFabbisogno()[6]);
+            assertEquals(normale.getFabbisogno()[5], siccita.getFabbisogno()[5]);
+
+            // Un aggiornamento del solo meteo conserva i valori derivati dall'archivio
+            SnapshotSimulazione s = c.partizioni.getSnapshot(c.corrente);
+            DatiAmbientali[] meteo = new DatiAmbientali[12];
+            for (int m = 0; m < 12; m++) meteo[m] = s.getDatiAmbientali(m + 1);
+            SnapshotSimulazione nuovoMeteo = s.conDatiAmbientali(s.getVersione() + 1, meteo);
+            assertEquals(s.getVersioneArchivio(), nuovoMeteo.getVersioneArchivio());
+            Object preparazione = s.derivatoArchivio("prova", x -> new Object());
+            assertSame(preparazione, nuovoMeteo.derivatoArchivio("prova", x -> new Object()));
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    @Test
+    void diecimilaAppezzamentiInMenoDiUnSecondo() {
+        SorgenteDati grande = new SorgenteDati() {
+            @Override
+            public String getNome() { return "prova"; }
+
+            @Override
+            public ArchivioColture carica() {
+                CatalogoColture catalogo = ParametriColture.getCatalogo();
+                Random rnd = new Random(3);
+                ArchivioColture.Builder builder = ArchivioColture.builder(10_000);
+                double[] raccolto = new double[12], costi = new double[12];
+                for (int r = 0; r < 10_000; r++) {
+                    int i = r % catalogo.getNumeroColture();
+                    for (int m = 0; m < 12; m++) {
+                        raccolto[m] = (20 + rnd.nextDouble() * 80) * catalogo.getProfiloStagionale(i)[m];
+                        costi[m] = 5 + raccolto[m] * 0.5;
+                    }
+                    builder.aggiungi(catalogo.getNome(i), 0.5 + rnd.nextDouble() * 3, 10 + rnd.nextDouble() * 50,
+                            raccolto, costi);
+                }
+                return builder.build();
+            }
+        };
+        Contesto c = new Contesto(new SimulatoreService(grande, 3L, null, true));
+        try {
+            PianoIrrigazione piano = c.irrigazione.pianifica(c.corrente, mensili(200_000), null, 0, true);
+            assertTrue(piano.getDurataMs() < 1_000, "durata: " + piano.getDurataMs() + " ms");
+            assertTrue(piano.getAppezzamenti().size() > 5_000);
+
+            // Ripianificare con un altro budget non ricostruisce le graduatorie
+            PianoIrrigazione ripianificato = c.irrigazione.pianifica(c.corrente, mensili(100_000), null, 0, false);
+            assertTrue(ripianificato.getDurataMs() < 200, "durata: " + ripianificato.getDurataMs() + " ms");
+        } finally {
+            c.chiudi();
+        }
+    }
+
+    // ======================================================
+    // Riferimento indipendente: tutti gli appezzamenti del mese ordinati per
+    // ricavo per litro, riempiti fino al budget (l'ultimo in parte)
+    // ======================================================
+    private static double[] ricavoOttimo(SnapshotSimulazione s, TabellaResa tabella, double[] budget, double prezzo) {
+        ArchivioColture a = s.getArchivio();
+        DatiAmbientali[] meteo = new DatiAmbientali[12];
+        for (int m = 0; m < 12; m++) meteo[m] = s.getDatiAmbientali(m + 1);
+        double[] resa = new double[tabella.getNumeroColture() * 12], irr = new double[resa.length];
+        tabella.fattori(meteo, 0, 0, 0, resa, irr);
+        int[] indice = tabella.compila(a);
+
+        double[] ricavi = new double[12];
+        for (int m = 0; m < 12; m++) {
+            List<double[]> voci = new ArrayList<>();   // {fabbisogno, ricavo}
+            for (int r = 0; r < a.getNumeroRighe(); r++) {
+                int c = indice[a.getIdNome(r)];
+                double f = c >= 0 ? resa[c * 12 + m] : 1, i = c >= 0 ? irr[c * 12 + m] : 1;
+                double q = a.getRaccolto(r, m) * f;
+                if (q <= 0) continue;
+                double w = q * a.getConsumoIdricoPerKg(r) * i;
+                if (w > 0) voci.add(new double[]{w, q * a.getPrezzo(r)});
+                else ricavi[m] += q * a.getPrezzo(r);
+            }
+            voci.sort((x, y) -> Double.compare(y[1] / y[0], x[1] / x[0]));
+            double resto = budget[m];
+            for (double[] v : voci) {
+                if (resto <= 0 || v[1] / v[0] < prezzo) break;
+                double usata = Math.min(resto, v[0]);
+                ricavi[m] += v[1] * usata / v[0];
+                resto -= usata;
+            }
+        }
+        return ricavi;
+    }
+
+    private static double[] mensili(double valore) {
+        double[] mesi = new double[12];
+        Arrays.fill(mesi, valore);
+        return mesi;
+    }
+
+    // Servizi collegati su una partizione corrente Nord/2024
+    private static final class Contesto {
+        final PartizioniService partizioni;
+        final ModelloResaService modello;
+        final IrrigazioneService irrigazione;
+        final ChiavePartizione corrente;
+
+        Contesto(SimulatoreService simulatore) {
+            partizioni = new PartizioniService(simulatore,
+                    new CatalogoPartizioniSimulate(List.of("Nord"), 2022, 2023), "Nord", 2024, 4, 1);
+            modello = new ModelloResaService(partizioni, tabella(), 16);
+            irrigazione = new IrrigazioneService(partizioni, modello, 240, 32_768);
+            corrente = partizioni.getCorrente();
+        }
+
+        void chiudi() {
+            partizioni.chiudi();
+        }
+    }
+
+    private static TabellaResa tabella() {
+        try (InputStream in = IrrigazioneServiceTest.class.getResourceAsStream("/data/coefficienti_resa.csv")) {
+            return TabellaResa.carica(in, 18, 80, 20000);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
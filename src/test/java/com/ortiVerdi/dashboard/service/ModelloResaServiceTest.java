@@ -0,0 +1,80 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.data.TabellaResa;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Modello meteo -> resa: neutro con il clima di riferimento, irrigazione che
+ * cresce con meno pioggia, valutazione in blocco uguale alle stime singole.
+ */
+class ModelloResaServiceTest {
+
+    private final SimulatoreService simulatore = new SimulatoreService(11L);
+    private final PartizioniService partizioni = new PartizioniService(simulatore,
+            new CatalogoPartizioniSimulate(List.of("Nord", "Sud"), 2020, 2022), "Nord", 2023, 8, 2);
+    private final ModelloResaService modello = new ModelloResaService(partizioni, tabella(), 16);
+
+    @AfterEach
+    void chiudi() {
+        partizioni.chiudi();
+    }
+
+    @Test
+    void climaDiRiferimentoLasciaInvariatiIDati() {
+        DatiAmbientali[] riferimento = new DatiAmbientali[12];
+        for (int m = 0; m < 12; m++) riferimento[m] = new DatiAmbientali(18, 55, 80, 3, 20000);
+        SnapshotSimulazione s = SnapshotSimulazione.calcola(1, simulatore.getSnapshot().getArchivio(), riferimento);
+
+        StimaResa stima = modello.stima(s, new ScenarioMeteo());
+        assertArrayEquals(s.getArchivio().totaliMensili(Metrica.RACCOLTO), stima.getRaccolto(), 1e-6);
+        assertArrayEquals(s.getArchivio().totaliMensili(Metrica.CONSUMO_IDRICO), stima.getConsumoIdrico(), 1e-6);
+        assertArrayEquals(s.getArchivio().totaliMensili(Metrica.PROFITTO), stima.getProfitto(), 1e-6);
+
+        // Meno pioggia: più acqua di irrigazione per kg raccolto
+        StimaResa siccita = modello.stima(s, new ScenarioMeteo("siccità", 0, -30, 0));
+        for (int m = 0; m < 12; m++) {
+            if (stima.getRaccolto()[m] == 0) continue;
+            assertTrue(siccita.getConsumoIdrico()[m] / siccita.getRaccolto()[m]
+                    > stima.getConsumoIdrico()[m] / stima.getRaccolto()[m]);
+        }
+    }
+
+    @Test
+    void valutazioneInBloccoUgualeAlleStimeSingole() {
+        List<ScenarioMeteo> scenari = List.of(new ScenarioMeteo(), new ScenarioMeteo("caldo", 2, -10, 5));
+        EsitiScenariMeteo esiti = modello.valuta(scenari, Set.of("Sud", "Nord"), 2021, 2023);
+        assertEquals(5, esiti.getPartizioni());   // 2 aziende × 2021-2022 + corrente Nord/2023
+
+        double[] atteso = new double[12];
+        for (EsitiScenariMeteo.Partizione p : esiti.getPerPartizione()) {
+            SnapshotSimulazione s = partizioni.getSnapshot(new ChiavePartizione(p.getAzienda(), p.getAnno()));
+            StimaResa singola = modello.stima(s, scenari.get(1));
+            assertArrayEquals(singola.getProfitto(), p.getStime().get(1).getProfitto(), 1e-9);
+            for (int m = 0; m < 12; m++) atteso[m] += singola.getRaccolto()[m];
+        }
+        assertEquals("caldo", esiti.getTotali().get(1).getScenario());
+        assertArrayEquals(atteso, esiti.getTotali().get(1).getRaccolto(), 1e-6);
+        assertThrows(IllegalArgumentException.class,
+                () -> modello.valuta(List.of(new ScenarioMeteo("x", 0, -150, 0)), Set.of(), 0, 9999));
+    }
+
+    private static TabellaResa tabella() {
+        try (InputStream in = ModelloResaServiceTest.class.getResourceAsStream("/data/coefficienti_resa.csv")) {
+            return TabellaResa.carica(in, 18, 80, 20000);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Preriscaldamento delle pagine: tutte le pagine della partizione corrente,
+ * nessun rendering dopo la chiusura del contesto.
+ */
+class PagineServiceTest {
+
+    private final SimulatoreService simulatore = new SimulatoreService(21L);
+    private final PartizioniService partizioni = new PartizioniService(simulatore,
+            new CatalogoPartizioniSimulate(List.of("Nord"), 2023, 2023), "Nord", 2024, 2, 1);
+    private final AtomicInteger compilate = new AtomicInteger();
+    private PagineService pagine;
+
+    @AfterEach
+    void chiudi() {
+        if (pagine != null) pagine.chiudi();
+        partizioni.chiudi();
+    }
+
+    @Test
+    void nessunRenderingDopoLaChiusuraDelContesto() {
+        SpringTemplateEngine motore = new SpringTemplateEngine();
+        motore.setTemplateResolver(new StringTemplateResolver());   // il nome della vista è il template
+        pagine = new PagineService(partizioni, simulatore, motore, 64, 1024, false);
+        pagine.registra("<p th:text=\"${mese}\"></p>", true, (partizione, mese, model) -> {
+            compilate.incrementAndGet();
+            model.addAttribute("mese", mese);
+        });
+
+        // 12 mesi per ogni formato dei numeri (italiano e lingua predefinita)
+        int preriscaldate = pagine.preriscalda();
+        assertTrue(preriscaldate >= 12 && preriscaldate % 12 == 0, "pagine: " + preriscaldate);
+        assertEquals(preriscaldate, compilate.get());
+
+        pagine.chiusuraContesto();
+        simulatore.rigenera();
+        assertEquals(0, pagine.preriscalda());
+        assertEquals(preriscaldate, compilate.get());
+    }
+}
@@ -0,0 +1,70 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.ChiavePartizione;
+import com.ortiVerdi.dashboard.data.Metrica;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Partizioni (azienda, anno): cache LRU delle partizioni residenti e
+ * interrogazioni parallele su più partizioni.
+ */
+class PartizioniServiceTest {
+
+    private final SimulatoreService simulatore = new SimulatoreService(5L);
+    private final PartizioniService partizioni = new PartizioniService(simulatore,
+            new CatalogoPartizioniSimulate(List.of("Nord", "Sud", "Est"), 2018, 2023), "Nord", 2024, 4, 3);
+
+    @AfterEach
+    void chiudi() {
+        partizioni.chiudi();
+    }
+
+    @Test
+    void partizioniEspulseVengonoRicaricateUguali() {
+        ChiavePartizione prima = new ChiavePartizione("Sud", 2019);
+        double[] attesi = partizioni.getSnapshot(prima).getArchivio().totaliMensili(Metrica.RACCOLTO);
+        assertSame(partizioni.getSnapshot(prima), partizioni.getSnapshot(prima));
+
+        for (int anno = 2018; anno <= 2023; anno++) partizioni.getSnapshot(new ChiavePartizione("Est", anno));
+        assertEquals(4, partizioni.getNumeroResidenti());
+        assertTrue(partizioni.getEspulsioni() >= 3);
+
+        long caricamenti = partizioni.getCaricamenti();
+        SnapshotSimulazione ricaricato = partizioni.getSnapshot(prima);
+        assertEquals(caricamenti + 1, partizioni.getCaricamenti());
+        assertArrayEquals(attesi, ricaricato.getArchivio().totaliMensili(Metrica.RACCOLTO));
+
+        // La partizione corrente è sempre lo snapshot vivo del simulatore
+        assertSame(simulatore.getSnapshot(), partizioni.getSnapshot(new ChiavePartizione("Nord", 2024)));
+        assertFalse(partizioni.esiste(new ChiavePartizione("Ovest", 2020)));
+    }
+
+    @Test
+    void serieMultiPartizioneUgualeAllaSommaDellePartizioni() {
+        SerieMultiPartizione serie = partizioni.serieMensili(Metrica.COSTI, Set.of("Nord", "Sud"), 2020, 2024);
+        assertEquals(9, serie.getPartizioni());   // 2 aziende × 2020-2023 + corrente Nord/2024
+
+        double[] attesi = new double[12];
+        for (ChiavePartizione k : partizioni.elenca()) {
+            if (k.getAzienda().equals("Est") || k.getAnno() < 2020) continue;
+            double[] t = partizioni.getSnapshot(k).getArchivio().totaliMensili(Metrica.COSTI);
+            for (int m = 0; m < 12; m++) attesi[m] += t[m];
+        }
+        assertArrayEquals(attesi, serie.getTotale(), 1e-6);
+        assertEquals(5, serie.getPerAnno().size());
+        assertEquals(Set.of("Nord", "Sud"), serie.getPerAzienda().keySet());
+
+        // Seconda esecuzione dai totali in cache: stesso risultato senza nuovi caricamenti
+        long caricamenti = partizioni.getCaricamenti();
+        SerieMultiPartizione ripetuta = partizioni.serieMensili(Metrica.COSTI, Set.of("Nord", "Sud"), 2020, 2024);
+        assertArrayEquals(serie.getTotale(), ripetuta.getTotale(), 0);
+        assertEquals(caricamenti, partizioni.getCaricamenti());
+    }
+}
@@ -0,0 +1,293 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.EventoDati;
+import com.ortiVerdi.dashboard.data.Metrica;
+import com.ortiVerdi.dashboard.data.RegistroFile;
+import com.ortiVerdi.dashboard.data.SorgenteDati;
+import com.ortiVerdi.dashboard.data.SorgenteDatiSimulati;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scrittura differita a lotti sul registro e ripristino al riavvio: le
+ * modifiche e le letture salvate tornano identiche, anche se il registro
+ * finisce con un record lasciato a metà da un crash. Un checkpoint azzera il
+ * registro e il riavvio riparte dal suo stato; dopo una rigenerazione le
+ * modifiche precedenti non vengono riapplicate. Con più scrittori concorrenti
+ * il registro segue l'ordine delle versioni pubblicate; un checkpoint non
+ * scarta un evento scritto prima che il suo snapshot sia pubblicato. Un
+ * checkpoint di una sorgente cambiata viene ignorato con il suo registro.
+ */
+class PersistenzaServiceTest {
+
+    private static final long ISTANTE = 1_740_000_000_000L;
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void modificheELettureRipristinateAlRiavvio() throws Exception {
+        Path file = cartella.resolve("registro.log");
+        double[] raccolto = new double[12], costi = new double[12];
+        Arrays.fill(raccolto, 40);
+        Arrays.fill(costi, 15);
+
+        // Primo avvio: modifiche e letture, scritte in background
+        PersistenzaService persistenza = new PersistenzaService(new RegistroFile(file, true), 1024, 64);
+        SimulatoreService simulatore = new SimulatoreService(7L);
+        AggiornamentiService aggiornamenti = new AggiornamentiService(simulatore, persistenza);
+        SensoriService sensori = new SensoriService(simulatore, persistenza, 1024, 10);
+
+        aggiornamenti.aggiornaRaccolto(0, 3, 1234.5);
+        aggiornamenti.aggiornaCosto(0, 7, 99);
+        aggiornamenti.aggiornaPrezzo(0, 4.25);
+        aggiornamenti.aggiungiColtura("Zafferano", 30, 2, raccolto, costi);
+        for (int i = 0; i < 500; i++) sensori.registra("Nord", ISTANTE + i * 1000L, CanaleSensore.TEMPERATURA, i % 30);
+
+        assertTrue(persistenza.svuota(10_000));
+        // Le 500 letture raccolte dal buffer in pochi eventi, non uno per lettura
+        long scritti = persistenza.getScritti();
+        assertTrue(scritti >= 5 && scritti <= 8, "eventi scritti: " + scritti);
+        assertTrue(persistenza.getLotti() <= persistenza.getScritti());
+        persistenza.chiudi();
+        ArchivioColture atteso = simulatore.getSnapshot().getArchivio();
+
+        // Crash simulato: un record scritto a metà in fondo al file
+        Files.write(file, new byte[]{40, 0, 0, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // Riavvio: stessi dati di partenza, eventi riapplicati dal registro
+        RegistroFile registro = new RegistroFile(file, true);
+        assertEquals(7, registro.getTroncati());
+        PersistenzaService riaperta = new PersistenzaService(registro, 1024, 64);
+        SimulatoreService riavviato = new SimulatoreService(7L);
+        SensoriService sensoriRiavviati = new SensoriService(riavviato, riaperta, 1024, 10);
+        RipristinoService ripristino = new RipristinoService(riaperta, riavviato,
+                new AggiornamentiService(riavviato, riaperta), sensoriRiavviati);
+
+        assertEquals(scritti, ripristino.getRipristinati());
+        assertEquals(0, ripristino.getScartati());
+        ArchivioColture ripristinato = riavviato.getSnapshot().getArchivio();
+        assertEquals(atteso.getNumeroRighe(), ripristinato.getNumeroRighe());
+        assertEquals(1234.5, ripristinato.getRaccolto(0, 2));
+        assertEquals(99, ripristinato.getCosto(0, 6));
+        assertEquals(4.25, ripristinato.getPrezzo(0));
+        int zafferano = ripristinato.cercaRiga("Zafferano");
+        assertArrayEquals(raccolto, ripristinato.copiaRiga(Metrica.RACCOLTO, zafferano));
+        assertEquals(atteso.totaliMensili(Metrica.PROFITTO)[2],
+                ripristinato.totaliMensili(Metrica.PROFITTO)[2], 1e-9);
+        assertEquals(500, sensoriRiavviati.getLetture());
+        assertNotNull(sensoriRiavviati.getStazione("Nord"));
+
+        // Il registro riaperto continua ad accettare scritture dopo il ripristino,
+        // senza riscrivere le letture ripristinate
+        sensoriRiavviati.registra("Nord", ISTANTE, CanaleSensore.UMIDITA, 60);
+        assertTrue(riaperta.svuota(10_000));
+        riaperta.chiudi();
+        RegistroFile finale = new RegistroFile(file, true);
+        assertEquals(scritti + 1, finale.rileggi(e -> { }));
+        finale.close();
+    }
+
+    @Test
+    void checkpointAzzeraIlRegistroERigenerazioneScartaLeModifiche() throws Exception {
+        Path file = cartella.resolve("registro.log");
+        Avvio primo = new Avvio(file);
+
+        // Modifiche e letture, poi un checkpoint: il registro riparte quasi vuoto
+        primo.aggiornamenti.aggiornaRaccolto(0, 3, 777);
+        for (int i = 0; i < 300; i++) primo.sensori.registra("Nord", ISTANTE + i * 1000L, CanaleSensore.VENTO, i % 7);
+        assertTrue(primo.persistenza.svuota(10_000));
+        primo.persistenza.richiediCheckpoint();
+        assertTrue(primo.persistenza.svuota(10_000));
+        assertEquals(1, primo.persistenza.getCheckpoint());
+        assertTrue(Files.exists(cartella.resolve("registro.log.checkpoint-1")));
+
+        // Dopo il checkpoint: una modifica e altre letture nel registro nuovo
+        primo.aggiornamenti.aggiornaCosto(0, 5, 55);
+        for (int i = 300; i < 400; i++) primo.sensori.registra("Nord", ISTANTE + i * 1000L, CanaleSensore.VENTO, i % 7);
+        assertTrue(primo.persistenza.svuota(10_000));
+        primo.persistenza.chiudi();
+
+        // Il registro riparte dallo stato dei canali: la modifica prima del checkpoint non c'è più
+        List<EventoDati.Tipo> tipi = new ArrayList<>();
+        try (RegistroFile registro = new RegistroFile(file, true)) {
+            assertEquals(1, registro.getGenerazione());
+            registro.rileggi(e -> tipi.add(e.getTipo()));
+        }
+        assertEquals(1, Collections.frequency(tipi, EventoDati.Tipo.MESE));
+        assertEquals(CanaleSensore.values().length, Collections.frequency(tipi, EventoDati.Tipo.SENSORE));
+        assertEquals(List.of(EventoDati.Tipo.LETTURE), tipi.stream().filter(t -> t == EventoDati.Tipo.LETTURE).distinct().toList());
+
+        // Riavvio: archivio dal checkpoint, poi solo gli eventi successivi
+        Avvio secondo = new Avvio(file);
+        ArchivioColture a = secondo.simulatore.getSnapshot().getArchivio();
+        assertEquals(777, a.getRaccolto(0, 2));
+        assertEquals(55, a.getCosto(0, 4));
+        assertEquals(0, secondo.ripristino.getScartati());
+        assertEquals(400, secondo.sensori.getLetture());
+        assertEquals(400, secondo.sensori.getStazione("Nord").getLetture());
+        long[] istanti = secondo.sensori.getStazione("Nord").getUltimeLetture(CanaleSensore.VENTO, 1000).getIstanti();
+        assertEquals(400, istanti.length);
+        assertEquals(ISTANTE + 399_000L, istanti[399]);
+
+        // Rigenerazione: dati nuovi dalla sorgente, che restano tali al riavvio senza le modifiche di prima
+        ArchivioColture rigenerato = secondo.simulatore.rigenera().getArchivio();
+        assertTrue(secondo.persistenza.svuota(10_000));
+        assertEquals(1, secondo.persistenza.getCheckpoint());
+        secondo.persistenza.chiudi();
+        Avvio terzo = new Avvio(file);
+        assertEquals(rigenerato.getRaccolto(0, 2), terzo.simulatore.getSnapshot().getArchivio().getRaccolto(0, 2));
+        assertEquals(rigenerato.getCosto(0, 4), terzo.simulatore.getSnapshot().getArchivio().getCosto(0, 4));
+        assertEquals(400, terzo.sensori.getLetture());
+        terzo.persistenza.chiudi();
+        assertFalse(Files.exists(cartella.resolve("registro.log.checkpoint-1")));
+    }
+
+    @Test
+    void scrittoriConcorrentiRipristinanoIValoriPubblicati() throws Exception {
+        Path file = cartella.resolve("registro.log");
+        Avvio primo = new Avvio(file);
+
+        // Più thread modificano le stesse celle: l'ultima versione pubblicata deve
+        // essere anche l'ultima riapplicata al riavvio
+        int thread = 8, modifiche = 500;
+        ExecutorService esecutore = Executors.newFixedThreadPool(thread);
+        CountDownLatch via = new CountDownLatch(1);
+        List<Future<?>> esiti = new ArrayList<>();
+        for (int t = 0; t < thread; t++) {
+            int base = t * modifiche;
+            esiti.add(esecutore.submit(() -> {
+                via.await();
+                for (int i = 0; i < modifiche; i++) {
+                    primo.aggiornamenti.aggiornaRaccolto(0, 1 + i % 3, base + i);
+                    primo.aggiornamenti.aggiornaPrezzo(0, base + i);
+                }
+                return null;
+            }));
+        }
+        via.countDown();
+        for (Future<?> f : esiti) f.get(30, TimeUnit.SECONDS);
+        esecutore.shutdown();
+        assertTrue(primo.persistenza.svuota(10_000));
+        primo.persistenza.chiudi();
+        ArchivioColture atteso = primo.simulatore.getSnapshot().getArchivio();
+
+        Avvio secondo = new Avvio(file);
+        ArchivioColture ripristinato = secondo.simulatore.getSnapshot().getArchivio();
+        assertEquals(2L * thread * modifiche, secondo.ripristino.getRipristinati());
+        for (int m = 0; m < 3; m++) assertEquals(atteso.getRaccolto(0, m), ripristinato.getRaccolto(0, m));
+        assertEquals(atteso.getPrezzo(0), ripristinato.getPrezzo(0));
+        assertEquals(atteso.totaliMensili(Metrica.PROFITTO)[0],
+                ripristinato.totaliMensili(Metrica.PROFITTO)[0], 1e-6);
+        secondo.persistenza.chiudi();
+    }
+
+    @Test
+    void checkpointAspettaLoSnapshotDellUltimoEventoScritto() throws Exception {
+        Path file = cartella.resolve("registro.log");
+        Avvio primo = new Avvio(file);
+
+        // Evento accodato come fa SimulatoreService.aggiorna, prima della pubblicazione
+        // del suo snapshot: il checkpoint dello snapshot precedente non può sostituirlo
+        long pubblicata = primo.simulatore.getSnapshot().getVersione();
+        String coltura = primo.simulatore.getSnapshot().getArchivio().getNome(0);
+        primo.persistenza.accoda(EventoDati.prezzo(0, coltura, 9.5), pubblicata + 1);
+        primo.persistenza.richiediCheckpoint();
+        assertTrue(primo.persistenza.svuota(10_000));
+        assertEquals(0, primo.persistenza.getCheckpoint());
+
+        // Pubblicata la versione successiva, il checkpoint rimandato viene scritto
+        primo.aggiornamenti.aggiornaPrezzo(0, 9.5);
+        assertEquals(pubblicata + 1, primo.simulatore.getSnapshot().getVersione());
+        assertTrue(primo.persistenza.svuota(10_000));
+        assertEquals(1, primo.persistenza.getCheckpoint());
+        primo.persistenza.chiudi();
+
+        Avvio secondo = new Avvio(file);
+        assertEquals(9.5, secondo.simulatore.getSnapshot().getArchivio().getPrezzo(0));
+        secondo.persistenza.chiudi();
+    }
+
+    @Test
+    void checkpointDiUnaSorgenteCambiataVieneIgnorato() throws Exception {
+        Path file = cartella.resolve("registro.log");
+        Avvio primo = new Avvio(file, sorgente(1));
+        double originale = primo.simulatore.getSnapshot().getArchivio().getRaccolto(0, 2);
+        primo.aggiornamenti.aggiornaRaccolto(0, 3, 777);
+        assertTrue(primo.persistenza.svuota(10_000));
+        primo.persistenza.richiediCheckpoint();
+        assertTrue(primo.persistenza.svuota(10_000));
+        assertEquals(1, primo.persistenza.getCheckpoint());
+        primo.aggiornamenti.aggiornaCosto(0, 5, 55);
+        assertTrue(primo.persistenza.svuota(10_000));
+        primo.persistenza.chiudi();
+
+        // Stessa sorgente: checkpoint e registro valgono
+        Avvio secondo = new Avvio(file, sorgente(1));
+        assertFalse(secondo.ripristino.isIgnorato());
+        assertEquals(777, secondo.simulatore.getSnapshot().getArchivio().getRaccolto(0, 2));
+        assertEquals(55, secondo.simulatore.getSnapshot().getArchivio().getCosto(0, 4));
+        secondo.persistenza.chiudi();
+
+        // Sorgente cambiata: restano i dati appena caricati, e un checkpoint nuovo sostituisce quello vecchio
+        Avvio terzo = new Avvio(file, sorgente(2));
+        assertTrue(terzo.ripristino.isIgnorato());
+        assertEquals(0, terzo.ripristino.getRipristinati());
+        assertEquals(originale, terzo.simulatore.getSnapshot().getArchivio().getRaccolto(0, 2));
+        assertTrue(terzo.persistenza.svuota(10_000));
+        assertEquals(1, terzo.persistenza.getCheckpoint());
+        terzo.persistenza.chiudi();
+        assertFalse(Files.exists(cartella.resolve("registro.log.checkpoint-1")));
+
+        Avvio quarto = new Avvio(file, sorgente(2));
+        assertFalse(quarto.ripristino.isIgnorato());
+        assertEquals(originale, quarto.simulatore.getSnapshot().getArchivio().getRaccolto(0, 2));
+        quarto.persistenza.chiudi();
+    }
+
+    // Stessi dati simulati, con l'impronta indicata
+    private static SorgenteDati sorgente(long impronta) {
+        return new SorgenteDatiSimulati(7L) {
+            @Override
+            public long impronta() { return impronta; }
+        };
+    }
+
+    // Servizi collegati come nell'applicazione, con ripristino dal registro
+    private static final class Avvio {
+        final PersistenzaService persistenza;
+        final SimulatoreService simulatore;
+        final AggiornamentiService aggiornamenti;
+        final SensoriService sensori;
+        final RipristinoService ripristino;
+
+        Avvio(Path file) throws Exception {
+            this(file, new SorgenteDatiSimulati(7L));
+        }
+
+        Avvio(Path file, SorgenteDati sorgente) throws Exception {
+            simulatore = new SimulatoreService(sorgente, 7L, null, true);
+            persistenza = new PersistenzaService(new RegistroFile(file, true), 1024, 64);
+            aggiornamenti = new AggiornamentiService(simulatore, persistenza);
+            sensori = new SensoriService(simulatore, persistenza, 1024, 10);
+            ripristino = new RipristinoService(persistenza, simulatore, aggiornamenti, sensori);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.data.CatalogoPartizioniSimulate;
+import com.ortiVerdi.dashboard.data.Metrica;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Riduzione LTTB: estremi conservati, picchi che sopravvivono, numero di punti
+ * richiesto, e cache per (serie, punti) invalidata dalle nuove letture.
+ */
+class RiduzioneSerieServiceTest {
+
+    private static final long ISTANTE = 1_740_000_000_000L;
+
+    private final SimulatoreService simulatore = new SimulatoreService(7L);
+    private final SensoriService sensori = new SensoriService(simulatore, 4096, 10);
+    private final PartizioniService partizioni = new PartizioniService(simulatore,
+            new CatalogoPartizioniSimulate(List.of("Nord"), 2021, 2023), "Nord", 2024, 4, 1);
+    private final RiduzioneSerieService servizio = new RiduzioneSerieService(sensori, partizioni, 16);
+
+    @AfterEach
+    void chiudi() {
+        partizioni.chiudi();
+    }
+
+    @Test
+    void lttbConservaEstremiEPicchi() {
+        int n = 10_000;
+        long[] istanti = new long[n];
+        double[] valori = new double[n];
+        for (int i = 0; i < n; i++) {
+            istanti[i] = ISTANTE + i * 60_000L;
+            valori[i] = Math.sin(i / 500.0);
+        }
+        valori[7_321] = 50;     // picco isolato
+        valori[2_000] = -40;    // valle isolata
+
+        SerieRidotta ridotta = RiduzioneLttb.riduci(istanti, valori, n, 200);
+        assertEquals(n, ridotta.getPuntiOriginali());
+        assertEquals(200, ridotta.getIstanti().length);
+        assertEquals(istanti[0], ridotta.getIstanti()[0]);
+        assertEquals(istanti[n - 1], ridotta.getIstanti()[199]);
+        for (int i = 1; i < 200; i++) assertTrue(ridotta.getIstanti()[i] > ridotta.getIstanti()[i - 1]);
+
+        double massimo = Double.NEGATIVE_INFINITY, minimo = Double.POSITIVE_INFINITY;
+        for (double v : ridotta.getValori()) {
+            massimo = Math.max(massimo, v);
+            minimo = Math.min(minimo, v);
+        }
+        assertEquals(50, massimo);
+        assertEquals(-40, minimo);
+
+        // Meno punti di quelli richiesti: serie invariata
+        SerieRidotta corta = RiduzioneLttb.riduci(istanti, valori, 50, 200);
+        assertEquals(50, corta.getValori().length);
+        assertThrows(IllegalArgumentException.class, () -> RiduzioneLttb.riduci(istanti, valori, n, 2));
+    }
+
+    @Test
+    void cachePerSerieEPuntiInvalidataDalleLetture() {
+        for (int i = 0; i < 3_000; i++) sensori.registra("A1", ISTANTE + i * 1000L, CanaleSensore.TEMPERATURA, 15 + i % 7);
+
+        SerieRidotta prima = servizio.letture("A1", CanaleSensore.TEMPERATURA, 4096, 100);
+        assertEquals(100, prima.getValori().length);
+        assertSame(prima, servizio.letture("A1", CanaleSensore.TEMPERATURA, 4096, 100));
+        assertNotSame(prima, servizio.letture("A1", CanaleSensore.TEMPERATURA, 4096, 50));
+        assertSame(prima, servizio.letture("A1", CanaleSensore.TEMPERATURA, 4096, 100));
+        assertEquals(4, servizio.getRichieste());
+        assertEquals(2, servizio.getCalcoli());
+
+        sensori.registra("A1", ISTANTE + 3_000_000L, CanaleSensore.TEMPERATURA, 99);
+        SerieRidotta dopo = servizio.letture("A1", CanaleSensore.TEMPERATURA, 4096, 100);
+        assertNotSame(prima, dopo);
+        assertEquals(99, dopo.getValori()[99]);
+        assertEquals(3_000, servizio.letture("A1", CanaleSensore.TEMPERATURA, 3_000, 0).getValori().length);
+
+        SerieRidotta storico = servizio.storico(Metrica.RACCOLTO, Set.of(), 2021, 2024, 0);
+        assertEquals(48, storico.getValori().length);
+        SerieRidotta storicoRidotto = servizio.storico(Metrica.RACCOLTO, Set.of(), 2021, 2024, 12);
+        assertEquals(12, storicoRidotto.getValori().length);
+        assertEquals(storico.getIstanti()[47], storicoRidotto.getIstanti()[11]);
+        assertSame(storicoRidotto, servizio.storico(Metrica.RACCOLTO, Set.of(), 2021, 2024, 12));
+    }
+}
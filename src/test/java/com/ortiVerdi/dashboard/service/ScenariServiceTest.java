@@ -0,0 +1,51 @@
+package com.ortiVerdi.dashboard.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scenari Monte Carlo: risultato indipendente dal numero di thread e bande ordinate.
+ */
+class ScenariServiceTest {
+
+    private final SnapshotSimulazione snapshot = new SimulatoreService(9L).getSnapshot();
+
+    @Test
+    void stessoSemeStesseBandeConQualsiasiParallelismo() {
+        ScenariService unThread = new ScenariService(1, 10_000);
+        ScenariService quattroThread = new ScenariService(4, 10_000);
+        try {
+            BandeScenari a = unThread.simula(snapshot, 3000, 7L);
+            BandeScenari b = quattroThread.simula(snapshot, 3000, 7L);
+            for (String metrica : a.getBande().keySet()) {
+                assertArrayEquals(a.getBande().get(metrica).getP5(), b.getBande().get(metrica).getP5(), 0);
+                assertArrayEquals(a.getBande().get(metrica).getP50(), b.getBande().get(metrica).getP50(), 0);
+                assertArrayEquals(a.getBande().get(metrica).getP95(), b.getBande().get(metrica).getP95(), 0);
+            }
+        } finally {
+            unThread.chiudi();
+            quattroThread.chiudi();
+        }
+    }
+
+    @Test
+    void bandeOrdinateAttornoAiDatiCorrenti() {
+        ScenariService scenari = new ScenariService(2, 10_000);
+        try {
+            BandeScenari bande = scenari.simula(snapshot, 4000, ScenariService.SEME_PREDEFINITO);
+            assertEquals(4000, bande.getRealizzazioni());
+            BandeScenari.Banda raccolto = bande.getBande().get("raccolto");
+            for (int m = 0; m < 12; m++) {
+                assertTrue(raccolto.getP5()[m] <= raccolto.getP50()[m] && raccolto.getP50()[m] <= raccolto.getP95()[m]);
+                // I fattori hanno media 1: la mediana resta vicina al valore dello snapshot
+                double corrente = snapshot.getDatiMensili(m + 1).getQuantitaRaccolto();
+                assertEquals(corrente, raccolto.getP50()[m], corrente * 0.15 + 1e-9);
+            }
+            assertThrows(IllegalArgumentException.class, () -> scenari.simula(snapshot, 0, 1L));
+            assertThrows(IllegalArgumentException.class, () -> scenari.simula(snapshot, 10_001, 1L));
+        } finally {
+            scenari.chiudi();
+        }
+    }
+}
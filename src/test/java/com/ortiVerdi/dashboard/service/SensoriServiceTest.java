@@ -0,0 +1,68 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.CanaleSensore;
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * I dati ambientali mensili dello snapshot derivano dalle letture dei sensori.
+ */
+class SensoriServiceTest {
+
+    private static final long MARZO = Instant.parse("2025-03-05T08:00:00Z").toEpochMilli();
+
+    @Test
+    void datiAmbientaliDerivatiDalleLetture() {
+        SimulatoreService simulatore = new SimulatoreService(17L);
+        SensoriService sensori = new SensoriService(simulatore, 64, 10);
+        DatiAmbientali simulatiMarzo = simulatore.getSnapshot().getDatiAmbientali(3);
+        DatiAmbientali simulatiAprile = simulatore.getSnapshot().getDatiAmbientali(4);
+
+        for (int i = 0; i < 100; i++) {
+            long t = MARZO + i * 60_000L;
+            sensori.registra("Nord", t, CanaleSensore.TEMPERATURA, 10);
+            sensori.registra("Sud", t, CanaleSensore.TEMPERATURA, 14);
+            sensori.registra("Nord", t, CanaleSensore.PRECIPITAZIONI, 0.5);   // 50 mm nel mese
+            sensori.registra("Sud", t, CanaleSensore.PRECIPITAZIONI, 0.3);    // 30 mm nel mese
+        }
+        SnapshotSimulazione prima = simulatore.getSnapshot();
+        long versione = prima.getVersione();
+        IndiceIntervalli indice = IndiceIntervalli.di(prima);
+        ValoriAnnuali valori = ValoriAnnuali.di(prima);
+        sensori.pubblica();
+
+        SnapshotSimulazione s = simulatore.getSnapshot();
+        assertTrue(s.getVersione() > versione);
+        DatiAmbientali marzo = s.getDatiAmbientali(3);
+        assertEquals(12, marzo.getTemperatura(), 1e-9);
+        assertEquals(40, marzo.getPrecipitazioni(), 1e-9);
+        assertEquals(simulatiMarzo.getUmiditaRelativa(), marzo.getUmiditaRelativa());   // canale senza letture
+        assertSame(simulatiAprile, s.getDatiAmbientali(4));                               // mese senza letture
+        // Cambia solo il meteo: i valori derivati dall'archivio non vengono ricalcolati
+        assertSame(indice, IndiceIntervalli.di(s));
+        assertSame(valori, ValoriAnnuali.di(s));
+
+        // Nessuna lettura nuova: nessuna nuova versione
+        sensori.pubblica();
+        assertSame(s, simulatore.getSnapshot());
+
+        // Una rigenerazione rimette i valori simulati: la pubblicazione successiva li sostituisce di nuovo
+        simulatore.rigenera();
+        sensori.pubblica();
+        assertEquals(12, simulatore.getSnapshot().getDatiAmbientali(3).getTemperatura(), 1e-9);
+    }
+
+    @Test
+    void lettureNonValideVengonoRifiutate() {
+        SensoriService sensori = new SensoriService(new SimulatoreService(1L), 16, 1);
+        sensori.registra("A", MARZO, CanaleSensore.VENTO, 2);
+        assertThrows(IllegalArgumentException.class, () -> sensori.registra("A", MARZO, CanaleSensore.VENTO, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> sensori.registra("B", MARZO, CanaleSensore.VENTO, 2));
+        assertThrows(IllegalArgumentException.class, () -> sensori.registra(" ", MARZO, CanaleSensore.VENTO, 2));
+        assertEquals(1, sensori.getLetture());
+    }
+}
@@ -0,0 +1,106 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.model.DatiAmbientali;
+import com.ortiVerdi.dashboard.model.DatiProduzione;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test di concorrenza sul SimulatoreService: molti thread leggono
+ * contemporaneamente dati mensili e ambientali, anche mentre lo snapshot
+ * viene rigenerato.
+ */
+class SimulatoreServiceConcorrenzaTest {
+
+    private static final int THREAD = 32;
+    private static final int ITERAZIONI = 20_000;
+
+    @Test
+    void letturaConcorrenteRestituisceSempreGliStessiOggetti() throws Exception {
+        SimulatoreService simulatore = new SimulatoreService(42L);
+        ExecutorService pool = Executors.newFixedThreadPool(THREAD);
+        CyclicBarrier partenza = new CyclicBarrier(THREAD);
+
+        // Ogni thread registra gli oggetti visti per ciascun mese
+        List<Future<Object[][]>> risultati = new ArrayList<>();
+        for (int t = 0; t < THREAD; t++) {
+            risultati.add(pool.submit(() -> {
+                Object[][] visti = new Object[2][12];
+                partenza.await();
+                for (int i = 0; i < ITERAZIONI; i++) {
+                    int mese = 1 + (i % 12);
+                    DatiProduzione dp = simulatore.getDatiMensili(mese);
+                    DatiAmbientali da = simulatore.generaDatiAmbientali(mese);
+                    if (visti[0][mese - 1] == null) {
+                        visti[0][mese - 1] = dp;
+                        visti[1][mese - 1] = da;
+                    }
+                    assertSame(visti[0][mese - 1], dp);
+                    assertSame(visti[1][mese - 1], da);
+                }
+                return visti;
+            }));
+        }
+
+        Object[][] primo = risultati.get(0).get(30, TimeUnit.SECONDS);
+        for (Future<Object[][]> f : risultati) {
+            Object[][] visti = f.get(30, TimeUnit.SECONDS);
+            for (int m = 0; m < 12; m++) {
+                assertSame(primo[0][m], visti[0][m], "generazione duplicata dei dati mensili");
+                assertSame(primo[1][m], visti[1][m], "generazione duplicata dei dati ambientali");
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    void snapshotCoerenteDuranteLeRigenerazioni() throws Exception {
+        SimulatoreService simulatore = new SimulatoreService(7L);
+        ExecutorService pool = Executors.newFixedThreadPool(THREAD + 1);
+        AtomicBoolean attivo = new AtomicBoolean(true);
+
+        // Un thread rigenera continuamente i dati
+        Future<?> scrittore = pool.submit(() -> {
+            while (attivo.get()) simulatore.rigenera();
+        });
+
+        List<Future<?>> lettori = new ArrayList<>();
+        for (int t = 0; t < THREAD; t++) {
+            lettori.add(pool.submit(() -> {
+                for (int i = 0; i < ITERAZIONI / 4; i++) {
+                    SnapshotSimulazione s = simulatore.getSnapshot();
+                    double raccolto = 0, consumo = 0;
+                    double[] consumoMensile = s.getConsumoIdricoMensile();
+                    for (int mese = 1; mese <= 12; mese++) {
+                        DatiProduzione dp = s.getDatiMensili(mese);
+                        assertNotNull(s.getDatiAmbientali(mese));
+                        assertEquals(consumoMensile[mese - 1], dp.getConsumoIdrico(), 1e-9);
+                        raccolto += dp.getQuantitaRaccolto();
+                        consumo += dp.getConsumoIdrico();
+                    }
+                    // Il totale annuale appartiene alla stessa generazione dei dati mensili
+                    assertEquals(s.getDatiAnnuali().getQuantitaRaccolto(), raccolto, 1e-6);
+                    assertEquals(s.getDatiAnnuali().getConsumoIdrico(), consumo, 1e-6);
+                }
+            }));
+        }
+
+        for (Future<?> f : lettori) f.get(60, TimeUnit.SECONDS);
+        attivo.set(false);
+        scrittore.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+
+    @Test
+    void meseFuoriIntervalloVieneRifiutato() {
+        SimulatoreService simulatore = new SimulatoreService(1L);
+        assertThrows(IllegalArgumentException.class, () -> simulatore.getDatiMensili(13));
+        assertThrows(IllegalArgumentException.class, () -> simulatore.generaDatiAmbientali(0));
+    }
+}
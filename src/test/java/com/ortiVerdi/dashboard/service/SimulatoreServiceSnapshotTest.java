@@ -0,0 +1,85 @@
+package com.ortiVerdi.dashboard.service;
+
+import com.ortiVerdi.dashboard.data.ArchivioColture;
+import com.ortiVerdi.dashboard.data.SorgenteDati;
+import com.ortiVerdi.dashboard.data.SorgenteDatiSimulati;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Avvio da snapshot binario: riuso solo se sorgente e catalogo non sono
+ * cambiati, ripiego sulla sorgente se il file non è leggibile.
+ */
+class SimulatoreServiceSnapshotTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void snapshotScartatoSeLaSorgenteCambia() {
+        Path file = cartella.resolve("colture.ovs");
+        Sorgente sorgente = new Sorgente();
+
+        new SimulatoreService(sorgente, 1L, file, true);
+        assertEquals(1, sorgente.caricamenti.get());
+        assertTrue(Files.exists(file));
+
+        // Stessa impronta: lo snapshot su disco viene riusato
+        new SimulatoreService(sorgente, 1L, file, true);
+        assertEquals(1, sorgente.caricamenti.get());
+
+        // File sorgente modificato: si ricarica e lo snapshot viene riscritto
+        sorgente.impronta = 2;
+        new SimulatoreService(sorgente, 1L, file, true);
+        assertEquals(2, sorgente.caricamenti.get());
+        new SimulatoreService(sorgente, 1L, file, true);
+        assertEquals(2, sorgente.caricamenti.get());
+    }
+
+    @Test
+    void snapshotMalformatoRicaricaDallaSorgente() throws IOException {
+        Path file = cartella.resolve("colture.ovs");
+        Sorgente sorgente = new Sorgente();
+        new SimulatoreService(sorgente, 1L, file, true);
+
+        // Intestazione valida ma numero di nomi oltre i dati, senza verifica del checksum
+        byte[] contenuto = Files.readAllBytes(file);
+        contenuto[12] = (byte) 0xFF;
+        contenuto[13] = (byte) 0xFF;
+        Files.write(file, contenuto);
+
+        SimulatoreService simulatore = new SimulatoreService(sorgente, 1L, file, false);
+        assertEquals(2, sorgente.caricamenti.get());
+        assertFalse(simulatore.getColture().isEmpty());
+    }
+
+    // Sorgente simulata con impronta impostabile e conteggio dei caricamenti
+    private static final class Sorgente implements SorgenteDati {
+        private final SorgenteDatiSimulati dati = new SorgenteDatiSimulati(7L);
+        private final AtomicInteger caricamenti = new AtomicInteger();
+        private volatile long impronta = 1;
+
+        @Override
+        public String getNome() {
+            return "prova";
+        }
+
+        @Override
+        public ArchivioColture carica() {
+            caricamenti.incrementAndGet();
+            return dati.carica();
+        }
+
+        @Override
+        public long impronta() {
+            return impronta;
+        }
+    }
+}